@@ -13,9 +13,10 @@ import com.crawler.model.NewsPost;
 import com.crawler.processor.IDataProcessor;
 import com.crawler.processor.NewsFilterProcessor;
 import com.crawler.processor.WebhookProcessor;
+import com.crawler.repository.CachingPostRepository;
 import com.crawler.repository.IPostRepository;
-import com.crawler.repository.SQLitePostRepository;
-import com.crawler.service.IPostService;
+import com.crawler.repository.PostRepositoryFactory;
+import com.crawler.repository.WriteBehindPostRepository;
 import com.crawler.service.PostService;
 import com.crawler.util.PostCsvExporter;
 
@@ -35,9 +36,12 @@ public class TestRunner {
         ISearchClient newsClient = null;
         // KHÔNG DÙNG ConfigLoader NỮA (vì ConfigLoader không còn trong file mới của user)
         // Thay bằng constructor mặc định đã được bổ sung
-        try (WebhookProcessor webhookProcessor = new WebhookProcessor()) { 
+        // Write-behind: save() trả về ngay, close() (cuối try) ghi nốt hàng đợi xuống disk
+        try (WebhookProcessor webhookProcessor = new WebhookProcessor();
+             WriteBehindPostRepository store = new WriteBehindPostRepository(PostRepositoryFactory.create())) {
 
-            IPostRepository repository = new SQLitePostRepository();
+            // L1 (RAM) bọc ngoài L2 (SQLite hoặc segment log, chọn qua crawler.repository) - DECORATOR PATTERN
+            IPostRepository repository = new CachingPostRepository(store);
 
             // CHỌN CLIENT CỤ THỂ ĐỂ TEST (Ví dụ: VNExpress)
             newsClient = new VNExpressClient();
@@ -59,36 +63,39 @@ public class TestRunner {
             IDataProcessor<AbstractPost> webhookEnricher = webhookProcessor;
 
             // TIÊM PHỤ THUỘC (DIP) - Tiêm Processor Pipeline vào Service
-            // NewsFilterProcessor sẽ chạy TRƯỚC WebhookProcessor
-            // Cast processors to proper type for PostService
-            List<IDataProcessor<? super AbstractPost>> processorList = new ArrayList<>();
+            // ProcessorPlanner tự xếp NewsFilterProcessor (rẻ, loại bài) TRƯỚC WebhookProcessor (gọi AI)
+            // và đẩy bộ lọc xuống crawler → chỉ bài khớp keyword mới bị enrich
+            List<IDataProcessor<?>> processorList = new ArrayList<>();
             processorList.add(webhookEnricher);
-            IPostService service = new PostService(repository, newsClient, processorList);
+            processorList.add(newsFilter);
+            // Service (worker enrich nền ở chế độ hai pha) đóng TRƯỚC store + webhookProcessor của try ngoài
+            try (PostService service = new PostService(repository, newsClient, processorList)) {
 
-            // ========== 3. GỌI LOGIC NGHIỆP VỤ (SERVICE CALL) ==========
-            // ĐÃ SỬA: DÙNG KEYWORD
-            System.out.println("\n[GỌI SERVICE] keyword=" + keyword);
+                // ========== 3. GỌI LOGIC NGHIỆP VỤ (SERVICE CALL) ==========
+                // ĐÃ SỬA: DÙNG KEYWORD
+                System.out.println("\n[GỌI SERVICE] keyword=" + keyword);
 
-            // POLYMORPHISM: Hàm này sẽ tự động gọi Crawl/Webhook nếu chưa có cache
-            List<? extends AbstractPost> results = service.getPosts(keyword, startDate, endDate);
+                // POLYMORPHISM: Hàm này sẽ tự động gọi Crawl/Webhook nếu chưa có cache
+                List<? extends AbstractPost> results = service.getPosts(keyword, startDate, endDate);
 
-            // ========== 4. KIỂM TRA KẾT QUẢ XỬ LÝ ==========
-            System.out.println("\n--- KẾT QUẢ CRAWL VÀ XỬ LÝ (POLYMORPHISM) ---");
-            System.out.println("TỔNG SỐ BÀI VÀO DB: " + results.size());
+                // ========== 4. KIỂM TRA KẾT QUẢ XỬ LÝ ==========
+                System.out.println("\n--- KẾT QUẢ CRAWL VÀ XỬ LÝ (POLYMORPHISM) ---");
+                System.out.println("TỔNG SỐ BÀI VÀO DB: " + results.size());
             
-            // Luu ra 1 file CSV duy nhat de xem nhanh
-            String csvFile = "TestRunner_" + keyword.replaceAll("\\s+", "_") + ".csv";
-            PostCsvExporter.export(results, csvFile);
-            System.out.println("[CSV] Da luu du lieu vao: " + csvFile);
-
-            if (!results.isEmpty()) {
-                AbstractPost sample = results.get(0);
-                System.out.println("\n* BÀI VIẾT MẪU (KIỂM TRA WEBHOOK ENRICHMENT):");
-                System.out.println("  - Nền tảng: " + sample.getPlatform());
-                System.out.println("  - Content: " + sample.getContent().substring(0, Math.min(sample.getContent().length(), 80)) + "...");
-                System.out.println("  - Cảm xúc (Webhook): " + sample.getSentiment()); // Dữ liệu đã được xử lý
-                System.out.println("  - Vị trí (Webhook): " + sample.getLocation());   // Dữ liệu đã được xử lý
-                System.out.println("  - Engagement Score: " + sample.getEngagementScore());
+                // Luu ra 1 file CSV duy nhat de xem nhanh
+                String csvFile = "TestRunner_" + keyword.replaceAll("\\s+", "_") + ".csv";
+                PostCsvExporter.export(results, csvFile);
+                System.out.println("[CSV] Da luu du lieu vao: " + csvFile);
+
+                if (!results.isEmpty()) {
+                    AbstractPost sample = results.get(0);
+                    System.out.println("\n* BÀI VIẾT MẪU (KIỂM TRA WEBHOOK ENRICHMENT):");
+                    System.out.println("  - Nền tảng: " + sample.getPlatform());
+                    System.out.println("  - Content: " + sample.getContent().substring(0, Math.min(sample.getContent().length(), 80)) + "...");
+                    System.out.println("  - Cảm xúc (Webhook): " + sample.getSentiment()); // Dữ liệu đã được xử lý
+                    System.out.println("  - Vị trí (Webhook): " + sample.getLocation());   // Dữ liệu đã được xử lý
+                    System.out.println("  - Engagement Score: " + sample.getEngagementScore());
+                }
             }
 
         } catch (CrawlerException e) {
@@ -0,0 +1,144 @@
+package com.crawler.app;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.crawler.config.CrawlerConfig;
+import com.crawler.repository.EnrichmentCache;
+import com.crawler.util.NaiveBayesClassifier;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+/**
+ * TrainLocalClassifier - Huấn luyện OFFLINE mô hình cho LocalEnrichmentTier
+ *
+ * 1. Đọc các cặp (nội dung, metadata do AI gán) đã lưu trong EnrichmentCache
+ * 2. Tách ~20% làm tập kiểm tra (theo hash nội dung → lần chạy nào cũng chia giống nhau)
+ * 3. Huấn luyện Naive Bayes trên phần còn lại với mọi field chuỗi ở cấp cao nhất của metadata
+ * 4. In chất lượng trên tập kiểm tra: độ chính xác từng field (tổng thể và khi đạt ngưỡng tin cậy),
+ *    tỷ lệ bài mà MỌI field đạt ngưỡng (= tỷ lệ bài sẽ không cần gọi AI)
+ * 5. Huấn luyện lại trên TOÀN BỘ dữ liệu và lưu ra file mô hình (CrawlerConfig.getEnrichLocalModel)
+ *
+ * Chạy lại định kỳ khi cache có thêm kết quả AI.
+ */
+public class TrainLocalClassifier {
+
+    // 1/5 ví dụ dùng để kiểm tra
+    private static final int HOLDOUT_MODULUS = 5;
+
+    private record Example(String content, Map<String, String> labels) {
+    }
+
+    public static void main(String[] args) throws IOException {
+        String dbFile = CrawlerConfig.getEnrichCacheDb();
+        String modelFile = CrawlerConfig.getEnrichLocalModel();
+        int bits = CrawlerConfig.getEnrichLocalFeatureBits();
+        double threshold = CrawlerConfig.getEnrichLocalConfidencePercent() / 100.0;
+        if ("none".equalsIgnoreCase(dbFile) || "none".equalsIgnoreCase(modelFile)) {
+            System.err.println("✗ Enrichment cache or local model is disabled - nothing to train");
+            return;
+        }
+
+        List<Example> examples = new ArrayList<>();
+        EnrichmentCache.readLabeled(dbFile, (content, metadata) -> {
+            Map<String, String> labels = labelsOf(metadata);
+            if (!labels.isEmpty()) {
+                examples.add(new Example(content, labels));
+            }
+        });
+        if (examples.isEmpty()) {
+            System.err.println("✗ No AI-labeled content in " + dbFile + " - run the crawler with AI enrichment first");
+            return;
+        }
+
+        List<Example> train = new ArrayList<>();
+        List<Example> holdout = new ArrayList<>();
+        for (Example example : examples) {
+            (Math.floorMod(example.content().hashCode(), HOLDOUT_MODULUS) == 0 ? holdout : train).add(example);
+        }
+        System.out.println("✓ Loaded " + examples.size() + " labeled posts from " + dbFile
+                + " (train=" + train.size() + ", holdout=" + holdout.size() + ")");
+
+        if (!train.isEmpty() && !holdout.isEmpty()) {
+            evaluate(fit(train, bits), holdout, threshold);
+        }
+
+        NaiveBayesClassifier model = fit(examples, bits);
+        model.save(Path.of(modelFile));
+        System.out.println("✓ Saved local classifier " + model.getFields() + " to " + modelFile);
+    }
+
+    private static NaiveBayesClassifier fit(List<Example> examples, int bits) {
+        NaiveBayesClassifier.Trainer trainer = NaiveBayesClassifier.trainer(bits);
+        for (Example example : examples) {
+            trainer.add(example.content(), example.labels());
+        }
+        return trainer.build();
+    }
+
+    /**
+     * In độ chính xác + độ phủ tại ngưỡng tin cậy trên tập kiểm tra
+     */
+    private static void evaluate(NaiveBayesClassifier model, List<Example> holdout, double threshold) {
+        Map<String, int[]> perField = new LinkedHashMap<>();
+        int allConfident = 0;
+        int allConfidentCorrect = 0;
+        for (Example example : holdout) {
+            boolean confident = true;
+            boolean correct = true;
+            for (Map.Entry<String, NaiveBayesClassifier.Prediction> entry : model.classify(example.content()).entrySet()) {
+                // [số bài có nhãn, đúng, đạt ngưỡng, đạt ngưỡng và đúng]
+                int[] counts = perField.computeIfAbsent(entry.getKey(), k -> new int[4]);
+                NaiveBayesClassifier.Prediction prediction = entry.getValue();
+                String expected = example.labels().get(entry.getKey());
+                boolean hit = prediction.label().equals(expected);
+                boolean sure = prediction.confidence() >= threshold;
+                confident &= sure;
+                correct &= hit;
+                if (expected == null) {
+                    continue;
+                }
+                counts[0]++;
+                counts[1] += hit ? 1 : 0;
+                counts[2] += sure ? 1 : 0;
+                counts[3] += sure && hit ? 1 : 0;
+            }
+            if (confident) {
+                allConfident++;
+                allConfidentCorrect += correct ? 1 : 0;
+            }
+        }
+
+        System.out.println("\n>>> Holdout quality (confidence threshold " + Math.round(threshold * 100) + "%):");
+        for (Map.Entry<String, int[]> entry : perField.entrySet()) {
+            int[] c = entry.getValue();
+            System.out.printf("  %-28s accuracy=%5.1f%%  confident=%5.1f%%  accuracy@confident=%5.1f%%%n",
+                    entry.getKey(), percent(c[1], c[0]), percent(c[2], c[0]), percent(c[3], c[2]));
+        }
+        System.out.printf("  → %.1f%% of posts would skip the AI call, %.1f%% of those fully correct%n%n",
+                percent(allConfident, holdout.size()), percent(allConfidentCorrect, allConfident));
+    }
+
+    private static double percent(int part, int whole) {
+        return whole == 0 ? 0 : 100.0 * part / whole;
+    }
+
+    /**
+     * Nhãn = các field chuỗi ở cấp cao nhất của metadata (field mảng/đối tượng bị bỏ qua)
+     */
+    private static Map<String, String> labelsOf(JsonObject metadata) {
+        Map<String, String> labels = new LinkedHashMap<>();
+        for (Map.Entry<String, JsonElement> entry : metadata.entrySet()) {
+            JsonElement value = entry.getValue();
+            if (value.isJsonPrimitive() && value.getAsJsonPrimitive().isString()
+                    && !value.getAsString().isBlank()) {
+                labels.put(entry.getKey(), value.getAsString());
+            }
+        }
+        return labels;
+    }
+}
@@ -0,0 +1,440 @@
+package com.crawler.app;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.crawler.model.AbstractPost;
+import com.crawler.model.NewsPost;
+import com.crawler.processor.WebhookProcessor;
+import com.crawler.util.IncrementalJsonParser;
+import com.crawler.util.ServerSentEvents;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+/**
+ * VerifyStreamingReplay - Kiểm tra đường streaming AI (SSE) với một STUB SERVER local phát lại response chunked
+ *
+ * Không gọi AI thật: ReplayServer trả về các kịch bản text/event-stream đã ghi sẵn, cắt thành các chunk HTTP
+ * nhỏ (ranh giới chunk rơi giữa dòng SSE và giữa ký tự UTF-8 nhiều byte).
+ *
+ * KIỂM TRA:
+ * 1. ServerSentEvents: nhiều dòng data, comment, field khác, event cuối không có dòng trống
+ * 2. IncrementalJsonParser: nạp từng ký tự, chuỗi chứa ngoặc/escape, mảng bị cắt giữa chừng
+ * 3. WebhookProcessor (crawler.enrich.response.mode=stream) qua stub:
+ *    - phần tử đầu được phát (emit) TRƯỚC khi stream kết thúc (server giữ stream đến khi nhận emit)
+ *    - stream đứt giữa mảng: phần tử đã nhận được giữ, phần tử dở được gọi lại riêng,
+ *      mỗi post được phát ĐÚNG một lần (delivered)
+ *    - batch timeout giữa stream: phần tử đã phát được giữ, chỉ vị trí chưa về được gọi lại,
+ *      phần tử về muộn sau timeout bị bỏ
+ *
+ * Thoát với mã 1 nếu có kiểm tra thất bại.
+ */
+public class VerifyStreamingReplay {
+
+    // Kích thước chunk HTTP stub gửi (nhỏ để ranh giới chunk rơi giữa dòng / giữa ký tự)
+    private static final int CHUNK_BYTES = 7;
+
+    private static final long WAIT_SECONDS = 5;
+    // Timeout request AI trong kịch bản timeout (ngắn hơn hẳn thời gian stub giữ stream)
+    private static final long SHORT_TIMEOUT_MILLIS = 1000;
+
+    private static int failures;
+
+    public static void main(String[] args) throws Exception {
+        checkServerSentEvents();
+        checkIncrementalJsonParser();
+
+        System.setProperty("crawler.enrich.response.mode", "stream");
+        try (ReplayServer server = new ReplayServer()) {
+            checkEarlyEmit(server);
+            checkStreamCutMidArray(server);
+            checkBatchTimeoutKeepsEarlyResults(server);
+        }
+
+        if (failures > 0) {
+            System.err.println("✗ Streaming replay: " + failures + " checks failed");
+            System.exit(1);
+        }
+        System.out.println("✓ Streaming replay: all checks passed");
+    }
+
+    // ========== SERVER-SENT EVENTS ==========
+
+    private static void checkServerSentEvents() throws IOException {
+        String stream = ": keep-alive\n"
+                + "event: message\n"
+                + "data: first\n"
+                + "data:second line\n"
+                + "id: 1\n"
+                + "\n"
+                + "\n"
+                + "data\n"
+                + "\n"
+                + "data: {\"last\": true}";
+        List<String> events = new ArrayList<>();
+        int count = ServerSentEvents.read(new StringReader(stream), events::add);
+
+        check("SSE multi-line data, comments, empty data, unterminated last event",
+                count == 3 && events.equals(List.of("first\nsecond line", "", "{\"last\": true}")),
+                events.toString());
+    }
+
+    // ========== INCREMENTAL JSON ==========
+
+    private static void checkIncrementalJsonParser() {
+        String text = "```json\n[{\"index\":0,\"note\":\"có ] và } trong chuỗi \\\" \\\\\"},"
+                + " {\"index\":1,\"nested\":[1,[2,3]]}, 7, {\"index\":3}]\n```";
+
+        List<JsonElement> elements = new ArrayList<>();
+        IncrementalJsonParser parser = new IncrementalJsonParser(new IncrementalJsonParser.Listener() {
+            @Override
+            public void onElement(int position, JsonElement element) {
+                elements.add(element);
+            }
+        });
+        for (int i = 0; i < text.length(); i++) {
+            parser.feed(text.substring(i, i + 1));
+        }
+        check("Incremental JSON fed one char at a time",
+                parser.isComplete() && elements.size() == 4
+                        && elements.get(0).getAsJsonObject().get("note").getAsString().equals("có ] và } trong chuỗi \" \\")
+                        && elements.get(1).getAsJsonObject().getAsJsonArray("nested").size() == 2
+                        && elements.get(2).getAsInt() == 7,
+                elements.toString());
+
+        List<JsonElement> partial = new ArrayList<>();
+        IncrementalJsonParser cut = new IncrementalJsonParser(new IncrementalJsonParser.Listener() {
+            @Override
+            public void onElement(int position, JsonElement element) {
+                partial.add(element);
+            }
+        });
+        cut.feed("[{\"index\":0},{\"index\":1},{\"index\":2,\"cam_xuc");
+        check("Incremental JSON cut mid-array keeps complete elements only",
+                !cut.isComplete() && cut.elementCount() == 2 && partial.size() == 2,
+                partial.toString());
+    }
+
+    // ========== WEBHOOK PROCESSOR QUA STUB ==========
+
+    /**
+     * Server gửi phần tử 0 rồi GIỮ stream cho tới khi post 0 được emit → emit xảy ra trước khi stream kết thúc
+     */
+    private static void checkEarlyEmit(ReplayServer server) throws Exception {
+        List<AbstractPost> posts = posts("early", 3);
+        CountDownLatch firstEmitted = new CountDownLatch(1);
+
+        server.enqueue(new Reply(deltas("```json\n[", element(0) + ",", element(1).substring(0, 9),
+                element(1).substring(9) + ",", element(2) + "]\n```"), 2, firstEmitted, false));
+
+        List<AbstractPost> emitted = Collections.synchronizedList(new ArrayList<>());
+        try (WebhookProcessor processor = processor(server)) {
+            processor.process(posts, post -> {
+                emitted.add(post);
+                if (post == posts.get(0)) {
+                    firstEmitted.countDown();
+                }
+            });
+        }
+
+        check("Early emit: first element delivered while the stream is still open", !server.released.isEmpty()
+                && server.released.peek(), "server gave up waiting for the first emit");
+        check("Early emit: every post enriched and delivered once", deliveredOnce(posts, emitted)
+                && allEnriched(posts), describe(emitted));
+        check("Early emit: one streaming request", server.paths.size() == 1
+                && server.paths.get(0).contains(":streamGenerateContent") && server.paths.get(0).contains("alt=sse"),
+                server.paths.toString());
+    }
+
+    /**
+     * Kết nối bị cắt giữa phần tử 2 (không có chunk kết thúc): phần tử 0, 1 được giữ,
+     * post 2 được gọi lại riêng (request thứ hai) và mọi post được phát đúng một lần
+     */
+    private static void checkStreamCutMidArray(ReplayServer server) throws Exception {
+        server.paths.clear();
+        List<AbstractPost> posts = posts("cut", 3);
+
+        server.enqueue(new Reply(deltas("[", element(0) + ",", element(1) + ",", element(2).substring(0, 20)),
+                -1, null, true));
+        JsonObject single = metadata();
+        server.enqueue(new Reply(deltas(single.toString().substring(0, 12), single.toString().substring(12)),
+                -1, null, false));
+
+        List<AbstractPost> emitted = Collections.synchronizedList(new ArrayList<>());
+        try (WebhookProcessor processor = processor(server)) {
+            processor.process(posts, emitted::add);
+        }
+
+        check("Cut mid-array: kept elements + retried post, each delivered once",
+                deliveredOnce(posts, emitted) && allEnriched(posts), describe(emitted));
+        check("Cut mid-array: batch request + one single retry", server.paths.size() == 2, server.paths.toString());
+    }
+
+    /**
+     * Stub phát phần tử 0, 1 rồi giữ stream lâu hơn timeout: batch timeout, post 0, 1 giữ kết quả đã phát,
+     * chỉ post 2 được gọi lại (stub phục vụ request gọi lại trong lúc vẫn đang giữ stream cũ)
+     */
+    private static void checkBatchTimeoutKeepsEarlyResults(ReplayServer server) throws Exception {
+        server.paths.clear();
+        List<AbstractPost> posts = posts("timeout", 3);
+
+        server.enqueue(new Reply(deltas("[", element(0) + ",", element(1) + ",", element(2) + "]"),
+                2, new CountDownLatch(1), false));
+        JsonObject single = metadata();
+        server.enqueue(new Reply(deltas(single.toString()), -1, null, false));
+
+        List<AbstractPost> emitted = Collections.synchronizedList(new ArrayList<>());
+        try (WebhookProcessor processor = processor(server, SHORT_TIMEOUT_MILLIS)) {
+            processor.process(posts, emitted::add);
+        }
+
+        check("Batch timeout: early results kept, each post delivered once",
+                deliveredOnce(posts, emitted) && allEnriched(posts), describe(emitted));
+        check("Batch timeout: only the missing post retried", server.paths.size() == 2, server.paths.toString());
+    }
+
+    private static WebhookProcessor processor(ReplayServer server) {
+        return processor(server, TimeUnit.SECONDS.toMillis(WAIT_SECONDS * 2));
+    }
+
+    private static WebhookProcessor processor(ReplayServer server, long timeoutMillis) {
+        // Không cache, không quota, không tầng local: mọi post đi qua stub
+        return new WebhookProcessor(server.url() + "/v1beta/models/stub:generateContent", "", "stub", "stub prompt",
+                1, timeoutMillis, 3, 100_000, null, null, null);
+    }
+
+    private static List<AbstractPost> posts(String prefix, int count) {
+        List<AbstractPost> posts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            posts.add(new NewsPost(prefix + i, LocalDate.of(2024, 11, 1), "Bão số " + i,
+                    prefix + " bài " + i + ": mưa lũ gây ngập", "news", 0));
+        }
+        return posts;
+    }
+
+    private static JsonObject metadata() {
+        JsonObject metadata = new JsonObject();
+        metadata.addProperty("loai_bai_viet", "thiệt hại");
+        metadata.addProperty("cam_xuc_bai_viet", "tiêu cực");
+        metadata.addProperty("tinh_thanh", "Thừa Thiên Huế");
+        metadata.addProperty("huong_bai_viet", "cảnh báo");
+        return metadata;
+    }
+
+    private static String element(int index) {
+        JsonObject element = metadata();
+        element.addProperty("index", index);
+        return element.toString();
+    }
+
+    /**
+     * Mỗi đoạn text model sinh ra → một event SSE dạng Gemini streamGenerateContent
+     */
+    private static List<String> deltas(String... texts) {
+        List<String> events = new ArrayList<>(texts.length);
+        for (String text : texts) {
+            JsonObject part = new JsonObject();
+            part.addProperty("text", text);
+            JsonArray parts = new JsonArray();
+            parts.add(part);
+            JsonObject content = new JsonObject();
+            content.add("parts", parts);
+            JsonObject candidate = new JsonObject();
+            candidate.add("content", content);
+            JsonArray candidates = new JsonArray();
+            candidates.add(candidate);
+            JsonObject chunk = new JsonObject();
+            chunk.add("candidates", candidates);
+            events.add("data: " + chunk + "\r\n\r\n");
+        }
+        return events;
+    }
+
+    private static boolean deliveredOnce(List<AbstractPost> posts, List<AbstractPost> emitted) {
+        if (emitted.size() != posts.size()) {
+            return false;
+        }
+        for (AbstractPost post : posts) {
+            if (emitted.stream().filter(e -> e == post).count() != 1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean allEnriched(List<AbstractPost> posts) {
+        return posts.stream().allMatch(post -> "tiêu cực".equals(post.getSentiment())
+                && "Thừa Thiên Huế".equals(post.getLocation()) && !post.isEnrichmentDeferred());
+    }
+
+    private static String describe(List<AbstractPost> posts) {
+        List<String> parts = new ArrayList<>();
+        synchronized (posts) {
+            for (AbstractPost post : posts) {
+                parts.add(post.getIdentityKey() + "=" + post.getSentiment());
+            }
+        }
+        return parts.toString();
+    }
+
+    private static void check(String name, boolean passed, String detail) {
+        if (passed) {
+            System.out.println("✓ " + name);
+        } else {
+            failures++;
+            System.err.println("✗ " + name + ": " + detail);
+        }
+    }
+
+    // ========== STUB SERVER ==========
+
+    /**
+     * Một response được phát lại
+     *
+     * @param events Các event SSE (đã kèm dòng trống kết thúc)
+     * @param holdAfter Sau event thứ mấy thì chờ release (-1 = không chờ)
+     * @param cut true = đóng kết nối sau event cuối mà KHÔNG gửi chunk kết thúc (stream đứt)
+     */
+    private record Reply(List<String> events, int holdAfter, CountDownLatch release, boolean cut) {
+    }
+
+    /**
+     * HTTP/1.1 tối giản trên ServerSocket: mỗi kết nối một request (một thread riêng → kết nối đang bị giữ
+     * không chặn kết nối sau), response Transfer-Encoding: chunked
+     */
+    private static final class ReplayServer implements AutoCloseable {
+
+        private final ServerSocket socket;
+        private final ConcurrentLinkedQueue<Reply> replies = new ConcurrentLinkedQueue<>();
+        // true nếu release đến kịp trong mỗi lần giữ stream
+        private final ConcurrentLinkedQueue<Boolean> released = new ConcurrentLinkedQueue<>();
+        private final List<String> paths = Collections.synchronizedList(new ArrayList<>());
+        private final Thread acceptor;
+
+        ReplayServer() throws IOException {
+            socket = new ServerSocket(0, 0, InetAddress.getLoopbackAddress());
+            acceptor = new Thread(this::acceptLoop, "replay-stub");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        String url() {
+            return "http://127.0.0.1:" + socket.getLocalPort();
+        }
+
+        void enqueue(Reply reply) {
+            replies.add(reply);
+        }
+
+        private void acceptLoop() {
+            while (!socket.isClosed()) {
+                Socket client;
+                try {
+                    client = socket.accept();
+                } catch (IOException e) {
+                    if (!socket.isClosed()) {
+                        System.err.println("✗ Replay stub: " + e.getMessage());
+                    }
+                    continue;
+                }
+                Thread connection = new Thread(() -> serveQuietly(client), "replay-stub-connection");
+                connection.setDaemon(true);
+                connection.start();
+            }
+        }
+
+        private void serveQuietly(Socket client) {
+            try (client) {
+                serve(client);
+            } catch (IOException e) {
+                if (!socket.isClosed()) {
+                    System.err.println("✗ Replay stub: " + e.getMessage());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void serve(Socket client) throws IOException, InterruptedException {
+            InputStream in = client.getInputStream();
+            String head = readHead(in);
+            paths.add(head.lines().findFirst().orElse(""));
+            in.readNBytes(contentLength(head));
+
+            OutputStream out = client.getOutputStream();
+            Reply reply = replies.poll();
+            if (reply == null) {
+                out.write("HTTP/1.1 500 Internal Server Error\r\nContent-Length: 0\r\nConnection: close\r\n\r\n"
+                        .getBytes(StandardCharsets.US_ASCII));
+                out.flush();
+                return;
+            }
+
+            out.write(("HTTP/1.1 200 OK\r\nContent-Type: text/event-stream; charset=utf-8\r\n"
+                    + "Transfer-Encoding: chunked\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            for (int e = 0; e < reply.events().size(); e++) {
+                writeChunked(out, reply.events().get(e).getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                if (e == reply.holdAfter()) {
+                    released.add(reply.release().await(WAIT_SECONDS, TimeUnit.SECONDS));
+                }
+            }
+            if (reply.cut()) {
+                // Đóng kết nối (FIN) mà không có chunk kết thúc "0\r\n\r\n" → client thấy body bị cắt
+                return;
+            }
+            out.write("0\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+        }
+
+        private static void writeChunked(OutputStream out, byte[] data) throws IOException {
+            for (int from = 0; from < data.length; from += CHUNK_BYTES) {
+                int length = Math.min(CHUNK_BYTES, data.length - from);
+                out.write((Integer.toHexString(length) + "\r\n").getBytes(StandardCharsets.US_ASCII));
+                out.write(data, from, length);
+                out.write("\r\n".getBytes(StandardCharsets.US_ASCII));
+            }
+        }
+
+        private static String readHead(InputStream in) throws IOException {
+            ByteArrayOutputStream head = new ByteArrayOutputStream();
+            int matched = 0;
+            int b;
+            while (matched < 4 && (b = in.read()) >= 0) {
+                head.write(b);
+                matched = (b == '\r' && matched % 2 == 0) || (b == '\n' && matched % 2 == 1) ? matched + 1 : 0;
+            }
+            return head.toString(StandardCharsets.US_ASCII);
+        }
+
+        private static int contentLength(String head) {
+            for (String line : head.split("\r\n")) {
+                if (line.toLowerCase(Locale.ROOT).startsWith("content-length:")) {
+                    return Integer.parseInt(line.substring(line.indexOf(':') + 1).strip());
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
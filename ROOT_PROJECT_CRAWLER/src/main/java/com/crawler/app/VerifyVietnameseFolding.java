@@ -0,0 +1,83 @@
+package com.crawler.app;
+
+import java.text.Normalizer;
+import java.util.Locale;
+
+import com.crawler.util.VietnameseFolding;
+
+/**
+ * VerifyVietnameseFolding - Kiểm tra bảng tra của VietnameseFolding TƯƠNG ĐƯƠNG đường NFD cũ
+ *
+ * Với MỌI char (65.536 giá trị) so sánh:
+ * - foldChar(c) / foldLowerChar(c) với Normalizer NFD + replaceAll("\\p{M}+", "") (+ đ/Đ → d/D)
+ *   theo đúng hợp đồng: 1 ký tự → ký tự đó, chuỗi rỗng → REMOVED, nhiều ký tự → giữ nguyên c
+ * - fold(String) / foldLower(String) của chuỗi một ký tự với kết quả NFD (kể cả đường chậm)
+ *
+ * Thoát với mã 1 nếu có ký tự lệch → chạy lại sau mỗi lần đổi VietnameseFolding hoặc nâng JDK
+ * (bảng Unicode của Normalizer đi theo JDK).
+ */
+public class VerifyVietnameseFolding {
+
+    // Số ký tự lệch tối đa được in ra
+    private static final int MAX_REPORTED = 20;
+
+    public static void main(String[] args) {
+        int mismatches = 0;
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            char ch = (char) c;
+            char lower = Character.toLowerCase(ch);
+
+            mismatches += check(ch, "foldChar", VietnameseFolding.foldChar(ch),
+                    expectedChar(reference(String.valueOf(ch)), ch), mismatches);
+            mismatches += check(ch, "foldLowerChar", VietnameseFolding.foldLowerChar(ch),
+                    expectedChar(reference(String.valueOf(lower)), lower), mismatches);
+            mismatches += check(ch, "fold", VietnameseFolding.fold(String.valueOf(ch)),
+                    reference(String.valueOf(ch)), mismatches);
+            mismatches += check(ch, "foldLower", VietnameseFolding.foldLower(String.valueOf(ch)),
+                    reference(String.valueOf(ch).toLowerCase(Locale.ROOT)), mismatches);
+        }
+
+        if (mismatches > 0) {
+            System.err.println("✗ VietnameseFolding differs from the NFD fold for " + mismatches + " checks");
+            System.exit(1);
+        }
+        System.out.println("✓ VietnameseFolding matches the NFD fold for all " + (Character.MAX_VALUE + 1) + " chars");
+    }
+
+    /**
+     * Đường NFD gốc: tách dấu rồi bỏ mọi \p{M}, đ/Đ → d/D
+     */
+    private static String reference(String value) {
+        return Normalizer.normalize(value, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}+", "")
+                .replace('đ', 'd')
+                .replace('Đ', 'D');
+    }
+
+    /**
+     * Hợp đồng foldChar: kết quả một ký tự, REMOVED nếu bị bỏ hết, ký tự vào nếu không fold được theo từng ký tự
+     */
+    private static char expectedChar(String folded, char fallback) {
+        if (folded.isEmpty()) {
+            return VietnameseFolding.REMOVED;
+        }
+        return folded.length() == 1 ? folded.charAt(0) : fallback;
+    }
+
+    private static int check(char c, String method, Object actual, Object expected, int reported) {
+        if (actual.equals(expected)) {
+            return 0;
+        }
+        if (reported < MAX_REPORTED) {
+            System.err.printf("✗ %s(U+%04X): expected %s, got %s%n", method, (int) c,
+                    describe(expected), describe(actual));
+        }
+        return 1;
+    }
+
+    private static String describe(Object value) {
+        StringBuilder out = new StringBuilder("\"");
+        value.toString().chars().forEach(ch -> out.append(String.format("\\u%04X", ch)));
+        return out.append('"').toString();
+    }
+}
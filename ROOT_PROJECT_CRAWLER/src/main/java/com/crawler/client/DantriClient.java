@@ -67,6 +67,11 @@ public class DantriClient extends CrawlerEnv {
                         continue;
                     }
 
+                    // Bộ lọc đã đẩy xuống (keyword...) - loại sớm trước khi parse tiếp
+                    if (!accepts(postDate, title, excerpt)) {
+                        continue;
+                    }
+
                     try {
                         comments = Integer.parseInt(excerpt_box.getElementsByTag("button").text());
                     } catch (Exception e) {
@@ -89,6 +94,7 @@ public class DantriClient extends CrawlerEnv {
             } catch (IOException u) {
                 System.err.println("Không lấy được trang từ Dantri: " + u.getMessage());
             }
+            endPage();
         }
     }
 }
@@ -1,8 +1,10 @@
 package com.crawler.client;
 
 import com.crawler.model.AbstractPost;
+import com.crawler.processor.IPushableFilter;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * ĐÂY LÀ HỢP ĐỒNG (CONTRACT) MÀ TẤT CẢ CÁC CRAWLER PHẢI TUÂN THEO
@@ -23,6 +25,29 @@ public interface ISearchClient {
      */
     List<? extends AbstractPost> search(String query, LocalDate startDate, LocalDate endDate) throws CrawlerException;
 
+    /**
+     * Crawl THEO TRANG: mỗi trang parse xong được giao ngay cho pageConsumer,
+     * để pipeline streaming xử lý trang trước trong khi crawler còn tải trang sau.
+     * Mặc định: gọi search() rồi giao toàn bộ kết quả như MỘT trang.
+     *
+     * @param pageConsumer Nhận posts của từng trang (có thể chặn khi pipeline phía sau đầy - backpressure)
+     * @throws CrawlerException Nếu có lỗi khi crawl hoặc pageConsumer từ chối nhận tiếp
+     */
+    default void searchPages(String query, LocalDate startDate, LocalDate endDate,
+                             Consumer<List<? extends AbstractPost>> pageConsumer) throws CrawlerException {
+        pageConsumer.accept(search(query, startDate, endDate));
+    }
+
+    /**
+     * PREDICATE PUSHDOWN: nhận một bộ lọc để áp dụng ngay khi crawl (trước khi post vào kết quả)
+     * Mặc định: không hỗ trợ → bộ lọc vẫn chạy trong chuỗi processor.
+     *
+     * @return true nếu crawler đã nhận và từ nay tự lọc bằng filter này
+     */
+    default boolean pushDown(IPushableFilter<?> filter) {
+        return false;
+    }
+
     /**
      * Mọi client phải có phương thức để khởi tạo driver/kết nối.
      */
@@ -10,8 +10,10 @@ import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 import com.crawler.config.CrawlerConfig;
+import com.crawler.model.AbstractPost;
 import com.crawler.model.SocialPost;
 import com.crawler.util.TikTokParser;
 
@@ -54,6 +56,24 @@ public class TikTokSearchClient implements ISearchClient {
      */
     @Override
     public List<SocialPost> search(String query, LocalDate startDate, LocalDate endDate) throws CrawlerException {
+        List<SocialPost> allVideos = new ArrayList<>();
+        crawl(query, allVideos::addAll);
+        return allVideos;
+    }
+
+    /**
+     * Crawl theo trang: mỗi batch cursor được giao ngay cho pageConsumer
+     */
+    @Override
+    public void searchPages(String query, LocalDate startDate, LocalDate endDate,
+                            Consumer<List<? extends AbstractPost>> pageConsumer) throws CrawlerException {
+        crawl(query, pageConsumer::accept);
+    }
+
+    /**
+     * Vòng lặp cursor dùng chung cho search/searchPages (PRIVATE - ENCAPSULATION)
+     */
+    private void crawl(String query, Consumer<List<SocialPost>> onPage) throws CrawlerException {
         try {
             if (httpClient == null) {
                 initialize();
@@ -65,8 +85,6 @@ public class TikTokSearchClient implements ISearchClient {
             int collected = 0;
             int limit = CrawlerConfig.getDefaultLimit();
 
-            List<SocialPost> allVideos = new ArrayList<>();
-
             System.out.println("TikTok - Keyword: \"" + query + "\"");
 
             while (collected < limit) {
@@ -77,7 +95,7 @@ public class TikTokSearchClient implements ISearchClient {
                     break;
                 }
 
-                allVideos.addAll(batch);
+                onPage.accept(batch);
                 collected += batch.size();
                 System.out.println("  collected " + collected + " videos so far");
 
@@ -92,7 +110,6 @@ public class TikTokSearchClient implements ISearchClient {
             }
 
             System.out.println("Finished keyword \"" + query + "\" with " + collected + " videos.");
-            return allVideos;
 
         } catch (Exception e) {
             throw new CrawlerException("Lỗi khi crawl TikTok: " + e.getMessage(), e);
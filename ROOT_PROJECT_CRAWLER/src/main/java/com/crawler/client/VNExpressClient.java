@@ -53,6 +53,11 @@ public class VNExpressClient extends CrawlerEnv {
                         continue;
                     }
 
+                    // Bộ lọc đã đẩy xuống (keyword...) - loại sớm trước khi parse tiếp
+                    if (!accepts(postDate, title, summary)) {
+                        continue;
+                    }
+
                     try {
                         comments = Integer.parseInt(post.select("p.meta-news").get(0)
                                                     .getElementsByTag("span").get(0).text().strip());
@@ -75,6 +80,7 @@ public class VNExpressClient extends CrawlerEnv {
             } catch (IOException u) {
                 System.err.println("Không lấy được bài từ VNExpress: " + u.getMessage());
             }
+            endPage();
         }
     }
 }
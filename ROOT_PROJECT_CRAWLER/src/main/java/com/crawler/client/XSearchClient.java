@@ -10,7 +10,9 @@ import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
+import com.crawler.model.AbstractPost;
 import com.crawler.model.SocialPost;
 import com.crawler.util.XParser;
 
@@ -56,6 +58,24 @@ public class XSearchClient implements ISearchClient {
      */
     @Override
     public List<SocialPost> search(String query, LocalDate startDate, LocalDate endDate) throws CrawlerException {
+        List<SocialPost> allPosts = new ArrayList<>();
+        crawl(query, allPosts::addAll);
+        return allPosts;
+    }
+
+    /**
+     * Crawl theo trang: mỗi batch cursor được giao ngay cho pageConsumer
+     */
+    @Override
+    public void searchPages(String query, LocalDate startDate, LocalDate endDate,
+                            Consumer<List<? extends AbstractPost>> pageConsumer) throws CrawlerException {
+        crawl(query, pageConsumer::accept);
+    }
+
+    /**
+     * Vòng lặp cursor dùng chung cho search/searchPages (PRIVATE - ENCAPSULATION)
+     */
+    private void crawl(String query, Consumer<List<SocialPost>> onPage) throws CrawlerException {
         try {
             if (httpClient == null) {
                 initialize();
@@ -69,8 +89,6 @@ public class XSearchClient implements ISearchClient {
             int maxPages = 10;
             int limit = DEFAULT_LIMIT;
 
-            List<SocialPost> allPosts = new ArrayList<>();
-
             System.out.println("X - keyword: \"" + query + "\"");
 
             while (collected < limit && pages < maxPages) {
@@ -82,7 +100,7 @@ public class XSearchClient implements ISearchClient {
                     break;
                 }
 
-                allPosts.addAll(batch);
+                onPage.accept(batch);
                 collected += batch.size();
                 pages++;
 
@@ -97,7 +115,6 @@ public class XSearchClient implements ISearchClient {
             }
 
             System.out.println("Finished keyword \"" + query + "\" with " + collected + " tweets.");
-            return allPosts;
 
         } catch (Exception e) {
             throw new CrawlerException("Lỗi khi crawl X: " + e.getMessage(), e);
@@ -4,21 +4,37 @@ import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
 
 import com.crawler.client.CrawlerException;
 import com.crawler.client.ISearchClient;
+import com.crawler.model.AbstractPost;
 import com.crawler.model.NewsPost;
+import com.crawler.processor.IPushableFilter;
 
 /**
  * Lớp trừu tượng cho News Crawlers.
  * Tách logic lọc ra khỏi crawler (SRP) - chỉ chịu trách nhiệm crawl thô.
  * 
  * ENCAPSULATION: Protected field được đóng gói với validation và defensive copy
+ *
+ * PREDICATE PUSHDOWN: bộ lọc NewsPost (ngày, keyword...) được ProcessorPlanner đẩy xuống đây.
+ * - Subclass gọi accepts() trên field thô để bỏ qua sớm bài chắc chắn bị loại
+ * - addPost() luôn áp dụng quyết định cuối → bài bị loại không vào kết quả, không bị enrich
  */
 public abstract class CrawlerEnv implements ISearchClient {
     // ENCAPSULATION: Private field thay vì protected
     private final List<NewsPost> resultPosts = new ArrayList<>();
 
+    // Chỉ khác null trong searchPages(): nơi nhận posts của từng trang
+    private Consumer<List<? extends AbstractPost>> pageConsumer;
+    // Vị trí đầu trang hiện tại trong resultPosts
+    private int pageStart;
+
+    // Bộ lọc đã được đẩy xuống crawler
+    private final List<IPushableFilter<? super NewsPost>> pushedFilters = new ArrayList<>();
+    private int rejectedPosts;
+
     /**
      * Protected method để subclass thêm post
      * ENCAPSULATION: Validation và null check
@@ -27,14 +43,67 @@ public abstract class CrawlerEnv implements ISearchClient {
         if (post == null) {
             throw new IllegalArgumentException("Post cannot be null");
         }
+        for (IPushableFilter<? super NewsPost> filter : pushedFilters) {
+            if (!filter.accept(post)) {
+                rejectedPosts++;
+                return;
+            }
+        }
         resultPosts.add(post);
     }
 
+    /**
+     * Kiểm tra sớm trên field thô (trước khi dựng NewsPost)
+     *
+     * @return false nếu một bộ lọc đã đẩy xuống chắc chắn loại bài này
+     */
+    protected boolean accepts(LocalDate postDate, String title, String content) {
+        for (IPushableFilter<? super NewsPost> filter : pushedFilters) {
+            if (!filter.mayAccept(postDate, title, content)) {
+                rejectedPosts++;
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean pushDown(IPushableFilter<?> filter) {
+        if (filter == null || !filter.filteredType().isAssignableFrom(NewsPost.class)) {
+            return false;
+        }
+        // filteredType() là lớp cha (hoặc chính) NewsPost → filter nhận được NewsPost
+        pushedFilters.add((IPushableFilter<? super NewsPost>) filter);
+        return true;
+    }
+
     /**
      * Protected method để subclass clear results
      */
     protected void clearResults() {
         resultPosts.clear();
+        pageStart = 0;
+        rejectedPosts = 0;
+    }
+
+    private void logRejected() {
+        if (rejectedPosts > 0) {
+            System.out.println(getClass().getSimpleName() + ": pushdown filters dropped " + rejectedPosts + " posts");
+        }
+    }
+
+    /**
+     * Subclass gọi sau khi parse xong MỘT trang: các post thêm từ lần gọi trước được giao
+     * cho pipeline streaming (nếu đang chạy searchPages), ngoài ra không làm gì.
+     */
+    protected void endPage() {
+        if (pageConsumer == null || pageStart == resultPosts.size()) {
+            return;
+        }
+        List<NewsPost> page = new ArrayList<>(resultPosts.subList(pageStart, resultPosts.size()));
+        pageStart = resultPosts.size();
+        pageConsumer.accept(page);
     }
 
     /**
@@ -63,12 +132,32 @@ public abstract class CrawlerEnv implements ISearchClient {
             clearResults();
             // TRUYỀN ĐẦY ĐỦ THAM SỐ XUỐNG IMPLEMENTATION CỤ THỂ
             getPosts(query, startDate, endDate);
+            logRejected();
             return new ArrayList<>(resultPosts);
         } catch (Exception e) {
             throw new CrawlerException("Lỗi khi crawl news: " + e.getMessage(), e);
         }
     }
 
+    @Override
+    public void searchPages(String query, LocalDate startDate, LocalDate endDate,
+                            Consumer<List<? extends AbstractPost>> pageConsumer) throws CrawlerException {
+        this.pageConsumer = pageConsumer;
+        try {
+            clearResults();
+            getPosts(query, startDate, endDate);
+            // Phần còn lại (subclass không gọi endPage) đi thành trang cuối
+            endPage();
+            logRejected();
+        } catch (CrawlerException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CrawlerException("Lỗi khi crawl news: " + e.getMessage(), e);
+        } finally {
+            this.pageConsumer = null;
+        }
+    }
+
     @Override
     public void initialize() {
         System.out.println(this.getClass().getSimpleName() + " initialized.");
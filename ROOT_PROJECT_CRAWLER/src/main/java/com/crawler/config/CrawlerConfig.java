@@ -1,5 +1,7 @@
 package com.crawler.config;
 
+import java.util.Locale;
+
 /**
  * CrawlerConfig - Centralized configuration management
  * 
@@ -89,6 +91,380 @@ public final class CrawlerConfig {
         return getIntConfig("CRAWLER_MAX_PAGES", "crawler.max.pages", 5);
     }
     
+    // ========== ENRICHMENT ==========
+
+    /**
+     * Số request AI tối đa chạy đồng thời trong WebhookProcessor (1 = tuần tự)
+     * Environment variable: CRAWLER_ENRICH_CONCURRENCY
+     * System property: crawler.enrich.concurrency
+     */
+    public static int getEnrichConcurrency() {
+        return getIntConfig("CRAWLER_ENRICH_CONCURRENCY", "crawler.enrich.concurrency", 8);
+    }
+
+    /**
+     * Timeout (ms) cho MỘT request AI
+     * Environment variable: CRAWLER_ENRICH_TIMEOUT_MS
+     * System property: crawler.enrich.timeout.ms
+     */
+    public static int getEnrichTimeoutMillis() {
+        return getIntConfig("CRAWLER_ENRICH_TIMEOUT_MS", "crawler.enrich.timeout.ms", 30000);
+    }
+
+    /**
+     * Số post tối đa gộp trong MỘT request AI (1 = mỗi post một request)
+     * Environment variable: CRAWLER_ENRICH_BATCH_SIZE
+     * System property: crawler.enrich.batch.size
+     */
+    public static int getEnrichBatchSize() {
+        return getIntConfig("CRAWLER_ENRICH_BATCH_SIZE", "crawler.enrich.batch.size", 10);
+    }
+
+    /**
+     * Ngân sách token (ước lượng) cho MỘT request batch - post dài thì batch nhỏ lại
+     * Environment variable: CRAWLER_ENRICH_BATCH_TOKENS
+     * System property: crawler.enrich.batch.tokens
+     */
+    public static int getEnrichBatchTokens() {
+        return getIntConfig("CRAWLER_ENRICH_BATCH_TOKENS", "crawler.enrich.batch.tokens", 6000);
+    }
+
+    /**
+     * Cách nhận response AI: "buffered" (chờ đủ response) hoặc "stream" (SSE streamGenerateContent,
+     * kết quả từng post của batch được dùng ngay khi model sinh xong)
+     * Environment variable: CRAWLER_ENRICH_RESPONSE_MODE
+     * System property: crawler.enrich.response.mode
+     */
+    public static String getEnrichResponseMode() {
+        return getConfig("CRAWLER_ENRICH_RESPONSE_MODE", "crawler.enrich.response.mode", "buffered");
+    }
+
+    /**
+     * File SQLite chứa cache kết quả AI (EnrichmentCache); "none" để tắt cache.
+     * Tách khỏi crawler_cache.db của SQLitePostRepository để không tranh writer lock.
+     * Environment variable: CRAWLER_ENRICH_CACHE_DB
+     * System property: crawler.enrich.cache.db
+     */
+    public static String getEnrichCacheDb() {
+        return getConfig("CRAWLER_ENRICH_CACHE_DB", "crawler.enrich.cache.db", "enrichment_cache.db");
+    }
+
+    /**
+     * Số kết quả AI tối đa giữ trong tầng RAM của EnrichmentCache
+     * Environment variable: CRAWLER_ENRICH_CACHE_MEMORY
+     * System property: crawler.enrich.cache.memory
+     */
+    public static int getEnrichCacheMemoryEntries() {
+        return getIntConfig("CRAWLER_ENRICH_CACHE_MEMORY", "crawler.enrich.cache.memory", 10000);
+    }
+
+    /**
+     * Quota số request AI mỗi cửa sổ (0 = không giới hạn; cả request và token đều 0 → tắt EnrichmentScheduler)
+     * Environment variable: CRAWLER_ENRICH_QUOTA_REQUESTS
+     * System property: crawler.enrich.quota.requests
+     */
+    public static int getEnrichQuotaRequests() {
+        return getIntConfig("CRAWLER_ENRICH_QUOTA_REQUESTS", "crawler.enrich.quota.requests", 0);
+    }
+
+    /**
+     * Quota token (ước lượng) mỗi cửa sổ (0 = không giới hạn)
+     * Environment variable: CRAWLER_ENRICH_QUOTA_TOKENS
+     * System property: crawler.enrich.quota.tokens
+     */
+    public static int getEnrichQuotaTokens() {
+        return getIntConfig("CRAWLER_ENRICH_QUOTA_TOKENS", "crawler.enrich.quota.tokens", 0);
+    }
+
+    /**
+     * Độ dài cửa sổ quota (giây)
+     * Environment variable: CRAWLER_ENRICH_QUOTA_WINDOW_SECONDS
+     * System property: crawler.enrich.quota.window.seconds
+     */
+    public static int getEnrichQuotaWindowSeconds() {
+        return getIntConfig("CRAWLER_ENRICH_QUOTA_WINDOW_SECONDS", "crawler.enrich.quota.window.seconds", 60);
+    }
+
+    /**
+     * Thời gian tối đa (ms) một lượt enrich chờ cửa sổ quota sau trước khi hoãn các bài còn lại
+     * Environment variable: CRAWLER_ENRICH_QUOTA_MAX_WAIT_MS
+     * System property: crawler.enrich.quota.max.wait.ms
+     */
+    public static int getEnrichQuotaMaxWaitMillis() {
+        return getIntConfig("CRAWLER_ENRICH_QUOTA_MAX_WAIT_MS", "crawler.enrich.quota.max.wait.ms", 60000);
+    }
+
+    /**
+     * File mô hình phân loại local (LocalEnrichmentTier); "none" hoặc file chưa tồn tại → mọi post đều gọi AI
+     * Environment variable: CRAWLER_ENRICH_LOCAL_MODEL
+     * System property: crawler.enrich.local.model
+     */
+    public static String getEnrichLocalModel() {
+        return getConfig("CRAWLER_ENRICH_LOCAL_MODEL", "crawler.enrich.local.model", "local_classifier.bin");
+    }
+
+    /**
+     * Độ tin cậy tối thiểu (%) mà MỌI field phải đạt để dùng kết quả local thay cho AI
+     * Environment variable: CRAWLER_ENRICH_LOCAL_CONFIDENCE
+     * System property: crawler.enrich.local.confidence
+     */
+    public static int getEnrichLocalConfidencePercent() {
+        return getIntConfig("CRAWLER_ENRICH_LOCAL_CONFIDENCE", "crawler.enrich.local.confidence", 90);
+    }
+
+    /**
+     * Số bit băm đặc trưng khi huấn luyện mô hình local (2^bits bucket mỗi label)
+     * Environment variable: CRAWLER_ENRICH_LOCAL_FEATURE_BITS
+     * System property: crawler.enrich.local.feature.bits
+     */
+    public static int getEnrichLocalFeatureBits() {
+        return getIntConfig("CRAWLER_ENRICH_LOCAL_FEATURE_BITS", "crawler.enrich.local.feature.bits", 16);
+    }
+
+    // ========== PIPELINE ==========
+
+    /**
+     * Chế độ chạy chuỗi processor khi crawl gap:
+     * - "streaming": từng trang crawl đi qua filter → enrich ngay (StreamPipeline)
+     * - "batch": crawl xong toàn bộ rồi mới chạy từng processor trên cả list
+     * Environment variable: CRAWLER_PIPELINE_MODE
+     * System property: crawler.pipeline.mode
+     */
+    public static String getPipelineMode() {
+        return getConfig("CRAWLER_PIPELINE_MODE", "crawler.pipeline.mode", "streaming");
+    }
+
+    /**
+     * Micro-batch mặc định của một stage streaming (processor không tự khai báo)
+     * Environment variable: CRAWLER_PIPELINE_BATCH_SIZE
+     * System property: crawler.pipeline.batch.size
+     */
+    public static int getPipelineBatchSize() {
+        return getIntConfig("CRAWLER_PIPELINE_BATCH_SIZE", "crawler.pipeline.batch.size", 20);
+    }
+
+    /**
+     * Số post tối đa chờ giữa hai stage streaming (backpressure)
+     * Environment variable: CRAWLER_PIPELINE_BUFFER
+     * System property: crawler.pipeline.buffer
+     */
+    public static int getPipelineBufferSize() {
+        return getIntConfig("CRAWLER_PIPELINE_BUFFER", "crawler.pipeline.buffer", 256);
+    }
+
+    /**
+     * Thứ tự kết quả của pipeline streaming: "ordered" (theo thứ tự crawl) hoặc "unordered" (xong trước ra trước)
+     * Environment variable: CRAWLER_PIPELINE_ORDERING
+     * System property: crawler.pipeline.ordering
+     */
+    public static String getPipelineOrdering() {
+        return getConfig("CRAWLER_PIPELINE_ORDERING", "crawler.pipeline.ordering", "ordered");
+    }
+
+    /**
+     * Số worker của MỘT stage streaming theo tên class processor (0 = để processor tự quyết)
+     * Environment variable: CRAWLER_PIPELINE_CONCURRENCY_<TÊNCLASS> (vd. CRAWLER_PIPELINE_CONCURRENCY_WEBHOOKPROCESSOR)
+     * System property: crawler.pipeline.concurrency.<TênClass> (vd. crawler.pipeline.concurrency.WebhookProcessor)
+     */
+    public static int getPipelineStageConcurrency(String stageName) {
+        return getIntConfig("CRAWLER_PIPELINE_CONCURRENCY_" + stageName.toUpperCase(Locale.ROOT),
+                "crawler.pipeline.concurrency." + stageName, 0);
+    }
+
+    /**
+     * Timeout mặc định (ms) cho MỘT nhánh của FanOutProcessor; nhánh quá hạn bị bỏ, các nhánh khác vẫn được gộp
+     * Environment variable: CRAWLER_FANOUT_BRANCH_TIMEOUT_MS
+     * System property: crawler.fanout.branch.timeout.ms
+     */
+    public static int getFanOutBranchTimeoutMillis() {
+        return getIntConfig("CRAWLER_FANOUT_BRANCH_TIMEOUT_MS", "crawler.fanout.branch.timeout.ms", 30000);
+    }
+
+    // ========== INGEST ==========
+
+    /**
+     * Cách PostService lưu một gap mới crawl:
+     * - "inline": filter + enrich xong mới lưu (một pha)
+     * - "two-phase": lưu bài thô ngay sau filter, enrich trong hàng đợi nền bền vững (BackgroundEnricher)
+     * Environment variable: CRAWLER_INGEST_MODE
+     * System property: crawler.ingest.mode
+     */
+    public static String getIngestMode() {
+        return getConfig("CRAWLER_INGEST_MODE", "crawler.ingest.mode", "inline");
+    }
+
+    /**
+     * Mặc định của getPosts(keyword, start, end) ở chế độ two-phase:
+     * "enriched" (chờ enrich xong, tối đa crawler.ingest.wait.ms) hoặc "raw" (trả bài thô ngay)
+     * Environment variable: CRAWLER_INGEST_READ
+     * System property: crawler.ingest.read
+     */
+    public static String getIngestReadMode() {
+        return getConfig("CRAWLER_INGEST_READ", "crawler.ingest.read", "enriched");
+    }
+
+    /**
+     * File SQLite chứa hàng đợi enrich (EnrichmentJobStore)
+     * Environment variable: CRAWLER_INGEST_QUEUE_DB
+     * System property: crawler.ingest.queue.db
+     */
+    public static String getIngestQueueDb() {
+        return getConfig("CRAWLER_INGEST_QUEUE_DB", "crawler.ingest.queue.db", "enrichment_queue.db");
+    }
+
+    /**
+     * Thời gian tối đa (ms) getPosts ở chế độ "enriched" chờ hàng đợi; hết hạn → trả bài thô (đánh dấu pending)
+     * Environment variable: CRAWLER_INGEST_WAIT_MS
+     * System property: crawler.ingest.wait.ms
+     */
+    public static int getIngestWaitMillis() {
+        return getIntConfig("CRAWLER_INGEST_WAIT_MS", "crawler.ingest.wait.ms", 120000);
+    }
+
+    /**
+     * Số lần enrich một segment thất bại tối đa trước khi job bị đánh dấu failed
+     * Environment variable: CRAWLER_INGEST_MAX_ATTEMPTS
+     * System property: crawler.ingest.max.attempts
+     */
+    public static int getIngestMaxAttempts() {
+        return getIntConfig("CRAWLER_INGEST_MAX_ATTEMPTS", "crawler.ingest.max.attempts", 5);
+    }
+
+    /**
+     * Độ trễ (ms) trước lần thử lại đầu tiên; nhân đôi sau mỗi lần thất bại
+     * Environment variable: CRAWLER_INGEST_RETRY_BASE_MS
+     * System property: crawler.ingest.retry.base.ms
+     */
+    public static int getIngestRetryBaseMillis() {
+        return getIntConfig("CRAWLER_INGEST_RETRY_BASE_MS", "crawler.ingest.retry.base.ms", 5000);
+    }
+
+    // ========== CACHE ==========
+    
+    /**
+     * Dung lượng tối đa (MB) của L1 cache trong RAM (CachingPostRepository)
+     * Environment variable: CRAWLER_L1_CACHE_MB
+     * System property: crawler.cache.l1.mb
+     */
+    public static long getL1CacheMaxBytes() {
+        return getIntConfig("CRAWLER_L1_CACHE_MB", "crawler.cache.l1.mb", 64) * 1024L * 1024L;
+    }
+    
+    /**
+     * Định dạng lưu cache trong SQLite:
+     * "refs" (mặc định, mỗi post lưu MỘT lần, entry chỉ giữ tham chiếu),
+     * "binary" (PostBinaryCodec cả list trong mỗi entry) hoặc "json" (Gson)
+     * Environment variable: CRAWLER_CACHE_FORMAT
+     * System property: crawler.cache.format
+     */
+    public static String getCacheFormat() {
+        return getConfig("CRAWLER_CACHE_FORMAT", "crawler.cache.format", "refs");
+    }
+    
+    /**
+     * Số row JDBC đọc mỗi lần khi streaming từ database
+     * Environment variable: CRAWLER_DB_FETCH_SIZE
+     * System property: crawler.db.fetch.size
+     */
+    public static int getFetchSize() {
+        return getIntConfig("CRAWLER_DB_FETCH_SIZE", "crawler.db.fetch.size", 64);
+    }
+
+    /**
+     * Số cache key tối đa chờ ghi trong WriteBehindPostRepository trước khi save() bị chặn
+     * Environment variable: CRAWLER_WRITE_BEHIND_CAPACITY
+     * System property: crawler.writebehind.capacity
+     */
+    public static int getWriteBehindCapacity() {
+        return getIntConfig("CRAWLER_WRITE_BEHIND_CAPACITY", "crawler.writebehind.capacity", 256);
+    }
+
+    /**
+     * Số lần ghi lỗi liên tiếp tối đa của một cache key trước khi WriteBehindPostRepository loại nó
+     * khỏi hàng đợi (dead letter)
+     * Environment variable: CRAWLER_WRITE_BEHIND_MAX_ATTEMPTS
+     * System property: crawler.writebehind.max.attempts
+     */
+    public static int getWriteBehindMaxAttempts() {
+        int attempts = getIntConfig("CRAWLER_WRITE_BEHIND_MAX_ATTEMPTS", "crawler.writebehind.max.attempts", 10);
+        if (attempts <= 0) {
+            System.err.println("Warning: Invalid write-behind max attempts " + attempts + ". Using default: 10");
+            return 10;
+        }
+        return attempts;
+    }
+
+    // ========== REPOSITORY ==========
+
+    /**
+     * Storage engine: "sqlite" (mặc định), "sharded" (ShardedPostRepository) hoặc "segment" (SegmentLogPostRepository)
+     * Environment variable: CRAWLER_REPOSITORY
+     * System property: crawler.repository
+     */
+    public static String getRepositoryType() {
+        return getConfig("CRAWLER_REPOSITORY", "crawler.repository", "sqlite");
+    }
+
+    /**
+     * Thư mục chứa các file SQLite theo tháng của ShardedPostRepository
+     * Environment variable: CRAWLER_SHARD_DIR
+     * System property: crawler.shard.dir
+     */
+    public static String getShardDir() {
+        return getConfig("CRAWLER_SHARD_DIR", "crawler.shard.dir", "shards");
+    }
+
+    /**
+     * Thư mục chứa các segment file của log-structured store
+     * Environment variable: CRAWLER_SEGMENT_DIR
+     * System property: crawler.segment.dir
+     */
+    public static String getSegmentStoreDir() {
+        return getConfig("CRAWLER_SEGMENT_DIR", "crawler.segment.dir", "segment_store");
+    }
+
+    /**
+     * Kích thước tối đa (MB) của một segment trước khi seal và mở segment mới (1..2047: segment được map
+     * vào bộ nhớ và đọc theo offset int)
+     * Environment variable: CRAWLER_SEGMENT_MB
+     * System property: crawler.segment.mb
+     */
+    public static long getSegmentMaxBytes() {
+        int megabytes = getIntConfig("CRAWLER_SEGMENT_MB", "crawler.segment.mb", 64);
+        if (megabytes <= 0 || megabytes >= 2048) {
+            System.err.println("Warning: crawler.segment.mb must be between 1 and 2047. Using default: 64");
+            megabytes = 64;
+        }
+        return megabytes * 1024L * 1024L;
+    }
+
+    /**
+     * Chính sách fsync: "always", "interval" (mặc định) hoặc "never"
+     * Environment variable: CRAWLER_SEGMENT_FSYNC
+     * System property: crawler.segment.fsync
+     */
+    public static String getSegmentFsyncPolicy() {
+        return getConfig("CRAWLER_SEGMENT_FSYNC", "crawler.segment.fsync", "interval");
+    }
+
+    /**
+     * Chu kỳ fsync (ms) khi dùng chính sách "interval"
+     * Environment variable: CRAWLER_SEGMENT_FSYNC_MS
+     * System property: crawler.segment.fsync.ms
+     */
+    public static int getSegmentFsyncIntervalMillis() {
+        return getIntConfig("CRAWLER_SEGMENT_FSYNC_MS", "crawler.segment.fsync.ms", 1000);
+    }
+
+    /**
+     * Chu kỳ (giây) chạy compaction nền
+     * Environment variable: CRAWLER_SEGMENT_COMPACTION_SECONDS
+     * System property: crawler.segment.compaction.seconds
+     */
+    public static int getSegmentCompactionIntervalSeconds() {
+        return getIntConfig("CRAWLER_SEGMENT_COMPACTION_SECONDS", "crawler.segment.compaction.seconds", 60);
+    }
+
     // ========== OUTPUT PATHS ==========
     
     /**
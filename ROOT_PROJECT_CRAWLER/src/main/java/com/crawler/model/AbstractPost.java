@@ -1,7 +1,11 @@
 package com.crawler.model;
 
+import java.time.LocalDate;
+import java.util.List;
 import java.util.Objects;
 
+import com.crawler.util.StringUtils;
+
 /**
  * Lớp trừu tượng gốc cho tất cả các loại bài viết.
  *
@@ -23,6 +27,18 @@ public abstract class AbstractPost {
     // Webhook metadata được gom vào 1 value object riêng
     private PostMetadata metadata;
 
+    // Kết quả lọc keyword - transient: không thuộc dữ liệu bài viết, không serialize
+    private transient List<String> matchedKeywords = List.of();
+
+    // Enrichment bị hoãn vì hết quota AI - transient như matchedKeywords
+    private transient boolean enrichmentDeferred;
+
+    // SHA-256 của nội dung đã chuẩn hóa, tính lười cho getIdentityKey() (setContent() xóa)
+    private transient String contentDigest;
+
+    // Độ dài hex của content digest trong identity (SHA-256)
+    private static final int DIGEST_HEX_LENGTH = 64;
+
     /**
      * Constructor chung cho lớp con gọi.
      *
@@ -64,6 +80,7 @@ public abstract class AbstractPost {
 
     public void setContent(String content) {
         this.content = Objects.requireNonNullElse(content, "");
+        this.contentDigest = null;
     }
 
     public void setPlatform(String platform) {
@@ -134,7 +151,90 @@ public abstract class AbstractPost {
         getMetadata().setRescueGoods(rescueGoods);
     }
 
+    // ========== PIPELINE STATE (CHỈ TỒN TẠI TRONG RAM, KHÔNG LƯU) ==========
+
+    /**
+     * Các keyword (dạng gốc) đã khớp khi lọc bởi NewsFilterProcessor - stage sau có thể dùng
+     * để gắn nhãn/xếp hạng. Rỗng nếu post chưa qua bộ lọc.
+     */
+    public List<String> getMatchedKeywords() {
+        return matchedKeywords != null ? matchedKeywords : List.of();
+    }
+
+    public void setMatchedKeywords(List<String> matchedKeywords) {
+        this.matchedKeywords = matchedKeywords != null ? List.copyOf(matchedKeywords) : List.of();
+    }
+
+    /**
+     * true nếu bài chưa được enrich: WebhookProcessor đã hoãn (hết quota AI trong cửa sổ hiện tại)
+     * hoặc segment của bài còn chờ trong hàng đợi enrich nền (ingest hai pha) - metadata có thể còn trống.
+     */
+    public boolean isEnrichmentDeferred() {
+        return enrichmentDeferred;
+    }
+
+    public void setEnrichmentDeferred(boolean enrichmentDeferred) {
+        this.enrichmentDeferred = enrichmentDeferred;
+    }
+
+    /**
+     * Khóa định danh của bài viết trên toàn hệ thống: platform + sourceId.
+     * Dùng để DEDUPE khi ghép kết quả từ nhiều cache entry / nhiều lần crawl.
+     * Bài không có sourceId → "#" + SHA-256 của nội dung đã chuẩn hóa (như EnrichmentCache.keyOf):
+     * identity là địa chỉ của post trong kho dùng chung (post_index, segment log) nên không được
+     * để hai bài khác nhau trùng khóa như hash 32-bit.
+     */
+    public String getIdentityKey() {
+        if (!sourceId.isEmpty()) {
+            return platform + "|" + sourceId;
+        }
+        String digest = contentDigest;
+        if (digest == null) {
+            digest = StringUtils.sha256Hex(StringUtils.normalizeContent(content));
+            contentDigest = digest;
+        }
+        return platform + "|#" + digest;
+    }
+
+    /**
+     * true nếu identity theo định dạng cũ: hash 32-bit String.hashCode() của nội dung ("#" + tối đa 8 hex).
+     * Dùng cho migration của các repository đã ghi identity xuống đĩa.
+     */
+    public static boolean isLegacyIdentityKey(String identity) {
+        int marker = identity.lastIndexOf("|#");
+        return marker >= 0 && identity.length() - marker - 2 < DIGEST_HEX_LENGTH;
+    }
+
+    /**
+     * Chép metadata + trạng thái pipeline sang bản sao do lớp con tạo (dùng trong copy())
+     */
+    protected <T extends AbstractPost> T copyStateTo(T target) {
+        PostMetadata copied = new PostMetadata();
+        copied.setSentiment(getSentiment());
+        copied.setLocation(getLocation());
+        copied.setFocus(getFocus());
+        copied.setDirection(getDirection());
+        copied.setDamageCategory(getDamageCategory());
+        copied.setRescueGoods(getRescueGoods());
+        target.setMetadata(copied);
+        target.setMatchedKeywords(matchedKeywords);
+        target.setEnrichmentDeferred(enrichmentDeferred);
+        return target;
+    }
+
     // ========== PHƯƠNG THỨC TRỪU TƯỢNG ==========
+
+    /**
+     * Bản sao ĐỘC LẬP (metadata riêng): sửa bản sao không ảnh hưởng bản gốc và ngược lại.
+     * Dùng khi post được chia sẻ giữa nhiều thread/caller (L1 cache, enrich nền).
+     */
+    public abstract AbstractPost copy();
+
+    /**
+     * Ngày đăng bài (NewsPost: postDate, SocialPost: createdDate), có thể null.
+     */
+    public abstract LocalDate getPostDate();
+
     public abstract String getDisplayDate();
 
     public abstract long getEngagementScore();
@@ -0,0 +1,45 @@
+package com.crawler.model;
+
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * MetadataField - Các field của PostMetadata, truy cập qua proxy getter/setter của AbstractPost
+ *
+ * Dùng khi cần nói về field như dữ liệu (vd. mỗi nhánh của FanOutProcessor khai báo field nó sở hữu)
+ * mà không phá ENCAPSULATION của PostMetadata.
+ */
+public enum MetadataField {
+
+    SENTIMENT("cam_xuc_bai_viet", AbstractPost::getSentiment, AbstractPost::setSentiment),
+    LOCATION("tinh_thanh", AbstractPost::getLocation, AbstractPost::setLocation),
+    FOCUS("loai_bai_viet", AbstractPost::getFocus, AbstractPost::setFocus),
+    DIRECTION("huong_bai_viet", AbstractPost::getDirection, AbstractPost::setDirection),
+    DAMAGE_CATEGORY("damage_category", AbstractPost::getDamageCategory, AbstractPost::setDamageCategory),
+    RESCUE_GOODS("rescue_goods", AbstractPost::getRescueGoods, AbstractPost::setRescueGoods);
+
+    private final String jsonKey;
+    private final Function<AbstractPost, String> getter;
+    private final BiConsumer<AbstractPost, String> setter;
+
+    MetadataField(String jsonKey, Function<AbstractPost, String> getter, BiConsumer<AbstractPost, String> setter) {
+        this.jsonKey = jsonKey;
+        this.getter = getter;
+        this.setter = setter;
+    }
+
+    /**
+     * Tên field trong JSON metadata của AI / HeuristicClassifier
+     */
+    public String jsonKey() {
+        return jsonKey;
+    }
+
+    public String get(AbstractPost post) {
+        return getter.apply(post);
+    }
+
+    public void set(AbstractPost post, String value) {
+        setter.accept(post, value);
+    }
+}
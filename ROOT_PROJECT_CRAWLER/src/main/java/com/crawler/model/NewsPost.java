@@ -22,6 +22,12 @@ public class NewsPost extends AbstractPost {
         setComments(comments);
     }
 
+    @Override
+    public NewsPost copy() {
+        return copyStateTo(new NewsPost(getSourceId(), postDate, title, getContent(), getPlatform(), comments));
+    }
+
+    @Override
     public LocalDate getPostDate() {
         return postDate;
     }
@@ -35,6 +35,16 @@ public class SocialPost extends AbstractPost {
         return createdDate;
     }
 
+    @Override
+    public SocialPost copy() {
+        return copyStateTo(new SocialPost(getSourceId(), getContent(), getPlatform(), createdDate, reaction));
+    }
+
+    @Override
+    public LocalDate getPostDate() {
+        return createdDate;
+    }
+
     @Override
     public String getDisplayDate() {
         return createdDate != null ? createdDate.toString() : "N/A";
@@ -0,0 +1,255 @@
+package com.crawler.processor;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.crawler.client.CrawlerException;
+import com.crawler.config.CrawlerConfig;
+import com.crawler.model.AbstractPost;
+import com.crawler.util.AhoCorasick;
+
+/**
+ * EnrichmentScheduler - Chia quota AI theo cửa sổ thời gian, ưu tiên bài giá trị cao
+ *
+ * QUOTA: mỗi cửa sổ (vd. 60s) có tối đa N request và M token (ước lượng). Hết quota thì request kế tiếp
+ * chờ sang cửa sổ sau, nhưng không quá maxWait; quá hạn → bài bị HOÃN (deferred): không có metadata,
+ * KHÔNG sinh dữ liệu giả, được đánh dấu AbstractPost.isEnrichmentDeferred() để enrich lại sau.
+ *
+ * ƯU TIÊN (điểm cao đi trước, nên được quota trước):
+ * - engagement: log(1 + getEngagementScore())
+ * - độ mới: giảm một nửa sau mỗi RECENCY_HALF_LIFE_DAYS ngày
+ * - khẩn cấp: tổng weight các từ khóa khẩn cấp (heuristics/urgency.tsv) trong nội dung
+ * - số keyword đã khớp ở bộ lọc (AbstractPost.getMatchedKeywords)
+ *
+ * THREAD-SAFE: quota được đồng bộ; nhiều lượt process() song song dùng chung một ngân sách.
+ */
+public class EnrichmentScheduler {
+
+    private static final String URGENCY_RESOURCE = "/heuristics/urgency.tsv";
+
+    // ========== TRỌNG SỐ ĐIỂM ƯU TIÊN ==========
+    private static final double ENGAGEMENT_WEIGHT = 1.0;
+    private static final double RECENCY_WEIGHT = 4.0;
+    private static final double RECENCY_HALF_LIFE_DAYS = 2.0;
+    // Bài không có ngày: coi như đã cũ một chu kỳ bán rã
+    private static final double UNKNOWN_DATE_RECENCY = 0.5;
+    private static final double URGENCY_WEIGHT = 1.0;
+    private static final int MAX_URGENCY = 6;
+    private static final double KEYWORD_WEIGHT = 0.5;
+
+    private final int requestsPerWindow;
+    private final int tokensPerWindow;
+    private final long windowNanos;
+    private final long maxWaitNanos;
+    private final AhoCorasick urgencyTerms;
+    private final int[] urgencyWeights;
+
+    // Trạng thái cửa sổ hiện tại - chỉ truy cập khi giữ lock của this
+    private long windowStart;
+    private int usedRequests;
+    private int usedTokens;
+
+    private final AtomicLong admittedRequests = new AtomicLong();
+    private final AtomicLong deferredPosts = new AtomicLong();
+
+    /**
+     * @param requestsPerWindow Số request tối đa mỗi cửa sổ (0 = không giới hạn)
+     * @param tokensPerWindow Số token ước lượng tối đa mỗi cửa sổ (0 = không giới hạn)
+     * @param windowMillis Độ dài cửa sổ
+     * @param maxWaitMillis Thời gian tối đa một lượt enrich được chờ cửa sổ sau (0 = không chờ, hoãn ngay)
+     * @param urgencyLexicon Mỗi dòng: weight \t term|term|...
+     */
+    public EnrichmentScheduler(int requestsPerWindow, int tokensPerWindow, long windowMillis, long maxWaitMillis,
+                               Reader urgencyLexicon) throws IOException {
+        if (requestsPerWindow < 0 || tokensPerWindow < 0 || windowMillis <= 0 || maxWaitMillis < 0) {
+            throw new IllegalArgumentException("Quota must be non-negative and window must be positive");
+        }
+        this.requestsPerWindow = requestsPerWindow;
+        this.tokensPerWindow = tokensPerWindow;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        this.windowStart = System.nanoTime();
+
+        AhoCorasick.Builder builder = AhoCorasick.builder().caseInsensitive();
+        List<Integer> weights = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(urgencyLexicon);
+        String line;
+        int lineNo = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNo++;
+            if (line.isBlank() || line.startsWith("#")) {
+                continue;
+            }
+            String[] columns = line.split("\t");
+            if (columns.length != 2) {
+                throw new IOException("Invalid urgency lexicon line " + lineNo + ": " + line);
+            }
+            int weight;
+            try {
+                weight = Integer.parseInt(columns[0].strip());
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid weight at urgency lexicon line " + lineNo + ": " + columns[0], e);
+            }
+            for (String term : columns[1].split("\\|")) {
+                if (!term.isBlank()) {
+                    builder.add(term.strip());
+                    weights.add(weight);
+                }
+            }
+        }
+        this.urgencyTerms = builder.build();
+        this.urgencyWeights = weights.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Scheduler theo cấu hình, null nếu không đặt quota nào (giữ hành vi cũ: enrich hết, theo thứ tự crawl)
+     */
+    public static EnrichmentScheduler fromConfig() {
+        int requests = CrawlerConfig.getEnrichQuotaRequests();
+        int tokens = CrawlerConfig.getEnrichQuotaTokens();
+        if (requests <= 0 && tokens <= 0) {
+            return null;
+        }
+        try (InputStream in = EnrichmentScheduler.class.getResourceAsStream(URGENCY_RESOURCE)) {
+            if (in == null) {
+                throw new IOException("Resource not found: " + URGENCY_RESOURCE);
+            }
+            EnrichmentScheduler scheduler = new EnrichmentScheduler(Math.max(0, requests), Math.max(0, tokens),
+                    CrawlerConfig.getEnrichQuotaWindowSeconds() * 1000L, CrawlerConfig.getEnrichQuotaMaxWaitMillis(),
+                    new InputStreamReader(in, StandardCharsets.UTF_8));
+            System.out.println("✓ Enrichment quota: " + scheduler.describeQuota());
+            return scheduler;
+        } catch (IOException e) {
+            throw new CrawlerException("Failed to load urgency lexicon: " + e.getMessage(), e);
+        }
+    }
+
+    // ========== ƯU TIÊN ==========
+
+    /**
+     * Vị trí các post theo điểm ưu tiên giảm dần (bằng điểm giữ thứ tự cũ)
+     */
+    public List<Integer> prioritize(List<AbstractPost> posts) {
+        LocalDate today = LocalDate.now();
+        double[] scores = new double[posts.size()];
+        List<Integer> order = new ArrayList<>(posts.size());
+        for (int i = 0; i < posts.size(); i++) {
+            scores[i] = priority(posts.get(i), today);
+            order.add(i);
+        }
+        order.sort(Comparator.comparingDouble((Integer i) -> scores[i]).reversed());
+        return order;
+    }
+
+    /**
+     * Điểm ưu tiên của một post (cao hơn = được enrich trước)
+     */
+    public double priority(AbstractPost post, LocalDate today) {
+        double engagement = Math.log1p(Math.max(0, post.getEngagementScore()));
+
+        double recency = UNKNOWN_DATE_RECENCY;
+        if (post.getPostDate() != null) {
+            long ageDays = Math.max(0, ChronoUnit.DAYS.between(post.getPostDate(), today));
+            recency = Math.pow(0.5, ageDays / RECENCY_HALF_LIFE_DAYS);
+        }
+
+        return ENGAGEMENT_WEIGHT * engagement
+                + RECENCY_WEIGHT * recency
+                + URGENCY_WEIGHT * urgency(post.getContent())
+                + KEYWORD_WEIGHT * post.getMatchedKeywords().size();
+    }
+
+    private int urgency(String content) {
+        if (content == null || content.isEmpty()) {
+            return 0;
+        }
+        BitSet seen = new BitSet(urgencyWeights.length);
+        urgencyTerms.search(content, (id, end) -> seen.set(id));
+        int total = 0;
+        for (int id = seen.nextSetBit(0); id >= 0; id = seen.nextSetBit(id + 1)) {
+            total += urgencyWeights[id];
+        }
+        return Math.min(total, MAX_URGENCY);
+    }
+
+    // ========== QUOTA ==========
+
+    /**
+     * Hạn chót cho một lượt enrich bắt đầu từ bây giờ
+     */
+    public long deadline() {
+        return System.nanoTime() + maxWaitNanos;
+    }
+
+    /**
+     * Xin quota cho MỘT request ước lượng `tokens` token; chờ sang cửa sổ sau nếu kịp trước deadline
+     *
+     * @return true nếu được gửi request; false = hoãn
+     */
+    public synchronized boolean acquire(int tokens, long deadlineNanos) {
+        while (true) {
+            long now = System.nanoTime();
+            if (now - windowStart >= windowNanos) {
+                // Cửa sổ mới, căn theo lưới cửa sổ cũ
+                windowStart += ((now - windowStart) / windowNanos) * windowNanos;
+                usedRequests = 0;
+                usedTokens = 0;
+            }
+            if (fits(tokens)) {
+                usedRequests++;
+                usedTokens += tokens;
+                admittedRequests.incrementAndGet();
+                return true;
+            }
+
+            long nextWindow = windowStart + windowNanos;
+            if (nextWindow - deadlineNanos > 0) {
+                return false;
+            }
+            try {
+                TimeUnit.NANOSECONDS.timedWait(this, Math.max(1, nextWindow - now));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    private boolean fits(int tokens) {
+        boolean requestOk = requestsPerWindow == 0 || usedRequests < requestsPerWindow;
+        // Request lớn hơn cả ngân sách cửa sổ vẫn được đi MỘT mình ở đầu cửa sổ mới (nếu không sẽ bị hoãn mãi)
+        boolean tokenOk = tokensPerWindow == 0 || usedTokens + tokens <= tokensPerWindow
+                || (usedTokens == 0 && usedRequests == 0);
+        return requestOk && tokenOk;
+    }
+
+    /**
+     * Ghi nhận số post bị hoãn (phục vụ log/thống kê)
+     */
+    public void recordDeferred(int posts) {
+        deferredPosts.addAndGet(posts);
+    }
+
+    public String getStats() {
+        return String.format("requests=%d, deferredPosts=%d", admittedRequests.get(), deferredPosts.get());
+    }
+
+    private String describeQuota() {
+        return (requestsPerWindow == 0 ? "unlimited" : requestsPerWindow) + " requests / "
+                + (tokensPerWindow == 0 ? "unlimited" : tokensPerWindow) + " tokens per "
+                + TimeUnit.NANOSECONDS.toSeconds(windowNanos) + "s window, max wait "
+                + TimeUnit.NANOSECONDS.toMillis(maxWaitNanos) + " ms";
+    }
+}
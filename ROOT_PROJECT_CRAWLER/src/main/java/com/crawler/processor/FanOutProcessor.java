@@ -0,0 +1,339 @@
+package com.crawler.processor;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.crawler.client.CrawlerException;
+import com.crawler.config.CrawlerConfig;
+import com.crawler.model.AbstractPost;
+import com.crawler.model.MetadataField;
+
+/**
+ * FanOutProcessor - Chạy SONG SONG nhiều nhánh enrich độc lập trên cùng các post rồi gộp kết quả
+ *
+ * COMPOSITE PATTERN: bản thân là một IDataProcessor, bên trong là các nhánh IDataProcessor<AbstractPost>;
+ * mỗi nhánh khai báo tập field metadata nó SỞ HỮU (các tập phải rời nhau - kiểm tra khi build).
+ *
+ * CÔ LẬP: mỗi nhánh làm việc trên bản sao nhẹ của post (cùng nội dung/ngày/engagement, metadata riêng
+ * khởi tạo từ metadata hiện tại) → các nhánh không ghi đè nhau, nhánh chậm không làm bẩn post gốc.
+ *
+ * GỘP (sau khi mọi nhánh xong hoặc hết hạn):
+ * - Field nhánh sở hữu mà nhánh đã thay đổi → ghi vào post gốc
+ * - Nhánh thay đổi field KHÔNG sở hữu → XUNG ĐỘT: bị bỏ, được đếm và log theo nhánh/field
+ * - Nhánh đánh dấu hoãn (isEnrichmentDeferred) → post gốc cũng bị đánh dấu hoãn
+ *
+ * TIMEOUT THEO NHÁNH: mọi nhánh bắt đầu cùng lúc; nhánh quá hạn (hoặc lỗi) chỉ mất phần field của nó,
+ * các nhánh khác vẫn được gộp → độ trễ ≈ nhánh chậm nhất (tối đa timeout), không phải tổng các nhánh.
+ * Nhánh quá hạn bị HỦY (cancel + interrupt thread) → không tiếp tục tốn thread / lượt gọi AI cho kết quả bị bỏ.
+ *
+ * POOL CỐ ĐỊNH: số nhánh × streamConcurrency thread (đủ cho mọi lô song song của pipeline streaming);
+ * nhánh bỏ qua interrupt chỉ giữ thread tới khi tự kết thúc, lô sau xếp hàng thay vì sinh thread mới.
+ *
+ * Nhánh phải enrich TẠI CHỖ (như WebhookProcessor) - kết quả được đọc từ chính các bản sao đã giao.
+ */
+public class FanOutProcessor implements IDataProcessor<AbstractPost>, AutoCloseable {
+
+    private final List<Branch> branches;
+    private final ExecutorService executor;
+
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong conflicts = new AtomicLong();
+
+    /**
+     * Một nhánh: processor + các field nó sở hữu + timeout riêng
+     */
+    private record Branch(IDataProcessor<AbstractPost> processor, Set<MetadataField> fields, long timeoutMillis) {
+    }
+
+    private FanOutProcessor(List<Branch> branches) {
+        this.branches = List.copyOf(branches);
+        int threads = this.branches.size() * Math.max(1, streamConcurrency());
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "fan-out-branch-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        // Thread rảnh được thu hồi như cached pool trước đây
+        pool.allowCoreThreadTimeOut(true);
+        this.executor = pool;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public List<AbstractPost> process(List<AbstractPost> rawPosts) throws CrawlerException {
+        if (rawPosts == null || rawPosts.isEmpty()) {
+            return rawPosts;
+        }
+
+        // Mọi nhánh bắt đầu cùng lúc, hạn chót tính từ đây
+        long start = System.nanoTime();
+        List<List<AbstractPost>> copies = new ArrayList<>(branches.size());
+        List<Future<?>> runs = new ArrayList<>(branches.size());
+        for (Branch branch : branches) {
+            List<AbstractPost> branchPosts = new ArrayList<>(rawPosts.size());
+            for (AbstractPost post : rawPosts) {
+                branchPosts.add(new BranchPost(post));
+            }
+            copies.add(branchPosts);
+            runs.add(executor.submit(() -> branch.processor().process(branchPosts)));
+        }
+
+        boolean[] completed = new boolean[branches.size()];
+        try {
+            for (int b = 0; b < branches.size(); b++) {
+                completed[b] = await(branches.get(b), runs.get(b), start);
+            }
+        } finally {
+            // Bị interrupt giữa chừng → không để nhánh nào chạy tiếp (nhánh đã xong: không có tác dụng)
+            for (Future<?> run : runs) {
+                run.cancel(true);
+            }
+        }
+
+        Map<String, Integer> dropped = merge(rawPosts, copies, completed);
+        if (!dropped.isEmpty()) {
+            System.err.println("✗ Fan-out conflicts (writes outside owned fields, dropped): " + dropped);
+        }
+        System.out.println("✓ Fan-out enriched " + rawPosts.size() + " posts with " + branches.size()
+                + " branches in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+        return rawPosts;
+    }
+
+    /**
+     * Chờ một nhánh tới hạn chót của nó; quá hạn → hủy nhánh
+     *
+     * @return true nếu nhánh xong đúng hạn và không lỗi
+     */
+    private boolean await(Branch branch, Future<?> run, long start) {
+        long remaining = start + TimeUnit.MILLISECONDS.toNanos(branch.timeoutMillis()) - System.nanoTime();
+        try {
+            run.get(Math.max(0, remaining), TimeUnit.NANOSECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            timeouts.incrementAndGet();
+            // Interrupt nhánh (chưa chạy thì không bao giờ chạy); kết quả muộn trên bản sao không được gộp
+            run.cancel(true);
+            System.err.println("✗ Fan-out branch " + branch.processor().name() + " timed out after "
+                    + branch.timeoutMillis() + " ms, leaving " + branch.fields() + " unchanged");
+        } catch (ExecutionException e) {
+            failures.incrementAndGet();
+            System.err.println("✗ Fan-out branch " + branch.processor().name() + " failed: "
+                    + e.getCause().getMessage() + ", leaving " + branch.fields() + " unchanged");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CrawlerException("Interrupted while waiting for fan-out branches", e);
+        }
+        return false;
+    }
+
+    /**
+     * Gộp field sở hữu của các nhánh đã xong vào post gốc
+     *
+     * @return "nhánh→field" → số lần ghi bị bỏ vì xung đột
+     */
+    private Map<String, Integer> merge(List<AbstractPost> rawPosts, List<List<AbstractPost>> copies,
+                                       boolean[] completed) {
+        Map<String, Integer> dropped = new LinkedHashMap<>();
+        for (int i = 0; i < rawPosts.size(); i++) {
+            AbstractPost post = rawPosts.get(i);
+            Map<MetadataField, String> before = new EnumMap<>(MetadataField.class);
+            for (MetadataField field : MetadataField.values()) {
+                before.put(field, field.get(post));
+            }
+
+            boolean deferred = false;
+            for (int b = 0; b < branches.size(); b++) {
+                if (!completed[b]) {
+                    continue;
+                }
+                Branch branch = branches.get(b);
+                AbstractPost copy = copies.get(b).get(i);
+                deferred |= copy.isEnrichmentDeferred();
+                for (MetadataField field : MetadataField.values()) {
+                    String value = field.get(copy);
+                    if (Objects.equals(value, before.get(field))) {
+                        continue;
+                    }
+                    if (branch.fields().contains(field)) {
+                        field.set(post, value);
+                    } else {
+                        conflicts.incrementAndGet();
+                        dropped.merge(branch.processor().name() + "→" + field.jsonKey(), 1, Integer::sum);
+                    }
+                }
+            }
+            if (deferred) {
+                post.setEnrichmentDeferred(true);
+            }
+        }
+        return dropped;
+    }
+
+    public String getStats() {
+        return String.format("branches=%d, timeouts=%d, failures=%d, conflicts=%d",
+                branches.size(), timeouts.get(), failures.get(), conflicts.get());
+    }
+
+    // ========== HINTS (tổng hợp từ các nhánh) ==========
+
+    /**
+     * Mọi nhánh đều chạy trên mọi post → chi phí là tổng (độ trễ mới là max)
+     */
+    @Override
+    public double costPerPost() {
+        return branches.stream().mapToDouble(branch -> branch.processor().costPerPost()).sum();
+    }
+
+    @Override
+    public int streamBatchSize() {
+        return branches.stream().mapToInt(branch -> branch.processor().streamBatchSize()).max().orElse(0);
+    }
+
+    @Override
+    public int streamConcurrency() {
+        return branches.stream().mapToInt(branch -> branch.processor().streamConcurrency()).max().orElse(1);
+    }
+
+    @Override
+    public boolean reorderable() {
+        return branches.stream().allMatch(branch -> branch.processor().reorderable());
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        for (Branch branch : branches) {
+            if (branch.processor() instanceof AutoCloseable closeable) {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    System.err.println("Failed to close fan-out branch " + branch.processor().name() + ": "
+                            + e.getMessage());
+                }
+            }
+        }
+    }
+
+    // ========== BẢN SAO CHO NHÁNH ==========
+
+    /**
+     * Bản sao nhẹ của một post: core data + metadata hiện tại được chép, phần còn lại đọc từ post gốc
+     */
+    private static final class BranchPost extends AbstractPost {
+
+        private final AbstractPost original;
+
+        BranchPost(AbstractPost original) {
+            super(original.getSourceId(), original.getContent(), original.getPlatform());
+            this.original = original;
+            for (MetadataField field : MetadataField.values()) {
+                field.set(this, field.get(original));
+            }
+            setMatchedKeywords(original.getMatchedKeywords());
+        }
+
+        @Override
+        public BranchPost copy() {
+            return copyStateTo(new BranchPost(original));
+        }
+
+        @Override
+        public LocalDate getPostDate() {
+            return original.getPostDate();
+        }
+
+        @Override
+        public String getDisplayDate() {
+            return original.getDisplayDate();
+        }
+
+        @Override
+        public long getEngagementScore() {
+            return original.getEngagementScore();
+        }
+
+        @Override
+        public String[] toCsvArray() {
+            return original.toCsvArray();
+        }
+
+        @Override
+        public String[] getCsvHeader() {
+            return original.getCsvHeader();
+        }
+    }
+
+    // ========== BUILDER ==========
+
+    public static final class Builder {
+
+        private final List<Branch> branches = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        /**
+         * Thêm nhánh với timeout mặc định (CrawlerConfig.getFanOutBranchTimeoutMillis)
+         */
+        public Builder branch(IDataProcessor<AbstractPost> processor, MetadataField... fields) {
+            return branch(processor, CrawlerConfig.getFanOutBranchTimeoutMillis(), fields);
+        }
+
+        /**
+         * @param processor Processor enrich tại chỗ (postType AbstractPost)
+         * @param timeoutMillis Thời gian tối đa chờ nhánh, tính từ lúc mọi nhánh bắt đầu
+         * @param fields Các field nhánh sở hữu (không được trùng với nhánh khác)
+         */
+        public Builder branch(IDataProcessor<AbstractPost> processor, long timeoutMillis, MetadataField... fields) {
+            if (processor == null) {
+                throw new IllegalArgumentException("Branch processor must not be null");
+            }
+            if (processor.postType() != AbstractPost.class) {
+                throw new IllegalArgumentException("Fan-out branch must accept every post type: " + processor.name());
+            }
+            if (timeoutMillis <= 0 || fields.length == 0) {
+                throw new IllegalArgumentException("Branch needs a positive timeout and at least one field");
+            }
+            Set<MetadataField> owned = EnumSet.copyOf(List.of(fields));
+            for (Branch other : branches) {
+                for (MetadataField field : owned) {
+                    if (other.fields().contains(field)) {
+                        throw new IllegalArgumentException("Field " + field + " is owned by both "
+                                + other.processor().name() + " and " + processor.name());
+                    }
+                }
+            }
+            branches.add(new Branch(processor, owned, timeoutMillis));
+            return this;
+        }
+
+        public FanOutProcessor build() {
+            if (branches.isEmpty()) {
+                throw new IllegalStateException("Fan-out needs at least one branch");
+            }
+            return new FanOutProcessor(branches);
+        }
+    }
+}
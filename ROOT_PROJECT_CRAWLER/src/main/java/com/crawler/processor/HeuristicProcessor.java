@@ -0,0 +1,65 @@
+package com.crawler.processor;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.crawler.client.CrawlerException;
+import com.crawler.model.AbstractPost;
+import com.crawler.model.MetadataField;
+import com.crawler.util.HeuristicClassifier;
+
+/**
+ * HeuristicProcessor - Enrich metadata bằng HeuristicClassifier (lexicon + gazetteer, không gọi AI)
+ *
+ * Chỉ ghi các field được chọn và chỉ khi classifier tìm thấy match (field không match giữ nguyên).
+ * Thích hợp làm một nhánh rẻ của FanOutProcessor, vd. trích tỉnh/thành song song với nhánh AI.
+ *
+ * STATELESS → thread-safe.
+ */
+public class HeuristicProcessor implements IDataProcessor<AbstractPost> {
+
+    private final HeuristicClassifier classifier;
+    private final Set<MetadataField> fields;
+
+    /**
+     * @param fields Field được phép ghi (rỗng = mọi field)
+     */
+    public HeuristicProcessor(MetadataField... fields) {
+        this(HeuristicClassifier.getDefault(), fields);
+    }
+
+    public HeuristicProcessor(HeuristicClassifier classifier, MetadataField... fields) {
+        if (classifier == null) {
+            throw new IllegalArgumentException("Classifier must not be null");
+        }
+        this.classifier = classifier;
+        this.fields = fields.length == 0 ? EnumSet.allOf(MetadataField.class) : EnumSet.copyOf(List.of(fields));
+    }
+
+    @Override
+    public List<AbstractPost> process(List<AbstractPost> rawPosts) throws CrawlerException {
+        if (rawPosts == null) {
+            return null;
+        }
+        for (AbstractPost post : rawPosts) {
+            Map<String, String> classified = classifier.classify(post.getContent());
+            for (MetadataField field : fields) {
+                String value = classified.get(field.jsonKey());
+                if (value != null) {
+                    field.set(post, value);
+                }
+            }
+        }
+        return rawPosts;
+    }
+
+    /**
+     * Một lượt duyệt automaton trong RAM
+     */
+    @Override
+    public double costPerPost() {
+        return 2.0;
+    }
+}
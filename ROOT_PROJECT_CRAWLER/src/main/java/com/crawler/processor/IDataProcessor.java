@@ -1,6 +1,7 @@
 package com.crawler.processor;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 import com.crawler.client.CrawlerException;
 import com.crawler.model.AbstractPost;
@@ -30,4 +31,75 @@ public interface IDataProcessor<T extends AbstractPost> {
      * @throws CrawlerException Nếu xử lý thất bại (ví dụ: webhook timeout)
      */
     List<T> process(List<T> rawPosts) throws CrawlerException;
+
+    /**
+     * Xử lý và PHÁT từng post ngay khi nó xong (StreamStage không giữ thứ tự dùng hàm này)
+     * Mặc định: process() rồi phát cả danh sách. Processor gọi mạng (webhook streaming) ghi đè để
+     * bài đã xong đi xuống stage sau trong khi phần còn lại của lô vẫn đang chạy.
+     *
+     * @param emit Nhận post đã xử lý; có thể được gọi từ nhiều thread, mỗi post tối đa một lần
+     */
+    default void process(List<T> rawPosts, Consumer<? super T> emit) throws CrawlerException {
+        List<T> processed = process(rawPosts);
+        if (processed != null) {
+            processed.forEach(emit);
+        }
+    }
+
+    /**
+     * Số post mỗi lần gọi process() khi chạy trong pipeline streaming (StreamStage)
+     * - 1: xử lý từng phần tử
+     * - 0 (mặc định): dùng kích thước micro-batch chung của pipeline
+     * Processor gọi API theo lô (webhook) nên trả về đúng kích thước lô của nó.
+     */
+    default int streamBatchSize() {
+        return 0;
+    }
+
+    /**
+     * Số worker của stage khi chạy trong pipeline streaming (mặc định 1).
+     * Trả về > 1 thì process() bị gọi đồng thời từ nhiều thread → processor phải thread-safe.
+     * Có thể ghi đè bằng config crawler.pipeline.concurrency.<TênClass>.
+     */
+    default int streamConcurrency() {
+        return 1;
+    }
+
+    // ========== PLANNER HINTS (ProcessorPlanner dùng để sắp thứ tự chạy) ==========
+
+    /**
+     * Tên hiển thị của processor (log, thống kê, key config theo stage)
+     */
+    default String name() {
+        return getClass().getSimpleName();
+    }
+
+    /**
+     * Loại post mà processor xử lý (ứng với T). Post thuộc loại khác được cho đi qua nguyên vẹn.
+     */
+    default Class<? extends AbstractPost> postType() {
+        return AbstractPost.class;
+    }
+
+    /**
+     * Chi phí tương đối cho MỘT post: ~1 = kiểm tra trong RAM, ~1000 = một lượt gọi mạng/AI
+     */
+    default double costPerPost() {
+        return 1.0;
+    }
+
+    /**
+     * Tỉ lệ post (ước lượng) còn lại sau processor: 1.0 = không loại bài nào (enricher), 0.1 = giữ 10%
+     */
+    default double selectivity() {
+        return 1.0;
+    }
+
+    /**
+     * false nếu processor phụ thuộc kết quả của processor đứng trước (vd. lọc theo sentiment do AI gán)
+     * → planner không đổi chỗ processor qua "hàng rào" này
+     */
+    default boolean reorderable() {
+        return true;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,43 @@
+package com.crawler.processor;
+
+import java.time.LocalDate;
+
+import com.crawler.model.AbstractPost;
+
+/**
+ * IPushableFilter - CONTRACT cho bộ lọc có thể ĐẨY XUỐNG crawler (predicate pushdown)
+ *
+ * Bộ lọc chỉ đọc dữ liệu thô của bài (ngày, tiêu đề, nội dung) nên có thể chạy ngay trong crawler,
+ * trước khi post được thêm vào kết quả → bài bị loại không đi vào pipeline, không tốn enrichment.
+ *
+ * HAI MỨC:
+ * - mayAccept: kiểm tra trên field thô, TRƯỚC khi dựng object (crawler bỏ qua parse phần còn lại)
+ * - accept: quyết định cuối trên post đã dựng, được phép gắn kết quả (vd. matchedKeywords)
+ *
+ * ISP: tách khỏi IDataProcessor - chỉ processor lọc mới cần implement.
+ */
+public interface IPushableFilter<T extends AbstractPost> {
+
+    /**
+     * Loại post mà bộ lọc áp dụng (crawler sinh loại khác thì không nhận pushdown)
+     */
+    Class<T> filteredType();
+
+    /**
+     * Kiểm tra sớm trên field thô; false = chắc chắn bị loại
+     *
+     * @param postDate Ngày đăng (có thể null)
+     * @param title Tiêu đề (có thể null)
+     * @param content Nội dung (có thể null)
+     */
+    default boolean mayAccept(LocalDate postDate, String title, String content) {
+        return true;
+    }
+
+    /**
+     * Quyết định cuối cho một post đã dựng
+     *
+     * @return true nếu post được giữ lại
+     */
+    boolean accept(T post);
+}
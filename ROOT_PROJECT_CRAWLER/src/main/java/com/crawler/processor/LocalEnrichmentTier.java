@@ -0,0 +1,85 @@
+package com.crawler.processor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.crawler.client.CrawlerException;
+import com.crawler.config.CrawlerConfig;
+import com.crawler.util.NaiveBayesClassifier;
+import com.google.gson.JsonObject;
+
+/**
+ * LocalEnrichmentTier - Tầng phân loại LOCAL đứng trước AI trong WebhookProcessor
+ *
+ * Mô hình Naive Bayes (huấn luyện offline từ kết quả AI đã lưu, xem app/TrainLocalClassifier)
+ * dự đoán mọi field metadata kèm độ tin cậy:
+ * - MỌI field đạt ngưỡng minConfidence → dùng luôn kết quả local (không tốn quota, không chờ mạng)
+ * - Còn lại → post đi tiếp tới AI như trước
+ *
+ * Kết quả local KHÔNG được ghi vào EnrichmentCache (cache chỉ chứa nhãn AI thật = dữ liệu huấn luyện sạch).
+ * THREAD-SAFE: classifier immutable, thống kê dùng AtomicLong.
+ */
+public class LocalEnrichmentTier {
+
+    private final NaiveBayesClassifier classifier;
+    private final double minConfidence;
+
+    private final AtomicLong confident = new AtomicLong();
+    private final AtomicLong uncertain = new AtomicLong();
+
+    /**
+     * @param classifier Mô hình đã huấn luyện
+     * @param minConfidence Ngưỡng xác suất (0..1) mà MỌI field phải đạt
+     */
+    public LocalEnrichmentTier(NaiveBayesClassifier classifier, double minConfidence) {
+        if (classifier == null) {
+            throw new IllegalArgumentException("Classifier must not be null");
+        }
+        if (minConfidence <= 0 || minConfidence > 1) {
+            throw new IllegalArgumentException("minConfidence must be in (0, 1]");
+        }
+        this.classifier = classifier;
+        this.minConfidence = minConfidence;
+    }
+
+    /**
+     * Tầng local theo cấu hình; null nếu tắt ("none") hoặc chưa có file mô hình (chưa huấn luyện)
+     */
+    public static LocalEnrichmentTier fromConfig() {
+        String modelFile = CrawlerConfig.getEnrichLocalModel();
+        if ("none".equalsIgnoreCase(modelFile) || !Files.isRegularFile(Path.of(modelFile))) {
+            return null;
+        }
+        try {
+            LocalEnrichmentTier tier = new LocalEnrichmentTier(NaiveBayesClassifier.load(Path.of(modelFile)),
+                    CrawlerConfig.getEnrichLocalConfidencePercent() / 100.0);
+            System.out.println("✓ Local enrichment model loaded: " + modelFile + " " + tier.classifier.getFields());
+            return tier;
+        } catch (IOException e) {
+            throw new CrawlerException("Failed to load local enrichment model: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return Metadata (cùng định dạng JSON với AI) nếu mọi field đủ tin cậy, null nếu cần gọi AI
+     */
+    public JsonObject classify(String content) {
+        JsonObject metadata = new JsonObject();
+        for (Map.Entry<String, NaiveBayesClassifier.Prediction> entry : classifier.classify(content).entrySet()) {
+            if (entry.getValue().confidence() < minConfidence) {
+                uncertain.incrementAndGet();
+                return null;
+            }
+            metadata.addProperty(entry.getKey(), entry.getValue().label());
+        }
+        confident.incrementAndGet();
+        return metadata;
+    }
+
+    public String getStats() {
+        return String.format("local=%d, sentToAi=%d", confident.get(), uncertain.get());
+    }
+}
@@ -1,38 +1,83 @@
 package com.crawler.processor;
 
-import java.text.Normalizer;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.List;
-import java.util.Locale;
 
 import com.crawler.client.CrawlerException;
+import com.crawler.model.AbstractPost;
 import com.crawler.model.NewsPost;
+import com.crawler.util.AhoCorasick;
+import com.crawler.util.VietnameseFolding;
 
 /**
  * NewsFilterProcessor - Tách logic lọc ra khỏi tầng crawler.
  * SRP: Chỉ chịu trách nhiệm lọc dữ liệu NewsPost theo ngày và từ khóa.
  * DIP: Được inject vào Service qua interface IDataProcessor, không gắn với crawler hay repository.
  * OCP: Sử dụng Generics <NewsPost> để loại bỏ 'instanceof'.
+ *
+ * SO KHỚP KEYWORD: các keyword (đã bỏ dấu, viết thường) được biên dịch sẵn thành MỘT automaton
+ * Aho-Corasick; title rồi content được fold TỪNG KÝ TỰ và đẩy thẳng vào automaton
+ * → một lượt duyệt cho mọi keyword, không nối chuỗi, không Normalizer/regex trên mỗi post.
+ *
+ * TÙY CHỌN:
+ * - wholeWords: keyword phải đứng trọn từ ("mưa" không khớp trong "mưabão" nhưng khớp "mưa, lũ");
+ *   mọi ký tự không phải chữ/số - kể cả "_" - là ranh giới từ, nên "mưa_lũ" vẫn khớp "mưa"
+ * - phrases: keyword nhiều từ khớp bất kể khoảng trắng/dấu câu giữa các từ ("lũ - lụt" khớp "lũ lụt")
+ *
+ * Keyword đã khớp được gán vào post (AbstractPost.getMatchedKeywords) cho các stage sau.
+ *
+ * PUSHDOWN: chỉ đọc ngày/tiêu đề/nội dung thô → là IPushableFilter, ProcessorPlanner đẩy xuống
+ * crawler tin tức (CrawlerEnv) để bài bị loại không bao giờ vào pipeline.
  */
-public class NewsFilterProcessor implements IDataProcessor<NewsPost> {
+public class NewsFilterProcessor implements IDataProcessor<NewsPost>, IPushableFilter<NewsPost> {
+
+    // Ước lượng cho planner: kết quả tìm kiếm theo từ khóa chung thường chỉ khớp bộ từ khóa chuyên đề khoảng một nửa
+    private static final double ESTIMATED_SELECTIVITY = 0.5;
+
+    private static final char SEPARATOR = ' ';
 
     private final LocalDate startDate;
     private final LocalDate endDate;
     private final List<String> keywords;
-    private final List<String> normalizedKeywords;
+    private final boolean wholeWords;
+    private final boolean phrases;
+    private final AhoCorasick automaton;
+    // pattern id → vị trí keyword gốc
+    private final int[] patternKeyword;
 
     public NewsFilterProcessor(LocalDate startDate, LocalDate endDate, List<String> keywords) {
+        this(startDate, endDate, keywords, false, false);
+    }
+
+    /**
+     * @param wholeWords Keyword chỉ khớp khi đứng trọn từ
+     * @param phrases Khoảng trắng/dấu câu liên tiếp giữa các từ được coi là MỘT dấu cách
+     */
+    public NewsFilterProcessor(LocalDate startDate, LocalDate endDate, List<String> keywords,
+                               boolean wholeWords, boolean phrases) {
         if (keywords == null || keywords.isEmpty()) {
             throw new IllegalArgumentException("Keywords must not be null or empty. Please provide a valid list of keywords.");
         }
         this.startDate = startDate;
         this.endDate = endDate;
         this.keywords = new ArrayList<>(keywords);
-        this.normalizedKeywords = this.keywords.stream()
-                .map(this::normalize)
-                .toList();
+        this.wholeWords = wholeWords;
+        this.phrases = phrases;
+
+        AhoCorasick.Builder builder = AhoCorasick.builder();
+        List<Integer> owners = new ArrayList<>();
+        for (int k = 0; k < this.keywords.size(); k++) {
+            String pattern = foldKeyword(this.keywords.get(k));
+            if (!pattern.isEmpty()) {
+                builder.add(pattern);
+                owners.add(k);
+            }
+        }
+        this.automaton = builder.build();
+        this.patternKeyword = owners.stream().mapToInt(Integer::intValue).toArray();
     }
 
     @Override
@@ -44,19 +89,64 @@ public class NewsFilterProcessor implements IDataProcessor<NewsPost> {
         List<NewsPost> filtered = new ArrayList<>();
 
         // KHÔNG CẦN INSTANCEOF VÌ INTERFACE ĐÃ ÉP KIỂU LÀ NewsPost! (OCP)
-        for (NewsPost post : rawPosts) { 
-            if (!isWithinDateRange(post.getPostDate())) {
-                continue;
+        for (NewsPost post : rawPosts) {
+            if (accept(post)) {
+                filtered.add(post);
             }
+        }
 
-            if (!matchesKeywords(post)) {
-                continue;
-            }
+        return filtered;
+    }
 
-            filtered.add(post);
+    // ========== IPushableFilter ==========
+
+    @Override
+    public Class<NewsPost> filteredType() {
+        return NewsPost.class;
+    }
+
+    @Override
+    public boolean mayAccept(LocalDate postDate, String title, String content) {
+        return isWithinDateRange(postDate) && !matchKeywords(title, content).isEmpty();
+    }
+
+    @Override
+    public boolean accept(NewsPost post) {
+        if (!isWithinDateRange(post.getPostDate())) {
+            return false;
         }
 
-        return filtered;
+        BitSet matched = matchKeywords(post.getTitle(), post.getContent());
+        if (matched.isEmpty()) {
+            return false;
+        }
+
+        List<String> matchedKeywords = new ArrayList<>(matched.cardinality());
+        for (int k = matched.nextSetBit(0); k >= 0; k = matched.nextSetBit(k + 1)) {
+            matchedKeywords.add(keywords.get(k));
+        }
+        post.setMatchedKeywords(matchedKeywords);
+        return true;
+    }
+
+    // ========== PLANNER HINTS ==========
+
+    @Override
+    public Class<? extends AbstractPost> postType() {
+        return NewsPost.class;
+    }
+
+    /**
+     * Một lượt automaton trên tiêu đề + nội dung, không gọi mạng
+     */
+    @Override
+    public double costPerPost() {
+        return 1.0;
+    }
+
+    @Override
+    public double selectivity() {
+        return ESTIMATED_SELECTIVITY;
     }
 
     private boolean isWithinDateRange(LocalDate postDate) {
@@ -72,33 +162,91 @@ public class NewsFilterProcessor implements IDataProcessor<NewsPost> {
         return true;
     }
 
-    private boolean matchesKeywords(NewsPost post) {
-        if (keywords.isEmpty()) {
-            return true;
-        }
-        String title = post.getTitle() != null ? post.getTitle() : "";
-        String content = post.getContent() != null ? post.getContent() : "";
-        // Cần normalize vì NewsFilterProcessor.java trong version trước đó không có logic normalize
-        String combined = normalize(title + " " + content); 
-
-        for (String keyword : normalizedKeywords) {
-            if (combined.contains(keyword)) {
-                return true;
-            }
-        }
-        return false;
+    /**
+     * Duyệt title rồi content (cách nhau một dấu cách, như khi nối title + " " + content)
+     *
+     * @return Tập vị trí keyword đã khớp
+     */
+    private BitSet matchKeywords(String title, String content) {
+        KeywordScan scan = new KeywordScan();
+        scan.separator();
+        scan.feed(title);
+        scan.separator();
+        scan.feed(content);
+        scan.separator();
+        return scan.matched;
     }
 
     public List<String> getKeywords() {
         return Collections.unmodifiableList(keywords);
     }
 
-    private String normalize(String value) {
-        if (value == null) {
-            return "";
+    /**
+     * Trạng thái của MỘT lượt duyệt: state automaton + keyword đã khớp
+     */
+    private final class KeywordScan {
+
+        private final BitSet matched = new BitSet(keywords.size());
+        private int state = automaton.root();
+        private boolean lastSeparator;
+
+        void feed(CharSequence text) {
+            if (text == null) {
+                return;
+            }
+            for (int i = 0; i < text.length(); i++) {
+                char folded = VietnameseFolding.foldLowerChar(text.charAt(i));
+                if (folded == VietnameseFolding.REMOVED) {
+                    continue;
+                }
+                if ((wholeWords || phrases) && !Character.isLetterOrDigit(folded)) {
+                    separator();
+                } else {
+                    lastSeparator = false;
+                    step(folded);
+                }
+            }
+        }
+
+        void separator() {
+            if (phrases && lastSeparator) {
+                return;
+            }
+            lastSeparator = true;
+            step(SEPARATOR);
+        }
+
+        private void step(char c) {
+            state = automaton.next(state, c);
+            for (int id : automaton.outputs(state)) {
+                matched.set(patternKeyword[id]);
+            }
+        }
+    }
+
+    /**
+     * Đưa keyword về đúng dạng mà KeywordScan sinh ra từ văn bản
+     */
+    private String foldKeyword(String keyword) {
+        StringBuilder folded = new StringBuilder(keyword.length() + 2);
+        boolean mapSeparators = wholeWords || phrases;
+        for (int i = 0; i < keyword.length(); i++) {
+            char c = VietnameseFolding.foldLowerChar(keyword.charAt(i));
+            if (c == VietnameseFolding.REMOVED) {
+                continue;
+            }
+            if (mapSeparators && !Character.isLetterOrDigit(c)) {
+                if (phrases && folded.length() > 0 && folded.charAt(folded.length() - 1) == SEPARATOR) {
+                    continue;
+                }
+                c = SEPARATOR;
+            }
+            folded.append(c);
+        }
+        String pattern = mapSeparators ? folded.toString().strip() : folded.toString();
+        if (wholeWords && !pattern.isEmpty()) {
+            pattern = SEPARATOR + pattern + SEPARATOR;
         }
-        String lower = value.toLowerCase(Locale.ROOT);
-        return Normalizer.normalize(lower, Normalizer.Form.NFD)
-                .replaceAll("\\p{M}+", "");
+        return pattern;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,101 @@
+package com.crawler.processor;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import com.crawler.client.ISearchClient;
+import com.crawler.model.AbstractPost;
+
+/**
+ * ProcessorPlanner - Sắp thứ tự chuỗi processor theo chi phí + độ chọn lọc, đẩy bộ lọc xuống crawler
+ *
+ * 1. SẮP XẾP: trong mỗi đoạn giữa các "hàng rào" (reorderable() = false), processor được xếp theo
+ *    rank = (1 - selectivity) / costPerPost giảm dần - bộ lọc rẻ, loại nhiều chạy trước,
+ *    enricher đắt (không loại bài nào, rank 0) chạy sau cùng → chỉ enrich bài còn sống sót.
+ *    Sort ổn định: processor cùng rank giữ thứ tự cấu hình.
+ * 2. PUSHDOWN: IPushableFilter thuộc đoạn đầu tiên (trước hàng rào đầu) được giao cho crawler
+ *    nếu crawler nhận (ISearchClient.pushDown) và bị bỏ khỏi chuỗi.
+ *
+ * UTILITY PATTERN: stateless.
+ */
+public final class ProcessorPlanner {
+
+    private ProcessorPlanner() {
+        throw new UnsupportedOperationException("Utility class - không được phép khởi tạo");
+    }
+
+    /**
+     * Lập kế hoạch chạy cho chuỗi processor của MỘT crawler
+     *
+     * @param processors Processor theo thứ tự cấu hình (null bị bỏ qua)
+     * @param crawler Crawler nhận pushdown (filter đã đẩy xuống gắn với crawler này)
+     * @return Chuỗi processor còn lại, đã sắp thứ tự, cùng kiểu AbstractPost
+     */
+    public static List<IDataProcessor<AbstractPost>> plan(List<? extends IDataProcessor<?>> processors,
+                                                         ISearchClient crawler) {
+        List<IDataProcessor<AbstractPost>> ordered = order(processors);
+
+        List<IDataProcessor<AbstractPost>> remaining = new ArrayList<>(ordered.size());
+        List<String> pushed = new ArrayList<>();
+        boolean beforeBarrier = true;
+        for (IDataProcessor<AbstractPost> processor : ordered) {
+            beforeBarrier &= processor.reorderable();
+            IPushableFilter<?> filter = beforeBarrier ? pushableOf(processor) : null;
+            if (filter != null && crawler.pushDown(filter)) {
+                pushed.add(processor.name());
+            } else {
+                remaining.add(processor);
+            }
+        }
+
+        System.out.println("✓ Processor plan for " + crawler.getClass().getSimpleName() + ": "
+                + (pushed.isEmpty() ? "" : "pushed down " + pushed + " → ")
+                + remaining.stream().map(IDataProcessor::name).toList());
+        return remaining;
+    }
+
+    /**
+     * Chỉ sắp thứ tự (không pushdown)
+     */
+    public static List<IDataProcessor<AbstractPost>> order(List<? extends IDataProcessor<?>> processors) {
+        List<IDataProcessor<AbstractPost>> planned = new ArrayList<>(processors.size());
+        List<IDataProcessor<AbstractPost>> segment = new ArrayList<>();
+        for (IDataProcessor<?> processor : processors) {
+            if (processor == null) {
+                continue;
+            }
+            IDataProcessor<AbstractPost> scoped = TypeScopedProcessor.of(processor);
+            if (scoped.reorderable()) {
+                segment.add(scoped);
+                continue;
+            }
+            // Hàng rào: chốt đoạn trước, giữ nguyên vị trí
+            planned.addAll(sortSegment(segment));
+            segment.clear();
+            planned.add(scoped);
+        }
+        planned.addAll(sortSegment(segment));
+        return planned;
+    }
+
+    private static List<IDataProcessor<AbstractPost>> sortSegment(List<IDataProcessor<AbstractPost>> segment) {
+        List<IDataProcessor<AbstractPost>> sorted = new ArrayList<>(segment);
+        sorted.sort(Comparator.comparingDouble(ProcessorPlanner::rank).reversed());
+        return sorted;
+    }
+
+    /**
+     * Lợi ích lọc trên một đơn vị chi phí
+     */
+    private static double rank(IDataProcessor<?> processor) {
+        double selectivity = Math.min(1.0, Math.max(0.0, processor.selectivity()));
+        double cost = Math.max(processor.costPerPost(), 1e-9);
+        return (1.0 - selectivity) / cost;
+    }
+
+    private static IPushableFilter<?> pushableOf(IDataProcessor<?> processor) {
+        Object original = processor instanceof TypeScopedProcessor<?> scoped ? scoped.delegate() : processor;
+        return original instanceof IPushableFilter<?> filter ? filter : null;
+    }
+}
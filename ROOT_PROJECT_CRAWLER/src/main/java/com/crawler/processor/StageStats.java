@@ -0,0 +1,35 @@
+package com.crawler.processor;
+
+/**
+ * StageStats - Ảnh chụp số liệu của MỘT stage streaming, dùng để tìm nút cổ chai
+ *
+ * - queueDepth cao + utilization gần 100% → stage này là nút cổ chai, cần thêm worker
+ * - queueDepth thấp + utilization thấp → stage thừa worker
+ *
+ * @param stage Tên stage (tên class processor)
+ * @param concurrency Số worker của stage
+ * @param queueDepth Số item đang chờ được xử lý (buffer phía trước + batch đang gom/chờ worker)
+ * @param busyWorkers Số worker đang chạy process()
+ * @param received Tổng số item đã nhận
+ * @param emitted Tổng số item đã phát xuống stage sau
+ * @param busyMillis Tổng thời gian các worker chạy process()
+ * @param idleMillis Tổng thời gian worker rảnh (concurrency x thời gian chạy - busy)
+ */
+public record StageStats(String stage, int concurrency, int queueDepth, int busyWorkers,
+                         long received, long emitted, long busyMillis, long idleMillis) {
+
+    /**
+     * Tỉ lệ thời gian worker bận (0..1)
+     */
+    public double utilization() {
+        long total = busyMillis + idleMillis;
+        return total == 0 ? 0 : (double) busyMillis / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[workers=%d, queue=%d, busy=%d, in=%d, out=%d, busyMs=%d, idleMs=%d, util=%.0f%%]",
+                stage, concurrency, queueDepth, busyWorkers, received, emitted, busyMillis, idleMillis,
+                utilization() * 100);
+    }
+}
@@ -0,0 +1,175 @@
+package com.crawler.processor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.function.Consumer;
+
+import com.crawler.client.CrawlerException;
+import com.crawler.config.CrawlerConfig;
+import com.crawler.model.AbstractPost;
+
+/**
+ * StreamPipeline - Nối nguồn (crawler) → các StreamStage → sink thành MỘT pipeline streaming
+ *
+ * Khác với chuỗi IDataProcessor theo list (stage sau chờ stage trước xong HẾT):
+ * crawler vừa parse xong một trang là các post đã đi qua filter → enrich song song với việc tải trang kế tiếp.
+ *
+ * BACKPRESSURE xuyên suốt: stage đầu chậm → buffer nguồn đầy → emit() của crawler bị chặn.
+ *
+ * SONG SONG THEO STAGE: mỗi stage có worker pool riêng, số worker lấy theo thứ tự ưu tiên:
+ * config crawler.pipeline.concurrency.<TênProcessor> > processor.streamConcurrency() > 1.
+ *
+ * QUAN SÁT: getStats() trả về queue depth + thời gian bận/rảnh của từng stage (kể cả khi đang chạy);
+ * cuối mỗi lần run() số liệu được in ra log.
+ */
+public class StreamPipeline<T extends AbstractPost> {
+
+    private final List<IDataProcessor<T>> processors;
+    private final Executor executor;
+    private final int bufferCapacity;
+    private final int defaultBatchSize;
+    private final boolean ordered;
+
+    // Pipeline đang/vừa chạy - phục vụ getStats()
+    private volatile SubmissionPublisher<T> source;
+    private volatile List<StreamStage<T>> stages = List.of();
+
+    /**
+     * @param processors Các processor theo thứ tự chạy
+     * @param executor Executor phát item giữa các stage (nên là pool không giới hạn cứng, vì submit() có thể chặn)
+     * @param bufferCapacity Buffer giữa hai stage liên tiếp
+     * @param defaultBatchSize Micro-batch cho processor không khai báo streamBatchSize()
+     */
+    public StreamPipeline(List<IDataProcessor<T>> processors, Executor executor, int bufferCapacity, int defaultBatchSize) {
+        this(processors, executor, bufferCapacity, defaultBatchSize, true);
+    }
+
+    /**
+     * @param ordered true = mọi stage phát kết quả theo thứ tự đầu vào; false = xong trước phát trước
+     */
+    public StreamPipeline(List<IDataProcessor<T>> processors, Executor executor, int bufferCapacity,
+                          int defaultBatchSize, boolean ordered) {
+        this.processors = new ArrayList<>(processors);
+        this.executor = executor;
+        this.bufferCapacity = bufferCapacity;
+        this.defaultBatchSize = defaultBatchSize;
+        this.ordered = ordered;
+    }
+
+    /**
+     * Chạy pipeline: source đẩy từng item vào emitter; hàm trả về khi mọi item đã qua hết các stage
+     *
+     * @param source Nguồn dữ liệu, gọi emitter.accept(item) cho mỗi item (trên thread của caller)
+     * @return Các item ra khỏi stage cuối, theo thứ tự đi ra
+     * @throws CrawlerException Nếu source hoặc một stage thất bại
+     */
+    public List<T> run(Consumer<Consumer<T>> source) throws CrawlerException {
+        SubmissionPublisher<T> publisher = new SubmissionPublisher<>(executor, bufferCapacity);
+        List<StreamStage<T>> chain = new ArrayList<>(processors.size());
+        Flow.Publisher<T> tail = publisher;
+        for (IDataProcessor<T> processor : processors) {
+            int batchSize = processor.streamBatchSize() > 0 ? processor.streamBatchSize() : defaultBatchSize;
+            StreamStage<T> stage = new StreamStage<>(processor, batchSize, concurrencyOf(processor),
+                    ordered, executor, bufferCapacity);
+            tail.subscribe(stage);
+            tail = stage;
+            chain.add(stage);
+        }
+        this.source = publisher;
+        this.stages = List.copyOf(chain);
+        CollectingSubscriber<T> sink = new CollectingSubscriber<>();
+        tail.subscribe(sink);
+
+        try {
+            source.accept(item -> {
+                // Stage nào đó đã lỗi → dừng crawl sớm thay vì đẩy tiếp vào pipeline đã chết
+                if (sink.result.isDone()) {
+                    throw new CrawlerException("Pipeline stopped");
+                }
+                publisher.submit(item);
+            });
+            publisher.close();
+        } catch (RuntimeException e) {
+            publisher.closeExceptionally(e);
+            if (!sink.result.isCompletedExceptionally()) {
+                throw e;
+            }
+        }
+
+        try {
+            List<T> results = sink.result.join();
+            logStats();
+            return results;
+        } catch (CompletionException e) {
+            logStats();
+            Throwable cause = e.getCause();
+            if (cause instanceof CrawlerException crawlerException) {
+                throw crawlerException;
+            }
+            throw new CrawlerException("Pipeline stage failed: " + cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Số liệu từng stage của lần run() gần nhất (hoặc đang chạy)
+     */
+    public List<StageStats> getStats() {
+        SubmissionPublisher<T> head = source;
+        List<StreamStage<T>> chain = stages;
+        List<StageStats> stats = new ArrayList<>(chain.size());
+        for (int i = 0; i < chain.size(); i++) {
+            int inputLag = i == 0 ? head.estimateMaximumLag() : chain.get(i - 1).outputLag();
+            stats.add(chain.get(i).snapshot(inputLag));
+        }
+        return stats;
+    }
+
+    private void logStats() {
+        for (StageStats stats : getStats()) {
+            System.out.println("  [Pipeline] " + stats);
+        }
+    }
+
+    private static int concurrencyOf(IDataProcessor<?> processor) {
+        int configured = CrawlerConfig.getPipelineStageConcurrency(processor.name());
+        if (configured > 0) {
+            return configured;
+        }
+        return Math.max(1, processor.streamConcurrency());
+    }
+
+    /**
+     * Sink: gom mọi item ra khỏi stage cuối
+     */
+    private static final class CollectingSubscriber<T> implements Flow.Subscriber<T> {
+
+        private final List<T> items = Collections.synchronizedList(new ArrayList<>());
+        private final CompletableFuture<List<T>> result = new CompletableFuture<>();
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(T item) {
+            items.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            result.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            result.complete(new ArrayList<>(items));
+        }
+    }
+}
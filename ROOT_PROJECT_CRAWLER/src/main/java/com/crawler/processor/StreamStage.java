@@ -0,0 +1,282 @@
+package com.crawler.processor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.crawler.model.AbstractPost;
+
+/**
+ * StreamStage - Một stage của pipeline streaming (Flow.Processor)
+ *
+ * ADAPTER PATTERN: bọc một IDataProcessor (API theo list) thành stage nhận/phát TỪNG PHẦN TỬ:
+ * - Gom item từ upstream thành micro-batch (batchSize = 1 → element-wise)
+ * - Gọi processor.process(batch) trên worker pool RIÊNG của stage, phát kết quả xuống downstream
+ *
+ * SONG SONG THEO STAGE:
+ * - concurrency = số worker (và số batch tối đa đang xử lý) của RIÊNG stage này
+ *   → stage đắt (AI enrichment) scale độc lập, stage rẻ (filter) giữ 1 worker
+ * - concurrency > 1 thì processor.process() bị gọi đồng thời → processor phải thread-safe
+ * - ordered: batch được phát theo đúng thứ tự vào (giữ lại batch xong sớm); unordered: xong trước phát trước,
+ *   và từng post được phát ngay khi processor báo xong (IDataProcessor.process(list, emit)), không chờ cả batch
+ *
+ * BACKPRESSURE:
+ * - Hết worker rảnh → onNext chặn, không request thêm từ upstream
+ * - Downstream là SubmissionPublisher có buffer giới hạn: submit() chặn khi stage sau chưa theo kịp
+ * → số item nằm trong pipeline bị chặn bởi (batch x concurrency + buffer) của từng stage
+ *
+ * LỖI: processor ném exception → hủy upstream, đóng downstream kèm lỗi (sink nhận onError).
+ */
+public class StreamStage<T extends AbstractPost> implements Flow.Processor<T, T> {
+
+    private final IDataProcessor<T> processor;
+    private final String name;
+    private final int batchSize;
+    private final int concurrency;
+    private final boolean ordered;
+    private final SubmissionPublisher<T> downstream;
+    private final ExecutorService workers;
+    // Mỗi permit = một batch đang xử lý
+    private final Semaphore slots;
+    private final AtomicBoolean failed = new AtomicBoolean();
+
+    // Chỉ truy cập từ thread đang gọi onNext/onComplete (Flow đảm bảo tuần tự)
+    private Flow.Subscription upstream;
+    private List<T> batch;
+    private long nextSequence;
+
+    // Batch đã xử lý xong nhưng chưa tới lượt phát (ordered) - chỉ truy cập khi giữ emitLock
+    private final Object emitLock = new Object();
+    private final Map<Long, List<T>> completed = new HashMap<>();
+    private long nextToEmit;
+
+    // ========== STATS ==========
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong emitted = new AtomicLong();
+    private final AtomicLong busyNanos = new AtomicLong();
+    private final AtomicInteger busyWorkers = new AtomicInteger();
+    private volatile long startNanos;
+    private volatile long endNanos;
+
+    /**
+     * Stage một worker, giữ thứ tự
+     */
+    public StreamStage(IDataProcessor<T> processor, int batchSize, Executor executor, int bufferCapacity) {
+        this(processor, batchSize, 1, true, executor, bufferCapacity);
+    }
+
+    /**
+     * @param processor Processor theo list được bọc lại
+     * @param batchSize Số item mỗi lần gọi processor (>= 1)
+     * @param concurrency Số worker của stage (>= 1)
+     * @param ordered true = phát kết quả theo thứ tự đầu vào
+     * @param executor Executor phát item xuống downstream
+     * @param bufferCapacity Số item tối đa chờ stage sau
+     */
+    public StreamStage(IDataProcessor<T> processor, int batchSize, int concurrency, boolean ordered,
+                       Executor executor, int bufferCapacity) {
+        if (processor == null) {
+            throw new IllegalArgumentException("Processor must not be null");
+        }
+        if (batchSize <= 0 || concurrency <= 0) {
+            throw new IllegalArgumentException("batchSize and concurrency must be positive");
+        }
+        this.processor = processor;
+        this.name = processor.name();
+        this.batchSize = batchSize;
+        this.concurrency = concurrency;
+        this.ordered = ordered;
+        this.batch = new ArrayList<>(batchSize);
+        this.slots = new Semaphore(concurrency);
+        this.downstream = new SubmissionPublisher<>(executor, bufferCapacity);
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "stage-" + name + "-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        downstream.subscribe(subscriber);
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.upstream = subscription;
+        this.startNanos = System.nanoTime();
+        subscription.request(batchSize);
+    }
+
+    @Override
+    public void onNext(T item) {
+        if (failed.get()) {
+            return;
+        }
+        received.incrementAndGet();
+        batch.add(item);
+        if (batch.size() >= batchSize) {
+            dispatch();
+            if (!failed.get()) {
+                upstream.request(batchSize);
+            }
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        batch.clear();
+        fail(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        // Batch cuối có thể chưa đầy
+        if (!batch.isEmpty()) {
+            dispatch();
+        }
+        // Đợi mọi batch đang xử lý phát xong
+        slots.acquireUninterruptibly(concurrency);
+        slots.release(concurrency);
+        if (!failed.get()) {
+            downstream.close();
+        }
+        endNanos = System.nanoTime();
+        workers.shutdown();
+    }
+
+    /**
+     * Giao batch hiện tại cho worker; chặn khi mọi worker đều bận (backpressure)
+     */
+    private void dispatch() {
+        List<T> input = batch;
+        batch = new ArrayList<>(batchSize);
+        long sequence = nextSequence++;
+
+        slots.acquireUninterruptibly();
+        if (failed.get()) {
+            slots.release();
+            return;
+        }
+        try {
+            workers.execute(() -> runBatch(sequence, input));
+        } catch (RejectedExecutionException e) {
+            // Pool đã bị đóng do stage lỗi giữa chừng
+            slots.release();
+        }
+    }
+
+    private void runBatch(long sequence, List<T> input) {
+        try {
+            started.addAndGet(input.size());
+            busyWorkers.incrementAndGet();
+            long begin = System.nanoTime();
+            List<T> output = null;
+            try {
+                if (ordered) {
+                    output = processor.process(input);
+                } else {
+                    processor.process(input, this::submitOne);
+                }
+            } finally {
+                busyNanos.addAndGet(System.nanoTime() - begin);
+                busyWorkers.decrementAndGet();
+            }
+            if (ordered) {
+                emit(sequence, output != null ? output : List.of());
+            }
+        } catch (RuntimeException e) {
+            fail(e);
+        } finally {
+            slots.release();
+        }
+    }
+
+    /**
+     * Ordered: giữ batch xong sớm cho tới khi mọi batch trước nó đã được phát
+     */
+    private void emit(long sequence, List<T> output) {
+        synchronized (emitLock) {
+            completed.put(sequence, output);
+            List<T> next;
+            while ((next = completed.remove(nextToEmit)) != null) {
+                submitAll(next);
+                nextToEmit++;
+            }
+        }
+    }
+
+    /**
+     * Unordered: phát ngay một post (processor có thể gọi từ nhiều thread)
+     */
+    private void submitOne(T item) {
+        synchronized (emitLock) {
+            if (failed.get()) {
+                return;
+            }
+            downstream.submit(item);
+            emitted.incrementAndGet();
+        }
+    }
+
+    private void submitAll(List<T> items) {
+        for (T item : items) {
+            if (failed.get()) {
+                return;
+            }
+            downstream.submit(item);
+            emitted.incrementAndGet();
+        }
+    }
+
+    private void fail(Throwable throwable) {
+        if (!failed.compareAndSet(false, true)) {
+            return;
+        }
+        if (upstream != null) {
+            upstream.cancel();
+        }
+        downstream.closeExceptionally(throwable);
+        endNanos = System.nanoTime();
+        workers.shutdown();
+    }
+
+    // ========== STATS ==========
+
+    /**
+     * Số item đang chờ ra khỏi stage này (buffer phía downstream chưa được stage sau nhận)
+     */
+    int outputLag() {
+        return downstream.estimateMaximumLag();
+    }
+
+    /**
+     * Ảnh chụp số liệu của stage
+     *
+     * @param inputLag Số item đang chờ trong buffer phía trước stage (do pipeline cung cấp)
+     */
+    StageStats snapshot(int inputLag) {
+        long end = endNanos != 0 ? endNanos : System.nanoTime();
+        long elapsedNanos = startNanos == 0 ? 0 : end - startNanos;
+        long busy = busyNanos.get();
+        long idle = Math.max(0, elapsedNanos * concurrency - busy);
+        // Đã nhận nhưng chưa bắt đầu xử lý: batch đang gom + batch chờ worker
+        long waiting = received.get() - started.get();
+        return new StageStats(name, concurrency, inputLag + (int) Math.max(0, waiting), busyWorkers.get(),
+                received.get(), emitted.get(), busy / 1_000_000, idle / 1_000_000);
+    }
+}
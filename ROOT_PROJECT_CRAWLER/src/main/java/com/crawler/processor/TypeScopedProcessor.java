@@ -0,0 +1,137 @@
+package com.crawler.processor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import com.crawler.client.CrawlerException;
+import com.crawler.model.AbstractPost;
+
+/**
+ * TypeScopedProcessor - Cho processor chỉ xử lý một loại post (vd. IDataProcessor<NewsPost>)
+ * chạy được trong chuỗi IDataProcessor<AbstractPost>
+ *
+ * ADAPTER PATTERN:
+ * - Post đúng postType() → đưa cho processor gốc
+ * - Post loại khác → đi qua nguyên vẹn (bộ lọc NewsPost không loại SocialPost)
+ * Với danh sách lẫn nhiều loại, post đi qua nguyên vẹn được nối SAU kết quả của processor.
+ *
+ * Mọi hint (cost, selectivity, batch, concurrency...) được chuyển tiếp từ processor gốc.
+ */
+final class TypeScopedProcessor<T extends AbstractPost> implements IDataProcessor<AbstractPost> {
+
+    private final IDataProcessor<T> delegate;
+    private final Class<T> type;
+
+    private TypeScopedProcessor(IDataProcessor<T> delegate, Class<T> type) {
+        this.delegate = delegate;
+        this.type = type;
+    }
+
+    /**
+     * Bọc processor nếu nó chỉ nhận một loại post con; processor nhận AbstractPost được trả về nguyên vẹn
+     */
+    @SuppressWarnings("unchecked")
+    static IDataProcessor<AbstractPost> of(IDataProcessor<?> processor) {
+        if (processor.postType() == AbstractPost.class) {
+            // postType() == AbstractPost nghĩa là T = AbstractPost
+            return (IDataProcessor<AbstractPost>) processor;
+        }
+        return wrap((IDataProcessor<AbstractPost>) processor, (Class<AbstractPost>) processor.postType());
+    }
+
+    private static <T extends AbstractPost> TypeScopedProcessor<T> wrap(IDataProcessor<T> processor, Class<T> type) {
+        return new TypeScopedProcessor<>(processor, type);
+    }
+
+    /**
+     * Processor gốc (planner cần để nhận ra IPushableFilter)
+     */
+    IDataProcessor<T> delegate() {
+        return delegate;
+    }
+
+    @Override
+    public List<AbstractPost> process(List<AbstractPost> rawPosts) throws CrawlerException {
+        if (rawPosts == null || rawPosts.isEmpty()) {
+            return rawPosts;
+        }
+
+        List<T> matching = new ArrayList<>(rawPosts.size());
+        List<AbstractPost> others = new ArrayList<>();
+        for (AbstractPost post : rawPosts) {
+            if (type.isInstance(post)) {
+                matching.add(type.cast(post));
+            } else {
+                others.add(post);
+            }
+        }
+        if (matching.isEmpty()) {
+            return rawPosts;
+        }
+
+        List<T> processed = delegate.process(matching);
+        List<AbstractPost> result = new ArrayList<>((processed != null ? processed.size() : 0) + others.size());
+        if (processed != null) {
+            result.addAll(processed);
+        }
+        result.addAll(others);
+        return result;
+    }
+
+    @Override
+    public void process(List<AbstractPost> rawPosts, Consumer<? super AbstractPost> emit) throws CrawlerException {
+        if (rawPosts == null || rawPosts.isEmpty()) {
+            return;
+        }
+
+        List<T> matching = new ArrayList<>(rawPosts.size());
+        List<AbstractPost> others = new ArrayList<>();
+        for (AbstractPost post : rawPosts) {
+            if (type.isInstance(post)) {
+                matching.add(type.cast(post));
+            } else {
+                others.add(post);
+            }
+        }
+        if (!matching.isEmpty()) {
+            delegate.process(matching, emit);
+        }
+        others.forEach(emit);
+    }
+
+    @Override
+    public int streamBatchSize() {
+        return delegate.streamBatchSize();
+    }
+
+    @Override
+    public int streamConcurrency() {
+        return delegate.streamConcurrency();
+    }
+
+    @Override
+    public String name() {
+        return delegate.name();
+    }
+
+    @Override
+    public Class<? extends AbstractPost> postType() {
+        return AbstractPost.class;
+    }
+
+    @Override
+    public double costPerPost() {
+        return delegate.costPerPost();
+    }
+
+    @Override
+    public double selectivity() {
+        return delegate.selectivity();
+    }
+
+    @Override
+    public boolean reorderable() {
+        return delegate.reorderable();
+    }
+}
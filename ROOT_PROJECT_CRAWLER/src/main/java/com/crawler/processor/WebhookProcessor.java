@@ -1,25 +1,48 @@
 package com.crawler.processor;
 
 import java.io.IOException;
-import java.text.Normalizer;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Supplier;
 
 import org.apache.hc.client5.http.classic.methods.HttpPost;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
-import org.apache.hc.client5.http.impl.classic.CloseableHttpResponse;
 import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
 import org.apache.hc.core5.http.ContentType;
-import org.apache.hc.core5.http.ParseException;
 import org.apache.hc.core5.http.io.entity.EntityUtils;
 import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.apache.hc.core5.util.Timeout;
 
 import com.crawler.client.CrawlerException;
 import com.crawler.config.CrawlerConfig;
 import com.crawler.model.AbstractPost;
+import com.crawler.repository.EnrichmentCache;
+import com.crawler.util.HeuristicClassifier;
+import com.crawler.util.IncrementalJsonParser;
+import com.crawler.util.ServerSentEvents;
+import com.crawler.util.VietnameseFolding;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 
@@ -37,12 +60,41 @@ public class WebhookProcessor implements IDataProcessor<AbstractPost>, AutoClose
             Chỉ trả về JSON, không giải thích thêm.
             """;
 
+    private static final String BATCH_INSTRUCTION = """
+
+            Đầu vào là MỘT mảng JSON các bài viết, mỗi phần tử có "index" và "content".
+            Trả về MỘT mảng JSON, mỗi bài một object gồm "index" (giữ nguyên) và các trường ở trên.
+            """;
+
+    // Số token ước lượng cho phần JSON model trả về của mỗi post
+    private static final int OUTPUT_TOKENS_PER_POST = 60;
+
+    // Đánh dấu post bị hoãn vì hết quota (so sánh theo identity, KHÔNG bao giờ được lưu cache hay gán vào post)
+    private static final JsonObject DEFERRED = new JsonObject();
+    // Đánh dấu vị trí của batch đã chốt (batch xong/timeout): phần tử stream về muộn hơn bị bỏ, không phát
+    private static final JsonObject CLOSED = new JsonObject();
+
+    // Không cần kết quả sớm (process() theo list chỉ gán metadata khi mọi post đã xong)
+    private static final ObjIntConsumer<JsonObject> NO_EARLY_RESULTS = (metadata, position) -> {
+    };
+
     private final String aiApiUrl;
     private final String apiKey;
     private final String model;
     private final String systemPrompt;
     private final Gson gson;
     private final CloseableHttpClient httpClient;
+    private final int maxInFlight;
+    private final long timeoutMillis;
+    private final Semaphore inFlight;
+    private final int maxBatchSize;
+    private final int batchTokenBudget;
+    private final ExecutorService enrichExecutor;
+    private final EnrichmentCache enrichmentCache;
+    private final EnrichmentScheduler scheduler;
+    private final LocalEnrichmentTier localTier;
+    // true = gọi streamGenerateContent (SSE), dùng kết quả từng post của batch ngay khi model sinh xong
+    private final boolean streamResponses;
 
     private static final Map<String, String> DAMAGE_CATEGORY_MAP = Map.of(
             "ha tang", "hạ tầng",
@@ -59,13 +111,92 @@ public class WebhookProcessor implements IDataProcessor<AbstractPost>, AutoClose
             "thuoc men", "thuốc men"
     );
 
-    public WebhookProcessor(String aiApiUrl, String apiKey, String model, String systemPrompt) {
+    /**
+     * @param maxInFlight Số request AI tối đa chạy đồng thời (1 = tuần tự như trước)
+     * @param timeoutMillis Timeout cho MỘT request (kết nối + chờ phản hồi)
+     * @param maxBatchSize Số post tối đa trong một request (1 = mỗi post một request)
+     * @param batchTokenBudget Ngân sách token ước lượng cho một request batch
+     * @param enrichmentCache Cache kết quả AI theo nội dung (null = luôn gọi AI)
+     * @param scheduler Quota + thứ tự ưu tiên (null = không giới hạn, enrich theo thứ tự đầu vào)
+     * @param localTier Phân loại local trước khi gọi AI (null = mọi post đều gọi AI)
+     */
+    public WebhookProcessor(String aiApiUrl, String apiKey, String model, String systemPrompt,
+                            int maxInFlight, long timeoutMillis, int maxBatchSize, int batchTokenBudget,
+                            EnrichmentCache enrichmentCache, EnrichmentScheduler scheduler,
+                            LocalEnrichmentTier localTier) {
+        if (maxInFlight <= 0 || timeoutMillis <= 0 || maxBatchSize <= 0 || batchTokenBudget <= 0) {
+            throw new IllegalArgumentException("maxInFlight, timeoutMillis, maxBatchSize and batchTokenBudget must be positive");
+        }
+        this.maxBatchSize = maxBatchSize;
+        this.batchTokenBudget = batchTokenBudget;
         this.aiApiUrl = aiApiUrl;
         this.apiKey = apiKey;
         this.model = model;
         this.systemPrompt = systemPrompt;
         this.gson = new Gson();
-        this.httpClient = HttpClients.createDefault();
+        this.maxInFlight = maxInFlight;
+        this.timeoutMillis = timeoutMillis;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.enrichmentCache = enrichmentCache;
+        this.scheduler = scheduler;
+        this.localTier = localTier;
+        this.streamResponses = "stream".equalsIgnoreCase(CrawlerConfig.getEnrichResponseMode());
+
+        // Pool kết nối đủ cho maxInFlight request cùng tới MỘT host (mặc định chỉ 5 / route)
+        Timeout timeout = Timeout.ofMilliseconds(timeoutMillis);
+        this.httpClient = HttpClients.custom()
+                .setConnectionManager(PoolingHttpClientConnectionManagerBuilder.create()
+                        .setMaxConnTotal(maxInFlight)
+                        .setMaxConnPerRoute(maxInFlight)
+                        .setDefaultConnectionConfig(ConnectionConfig.custom()
+                                .setConnectTimeout(timeout)
+                                .setSocketTimeout(timeout)
+                                .build())
+                        .build())
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(timeout)
+                        .setResponseTimeout(timeout)
+                        .build())
+                .build();
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.enrichExecutor = Executors.newFixedThreadPool(maxInFlight, runnable -> {
+            Thread thread = new Thread(runnable, "webhook-enricher-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public WebhookProcessor(String aiApiUrl, String apiKey, String model, String systemPrompt,
+                            int maxInFlight, long timeoutMillis, int maxBatchSize, int batchTokenBudget,
+                            EnrichmentCache enrichmentCache, EnrichmentScheduler scheduler) {
+        this(aiApiUrl, apiKey, model, systemPrompt, maxInFlight, timeoutMillis, maxBatchSize, batchTokenBudget,
+            enrichmentCache, scheduler, LocalEnrichmentTier.fromConfig());
+    }
+
+    public WebhookProcessor(String aiApiUrl, String apiKey, String model, String systemPrompt,
+                            int maxInFlight, long timeoutMillis, int maxBatchSize, int batchTokenBudget,
+                            EnrichmentCache enrichmentCache) {
+        // Mock mode không tốn quota → không cần scheduler
+        this(aiApiUrl, apiKey, model, systemPrompt, maxInFlight, timeoutMillis, maxBatchSize, batchTokenBudget,
+            enrichmentCache, aiApiUrl == null ? null : EnrichmentScheduler.fromConfig());
+    }
+
+    public WebhookProcessor(String aiApiUrl, String apiKey, String model, String systemPrompt,
+                            int maxInFlight, long timeoutMillis, int maxBatchSize, int batchTokenBudget) {
+        this(aiApiUrl, apiKey, model, systemPrompt, maxInFlight, timeoutMillis, maxBatchSize, batchTokenBudget,
+            defaultCache(aiApiUrl, model, systemPrompt));
+    }
+
+    public WebhookProcessor(String aiApiUrl, String apiKey, String model, String systemPrompt,
+                            int maxInFlight, long timeoutMillis) {
+        this(aiApiUrl, apiKey, model, systemPrompt, maxInFlight, timeoutMillis,
+            CrawlerConfig.getEnrichBatchSize(), CrawlerConfig.getEnrichBatchTokens());
+    }
+
+    public WebhookProcessor(String aiApiUrl, String apiKey, String model, String systemPrompt) {
+        this(aiApiUrl, apiKey, model, systemPrompt,
+            CrawlerConfig.getEnrichConcurrency(), CrawlerConfig.getEnrichTimeoutMillis());
     }
 
     public WebhookProcessor(String aiApiUrl) {
@@ -82,176 +213,802 @@ public class WebhookProcessor implements IDataProcessor<AbstractPost>, AutoClose
             CrawlerConfig.getGeminiModel(), SYSTEM_PROMPT);
     }
 
+    /**
+     * Cache mặc định theo cấu hình; mock mode không cache (kết quả mock là ngẫu nhiên)
+     */
+    private static EnrichmentCache defaultCache(String aiApiUrl, String model, String systemPrompt) {
+        String dbFile = CrawlerConfig.getEnrichCacheDb();
+        if (aiApiUrl == null || "none".equalsIgnoreCase(dbFile)) {
+            return null;
+        }
+        // Prompt batch cũng ảnh hưởng kết quả → nằm trong version
+        return new EnrichmentCache(EnrichmentCache.versionOf(
+                String.valueOf(model), String.valueOf(systemPrompt), BATCH_INSTRUCTION));
+    }
+
     @Override
     public List<AbstractPost> process(List<AbstractPost> rawPosts) throws CrawlerException {
         if (rawPosts == null || rawPosts.isEmpty()) {
             return rawPosts;
         }
 
-        System.out.println("\n>>> WebhookProcessor: Enriching " + rawPosts.size() + " posts...");
+        JsonObject[] metadata = enrichPosts(rawPosts, NO_EARLY_RESULTS);
 
-        List<AbstractPost> enrichedPosts = new ArrayList<>();
+        // Metadata chỉ được gán ở thread gọi process(), theo đúng thứ tự đầu vào
+        List<AbstractPost> enrichedPosts = new ArrayList<>(rawPosts.size());
+        for (int i = 0; i < rawPosts.size(); i++) {
+            enrichedPosts.add(applyResult(rawPosts.get(i), metadata[i]));
+        }
 
-        for (AbstractPost post : rawPosts) {
-            try {
-                JsonObject metadata = analyzeContent(post.getContent());
+        System.out.println(">>> WebhookProcessor: Completed enrichment\n");
+        return enrichedPosts;
+    }
+
+    /**
+     * Pipeline streaming (stage không giữ thứ tự): post được gán metadata và phát xuống stage sau NGAY khi
+     * kết quả của nó có (cache hit, tầng local, phần tử batch vừa stream xong), không chờ cả lô
+     */
+    @Override
+    public void process(List<AbstractPost> rawPosts, Consumer<? super AbstractPost> emit) throws CrawlerException {
+        if (rawPosts == null || rawPosts.isEmpty()) {
+            return;
+        }
+
+        // Mỗi post được gán + phát đúng một lần: kết quả sớm từ thread enricher, phần còn lại khi lô kết thúc
+        boolean[] delivered = new boolean[rawPosts.size()];
+        ObjIntConsumer<JsonObject> deliver = (result, position) -> {
+            synchronized (delivered) {
+                if (delivered[position]) {
+                    return;
+                }
+                delivered[position] = true;
+            }
+            emit.accept(applyResult(rawPosts.get(position), result));
+        };
+
+        JsonObject[] metadata = enrichPosts(rawPosts, deliver);
+        for (int i = 0; i < rawPosts.size(); i++) {
+            deliver.accept(metadata[i], i);
+        }
+        System.out.println(">>> WebhookProcessor: Completed enrichment\n");
+    }
+
+    private AbstractPost applyResult(AbstractPost post, JsonObject metadata) {
+        if (metadata == DEFERRED) {
+            post.setEnrichmentDeferred(true);
+        } else if (metadata != null) {
+            applyMetadata(post, metadata);
+            post.setEnrichmentDeferred(false);
+        }
+        return post;
+    }
+
+    /**
+     * @param onEarlyResult Nhận (metadata, vị trí) của post có kết quả trước khi cả lô xong;
+     *                      có thể được gọi từ thread enricher
+     * @return Metadata theo vị trí (null = lỗi, DEFERRED = hoãn vì hết quota)
+     */
+    private JsonObject[] enrichPosts(List<AbstractPost> posts, ObjIntConsumer<JsonObject> onEarlyResult) {
+        return enrichmentCache == null ? enrichTiered(posts, null, onEarlyResult) : enrichCached(posts, onEarlyResult);
+    }
+
+    /**
+     * Trong pipeline streaming: mỗi lần process() nhận đủ post để lấp đầy mọi request song song
+     */
+    @Override
+    public int streamBatchSize() {
+        return maxBatchSize * maxInFlight;
+    }
+
+    /**
+     * Hai worker: batch sau đã gom xong và bắt đầu gọi AI trong khi batch trước còn chờ request chậm nhất.
+     * Tổng số request đồng thời vẫn bị chặn bởi semaphore maxInFlight dùng chung.
+     */
+    @Override
+    public int streamConcurrency() {
+        return 2;
+    }
+
+    /**
+     * Mỗi post là một phần request AI trả phí → planner đặt enricher sau mọi bộ lọc
+     */
+    @Override
+    public double costPerPost() {
+        return 1000.0;
+    }
+
+    /**
+     * Tầng local trước (nếu có mô hình), chỉ post chưa đủ tin cậy mới đi tiếp tới AI (hoặc mock)
+     *
+     * @param fromLocal Nếu khác null: đánh dấu vị trí lấy kết quả từ tầng local
+     */
+    private JsonObject[] enrichTiered(List<AbstractPost> posts, boolean[] fromLocal,
+                                      ObjIntConsumer<JsonObject> onEarlyResult) {
+        if (localTier == null) {
+            return enrich(posts, onEarlyResult);
+        }
+        JsonObject[] metadata = new JsonObject[posts.size()];
+        List<Integer> remote = new ArrayList<>();
+        for (int i = 0; i < posts.size(); i++) {
+            metadata[i] = localTier.classify(posts.get(i).getContent());
+            if (metadata[i] == null) {
+                remote.add(i);
+                continue;
+            }
+            if (fromLocal != null) {
+                fromLocal[i] = true;
+            }
+            onEarlyResult.accept(metadata[i], i);
+        }
+        System.out.println("\n>>> WebhookProcessor: " + (posts.size() - remote.size()) + "/" + posts.size()
+                + " posts classified locally, " + remote.size() + " sent to AI (" + localTier.getStats() + ")");
+
+        if (!remote.isEmpty()) {
+            List<AbstractPost> remotePosts = new ArrayList<>(remote.size());
+            for (int i : remote) {
+                remotePosts.add(posts.get(i));
+            }
+            JsonObject[] fresh = enrich(remotePosts, (result, r) -> onEarlyResult.accept(result, remote.get(r)));
+            for (int r = 0; r < remote.size(); r++) {
+                metadata[remote.get(r)] = fresh[r];
+            }
+        }
+        return metadata;
+    }
+
+    /**
+     * Gọi AI cho toàn bộ posts (chia batch + song song)
+     */
+    private JsonObject[] enrich(List<AbstractPost> posts, ObjIntConsumer<JsonObject> onEarlyResult) {
+        if (scheduler != null) {
+            return enrichByPriority(posts, onEarlyResult);
+        }
+        List<List<Integer>> batches = planBatches(posts);
+        System.out.println("\n>>> WebhookProcessor: Enriching " + posts.size() + " posts in "
+                + batches.size() + " requests (max in-flight: " + maxInFlight + ")...");
+        return enrichAll(posts, batches, onEarlyResult);
+    }
+
+    /**
+     * Có quota: batch được lập theo thứ tự ưu tiên → batch đầu (bài giá trị nhất) xin quota trước;
+     * kết quả được trả lại đúng vị trí đầu vào
+     */
+    private JsonObject[] enrichByPriority(List<AbstractPost> posts, ObjIntConsumer<JsonObject> onEarlyResult) {
+        List<Integer> order = scheduler.prioritize(posts);
+        List<AbstractPost> prioritized = new ArrayList<>(posts.size());
+        for (int index : order) {
+            prioritized.add(posts.get(index));
+        }
+
+        List<List<Integer>> batches = planBatches(prioritized);
+        System.out.println("\n>>> WebhookProcessor: Enriching " + posts.size() + " posts by priority in up to "
+                + batches.size() + " requests (max in-flight: " + maxInFlight + ")...");
+        JsonObject[] byPriority = enrichAll(prioritized, batches,
+                (result, p) -> onEarlyResult.accept(result, order.get(p)));
+
+        JsonObject[] metadata = new JsonObject[posts.size()];
+        for (int p = 0; p < order.size(); p++) {
+            metadata[order.get(p)] = byPriority[p];
+        }
+        return metadata;
+    }
 
-                String focus = null;
-                String damageCategory = null;
-                String rescueGoods = null;
+    /**
+     * Enrich qua EnrichmentCache:
+     * - Các post trùng nội dung (sau chuẩn hóa) trong cùng lượt chỉ gọi AI MỘT lần
+     * - Nội dung đã có trong cache (RAM hoặc SQLite) không gọi AI
+     * - Chỉ kết quả AI thành công mới được lưu vào cache (kèm nội dung → dữ liệu huấn luyện tầng local);
+     *   kết quả của tầng local KHÔNG được lưu
+     */
+    private JsonObject[] enrichCached(List<AbstractPost> posts, ObjIntConsumer<JsonObject> onEarlyResult) {
+        // key → các vị trí post có cùng nội dung
+        Map<String, List<Integer>> positions = new LinkedHashMap<>();
+        for (int i = 0; i < posts.size(); i++) {
+            positions.computeIfAbsent(enrichmentCache.keyOf(posts.get(i).getContent()), k -> new ArrayList<>()).add(i);
+        }
+        List<String> keys = new ArrayList<>(positions.keySet());
+        JsonObject[] cached = enrichmentCache.getAll(keys);
 
-                // SỬ DỤNG PROXY GETTER/SETTER TỪ ABSTRACTPOST
-                if (metadata.has("cam_xuc_bai_viet") && !metadata.get("cam_xuc_bai_viet").isJsonNull()) {
-                    post.setSentiment(metadata.get("cam_xuc_bai_viet").getAsString());
+        List<String> missingKeys = new ArrayList<>();
+        List<AbstractPost> missingPosts = new ArrayList<>();
+        Map<String, JsonObject> byKey = new HashMap<>();
+        for (int k = 0; k < keys.size(); k++) {
+            if (cached[k] != null) {
+                byKey.put(keys.get(k), cached[k]);
+                for (int i : positions.get(keys.get(k))) {
+                    onEarlyResult.accept(cached[k], i);
                 }
-                if (metadata.has("tinh_thanh") && !metadata.get("tinh_thanh").isJsonNull()) {
-                    post.setLocation(metadata.get("tinh_thanh").getAsString());
+            } else {
+                missingKeys.add(keys.get(k));
+                missingPosts.add(posts.get(positions.get(keys.get(k)).get(0)));
+            }
+        }
+        System.out.println("\n>>> WebhookProcessor: " + posts.size() + " posts, " + keys.size()
+                + " distinct contents, " + (keys.size() - missingPosts.size())
+                + " served from enrichment cache (" + enrichmentCache.getStats() + ")");
+
+        if (!missingPosts.isEmpty()) {
+            boolean[] fromLocal = new boolean[missingPosts.size()];
+            JsonObject[] fresh = enrichTiered(missingPosts, fromLocal, (result, m) -> {
+                // Kết quả của một nội dung được fan-out tới mọi post trùng nội dung
+                for (int i : positions.get(missingKeys.get(m))) {
+                    onEarlyResult.accept(result, i);
                 }
-                if (metadata.has("loai_bai_viet") && !metadata.get("loai_bai_viet").isJsonNull()) {
-                    focus = metadata.get("loai_bai_viet").getAsString();
-                    post.setFocus(focus);
+            });
+            Map<String, JsonObject> toStore = new LinkedHashMap<>();
+            Map<String, String> contents = new HashMap<>();
+            for (int m = 0; m < fresh.length; m++) {
+                if (fresh[m] != null) {
+                    // DEFERRED vẫn được fan-out để mọi bản trùng nội dung cùng bị đánh dấu hoãn
+                    byKey.put(missingKeys.get(m), fresh[m]);
                 }
-                if (metadata.has("huong_bai_viet") && !metadata.get("huong_bai_viet").isJsonNull()) {
-                    post.setDirection(metadata.get("huong_bai_viet").getAsString());
+                if (fresh[m] != null && fresh[m] != DEFERRED && !fromLocal[m]) {
+                    toStore.put(missingKeys.get(m), fresh[m]);
+                    contents.put(missingKeys.get(m), missingPosts.get(m).getContent());
                 }
+            }
+            enrichmentCache.putAll(toStore, contents);
+        }
 
-                if (metadata.has("damage_category") && !metadata.get("damage_category").isJsonNull()) {
-                    damageCategory = metadata.get("damage_category").getAsString();
+        JsonObject[] metadata = new JsonObject[posts.size()];
+        for (Map.Entry<String, List<Integer>> entry : positions.entrySet()) {
+            JsonObject result = byKey.get(entry.getKey());
+            for (int i : entry.getValue()) {
+                metadata[i] = result;
+            }
+        }
+        return metadata;
+    }
+
+    /**
+     * Chia posts thành các batch liên tiếp: tối đa maxBatchSize post và không vượt
+     * batchTokenBudget token ước lượng (một post quá dài vẫn đi riêng một batch)
+     */
+    private List<List<Integer>> planBatches(List<AbstractPost> posts) {
+        List<List<Integer>> batches = new ArrayList<>();
+        List<Integer> current = new ArrayList<>();
+        int tokens = 0;
+        for (int i = 0; i < posts.size(); i++) {
+            int cost = estimateTokens(posts.get(i).getContent());
+            if (!current.isEmpty() && (current.size() >= maxBatchSize || tokens + cost > batchTokenBudget)) {
+                batches.add(current);
+                current = new ArrayList<>();
+                tokens = 0;
+            }
+            current.add(i);
+            tokens += cost;
+        }
+        if (!current.isEmpty()) {
+            batches.add(current);
+        }
+        return batches;
+    }
+
+    /**
+     * Ước lượng thô số token của một post: input (~3 ký tự tiếng Việt / token) + phần JSON trả về
+     */
+    private static int estimateTokens(String content) {
+        return (content == null ? 0 : content.length() / 3) + OUTPUT_TOKENS_PER_POST;
+    }
+
+    /**
+     * Gọi AI song song, tối đa maxInFlight request cùng lúc (Semaphore):
+     * - Mỗi request có timeout riêng, tính từ lúc nó thực sự bắt đầu (có permit mới submit)
+     * - Lỗi/timeout của một request KHÔNG ảnh hưởng request khác
+     * - Phần tử thiếu/hỏng trong kết quả batch (và cả batch lỗi) được gọi lại TỪNG post một;
+     *   post vẫn lỗi sau lần thử lại giữ nguyên, không enrich
+     * - Phần tử đã stream về (và đã phát qua onEarlyResult) được GIỮ kể cả khi batch timeout/lỗi sau đó:
+     *   chỉ vị trí chưa về mới gọi lại → không tốn thêm AI call, metadata trả về (và được cache) đúng là
+     *   metadata đã gán cho post
+     *
+     * @return metadata theo vị trí post, null nếu không enrich được
+     */
+    private JsonObject[] enrichAll(List<AbstractPost> posts, List<List<Integer>> batches,
+                                   ObjIntConsumer<JsonObject> onEarlyResult) {
+        JsonObject[] metadata = new JsonObject[posts.size()];
+        QuotaGate quota = new QuotaGate();
+
+        // null = batch bị hoãn vì hết quota
+        List<CompletableFuture<JsonObject[]>> batchCalls = new ArrayList<>(batches.size());
+        // Phần tử đã stream về theo vị trí trong batch (thread enricher ghi, kể cả sau khi batch timeout)
+        List<AtomicReferenceArray<JsonObject>> arrivals = new ArrayList<>(batches.size());
+        for (List<Integer> batch : batches) {
+            List<String> contents = new ArrayList<>(batch.size());
+            int tokens = 0;
+            for (int index : batch) {
+                contents.add(posts.get(index).getContent());
+                tokens += estimateTokens(posts.get(index).getContent());
+            }
+            AtomicReferenceArray<JsonObject> arrived = new AtomicReferenceArray<>(batch.size());
+            arrivals.add(arrived);
+            batchCalls.add(!quota.admit(tokens) ? null : submit(() -> batch.size() == 1
+                    ? new JsonObject[] {analyzeContent(contents.get(0))}
+                    : analyzeBatch(contents, (result, k) -> {
+                        // Chỉ phát nếu vị trí chưa bị chốt → phần tử phát ra luôn là phần tử được giữ
+                        if (arrived.compareAndSet(k, null, result)) {
+                            onEarlyResult.accept(result, batch.get(k));
+                        }
+                    })));
+        }
+
+        List<Integer> retries = new ArrayList<>();
+        for (int b = 0; b < batches.size(); b++) {
+            List<Integer> batch = batches.get(b);
+            if (batchCalls.get(b) == null) {
+                for (int index : batch) {
+                    metadata[index] = DEFERRED;
                 }
-                if (metadata.has("rescue_goods") && !metadata.get("rescue_goods").isJsonNull()) {
-                    rescueGoods = metadata.get("rescue_goods").getAsString();
+                quota.deferred += batch.size();
+                continue;
+            }
+            JsonObject[] results = join(batchCalls.get(b));
+            AtomicReferenceArray<JsonObject> arrived = arrivals.get(b);
+            for (int k = 0; k < batch.size(); k++) {
+                // Chốt vị trí: phần tử đã về thì giữ, chưa về thì không nhận nữa (stream còn chạy sau timeout)
+                JsonObject early = arrived.compareAndExchange(k, null, CLOSED);
+                JsonObject result = early != null ? early : results == null ? null : results[k];
+                if (result != null) {
+                    metadata[batch.get(k)] = result;
+                } else if (batch.size() > 1) {
+                    retries.add(batch.get(k));
                 }
+            }
+        }
 
-                // LUÔN LUÔN SET CẢ HAI GIÁ TRỊ - TUYỆT ĐỐI KHÔNG NULL
-                String normalizedDamage = normalizeDamageCategory(damageCategory);
-                String normalizedRescue = normalizeRescueGoods(rescueGoods);
-                
-                // Nếu normalize trả về null (không match), dùng giá trị gốc
-                post.setDamageCategory(normalizedDamage != null ? normalizedDamage : damageCategory);
-                post.setRescueGoods(normalizedRescue != null ? normalizedRescue : rescueGoods);
-
-                enrichedPosts.add(post);
-
-                System.out.println("  Enriched: " + post.getPlatform() +
-                        " | sentiment=" + post.getSentiment() +
-                        " | location=" + post.getLocation() +
-                        " | focus=" + post.getFocus() +
-                        " | direction=" + post.getDirection() +
-                        " | damage=" + post.getDamageCategory() +
-                        " | rescue=" + post.getRescueGoods());
-
-            } catch (Exception e) {
-                System.err.println("  Failed to enrich post: " + e.getMessage());
-                enrichedPosts.add(post);
+        if (!retries.isEmpty()) {
+            System.out.println("  Retrying " + retries.size() + " posts individually...");
+            List<CompletableFuture<JsonObject>> singleCalls = new ArrayList<>(retries.size());
+            for (int index : retries) {
+                String content = posts.get(index).getContent();
+                singleCalls.add(!quota.admit(estimateTokens(content)) ? null : submit(() -> analyzeContent(content)));
+            }
+            for (int r = 0; r < retries.size(); r++) {
+                if (singleCalls.get(r) == null) {
+                    metadata[retries.get(r)] = DEFERRED;
+                    quota.deferred++;
+                } else {
+                    metadata[retries.get(r)] = join(singleCalls.get(r));
+                }
             }
         }
 
-        System.out.println(">>> WebhookProcessor: Completed enrichment\n");
-        return enrichedPosts;
+        if (quota.deferred > 0) {
+            scheduler.recordDeferred(quota.deferred);
+            System.out.println("  Quota exhausted: deferred " + quota.deferred
+                    + " lower-priority posts to a later window (" + scheduler.getStats() + ")");
+        }
+        return metadata;
     }
 
+    /**
+     * Quota cho MỘT lượt enrichAll: request được xin theo thứ tự ưu tiên; từ lần đầu bị từ chối,
+     * mọi request sau cũng bị hoãn (không để bài ưu tiên thấp chen lên dùng phần quota lẻ)
+     */
+    private final class QuotaGate {
+        private final long deadline = scheduler != null ? scheduler.deadline() : 0;
+        private boolean exhausted;
+        private int deferred;
 
-    private JsonObject analyzeContent(String content) throws CrawlerException {
-        if (aiApiUrl == null) {
-            return generateMockMetadata(content);
+        boolean admit(int tokens) {
+            if (scheduler == null) {
+                return true;
+            }
+            if (!exhausted && !scheduler.acquire(tokens, deadline)) {
+                exhausted = true;
+            }
+            return !exhausted;
         }
+    }
 
-        // TÁI TẠO LOGIC CŨ VÌ USER ĐÃ XÓA WebhookAiClient
+    private <T> CompletableFuture<T> submit(Supplier<T> call) {
         try {
-            String targetUrl = aiApiUrl;
-            if (apiKey != null && !apiKey.isEmpty() && !aiApiUrl.contains("key=")) {
-                targetUrl = aiApiUrl + (aiApiUrl.contains("?") ? "&" : "?") + "key=" + apiKey;
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CrawlerException("Interrupted while enriching posts", e);
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return call.get();
+            } finally {
+                // Trả permit khi request THỰC SỰ kết thúc (kể cả sau timeout) → không vượt maxInFlight
+                inFlight.release();
             }
+        }, enrichExecutor).orTimeout(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Chờ kết quả; lỗi/timeout được log và trả về null (failure isolation)
+     */
+    private <T> T join(CompletableFuture<T> call) {
+        try {
+            return call.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() instanceof TimeoutException
+                    ? new TimeoutException("timed out after " + timeoutMillis + " ms")
+                    : e.getCause();
+            System.err.println("  Failed to enrich post: " + cause.getMessage());
+        } catch (RuntimeException e) {
+            System.err.println("  Failed to enrich post: " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Gán metadata do AI trả về vào post
+     */
+    private void applyMetadata(AbstractPost post, JsonObject metadata) {
+        String focus = null;
+        String damageCategory = null;
+        String rescueGoods = null;
+
+        // SỬ DỤNG PROXY GETTER/SETTER TỪ ABSTRACTPOST
+        if (metadata.has("cam_xuc_bai_viet") && !metadata.get("cam_xuc_bai_viet").isJsonNull()) {
+            post.setSentiment(metadata.get("cam_xuc_bai_viet").getAsString());
+        }
+        if (metadata.has("tinh_thanh") && !metadata.get("tinh_thanh").isJsonNull()) {
+            post.setLocation(metadata.get("tinh_thanh").getAsString());
+        }
+        if (metadata.has("loai_bai_viet") && !metadata.get("loai_bai_viet").isJsonNull()) {
+            focus = metadata.get("loai_bai_viet").getAsString();
+            post.setFocus(focus);
+        }
+        if (metadata.has("huong_bai_viet") && !metadata.get("huong_bai_viet").isJsonNull()) {
+            post.setDirection(metadata.get("huong_bai_viet").getAsString());
+        }
+
+        if (metadata.has("damage_category") && !metadata.get("damage_category").isJsonNull()) {
+            damageCategory = metadata.get("damage_category").getAsString();
+        }
+        if (metadata.has("rescue_goods") && !metadata.get("rescue_goods").isJsonNull()) {
+            rescueGoods = metadata.get("rescue_goods").getAsString();
+        }
 
-            HttpPost httpPost = new HttpPost(targetUrl);
+        // LUÔN LUÔN SET CẢ HAI GIÁ TRỊ - TUYỆT ĐỐI KHÔNG NULL
+        String normalizedDamage = normalizeDamageCategory(damageCategory);
+        String normalizedRescue = normalizeRescueGoods(rescueGoods);
 
-            JsonObject requestBody = new JsonObject();
+        // Nếu normalize trả về null (không match), dùng giá trị gốc
+        post.setDamageCategory(normalizedDamage != null ? normalizedDamage : damageCategory);
+        post.setRescueGoods(normalizedRescue != null ? normalizedRescue : rescueGoods);
 
-            if (systemPrompt != null && !systemPrompt.isEmpty()) {
-                JsonObject systemInstruction = new JsonObject();
-                JsonArray systemParts = new JsonArray();
-                JsonObject systemText = new JsonObject();
-                systemText.addProperty("text", systemPrompt);
-                systemParts.add(systemText);
-                systemInstruction.add("parts", systemParts);
-                requestBody.add("system_instruction", systemInstruction);
+        System.out.println("  Enriched: " + post.getPlatform() +
+                " | sentiment=" + post.getSentiment() +
+                " | location=" + post.getLocation() +
+                " | focus=" + post.getFocus() +
+                " | direction=" + post.getDirection() +
+                " | damage=" + post.getDamageCategory() +
+                " | rescue=" + post.getRescueGoods());
+    }
+
+
+    private JsonObject analyzeContent(String content) throws CrawlerException {
+        if (aiApiUrl == null) {
+            return generateMockMetadata(content);
+        }
+        if (streamResponses) {
+            String text = streamModel(systemPrompt, content, null);
+            return parseModelObject(text, text);
+        }
+        return parseAiResponse(callModel(systemPrompt, content));
+    }
+
+    /**
+     * Phân tích NHIỀU post trong MỘT request: input là mảng JSON [{"index":0,"content":...}, ...],
+     * model trả về mảng JSON các object có cùng "index".
+     *
+     * STREAM: mỗi object của mảng được báo qua onItem ngay khi model sinh xong nó; stream đứt giữa chừng
+     * thì các phần tử đã nhận vẫn được giữ, phần còn lại là null (gọi lại riêng như phần tử hỏng)
+     *
+     * @param onItem Nhận (metadata, vị trí trong contents) của từng phần tử hoàn chỉnh trong lúc stream
+     * @return metadata theo vị trí trong contents; phần tử thiếu/hỏng là null (caller gọi lại riêng)
+     */
+    private JsonObject[] analyzeBatch(List<String> contents, ObjIntConsumer<JsonObject> onItem)
+            throws CrawlerException {
+        if (aiApiUrl == null) {
+            JsonObject[] mock = new JsonObject[contents.size()];
+            for (int i = 0; i < mock.length; i++) {
+                mock[i] = generateMockMetadata(contents.get(i));
             }
+            return mock;
+        }
 
-            JsonArray contents = new JsonArray();
-            JsonObject userContent = new JsonObject();
-            JsonArray parts = new JsonArray();
-            JsonObject userText = new JsonObject();
-            userText.addProperty("text", content);
-            parts.add(userText);
-            userContent.add("parts", parts);
-            contents.add(userContent);
-            requestBody.add("contents", contents);
+        JsonArray items = new JsonArray();
+        for (int i = 0; i < contents.size(); i++) {
+            JsonObject item = new JsonObject();
+            item.addProperty("index", i);
+            item.addProperty("content", contents.get(i));
+            items.add(item);
+        }
+        String instruction = (systemPrompt == null ? "" : systemPrompt) + BATCH_INSTRUCTION;
+        if (!streamResponses) {
+            return parseBatchResponse(callModel(instruction, gson.toJson(items)), contents.size());
+        }
 
-            StringEntity entity = new StringEntity(gson.toJson(requestBody), ContentType.APPLICATION_JSON);
-            httpPost.setEntity(entity);
+        JsonObject[] early = new JsonObject[contents.size()];
+        IncrementalJsonParser parser = new IncrementalJsonParser(new IncrementalJsonParser.Listener() {
+            @Override
+            public void onElement(int position, JsonElement element) {
+                int i = element.isJsonObject() ? batchIndex(element.getAsJsonObject(), early.length) : -1;
+                if (i >= 0 && early[i] == null) {
+                    early[i] = element.getAsJsonObject();
+                    onItem.accept(early[i], i);
+                }
+            }
+        });
+        try {
+            String text = streamModel(instruction, gson.toJson(items), parser::feed);
+            return parseBatchItems(text, text, contents.size());
+        } catch (CrawlerException e) {
+            if (parser.elementCount() == 0) {
+                throw e;
+            }
+            System.err.println("  AI stream ended early, kept " + parser.elementCount() + "/" + contents.size()
+                    + " results: " + e.getMessage());
+            return early;
+        }
+    }
 
-            try (CloseableHttpResponse response = httpClient.execute(httpPost)) {
+    /**
+     * Gửi một request generateContent và trả về response body (HTTP 2xx)
+     */
+    private String callModel(String instruction, String content) throws CrawlerException {
+        // TÁI TẠO LOGIC CŨ VÌ USER ĐÃ XÓA WebhookAiClient
+        try {
+            return httpClient.execute(newRequest(aiApiUrl, instruction, content), response -> {
                 int statusCode = response.getCode();
 
                 if (statusCode >= 200 && statusCode < 300) {
-                    String responseBody = EntityUtils.toString(response.getEntity());
-                    return parseAiResponse(responseBody);
+                    return EntityUtils.toString(response.getEntity());
                 } else {
                     throw new CrawlerException("AI API returned error: HTTP " + statusCode);
                 }
-            }
-
-        } catch (IOException | ParseException e) {
+            });
+        } catch (IOException e) {
             throw new CrawlerException("Failed to call AI API: " + e.getMessage(), e);
         }
     }
 
-    private JsonObject parseAiResponse(String responseBody) throws CrawlerException {
+    /**
+     * Gửi request tới endpoint streaming (SSE) và đọc text model sinh ra theo từng chunk
+     *
+     * @param onText Nhận từng đoạn text ngay khi về (null = chỉ cần toàn văn bản)
+     * @return Toàn bộ text model sinh ra (đã ghép các chunk)
+     */
+    private String streamModel(String instruction, String content, Consumer<String> onText) throws CrawlerException {
+        HttpPost httpPost = newRequest(streamUrl(aiApiUrl), instruction, content);
+        httpPost.setHeader("Accept", "text/event-stream");
+        StringBuilder text = new StringBuilder();
+
+        // SSE được đọc TRONG response handler: connection được trả về pool / đóng khi handler kết thúc
         try {
-            JsonObject wrapper = JsonParser.parseString(responseBody).getAsJsonObject();
-
-            // Google Generative Language API response format
-            if (wrapper.has("candidates")) {
-                JsonArray candidates = wrapper.getAsJsonArray("candidates");
-                if (candidates != null && !candidates.isEmpty()) {
-                    JsonObject firstCandidate = candidates.get(0).getAsJsonObject();
-                    if (firstCandidate.has("content")) {
-                        JsonObject content = firstCandidate.getAsJsonObject("content");
-                        JsonArray parts = content.getAsJsonArray("parts");
-                        if (parts != null && !parts.isEmpty()) {
-                            JsonObject firstPart = parts.get(0).getAsJsonObject();
-                            if (firstPart.has("text")) {
-                                String output = firstPart.get("text").getAsString();
-                                return extractJsonContent(output, responseBody);
+            httpClient.execute(httpPost, response -> {
+                int statusCode = response.getCode();
+                if (statusCode < 200 || statusCode >= 300) {
+                    throw new CrawlerException("AI API returned error: HTTP " + statusCode);
+                }
+
+                ServerSentEvents.read(new InputStreamReader(response.getEntity().getContent(), StandardCharsets.UTF_8),
+                        data -> {
+                            String delta = extractDeltaText(data);
+                            if (!delta.isEmpty()) {
+                                text.append(delta);
+                                if (onText != null) {
+                                    onText.accept(delta);
+                                }
                             }
-                        }
+                        });
+                return null;
+            });
+        } catch (IOException e) {
+            throw new CrawlerException("Failed to stream AI API: " + e.getMessage(), e);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Gemini: models/x:generateContent → models/x:streamGenerateContent?alt=sse
+     * (URL khác, vd. stub/proxy, được dùng nguyên vẹn và phải tự trả về SSE)
+     */
+    private static String streamUrl(String url) {
+        String streamUrl = url.replace(":generateContent", ":streamGenerateContent");
+        if (!streamUrl.contains("alt=")) {
+            streamUrl += (streamUrl.contains("?") ? "&" : "?") + "alt=sse";
+        }
+        return streamUrl;
+    }
+
+    /**
+     * Request generateContent (body dùng chung cho endpoint thường và streaming)
+     */
+    private HttpPost newRequest(String url, String instruction, String content) {
+        String targetUrl = url;
+        if (apiKey != null && !apiKey.isEmpty() && !url.contains("key=")) {
+            targetUrl = url + (url.contains("?") ? "&" : "?") + "key=" + apiKey;
+        }
+
+        HttpPost httpPost = new HttpPost(targetUrl);
+
+        JsonObject requestBody = new JsonObject();
+
+        if (instruction != null && !instruction.isEmpty()) {
+            JsonObject systemInstruction = new JsonObject();
+            JsonArray systemParts = new JsonArray();
+            JsonObject systemText = new JsonObject();
+            systemText.addProperty("text", instruction);
+            systemParts.add(systemText);
+            systemInstruction.add("parts", systemParts);
+            requestBody.add("system_instruction", systemInstruction);
+        }
+
+        JsonArray contents = new JsonArray();
+        JsonObject userContent = new JsonObject();
+        JsonArray parts = new JsonArray();
+        JsonObject userText = new JsonObject();
+        userText.addProperty("text", content);
+        parts.add(userText);
+        userContent.add("parts", parts);
+        contents.add(userContent);
+        requestBody.add("contents", contents);
+
+        httpPost.setEntity(new StringEntity(gson.toJson(requestBody), ContentType.APPLICATION_JSON));
+        return httpPost;
+    }
+
+    private JsonObject parseAiResponse(String responseBody) throws CrawlerException {
+        return parseModelObject(extractModelText(responseBody), responseBody);
+    }
+
+    private JsonObject parseModelObject(String modelText, String rawResponse) throws CrawlerException {
+        try {
+            return extractJsonContent(modelText, rawResponse).getAsJsonObject();
+        } catch (Exception e) {
+            throw new CrawlerException("Failed to parse AI response: " + e.getMessage() +
+                    "\nResponse body: " + rawResponse, e);
+        }
+    }
+
+    private JsonObject[] parseBatchResponse(String responseBody, int size) throws CrawlerException {
+        return parseBatchItems(extractModelText(responseBody), responseBody, size);
+    }
+
+    /**
+     * Ghép kết quả batch về đúng post theo "index"; chấp nhận cả mảng bọc trong object (vd. {"results":[...]})
+     */
+    private JsonObject[] parseBatchItems(String modelText, String rawResponse, int size) throws CrawlerException {
+        JsonElement parsed;
+        try {
+            parsed = extractJsonContent(modelText, rawResponse);
+        } catch (Exception e) {
+            throw new CrawlerException("Failed to parse AI batch response: " + e.getMessage() +
+                    "\nResponse body: " + rawResponse, e);
+        }
+
+        JsonArray items = null;
+        if (parsed.isJsonArray()) {
+            items = parsed.getAsJsonArray();
+        } else if (parsed.isJsonObject()) {
+            for (Map.Entry<String, JsonElement> field : parsed.getAsJsonObject().entrySet()) {
+                if (field.getValue().isJsonArray()) {
+                    items = field.getValue().getAsJsonArray();
+                    break;
+                }
+            }
+        }
+        if (items == null) {
+            throw new CrawlerException("AI batch response is not a JSON array\nResponse body: " + rawResponse);
+        }
+
+        JsonObject[] results = new JsonObject[size];
+        for (JsonElement item : items) {
+            if (!item.isJsonObject()) {
+                continue;
+            }
+            JsonObject object = item.getAsJsonObject();
+            int i = batchIndex(object, size);
+            if (i >= 0 && results[i] == null) {
+                results[i] = object;
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Tách "index" khỏi một phần tử batch
+     *
+     * @return Vị trí hợp lệ trong [0, size), -1 nếu thiếu/sai
+     */
+    private static int batchIndex(JsonObject item, int size) {
+        JsonElement index = item.remove("index");
+        if (index == null || !index.isJsonPrimitive() || !index.getAsJsonPrimitive().isNumber()) {
+            return -1;
+        }
+        int i = index.getAsInt();
+        return i >= 0 && i < size ? i : -1;
+    }
+
+    /**
+     * Đoạn text mới trong MỘT event stream (Gemini "candidates[0].content.parts", kiểu OpenAI "choices[0].delta")
+     */
+    private static String extractDeltaText(String data) throws CrawlerException {
+        if (data.isBlank() || "[DONE]".equals(data.strip())) {
+            return "";
+        }
+        JsonObject chunk;
+        try {
+            chunk = JsonParser.parseString(data).getAsJsonObject();
+        } catch (RuntimeException e) {
+            throw new CrawlerException("Invalid AI stream event: " + data, e);
+        }
+        if (chunk.has("error")) {
+            throw new CrawlerException("AI stream returned error: " + chunk.get("error"));
+        }
+
+        StringBuilder text = new StringBuilder();
+        if (chunk.has("candidates")) {
+            JsonArray candidates = chunk.getAsJsonArray("candidates");
+            JsonObject content = candidates.isEmpty() ? null : candidates.get(0).getAsJsonObject().getAsJsonObject("content");
+            JsonArray parts = content == null ? null : content.getAsJsonArray("parts");
+            if (parts != null) {
+                for (JsonElement part : parts) {
+                    JsonElement partText = part.getAsJsonObject().get("text");
+                    if (partText != null && !partText.isJsonNull()) {
+                        text.append(partText.getAsString());
                     }
                 }
             }
+        } else if (chunk.has("choices")) {
+            JsonArray choices = chunk.getAsJsonArray("choices");
+            JsonObject delta = choices.isEmpty() ? null : choices.get(0).getAsJsonObject().getAsJsonObject("delta");
+            JsonElement deltaText = delta == null ? null : delta.get("content");
+            if (deltaText != null && !deltaText.isJsonNull()) {
+                text.append(deltaText.getAsString());
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Lấy phần text model sinh ra từ response (Gemini "candidates" hoặc kiểu OpenAI "choices")
+     */
+    private String extractModelText(String responseBody) {
+        JsonObject wrapper = JsonParser.parseString(responseBody).getAsJsonObject();
 
-            if (wrapper.has("choices")) {
-                JsonArray choices = wrapper.getAsJsonArray("choices");
-                if (!choices.isEmpty()) {
-                    JsonObject firstChoice = choices.get(0).getAsJsonObject();
-                    if (firstChoice.has("message")) {
-                        JsonObject message = firstChoice.getAsJsonObject("message");
-                        if (message.has("content")) {
-                            String output = message.get("content").getAsString();
-                            return extractJsonContent(output, responseBody);
+        // Google Generative Language API response format
+        if (wrapper.has("candidates")) {
+            JsonArray candidates = wrapper.getAsJsonArray("candidates");
+            if (candidates != null && !candidates.isEmpty()) {
+                JsonObject firstCandidate = candidates.get(0).getAsJsonObject();
+                if (firstCandidate.has("content")) {
+                    JsonObject content = firstCandidate.getAsJsonObject("content");
+                    JsonArray parts = content.getAsJsonArray("parts");
+                    if (parts != null && !parts.isEmpty()) {
+                        JsonObject firstPart = parts.get(0).getAsJsonObject();
+                        if (firstPart.has("text")) {
+                            return firstPart.get("text").getAsString();
                         }
                     }
                 }
             }
+        }
 
-            return extractJsonContent(responseBody, responseBody);
-
-        } catch (Exception e) {
-            throw new CrawlerException("Failed to parse AI response: " + e.getMessage() +
-                    "\nResponse body: " + responseBody, e);
+        if (wrapper.has("choices")) {
+            JsonArray choices = wrapper.getAsJsonArray("choices");
+            if (!choices.isEmpty()) {
+                JsonObject firstChoice = choices.get(0).getAsJsonObject();
+                if (firstChoice.has("message")) {
+                    JsonObject message = firstChoice.getAsJsonObject("message");
+                    if (message.has("content")) {
+                        return message.get("content").getAsString();
+                    }
+                }
+            }
         }
+
+        return responseBody;
     }
 
-    private JsonObject extractJsonContent(String output, String rawResponse) throws CrawlerException {
+    private JsonElement extractJsonContent(String output, String rawResponse) throws CrawlerException {
         try {
             String jsonContent = output.trim();
             if (jsonContent.startsWith("```json")) {
@@ -264,7 +1021,7 @@ public class WebhookProcessor implements IDataProcessor<AbstractPost>, AutoClose
                 jsonContent = jsonContent.substring(0, jsonContent.length() - 3).trim();
             }
 
-            return JsonParser.parseString(jsonContent).getAsJsonObject();
+            return JsonParser.parseString(jsonContent);
         } catch (Exception e) {
             throw new CrawlerException("Failed to parse AI JSON content: " + e.getMessage() +
                     "\nResponse body: " + rawResponse, e);
@@ -272,156 +1029,56 @@ public class WebhookProcessor implements IDataProcessor<AbstractPost>, AutoClose
     }
 
 
+    /**
+     * Metadata heuristic cho mock mode: HeuristicClassifier phân loại trong MỘT lượt duyệt,
+     * field nào không có từ khóa nào khớp thì random như trước
+     */
     private JsonObject generateMockMetadata(String content) {
+        Map<String, String> classified = HeuristicClassifier.getDefault().classify(content);
         JsonObject metadata = new JsonObject();
-        String lowerContent = content.toLowerCase();
 
         // === 1. CAM_XUC_BAI_VIET (BẮT BUỘC) ===
-        String[] sentiments = {"tích cực", "tiêu cực", "trung lập"};
-        String sentiment;
-        if (lowerContent.contains("tốt") || lowerContent.contains("thành công") ||
-            lowerContent.contains("tăng") || lowerContent.contains("phát triển") ||
-            lowerContent.contains("ủng hộ") || lowerContent.contains("hỗ trợ") ||
-            lowerContent.contains("cứu") || lowerContent.contains("giúp")) {
-            sentiment = "tích cực";
-        } else if (lowerContent.contains("thiệt hại") || lowerContent.contains("mất mát") ||
-                   lowerContent.contains("sập") || lowerContent.contains("chết") ||
-                   lowerContent.contains("nguy hiểm") || lowerContent.contains("khủng khiếp")) {
-            sentiment = "tiêu cực";
-        } else {
-            // Random nếu không phân tích được
-            sentiment = sentiments[(int) (Math.random() * sentiments.length)];
-        }
-        metadata.addProperty("cam_xuc_bai_viet", sentiment);
+        metadata.addProperty("cam_xuc_bai_viet", classifiedOrRandom(classified, "cam_xuc_bai_viet",
+                "tích cực", "tiêu cực", "trung lập"));
 
         // === 2. TINH_THANH (BẮT BUỘC) ===
-        String location;
-        if (lowerContent.contains("hà nội") || lowerContent.contains("hanoi")) {
-            location = "Hà Nội";
-        } else if (lowerContent.contains("hồ chí minh") || lowerContent.contains("sài gòn") ||
-                   lowerContent.contains("saigon") || lowerContent.contains("tp.hcm") ||
-                   lowerContent.contains("tphcm")) {
-            location = "TP.HCM";
-        } else if (lowerContent.contains("đà nẵng") || lowerContent.contains("da nang")) {
-            location = "Đà Nẵng";
-        } else if (lowerContent.contains("hải phòng")) {
-            location = "Hải Phòng";
-        } else if (lowerContent.contains("cần thơ")) {
-            location = "Cần Thơ";
-        } else if (lowerContent.contains("quảng nam")) {
-            location = "Quảng Nam";
-        } else if (lowerContent.contains("quảng ngãi")) {
-            location = "Quảng Ngãi";
-        } else if (lowerContent.contains("nghệ an")) {
-            location = "Nghệ An";
-        } else if (lowerContent.contains("hà tĩnh")) {
-            location = "Hà Tĩnh";
-        } else if (lowerContent.contains("quảng bình")) {
-            location = "Quảng Bình";
-        } else if (lowerContent.contains("quảng trị")) {
-            location = "Quảng Trị";
-        } else if (lowerContent.contains("thừa thiên huế") || lowerContent.contains("huế")) {
-            location = "Thừa Thiên Huế";
-        } else if (lowerContent.contains("lào cai")) {
-            location = "Lào Cai";
-        } else if (lowerContent.contains("yên bái")) {
-            location = "Yên Bái";
-        } else if (lowerContent.contains("cao bằng")) {
-            location = "Cao Bằng";
-        } else if (lowerContent.contains("bắc giang")) {
-            location = "Bắc Giang";
-        } else {
-            // BỊA ĐẶT: Random một tỉnh miền Trung (vì chủ đề bão lũ)
-            String[] centralProvinces = {
+        // BỊA ĐẶT: Random một tỉnh miền Trung (vì chủ đề bão lũ)
+        metadata.addProperty("tinh_thanh", classifiedOrRandom(classified, HeuristicClassifier.LOCATION_FIELD,
                 "Quảng Nam", "Quảng Ngãi", "Bình Định", "Phú Yên", "Khánh Hòa",
                 "Ninh Thuận", "Bình Thuận", "Nghệ An", "Hà Tĩnh", "Quảng Bình",
-                "Quảng Trị", "Thừa Thiên Huế", "Đà Nẵng", "Gia Lai", "Kon Tum"
-            };
-            location = centralProvinces[(int) (Math.random() * centralProvinces.length)];
-        }
-        metadata.addProperty("tinh_thanh", location);
+                "Quảng Trị", "Thừa Thiên Huế", "Đà Nẵng", "Gia Lai", "Kon Tum"));
 
         // === 3. LOAI_BAI_VIET / FOCUS (BẮT BUỘC) ===
-        String focus;
-        if (lowerContent.contains("cứu hộ") || lowerContent.contains("cứu trợ") || 
-            lowerContent.contains("giúp đỡ") || lowerContent.contains("hỗ trợ") ||
-            lowerContent.contains("viện trợ") || lowerContent.contains("tiếp tế")) {
-            focus = "rescue";
-        } else if (lowerContent.contains("thiệt hại") || lowerContent.contains("mất mát") || 
-                   lowerContent.contains("tai nạn") || lowerContent.contains("sập") ||
-                   lowerContent.contains("hư hỏng") || lowerContent.contains("ngập")) {
-            focus = "damage";
-        } else {
+        String focus = classified.get("loai_bai_viet");
+        if (focus == null) {
             // BỊA ĐẶT: 70% damage, 30% rescue
             focus = (Math.random() < 0.7) ? "damage" : "rescue";
         }
         metadata.addProperty("loai_bai_viet", focus);
 
         // === 4. HUONG_BAI_VIET / DIRECTION (BẮT BUỘC) ===
-        String[] directions = {"urgent", "plan", "info"};
-        String direction;
-        if (lowerContent.contains("khẩn cấp") || lowerContent.contains("gấp") ||
-            lowerContent.contains("nguy hiểm") || lowerContent.contains("nghiêm trọng")) {
-            direction = "urgent";
-        } else if (lowerContent.contains("kế hoạch") || lowerContent.contains("dự kiến") ||
-                   lowerContent.contains("chuẩn bị") || lowerContent.contains("phòng ngừa")) {
-            direction = "plan";
-        } else if (lowerContent.contains("thông tin") || lowerContent.contains("cập nhật") ||
-                   lowerContent.contains("báo cáo")) {
-            direction = "info";
-        } else {
-            // BỊA ĐẶT: Random
-            direction = directions[(int) (Math.random() * directions.length)];
-        }
-        metadata.addProperty("huong_bai_viet", direction);
-        
+        metadata.addProperty("huong_bai_viet", classifiedOrRandom(classified, "huong_bai_viet",
+                "urgent", "plan", "info"));
+
         // === 5. DAMAGE_CATEGORY (LUÔN LUÔN CÓ GIÁ TRỊ - BẮT BUỘC) ===
-        String[] damageTypes = {"hạ tầng", "nông nghiệp", "nhà cửa", "sức khỏe"};
-        String damage;
-        if (lowerContent.contains("đường") || lowerContent.contains("cầu") ||
-            lowerContent.contains("điện") || lowerContent.contains("nước")) {
-            damage = "hạ tầng";
-        } else if (lowerContent.contains("lúa") || lowerContent.contains("rau") ||
-                   lowerContent.contains("cây trồng") || lowerContent.contains("vật nuôi")) {
-            damage = "nông nghiệp";
-        } else if (lowerContent.contains("nhà") || lowerContent.contains("mái") ||
-                   lowerContent.contains("tường") || lowerContent.contains("sập")) {
-            damage = "nhà cửa";
-        } else if (lowerContent.contains("bị thương") || lowerContent.contains("chết") ||
-                   lowerContent.contains("y tế") || lowerContent.contains("bệnh")) {
-            damage = "sức khỏe";
-        } else {
-            // BỊA ĐẶT: Random khi không phân tích được
-            damage = damageTypes[(int) (Math.random() * damageTypes.length)];
-        }
-        metadata.addProperty("damage_category", damage);
-        
+        metadata.addProperty("damage_category", classifiedOrRandom(classified, "damage_category",
+                "hạ tầng", "nông nghiệp", "nhà cửa", "sức khỏe"));
+
         // === 6. RESCUE_GOODS (LUÔN LUÔN CÓ GIÁ TRỊ - BẮT BUỘC) ===
-        String[] rescueTypes = {"thức ăn", "nước uống", "quần áo", "chỗ ở", "thuốc men"};
-        String rescue;
-        if (lowerContent.contains("gạo") || lowerContent.contains("mì") ||
-            lowerContent.contains("thực phẩm") || lowerContent.contains("ăn")) {
-            rescue = "thức ăn";
-        } else if (lowerContent.contains("nước") || lowerContent.contains("uống")) {
-            rescue = "nước uống";
-        } else if (lowerContent.contains("áo") || lowerContent.contains("quần") ||
-                   lowerContent.contains("chăn") || lowerContent.contains("mền")) {
-            rescue = "quần áo";
-        } else if (lowerContent.contains("nhà") || lowerContent.contains("tạm") ||
-                   lowerContent.contains("lều") || lowerContent.contains("trú")) {
-            rescue = "chỗ ở";
-        } else if (lowerContent.contains("thuốc") || lowerContent.contains("y tế") ||
-                   lowerContent.contains("băng") || lowerContent.contains("cứu thương")) {
-            rescue = "thuốc men";
-        } else {
-            // BỊA ĐẶT: Random khi không phân tích được
-            rescue = rescueTypes[(int) (Math.random() * rescueTypes.length)];
-        }
-        metadata.addProperty("rescue_goods", rescue);
+        metadata.addProperty("rescue_goods", classifiedOrRandom(classified, "rescue_goods",
+                "thức ăn", "nước uống", "quần áo", "chỗ ở", "thuốc men"));
 
         return metadata;
     }
 
+    /**
+     * Giá trị classifier tìm được, hoặc BỊA ĐẶT: random khi không phân tích được
+     */
+    private static String classifiedOrRandom(Map<String, String> classified, String field, String... fallback) {
+        String value = classified.get(field);
+        return value != null ? value : fallback[(int) (Math.random() * fallback.length)];
+    }
+
 
     private String normalizeDamageCategory(String value) {
         return normalizeChoice(value, DAMAGE_CATEGORY_MAP);
@@ -435,7 +1092,7 @@ public class WebhookProcessor implements IDataProcessor<AbstractPost>, AutoClose
         if (value == null || value.isBlank()) {
             return null;
         }
-        String key = stripAccents(value).toLowerCase().trim();
+        String key = VietnameseFolding.foldLower(value).trim();
         for (Map.Entry<String, String> entry : allowed.entrySet()) {
             if (key.contains(entry.getKey())) {
                 return entry.getValue();
@@ -444,13 +1101,9 @@ public class WebhookProcessor implements IDataProcessor<AbstractPost>, AutoClose
         return null;
     }
 
-    private String stripAccents(String input) {
-        return Normalizer.normalize(input, Normalizer.Form.NFD)
-                .replaceAll("\\p{M}+", "");
-    }
-
     @Override
     public void close() {
+        enrichExecutor.shutdownNow();
         try {
             if (httpClient != null) {
                 httpClient.close();
@@ -0,0 +1,342 @@
+package com.crawler.repository;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import com.crawler.config.CrawlerConfig;
+import com.crawler.model.AbstractPost;
+
+/**
+ * CachingPostRepository - DECORATOR cho IPostRepository (L1 cache trong RAM)
+ *
+ * DECORATOR PATTERN:
+ * - Bọc một IPostRepository bất kỳ (thường là SQLitePostRepository = L2 bền vững)
+ * - Service Layer KHÔNG biết có tầng cache này (vẫn chỉ thấy IPostRepository)
+ *
+ * EVICTION - SEGMENTED LRU (SLRU):
+ * - Entry mới vào segment "probation"
+ * - Được đọc lại lần nữa → thăng cấp lên segment "protected" (chiếm ~80% dung lượng)
+ * - Protected đầy → entry cũ nhất bị hạ cấp về probation
+ * - Probation đầy → entry cũ nhất bị loại bỏ
+ * → Keyword "nóng" (dashboard hỏi liên tục) không bị đẩy ra bởi các query chỉ chạy một lần.
+ *
+ * Dung lượng được tính theo số byte ƯỚC LƯỢNG của danh sách posts, không theo số entry.
+ *
+ * THREAD-SAFETY:
+ * - Mọi thao tác trên 2 segment được bảo vệ bởi một ReentrantLock (critical section rất ngắn)
+ * - Việc đọc L2 (disk + deserialize) diễn ra NGOÀI lock
+ *
+ * CÔ LẬP: mỗi lần đọc trả về list bất biến gồm BẢN SAO của các post (AbstractPost.copy()).
+ * Post là object mutable (enrich tại chỗ, cờ pending...) → caller được phép sửa bản của mình
+ * mà không làm hỏng entry trong L1 hay bản mà thread khác đang giữ. Đổi lại mỗi lần đọc tốn O(n) cấp phát.
+ */
+public class CachingPostRepository implements IPostRepository {
+
+    private static final double PROTECTED_RATIO = 0.8;
+
+    private final IPostRepository delegate;
+    private final long maxWeightBytes;
+    private final long protectedMaxBytes;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // accessOrder = true → LinkedHashMap tự sắp xếp theo thứ tự truy cập (LRU)
+    private final LinkedHashMap<String, Entry> probation = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Entry> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+    private long probationWeight;
+    private long protectedWeight;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    // Tăng mỗi lần invalidate: load nào bắt đầu TRƯỚC một lần save sẽ không được nạp bản cũ vào L1
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * @param delegate Repository tầng dưới (L2)
+     * @param maxWeightBytes Tổng dung lượng ước lượng tối đa của L1 (byte)
+     */
+    public CachingPostRepository(IPostRepository delegate, long maxWeightBytes) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("Delegate repository must be non-null!");
+        }
+        if (maxWeightBytes <= 0) {
+            throw new IllegalArgumentException("maxWeightBytes must be positive");
+        }
+        this.delegate = delegate;
+        this.maxWeightBytes = maxWeightBytes;
+        this.protectedMaxBytes = (long) (maxWeightBytes * PROTECTED_RATIO);
+        // Dữ liệu bị xóa ở L2 (drop partition) → bỏ luôn bản trong L1, trước mọi listener phía trên
+        delegate.addRemovalListener(this::invalidateMatching);
+    }
+
+    /**
+     * Constructor mặc định: dung lượng lấy từ CrawlerConfig
+     */
+    public CachingPostRepository(IPostRepository delegate) {
+        this(delegate, CrawlerConfig.getL1CacheMaxBytes());
+    }
+
+    /**
+     * Ghi xuống L2 rồi INVALIDATE entry trong L1 (lần load sau sẽ đọc bản mới nhất từ L2)
+     */
+    @Override
+    public void save(List<? extends AbstractPost> posts, String keyword) {
+        delegate.save(posts, keyword);
+        invalidate(keyword);
+    }
+
+    @Override
+    public List<? extends AbstractPost> load(String keyword) {
+        Entry entry = lookup(keyword);
+        if (entry != null) {
+            hits.incrementAndGet();
+            return copies(entry.posts);
+        }
+
+        misses.incrementAndGet();
+        long generation = invalidations.get();
+        // Đọc L2 ngoài lock: disk I/O không chặn các thread đang đọc L1
+        List<? extends AbstractPost> loaded = delegate.load(keyword);
+        if (loaded == null) {
+            return null;
+        }
+
+        // L1 giữ các object vừa đọc, caller nhận bản sao
+        List<? extends AbstractPost> view = List.copyOf(loaded);
+        admit(keyword, new Entry(view, estimateWeight(view)), generation);
+        return copies(view);
+    }
+
+    @Override
+    public boolean isCached(String keyword) {
+        lock.lock();
+        try {
+            if (probation.containsKey(keyword) || protectedSegment.containsKey(keyword)) {
+                return true;
+            }
+        } finally {
+            lock.unlock();
+        }
+        return delegate.isCached(keyword);
+    }
+
+    @Override
+    public List<String> findKeys(String prefix) {
+        return delegate.findKeys(prefix);
+    }
+
+    /**
+     * Entry đang nằm trong L1 → stream từ RAM; ngược lại stream thẳng từ L2
+     * (KHÔNG nạp vào L1: streaming thường dùng cho dữ liệu lớn, đọc một lần)
+     */
+    @Override
+    public Stream<AbstractPost> stream(String keyword) {
+        Entry entry;
+        lock.lock();
+        try {
+            entry = protectedSegment.get(keyword);
+            if (entry == null) {
+                entry = probation.get(keyword);
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (entry != null) {
+            hits.incrementAndGet();
+            return entry.posts.stream().map(AbstractPost::copy);
+        }
+        return delegate.stream(keyword);
+    }
+
+    @Override
+    public Stream<AbstractPost> streamAll(String prefix) {
+        return delegate.streamAll(prefix);
+    }
+
+    /**
+     * Xóa một entry khỏi L1 (L2 không bị ảnh hưởng)
+     */
+    public void invalidate(String keyword) {
+        lock.lock();
+        try {
+            invalidations.incrementAndGet();
+            Entry removed = probation.remove(keyword);
+            if (removed != null) {
+                probationWeight -= removed.weight;
+            }
+            removed = protectedSegment.remove(keyword);
+            if (removed != null) {
+                protectedWeight -= removed.weight;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Xóa khỏi L1 mọi entry có key thỏa predicate (L2 không bị ảnh hưởng)
+     */
+    public void invalidateMatching(Predicate<String> removed) {
+        lock.lock();
+        try {
+            invalidations.incrementAndGet();
+            probation.entrySet().removeIf(entry -> {
+                boolean match = removed.test(entry.getKey());
+                if (match) {
+                    probationWeight -= entry.getValue().weight;
+                }
+                return match;
+            });
+            protectedSegment.entrySet().removeIf(entry -> {
+                boolean match = removed.test(entry.getKey());
+                if (match) {
+                    protectedWeight -= entry.getValue().weight;
+                }
+                return match;
+            });
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void addRemovalListener(Consumer<Predicate<String>> listener) {
+        delegate.addRemovalListener(listener);
+    }
+
+    @Override
+    public void flush() {
+        delegate.flush();
+    }
+
+    /**
+     * Thống kê đơn giản để theo dõi hiệu quả L1
+     */
+    public String getStats() {
+        lock.lock();
+        try {
+            return String.format("L1[hits=%d, misses=%d, evictions=%d, entries=%d, weight=%d/%d bytes]",
+                    hits.get(), misses.get(), evictions.get(),
+                    probation.size() + protectedSegment.size(),
+                    probationWeight + protectedWeight, maxWeightBytes);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static List<AbstractPost> copies(List<? extends AbstractPost> posts) {
+        AbstractPost[] copied = new AbstractPost[posts.size()];
+        for (int i = 0; i < copied.length; i++) {
+            copied[i] = posts.get(i).copy();
+        }
+        return List.of(copied);
+    }
+
+    // ========== SLRU INTERNALS ==========
+
+    private Entry lookup(String keyword) {
+        lock.lock();
+        try {
+            Entry entry = protectedSegment.get(keyword);
+            if (entry != null) {
+                return entry;
+            }
+            entry = probation.remove(keyword);
+            if (entry == null) {
+                return null;
+            }
+            // Cache hit lần 2 → thăng cấp lên protected
+            probationWeight -= entry.weight;
+            protectedSegment.put(keyword, entry);
+            protectedWeight += entry.weight;
+            demoteOverflow();
+            return entry;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void admit(String keyword, Entry entry, long generation) {
+        if (entry.weight > maxWeightBytes) {
+            // Entry lớn hơn toàn bộ cache → không đáng giữ trong RAM
+            return;
+        }
+        lock.lock();
+        try {
+            if (generation != invalidations.get()) {
+                return; // Có save xen giữa → bản vừa đọc có thể đã cũ
+            }
+            if (protectedSegment.containsKey(keyword) || probation.containsKey(keyword)) {
+                return; // Thread khác đã nạp trước
+            }
+            probation.put(keyword, entry);
+            probationWeight += entry.weight;
+            evictOverflow();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Protected vượt quota → hạ cấp entry ít dùng nhất về probation
+     */
+    private void demoteOverflow() {
+        Iterator<Map.Entry<String, Entry>> it = protectedSegment.entrySet().iterator();
+        while (protectedWeight > protectedMaxBytes && it.hasNext()) {
+            Map.Entry<String, Entry> eldest = it.next();
+            it.remove();
+            protectedWeight -= eldest.getValue().weight;
+            probation.put(eldest.getKey(), eldest.getValue());
+            probationWeight += eldest.getValue().weight;
+        }
+        evictOverflow();
+    }
+
+    /**
+     * Tổng dung lượng vượt giới hạn → loại bỏ entry cũ nhất của probation
+     */
+    private void evictOverflow() {
+        Iterator<Map.Entry<String, Entry>> it = probation.entrySet().iterator();
+        while (probationWeight + protectedWeight > maxWeightBytes && it.hasNext()) {
+            Map.Entry<String, Entry> eldest = it.next();
+            it.remove();
+            probationWeight -= eldest.getValue().weight;
+            evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * Ước lượng số byte trên heap của danh sách posts
+     * (object header + các String chính, mỗi char 2 byte)
+     */
+    static long estimateWeight(List<? extends AbstractPost> posts) {
+        long total = 64;
+        for (AbstractPost post : posts) {
+            total += 160; // header AbstractPost + PostMetadata + các field primitive
+            total += stringWeight(post.getSourceId());
+            total += stringWeight(post.getContent());
+            total += stringWeight(post.getPlatform());
+            total += stringWeight(post.getSentiment());
+            total += stringWeight(post.getLocation());
+            total += stringWeight(post.getFocus());
+            total += stringWeight(post.getDirection());
+            total += stringWeight(post.getDamageCategory());
+            total += stringWeight(post.getRescueGoods());
+        }
+        return total;
+    }
+
+    private static long stringWeight(String value) {
+        return value == null ? 0 : 40 + 2L * value.length();
+    }
+
+    private record Entry(List<? extends AbstractPost> posts, long weight) {
+    }
+}
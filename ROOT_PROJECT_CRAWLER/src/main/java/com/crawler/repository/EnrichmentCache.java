@@ -0,0 +1,311 @@
+package com.crawler.repository;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+import com.crawler.config.CrawlerConfig;
+import com.crawler.util.StringUtils;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * EnrichmentCache - Cache BỀN VỮNG cho kết quả AI enrichment
+ *
+ * KEY = SHA-256(version + nội dung đã chuẩn hóa), trong đó version = hash(model + system prompt)
+ * → cùng một nội dung (crawl lại dưới keyword/khoảng ngày/nguồn khác, bài đăng lại) không tốn thêm AI call
+ * → đổi model hoặc prompt = version mới = mọi kết quả cũ tự động mất hiệu lực
+ *   (không bao giờ khớp key mới). Nhiều processor với prompt khác nhau dùng chung MỘT file được:
+ *   mở cache KHÔNG xóa row của version khác; dọn version cũ là bước bảo trì tường minh (purgeExcept)
+ *
+ * 2 TẦNG:
+ * - RAM: LRU giới hạn số entry (LinkedHashMap access-order)
+ * - SQLite: bảng enrichment_cache (key, version, metadata JSON, content đã chuẩn hóa)
+ *   trong file RIÊNG (mặc định enrichment_cache.db): putAll không tranh writer lock của SQLite với
+ *   write-behind / VACUUM của post cache. File mới được nạp một lần các kết quả cũ từ crawler_cache.db.
+ *
+ * DỮ LIỆU HUẤN LUYỆN: cột content (nếu có) + metadata là cặp (văn bản, nhãn do AI gán) → readLabeled()
+ * cho app/TrainLocalClassifier. Chỉ kết quả AI thật được lưu ở đây (mock mode không dùng cache).
+ *
+ * THREAD-SAFETY: tầng RAM được đồng bộ bằng monitor của chính map; mỗi thao tác SQLite dùng connection riêng.
+ */
+public class EnrichmentCache {
+
+    private static final String TABLE_NAME = "enrichment_cache";
+    // Phiên bản cũ để bảng cache chung file với SQLitePostRepository
+    private static final String LEGACY_DB_FILE = "crawler_cache.db";
+
+    private final String dbUrl;
+    private final String version;
+    private final Map<String, JsonObject> memory;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param dbFile File SQLite chứa bảng cache
+     * @param version Phiên bản prompt/model (xem versionOf)
+     * @param memoryEntries Số entry tối đa của tầng RAM
+     */
+    public EnrichmentCache(String dbFile, String version, int memoryEntries) {
+        if (memoryEntries <= 0) {
+            throw new IllegalArgumentException("memoryEntries must be positive");
+        }
+        this.dbUrl = "jdbc:sqlite:" + dbFile;
+        this.version = version;
+        this.memory = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, JsonObject> eldest) {
+                return size() > memoryEntries;
+            }
+        };
+        initDatabase(dbFile);
+    }
+
+    /**
+     * Constructor mặc định: file và dung lượng RAM lấy từ CrawlerConfig
+     */
+    public EnrichmentCache(String version) {
+        this(CrawlerConfig.getEnrichCacheDb(), version, CrawlerConfig.getEnrichCacheMemoryEntries());
+    }
+
+    /**
+     * Phiên bản của cấu hình AI: đổi bất kỳ phần nào → cache cũ mất hiệu lực
+     */
+    public static String versionOf(String... parts) {
+        return StringUtils.sha256Hex(String.join("\u0000", parts)).substring(0, 16);
+    }
+
+    private void initDatabase(String dbFile) {
+        try (Connection conn = DriverManager.getConnection(dbUrl);
+             Statement stmt = conn.createStatement()) {
+
+            boolean created = !hasTable(stmt, "main");
+            stmt.execute("CREATE TABLE IF NOT EXISTS " + TABLE_NAME + " (" +
+                "  key TEXT PRIMARY KEY," +
+                "  version TEXT NOT NULL," +
+                "  metadata TEXT NOT NULL," +
+                "  content TEXT," +
+                "  created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+                ")");
+
+            // Bảng tạo trước khi có cột content
+            boolean hasContent = false;
+            try (ResultSet columns = stmt.executeQuery("PRAGMA table_info(" + TABLE_NAME + ")")) {
+                while (columns.next()) {
+                    hasContent |= "content".equals(columns.getString("name"));
+                }
+            }
+            if (!hasContent) {
+                stmt.execute("ALTER TABLE " + TABLE_NAME + " ADD COLUMN content TEXT");
+            }
+            if (created) {
+                importLegacyRows(stmt, dbFile);
+            }
+
+        } catch (SQLException e) {
+            System.err.println("✗ Failed to initialize enrichment cache: " + e.getMessage());
+        }
+    }
+
+    private static boolean hasTable(Statement stmt, String schema) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("SELECT 1 FROM " + schema + ".sqlite_master WHERE type = 'table' AND name = '"
+                + TABLE_NAME + "'")) {
+            return rs.next();
+        }
+    }
+
+    /**
+     * File cache vừa được tạo → chép các kết quả AI đã có trong file dùng chung cũ (crawler_cache.db),
+     * tránh gọi AI lại cho nội dung đã enrich. Row trong file cũ giữ nguyên.
+     */
+    private static void importLegacyRows(Statement stmt, String dbFile) throws SQLException {
+        Path legacy = Paths.get(LEGACY_DB_FILE).toAbsolutePath();
+        try {
+            if (!Files.isRegularFile(legacy) || Files.isSameFile(legacy, Paths.get(dbFile))) {
+                return;
+            }
+        } catch (IOException e) {
+            return;
+        }
+        stmt.execute("ATTACH DATABASE '" + legacy.toString().replace("'", "''") + "' AS legacy");
+        try {
+            if (!hasTable(stmt, "legacy")) {
+                return;
+            }
+            int copied = stmt.executeUpdate("INSERT OR IGNORE INTO " + TABLE_NAME
+                    + " (key, version, metadata, content, created_at)"
+                    + " SELECT key, version, metadata, content, created_at FROM legacy." + TABLE_NAME);
+            System.out.println("✓ Imported " + copied + " enrichment results from " + LEGACY_DB_FILE);
+        } finally {
+            stmt.execute("DETACH DATABASE legacy");
+        }
+    }
+
+    /**
+     * Key cache của một nội dung (dùng để gom các post trùng nội dung)
+     */
+    public String keyOf(String content) {
+        return StringUtils.sha256Hex(version + "\n" + StringUtils.normalizeContent(content));
+    }
+
+    /**
+     * Tra cứu nhiều key: RAM trước, phần còn thiếu hỏi SQLite bằng một connection
+     *
+     * @return metadata theo vị trí key (bản sao, caller được phép sửa), null nếu chưa có
+     */
+    public JsonObject[] getAll(List<String> keys) {
+        JsonObject[] results = new JsonObject[keys.size()];
+        boolean anyMissing = false;
+        synchronized (memory) {
+            for (int i = 0; i < keys.size(); i++) {
+                JsonObject cached = memory.get(keys.get(i));
+                if (cached != null) {
+                    results[i] = cached.deepCopy();
+                } else {
+                    anyMissing = true;
+                }
+            }
+        }
+
+        if (anyMissing) {
+            try (Connection conn = DriverManager.getConnection(dbUrl);
+                 PreparedStatement pstmt = conn.prepareStatement("SELECT metadata FROM " + TABLE_NAME + " WHERE key = ?")) {
+                for (int i = 0; i < keys.size(); i++) {
+                    if (results[i] != null) {
+                        continue;
+                    }
+                    pstmt.setString(1, keys.get(i));
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        if (rs.next()) {
+                            JsonObject metadata = JsonParser.parseString(rs.getString(1)).getAsJsonObject();
+                            synchronized (memory) {
+                                memory.put(keys.get(i), metadata);
+                            }
+                            results[i] = metadata.deepCopy();
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                System.err.println("✗ Failed to read enrichment cache: " + e.getMessage());
+            }
+        }
+
+        for (JsonObject result : results) {
+            (result != null ? hits : misses).incrementAndGet();
+        }
+        return results;
+    }
+
+    /**
+     * Lưu nhiều kết quả trong MỘT transaction (không kèm nội dung)
+     */
+    public void putAll(Map<String, JsonObject> entries) {
+        putAll(entries, Map.of());
+    }
+
+    /**
+     * Lưu nhiều kết quả trong MỘT transaction, kèm nội dung gốc để làm dữ liệu huấn luyện
+     *
+     * @param contents key → nội dung đã gửi cho AI (được lưu ở dạng chuẩn hóa; key thiếu → content NULL)
+     */
+    public void putAll(Map<String, JsonObject> entries, Map<String, String> contents) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        synchronized (memory) {
+            entries.forEach((key, metadata) -> memory.put(key, metadata.deepCopy()));
+        }
+
+        try (Connection conn = DriverManager.getConnection(dbUrl)) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "INSERT OR REPLACE INTO " + TABLE_NAME + " (key, version, metadata, content) VALUES (?, ?, ?, ?)")) {
+                for (Map.Entry<String, JsonObject> entry : entries.entrySet()) {
+                    String content = contents.get(entry.getKey());
+                    pstmt.setString(1, entry.getKey());
+                    pstmt.setString(2, version);
+                    pstmt.setString(3, entry.getValue().toString());
+                    pstmt.setString(4, content != null ? StringUtils.normalizeContent(content) : null);
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            System.err.println("✗ Failed to write enrichment cache: " + e.getMessage());
+        }
+    }
+
+    /**
+     * BẢO TRÌ: xóa kết quả của mọi version KHÔNG nằm trong danh sách giữ lại
+     * (gọi khi chắc chắn không còn processor nào dùng prompt/model cũ trên file này)
+     *
+     * @param keepVersions Các version còn dùng (xem versionOf)
+     * @return Số row đã xóa
+     */
+    public static int purgeExcept(String dbFile, Collection<String> keepVersions) {
+        String placeholders = String.join(", ", Collections.nCopies(keepVersions.size(), "?"));
+        String sql = "DELETE FROM " + TABLE_NAME
+                + (keepVersions.isEmpty() ? "" : " WHERE version NOT IN (" + placeholders + ")");
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + dbFile);
+             PreparedStatement purge = conn.prepareStatement(sql)) {
+            int index = 1;
+            for (String version : keepVersions) {
+                purge.setString(index++, version);
+            }
+            int purged = purge.executeUpdate();
+            System.out.println("✓ Enrichment cache: dropped " + purged + " results of other prompts/models");
+            return purged;
+        } catch (SQLException e) {
+            System.err.println("✗ Failed to purge enrichment cache: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Duyệt mọi cặp (nội dung, metadata AI) có lưu nội dung, không phụ thuộc version
+     * (static: không cần biết version của prompt hiện tại)
+     *
+     * @return Số cặp đã duyệt
+     */
+    public static int readLabeled(String dbFile, BiConsumer<String, JsonObject> consumer) {
+        int count = 0;
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + dbFile);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT content, metadata FROM " + TABLE_NAME
+                     + " WHERE content IS NOT NULL ORDER BY key")) {
+            while (rs.next()) {
+                consumer.accept(rs.getString(1), JsonParser.parseString(rs.getString(2)).getAsJsonObject());
+                count++;
+            }
+        } catch (SQLException e) {
+            System.err.println("✗ Failed to read labeled enrichment results: " + e.getMessage());
+        }
+        return count;
+    }
+
+    /**
+     * Thống kê hit/miss (phục vụ log)
+     */
+    public String getStats() {
+        return String.format("hits=%d, misses=%d", hits.get(), misses.get());
+    }
+}
@@ -0,0 +1,309 @@
+package com.crawler.repository;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import com.crawler.config.CrawlerConfig;
+
+/**
+ * EnrichmentJobStore - Hàng đợi enrich BỀN VỮNG (SQLite), mỗi job là một cache key (segment bài thô)
+ *
+ * Dùng cho ingest hai pha: PostService lưu bài thô của một gap rồi ghi job vào đây,
+ * BackgroundEnricher lấy job ra enrich và ghi đè segment. Job còn trong bảng = segment chưa enrich xong,
+ * nên trạng thái "pending" sống sót qua restart mà không cần đổi định dạng lưu post.
+ *
+ * VÒNG ĐỜI MỘT JOB:
+ * - staged: đã ghi TRƯỚC khi lưu segment (crash giữa hai bước không làm mất job)
+ * - pending: segment đã lưu, chờ tới next_attempt_at
+ * - running: đang được enrich
+ * - failed: vượt số lần thử tối đa
+ * - hoàn tất → xóa khỏi bảng
+ *
+ * OWNER: crawler + chuỗi processor sở hữu segment → mỗi BackgroundEnricher chỉ lấy job của chuỗi của nó.
+ *
+ * Mỗi thao tác mở một connection riêng (như EnrichmentCache) → thread-safe.
+ */
+public class EnrichmentJobStore {
+
+    private static final String TABLE_NAME = "enrichment_jobs";
+
+    public static final String STAGED = "staged";
+    public static final String PENDING = "pending";
+    public static final String RUNNING = "running";
+    public static final String FAILED = "failed";
+
+    private final String dbUrl;
+
+    /**
+     * Job được lấy ra để chạy: key + số lần đã thất bại trước đó
+     */
+    public record Job(String key, int attempts) {
+    }
+
+    public EnrichmentJobStore(String dbFile) {
+        this.dbUrl = "jdbc:sqlite:" + dbFile;
+        initDatabase();
+    }
+
+    /**
+     * Constructor mặc định: file lấy từ CrawlerConfig
+     */
+    public EnrichmentJobStore() {
+        this(CrawlerConfig.getIngestQueueDb());
+    }
+
+    private void initDatabase() {
+        try (Connection conn = DriverManager.getConnection(dbUrl);
+             Statement stmt = conn.createStatement()) {
+
+            stmt.execute("CREATE TABLE IF NOT EXISTS " + TABLE_NAME + " (" +
+                "  cache_key TEXT PRIMARY KEY," +
+                "  owner TEXT NOT NULL," +
+                "  status TEXT NOT NULL," +
+                "  attempts INTEGER NOT NULL DEFAULT 0," +
+                "  next_attempt_at INTEGER NOT NULL DEFAULT 0," +
+                "  last_error TEXT," +
+                "  updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+                ")");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_" + TABLE_NAME + "_due ON " + TABLE_NAME +
+                " (owner, status, next_attempt_at)");
+
+        } catch (SQLException e) {
+            System.err.println("✗ Failed to initialize enrichment queue: " + e.getMessage());
+        }
+    }
+
+    // ========== GHI JOB (PostService) ==========
+
+    /**
+     * Ghi job ở trạng thái staged, TRƯỚC khi lưu segment (ghi lại segment cũ → job làm lại từ đầu)
+     *
+     * @return false nếu không ghi được (caller nên enrich ngay thay vì bỏ mặc segment thô)
+     */
+    public boolean stage(String key, String owner) {
+        return update("INSERT OR REPLACE INTO " + TABLE_NAME +
+                " (cache_key, owner, status, attempts, next_attempt_at, last_error, updated_at)" +
+                " VALUES (?, ?, '" + STAGED + "', 0, 0, NULL, CURRENT_TIMESTAMP)", key, owner) > 0;
+    }
+
+    /**
+     * Segment đã được lưu → job sẵn sàng chạy ngay
+     */
+    public void release(String key) {
+        update("UPDATE " + TABLE_NAME + " SET status = '" + PENDING + "', updated_at = CURRENT_TIMESTAMP" +
+                " WHERE cache_key = ? AND status = '" + STAGED + "'", key);
+    }
+
+    // ========== CHẠY JOB (BackgroundEnricher) ==========
+
+    /**
+     * Khôi phục sau restart cho một owner:
+     * - staged: segment đã lưu → pending, chưa lưu → xóa (gap sẽ được crawl lại)
+     * - running (bị ngắt giữa chừng) và failed → pending, chạy lại ngay với bộ đếm lần thử mới
+     *
+     * @param segmentExists Kiểm tra segment của một key đã có trong repository chưa
+     * @return Số job pending sau khi khôi phục
+     */
+    public int recover(String owner, Predicate<String> segmentExists) {
+        try (Connection conn = DriverManager.getConnection(dbUrl)) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement staged = conn.prepareStatement(
+                     "SELECT cache_key FROM " + TABLE_NAME + " WHERE owner = ? AND status = '" + STAGED + "'");
+                 PreparedStatement drop = conn.prepareStatement(
+                     "DELETE FROM " + TABLE_NAME + " WHERE cache_key = ?");
+                 PreparedStatement requeue = conn.prepareStatement(
+                     "UPDATE " + TABLE_NAME + " SET status = '" + PENDING + "', attempts = 0, next_attempt_at = 0," +
+                     " updated_at = CURRENT_TIMESTAMP WHERE owner = ? AND status IN ('" + STAGED + "', '" +
+                     RUNNING + "', '" + FAILED + "')");
+                 PreparedStatement count = conn.prepareStatement(
+                     "SELECT COUNT(*) FROM " + TABLE_NAME + " WHERE owner = ? AND status = '" + PENDING + "'")) {
+
+                staged.setString(1, owner);
+                try (ResultSet rs = staged.executeQuery()) {
+                    while (rs.next()) {
+                        String key = rs.getString(1);
+                        if (!segmentExists.test(key)) {
+                            drop.setString(1, key);
+                            drop.addBatch();
+                        }
+                    }
+                }
+                drop.executeBatch();
+
+                requeue.setString(1, owner);
+                requeue.executeUpdate();
+
+                count.setString(1, owner);
+                int pending;
+                try (ResultSet rs = count.executeQuery()) {
+                    pending = rs.next() ? rs.getInt(1) : 0;
+                }
+                conn.commit();
+                return pending;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            System.err.println("✗ Failed to recover enrichment queue: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Lấy job pending đến hạn sớm nhất của owner và chuyển sang running
+     *
+     * @return null nếu chưa có job nào đến hạn
+     */
+    public Job claimDue(String owner, long nowMillis) {
+        try (Connection conn = DriverManager.getConnection(dbUrl)) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement select = conn.prepareStatement(
+                     "SELECT cache_key, attempts FROM " + TABLE_NAME + " WHERE owner = ? AND status = '" + PENDING +
+                     "' AND next_attempt_at <= ? ORDER BY next_attempt_at LIMIT 1");
+                 PreparedStatement claim = conn.prepareStatement(
+                     "UPDATE " + TABLE_NAME + " SET status = '" + RUNNING + "', updated_at = CURRENT_TIMESTAMP" +
+                     " WHERE cache_key = ? AND status = '" + PENDING + "'")) {
+
+                select.setString(1, owner);
+                select.setLong(2, nowMillis);
+                Job job = null;
+                try (ResultSet rs = select.executeQuery()) {
+                    if (rs.next()) {
+                        job = new Job(rs.getString(1), rs.getInt(2));
+                    }
+                }
+                if (job != null) {
+                    claim.setString(1, job.key());
+                    if (claim.executeUpdate() == 0) {
+                        job = null;
+                    }
+                }
+                conn.commit();
+                return job;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            System.err.println("✗ Failed to claim enrichment job: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Thời điểm (epoch ms) job pending sớm nhất của owner đến hạn
+     *
+     * @return Long.MAX_VALUE nếu không còn job pending
+     */
+    public long nextDueAt(String owner) {
+        try (Connection conn = DriverManager.getConnection(dbUrl);
+             PreparedStatement pstmt = conn.prepareStatement(
+                 "SELECT MIN(next_attempt_at) FROM " + TABLE_NAME + " WHERE owner = ? AND status = '" + PENDING + "'")) {
+            pstmt.setString(1, owner);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    long next = rs.getLong(1);
+                    return rs.wasNull() ? Long.MAX_VALUE : next;
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("✗ Failed to read enrichment queue: " + e.getMessage());
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Segment đã được enrich và ghi đè → xóa job
+     */
+    public void complete(String key) {
+        update("DELETE FROM " + TABLE_NAME + " WHERE cache_key = ?", key);
+    }
+
+    /**
+     * Job thất bại, thử lại sau (tăng bộ đếm lần thử)
+     */
+    public void retry(String key, String error, long nextAttemptAt) {
+        reschedule(key, PENDING, 1, error, nextAttemptAt);
+    }
+
+    /**
+     * Job chưa xong vì lý do không phải lỗi (vd. hết quota AI) → hẹn lại, KHÔNG tăng bộ đếm lần thử
+     */
+    public void postpone(String key, long nextAttemptAt) {
+        reschedule(key, PENDING, 0, null, nextAttemptAt);
+    }
+
+    /**
+     * Hết số lần thử → failed (segment giữ nguyên bài thô, chạy lại khi BackgroundEnricher khởi động lại)
+     */
+    public void fail(String key, String error) {
+        reschedule(key, FAILED, 1, error, 0);
+    }
+
+    private void reschedule(String key, String status, int attemptDelta, String error, long nextAttemptAt) {
+        try (Connection conn = DriverManager.getConnection(dbUrl);
+             PreparedStatement pstmt = conn.prepareStatement(
+                 "UPDATE " + TABLE_NAME + " SET status = ?, attempts = attempts + ?, last_error = ?," +
+                 " next_attempt_at = ?, updated_at = CURRENT_TIMESTAMP WHERE cache_key = ?")) {
+            pstmt.setString(1, status);
+            pstmt.setInt(2, attemptDelta);
+            pstmt.setString(3, error);
+            pstmt.setLong(4, nextAttemptAt);
+            pstmt.setString(5, key);
+            pstmt.executeUpdate();
+        } catch (SQLException e) {
+            System.err.println("✗ Failed to update enrichment job: " + e.getMessage());
+        }
+    }
+
+    // ========== TRA CỨU ==========
+
+    /**
+     * Trạng thái của các key còn trong hàng đợi (key đã enrich xong không có mặt)
+     *
+     * @return key → status, theo thứ tự của keys
+     */
+    public Map<String, String> statusOf(Collection<String> keys) {
+        Map<String, String> statuses = new LinkedHashMap<>();
+        if (keys.isEmpty()) {
+            return statuses;
+        }
+        try (Connection conn = DriverManager.getConnection(dbUrl);
+             PreparedStatement pstmt = conn.prepareStatement(
+                 "SELECT status FROM " + TABLE_NAME + " WHERE cache_key = ?")) {
+            for (String key : keys) {
+                pstmt.setString(1, key);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (rs.next()) {
+                        statuses.put(key, rs.getString(1));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("✗ Failed to read enrichment queue: " + e.getMessage());
+        }
+        return statuses;
+    }
+
+    private int update(String sql, String... params) {
+        try (Connection conn = DriverManager.getConnection(dbUrl);
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) {
+                pstmt.setString(i + 1, params[i]);
+            }
+            return pstmt.executeUpdate();
+        } catch (SQLException e) {
+            System.err.println("✗ Failed to update enrichment queue: " + e.getMessage());
+            return 0;
+        }
+    }
+}
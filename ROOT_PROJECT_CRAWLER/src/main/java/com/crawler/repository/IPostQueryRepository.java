@@ -0,0 +1,40 @@
+package com.crawler.repository;
+
+import java.util.List;
+
+import com.crawler.model.AbstractPost;
+
+/**
+ * IPostQueryRepository - CONTRACT cho truy vấn có cấu trúc trên từng post đã lưu
+ *
+ * ISP: Tách khỏi IPostRepository - storage nào có index theo post (SQLite post_index)
+ * mới implement; câu hỏi kiểu "bài tiêu cực ở Quảng Nam tuần này, xếp theo tương tác"
+ * được lọc ngay trong database thay vì load cả cache blob rồi lọc bằng Java.
+ */
+public interface IPostQueryRepository {
+
+    /**
+     * Chạy truy vấn và trả về MỘT trang kết quả
+     *
+     * @param query Bộ lọc + thứ tự + kích thước trang + cursor
+     * @return Trang kết quả và cursor cho trang tiếp theo
+     */
+    Page query(PostQuery query);
+
+    /**
+     * Một trang kết quả. next == null nghĩa là đã hết dữ liệu.
+     */
+    record Page(List<AbstractPost> posts, PageCursor next) {
+
+        public boolean hasMore() {
+            return next != null;
+        }
+    }
+
+    /**
+     * Vị trí của post cuối trang: giá trị cột sắp xếp (epoch day hoặc engagement,
+     * null nếu post không có ngày) + id để phân định các post trùng giá trị.
+     */
+    record PageCursor(Long sortKey, long id) {
+    }
+}
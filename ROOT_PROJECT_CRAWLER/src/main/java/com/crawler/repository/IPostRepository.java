@@ -2,6 +2,10 @@ package com.crawler.repository;
 
 import com.crawler.model.AbstractPost;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 /**
  * IPostRepository - CONTRACT cho Data Access Layer (DAL)
@@ -26,6 +30,17 @@ public interface IPostRepository {
      */
     void save(List<? extends AbstractPost> posts, String keyword);
 
+    /**
+     * Lưu nhiều cache entry cùng lúc (key → posts).
+     * Mặc định: gọi save() cho từng entry; repository có transaction nên override
+     * để ghi cả batch trong MỘT transaction.
+     *
+     * @param batch Các entry cần lưu, theo thứ tự ghi
+     */
+    default void saveAll(Map<String, ? extends List<? extends AbstractPost>> batch) {
+        batch.forEach((keyword, posts) -> save(posts, keyword));
+    }
+
     /**
      * Load danh sách posts từ storage
      * POLYMORPHISM: Trả về List<? extends AbstractPost> (có thể là NewsPost hoặc SocialPost)
@@ -42,4 +57,63 @@ public interface IPostRepository {
      * @return true nếu đã có dữ liệu trong cache
      */
     boolean isCached(String keyword);
+
+    /**
+     * Liệt kê các cache key bắt đầu bằng prefix cho trước
+     * (dùng để dựng lại chỉ mục khoảng ngày đã cache của một keyword + nguồn)
+     *
+     * @param prefix Prefix của cache key
+     * @return Danh sách key khớp, rỗng nếu repository không hỗ trợ
+     */
+    default List<String> findKeys(String prefix) {
+        return List.of();
+    }
+
+    /**
+     * Đọc posts của một cache key dưới dạng STREAM (không cần materialize cả list).
+     * Stream giữ tài nguyên (connection/cursor) → BẮT BUỘC đóng bằng try-with-resources.
+     *
+     * Mặc định: fallback về load() cho các repository không hỗ trợ streaming.
+     *
+     * @param keyword Cache key
+     * @return Stream posts, rỗng nếu không tìm thấy
+     */
+    default Stream<AbstractPost> stream(String keyword) {
+        List<? extends AbstractPost> posts = load(keyword);
+        return posts == null ? Stream.empty() : posts.stream().map(AbstractPost.class::cast);
+    }
+
+    /**
+     * Đọc posts của MỌI cache key bắt đầu bằng prefix dưới dạng STREAM
+     * (prefix rỗng = toàn bộ dữ liệu), theo thứ tự key. Cũng phải được đóng sau khi dùng.
+     *
+     * @param prefix Prefix của cache key
+     * @return Stream posts
+     */
+    default Stream<AbstractPost> streamAll(String prefix) {
+        return findKeys(prefix).stream().flatMap(this::stream);
+    }
+
+    /**
+     * Đăng ký callback khi dữ liệu bị xóa NGOÀI save() (vd. ShardedPostRepository.dropPartition)
+     * → các lớp cache phía trên (L1, CoverageIndex) bỏ những key bị ảnh hưởng.
+     * Decorator phải chuyển tiếp đăng ký xuống delegate.
+     *
+     * Mặc định: repository không tự xóa dữ liệu → không bao giờ gọi listener.
+     *
+     * @param listener Nhận predicate: true với cache key đã mất (toàn bộ hoặc một phần) dữ liệu
+     */
+    default void addRemovalListener(Consumer<Predicate<String>> listener) {
+    }
+
+    /**
+     * Durability barrier: chặn đến khi mọi save() đã gọi trước đó được ghi bền vững.
+     * Decorator phải chuyển tiếp xuống delegate.
+     *
+     * Mặc định: save() đã ghi đồng bộ → không cần chờ.
+     *
+     * @throws com.crawler.client.CrawlerException Nếu dữ liệu chưa ghi được (vd. write-behind đang lỗi)
+     */
+    default void flush() {
+    }
 }
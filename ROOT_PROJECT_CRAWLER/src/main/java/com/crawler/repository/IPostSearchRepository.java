@@ -0,0 +1,30 @@
+package com.crawler.repository;
+
+import java.util.List;
+
+import com.crawler.model.AbstractPost;
+
+/**
+ * IPostSearchRepository - CONTRACT cho tìm kiếm LOCAL trên posts đã lưu
+ *
+ * ISP: Tách khỏi IPostRepository - không phải storage nào cũng có full-text index,
+ * Service chỉ phụ thuộc vào interface này khi thực sự cần tìm kiếm.
+ *
+ * Cho phép trả lời keyword mới từ dữ liệu đã có trên disk thay vì crawl lại.
+ */
+public interface IPostSearchRepository {
+
+    /**
+     * Tìm kiếm full-text (title + content), không phân biệt dấu tiếng Việt
+     *
+     * @param query Từ khóa + bộ lọc ngày/nền tảng + phân trang
+     * @return Các kết quả theo thứ tự liên quan giảm dần (BM25)
+     */
+    List<SearchHit> search(PostSearchQuery query);
+
+    /**
+     * Một kết quả tìm kiếm: post và điểm liên quan (càng cao càng liên quan)
+     */
+    record SearchHit(AbstractPost post, double score) {
+    }
+}
@@ -0,0 +1,395 @@
+package com.crawler.repository;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import com.crawler.model.AbstractPost;
+import com.crawler.model.NewsPost;
+import com.crawler.model.SocialPost;
+
+/**
+ * PostBinaryCodec - Định dạng nhị phân gọn cho danh sách posts (thay cho Gson JSON).
+ *
+ * SRP: Chỉ chịu trách nhiệm encode/decode List<AbstractPost> <-> byte[]
+ *
+ * LAYOUT (toàn bộ được nén Deflate):
+ *   magic (4 byte) | version (1 byte) | count (varint)
+ *   dictSize (varint) | dict strings (varint length + UTF-8)
+ *   offset index: count x int32 (offset của từng record, tính từ đầu vùng records)
+ *   records
+ *
+ * RECORD:
+ *   kind (1 byte: 1 = NewsPost, 2 = SocialPost)
+ *   sourceId, content (inline string) | platform (dict ref) | date (epoch-day, zigzag varint)
+ *   NewsPost: title (inline string), comments (varint) | SocialPost: reaction (varint)
+ *   sentiment, location, focus, direction, damageCategory, rescueGoods (dict ref)
+ *
+ * Giá trị lặp lại nhiều (platform + metadata) chỉ lưu MỘT lần trong dictionary;
+ * 0 luôn biểu diễn null (inline string: length + 1, dict ref: index + 1, date: zigzag + 1).
+ *
+ * decode() KHÔNG dựng toàn bộ object ngay: trả về List view, mỗi post chỉ được
+ * decode khi get(i) lần đầu (nhờ offset index), sau đó được giữ lại.
+ */
+public final class PostBinaryCodec {
+
+    private static final int MAGIC = 0x50535442; // "PSTB"
+    private static final byte VERSION = 1;
+    private static final byte KIND_NEWS = 1;
+    private static final byte KIND_SOCIAL = 2;
+
+    private PostBinaryCodec() {
+        throw new UnsupportedOperationException("Utility class cannot be instantiated");
+    }
+
+    // ========== ENCODE ==========
+
+    public static byte[] encode(List<? extends AbstractPost> posts) {
+        Map<String, Integer> dictionary = new LinkedHashMap<>();
+        ByteArrayOutputStream records = new ByteArrayOutputStream(Math.max(64, posts.size() * 128));
+        int[] offsets = new int[posts.size()];
+
+        for (int i = 0; i < posts.size(); i++) {
+            offsets[i] = records.size();
+            writeRecord(records, posts.get(i), dictionary);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(records.size() + 64 + offsets.length * 4);
+        writeInt(out, MAGIC);
+        out.write(VERSION);
+        writeVarLong(out, posts.size());
+        writeVarLong(out, dictionary.size());
+        for (String value : dictionary.keySet()) {
+            writeString(out, value);
+        }
+        for (int offset : offsets) {
+            writeInt(out, offset);
+        }
+        out.writeBytes(records.toByteArray());
+
+        return deflate(out.toByteArray());
+    }
+
+    private static void writeRecord(ByteArrayOutputStream out, AbstractPost post, Map<String, Integer> dictionary) {
+        if (post instanceof NewsPost news) {
+            out.write(KIND_NEWS);
+            writeCore(out, post, dictionary);
+            writeString(out, news.getTitle());
+            writeVarLong(out, news.getComments());
+        } else if (post instanceof SocialPost social) {
+            out.write(KIND_SOCIAL);
+            writeCore(out, post, dictionary);
+            writeVarLong(out, social.getReaction());
+        } else {
+            throw new IllegalArgumentException("Unsupported post type: " + post.getClass().getSimpleName());
+        }
+        writeRef(out, post.getSentiment(), dictionary);
+        writeRef(out, post.getLocation(), dictionary);
+        writeRef(out, post.getFocus(), dictionary);
+        writeRef(out, post.getDirection(), dictionary);
+        writeRef(out, post.getDamageCategory(), dictionary);
+        writeRef(out, post.getRescueGoods(), dictionary);
+    }
+
+    private static void writeCore(ByteArrayOutputStream out, AbstractPost post, Map<String, Integer> dictionary) {
+        writeString(out, post.getSourceId());
+        writeString(out, post.getContent());
+        writeRef(out, post.getPlatform(), dictionary);
+        LocalDate date = post.getPostDate();
+        writeVarLong(out, date == null ? 0 : zigzag(date.toEpochDay()) + 1);
+    }
+
+    private static void writeRef(ByteArrayOutputStream out, String value, Map<String, Integer> dictionary) {
+        if (value == null) {
+            writeVarLong(out, 0);
+            return;
+        }
+        Integer index = dictionary.computeIfAbsent(value, v -> dictionary.size());
+        writeVarLong(out, index + 1L);
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        if (value == null) {
+            writeVarLong(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length + 1L);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    // ========== DECODE ==========
+
+    /**
+     * Giải nén blob và trả về List view decode LAZY từng post
+     */
+    public static List<AbstractPost> decode(byte[] blob) {
+        ByteBuffer buffer = ByteBuffer.wrap(inflate(blob));
+        if (buffer.remaining() < 5 || buffer.getInt() != MAGIC) {
+            throw new IllegalArgumentException("Not a post blob (bad magic)");
+        }
+        byte version = buffer.get();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported post blob version: " + version);
+        }
+
+        int count = (int) readVarLong(buffer);
+        int dictSize = (int) readVarLong(buffer);
+        List<String> dictionary = new ArrayList<>(dictSize);
+        for (int i = 0; i < dictSize; i++) {
+            dictionary.add(readString(buffer));
+        }
+        int indexStart = buffer.position();
+        int recordsStart = indexStart + count * 4;
+
+        return new LazyPostList(buffer, dictionary, count, indexStart, recordsStart);
+    }
+
+    /**
+     * Decode TUẦN TỰ từ một InputStream (blob nén) mà không giải nén toàn bộ vào RAM.
+     * Chỉ giữ dictionary + offset index (4 byte/post) + một record tại mỗi thời điểm.
+     * Dùng cho streaming read (IPostRepository.stream).
+     */
+    public static Iterator<AbstractPost> iterate(InputStream compressed) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new InflaterInputStream(compressed)));
+        if (in.readInt() != MAGIC) {
+            throw new IllegalArgumentException("Not a post blob (bad magic)");
+        }
+        byte version = in.readByte();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported post blob version: " + version);
+        }
+
+        int count = (int) readVarLong(in);
+        int dictSize = (int) readVarLong(in);
+        List<String> dictionary = new ArrayList<>(dictSize);
+        for (int i = 0; i < dictSize; i++) {
+            dictionary.add(readString(in));
+        }
+        int[] offsets = new int[count];
+        for (int i = 0; i < count; i++) {
+            offsets[i] = in.readInt();
+        }
+
+        return new Iterator<>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < count;
+            }
+
+            @Override
+            public AbstractPost next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                try {
+                    // Độ dài record suy ra từ offset index; record cuối đọc tới hết stream
+                    byte[] record = next + 1 < count
+                            ? in.readNBytes(offsets[next + 1] - offsets[next])
+                            : in.readAllBytes();
+                    next++;
+                    return readRecord(ByteBuffer.wrap(record), dictionary);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+    }
+
+    private static AbstractPost readRecord(ByteBuffer buffer, List<String> dictionary) {
+        byte kind = buffer.get();
+        String sourceId = readString(buffer);
+        String content = readString(buffer);
+        String platform = readRef(buffer, dictionary);
+        long encodedDate = readVarLong(buffer);
+        LocalDate date = encodedDate == 0 ? null : LocalDate.ofEpochDay(unzigzag(encodedDate - 1));
+
+        AbstractPost post = switch (kind) {
+            case KIND_NEWS -> {
+                String title = readString(buffer);
+                int comments = (int) readVarLong(buffer);
+                yield new NewsPost(sourceId, date, title, content, platform, comments);
+            }
+            case KIND_SOCIAL -> new SocialPost(sourceId, content, platform, date, readVarLong(buffer));
+            default -> throw new IllegalArgumentException("Unknown post kind: " + kind);
+        };
+
+        post.setSentiment(readRef(buffer, dictionary));
+        post.setLocation(readRef(buffer, dictionary));
+        post.setFocus(readRef(buffer, dictionary));
+        post.setDirection(readRef(buffer, dictionary));
+        post.setDamageCategory(readRef(buffer, dictionary));
+        post.setRescueGoods(readRef(buffer, dictionary));
+        return post;
+    }
+
+    private static String readRef(ByteBuffer buffer, List<String> dictionary) {
+        long ref = readVarLong(buffer);
+        return ref == 0 ? null : dictionary.get((int) (ref - 1));
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        long length = readVarLong(buffer);
+        if (length == 0) {
+            return null;
+        }
+        int size = (int) (length - 1);
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), size, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + size);
+        return value;
+    }
+
+    private static long readVarLong(ByteBuffer buffer) {
+        long result = 0;
+        int shift = 0;
+        while (true) {
+            byte b = buffer.get();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+            shift += 7;
+        }
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long result = 0;
+        int shift = 0;
+        while (true) {
+            byte b = in.readByte();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+            shift += 7;
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        long length = readVarLong(in);
+        return length == 0 ? null : new String(in.readNBytes((int) (length - 1)), StandardCharsets.UTF_8);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    // ========== COMPRESSION ==========
+
+    private static byte[] deflate(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, raw.length / 3));
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(chunk);
+                out.write(chunk, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] compressed) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(compressed.length * 4);
+            byte[] chunk = new byte[8192];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(chunk);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalArgumentException("Truncated post blob");
+                }
+                out.write(chunk, 0, n);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Corrupted post blob: " + e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * List view chỉ đọc: decode post thứ i ở lần truy cập đầu tiên rồi giữ lại
+     * (post trả về là cùng một object ở các lần get sau, nên setter của processor vẫn có hiệu lực).
+     */
+    private static final class LazyPostList extends AbstractList<AbstractPost> implements RandomAccess {
+        private final ByteBuffer buffer;
+        private final List<String> dictionary;
+        private final int count;
+        private final int indexStart;
+        private final int recordsStart;
+        private final AbstractPost[] decoded;
+
+        LazyPostList(ByteBuffer buffer, List<String> dictionary, int count, int indexStart, int recordsStart) {
+            this.buffer = buffer;
+            this.dictionary = dictionary;
+            this.count = count;
+            this.indexStart = indexStart;
+            this.recordsStart = recordsStart;
+            this.decoded = new AbstractPost[count];
+        }
+
+        @Override
+        public synchronized AbstractPost get(int index) {
+            AbstractPost post = decoded[index];
+            if (post == null) {
+                int offset = buffer.getInt(indexStart + index * 4);
+                ByteBuffer record = buffer.duplicate();
+                record.position(recordsStart + offset);
+                post = readRecord(record, dictionary);
+                decoded[index] = post;
+            }
+            return post;
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+    }
+}
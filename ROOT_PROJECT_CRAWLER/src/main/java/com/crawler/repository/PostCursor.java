@@ -0,0 +1,154 @@
+package com.crawler.repository;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.crawler.client.CrawlerException;
+import com.crawler.model.AbstractPost;
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+
+/**
+ * PostCursor - Cursor forward-only trên ResultSet của bảng post_cache.
+ *
+ * SRP: Chỉ lo việc duyệt tuần tự các row (cột posts_json, posts_blob, ref_blob)
+ * và decode TỪNG post một, không bao giờ giữ cả danh sách trong RAM:
+ * - Row tham chiếu → ref_blob là MỘT post (post_index.post_blob)
+ * - Row binary → PostBinaryCodec.iterate (giải nén dạng stream)
+ * - Row JSON cũ → Gson JsonReader đọc từng phần tử của mảng
+ *
+ * Cursor sở hữu Connection/Statement/ResultSet và đóng tất cả trong close()
+ * (hoặc khi Stream tạo từ asStream() được đóng).
+ */
+final class PostCursor implements Iterator<AbstractPost>, AutoCloseable {
+
+    private final Connection conn;
+    private final PreparedStatement stmt;
+    private final ResultSet rs;
+    private final Gson gson;
+
+    private Iterator<AbstractPost> current = Collections.emptyIterator();
+    private JsonReader jsonReader;
+    private boolean exhausted;
+
+    PostCursor(Connection conn, PreparedStatement stmt, Gson gson) throws SQLException {
+        this.conn = conn;
+        this.stmt = stmt;
+        this.gson = gson;
+        this.rs = stmt.executeQuery();
+    }
+
+    @Override
+    public boolean hasNext() {
+        try {
+            while (!current.hasNext()) {
+                if (exhausted || !advanceRow()) {
+                    exhausted = true;
+                    return false;
+                }
+            }
+            return true;
+        } catch (SQLException | IOException e) {
+            throw new CrawlerException("Failed to read post cursor: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public AbstractPost next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return current.next();
+    }
+
+    private boolean advanceRow() throws SQLException, IOException {
+        closeJsonReader();
+        if (!rs.next()) {
+            return false;
+        }
+
+        byte[] ref = rs.getBytes("ref_blob");
+        if (ref != null) {
+            current = PostBinaryCodec.decode(ref).iterator();
+            return true;
+        }
+
+        InputStream blob = rs.getBinaryStream("posts_blob");
+        if (blob != null) {
+            current = PostBinaryCodec.iterate(blob);
+            return true;
+        }
+
+        Reader json = rs.getCharacterStream("posts_json");
+        // posts_json = '' → entry tham chiếu rỗng (không post nào)
+        PushbackReader peekable = json == null ? null : new PushbackReader(json);
+        int first = peekable == null ? -1 : peekable.read();
+        if (first < 0) {
+            current = Collections.emptyIterator();
+            return true;
+        }
+        peekable.unread(first);
+        JsonReader reader = new JsonReader(peekable);
+        reader.beginArray();
+        jsonReader = reader;
+        current = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                try {
+                    return reader.hasNext();
+                } catch (IOException e) {
+                    throw new CrawlerException("Failed to read cached JSON: " + e.getMessage(), e);
+                }
+            }
+
+            @Override
+            public AbstractPost next() {
+                return gson.fromJson(reader, AbstractPost.class);
+            }
+        };
+        return true;
+    }
+
+    private void closeJsonReader() throws IOException {
+        if (jsonReader != null) {
+            jsonReader.close();
+            jsonReader = null;
+        }
+    }
+
+    /**
+     * Bọc cursor thành Stream tuần tự; đóng Stream = đóng cursor
+     */
+    Stream<AbstractPost> asStream() {
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(this::close);
+    }
+
+    @Override
+    public void close() {
+        try {
+            closeJsonReader();
+        } catch (IOException e) {
+            System.err.println("✗ Failed to close JSON reader: " + e.getMessage());
+        }
+        try (conn; stmt; rs) {
+            // try-with-resources đóng theo thứ tự ngược: rs → stmt → conn
+        } catch (SQLException e) {
+            System.err.println("✗ Failed to close post cursor: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.crawler.repository;
+
+import java.time.LocalDate;
+
+import com.crawler.repository.IPostQueryRepository.PageCursor;
+
+/**
+ * PostQuery - Tham số truy vấn có cấu trúc trên từng post đã lưu (IPostQueryRepository)
+ *
+ * FLUENT API:
+ *   PostQuery.create().location("Quảng Nam").between(monday, sunday)
+ *            .orderBy(PostQuery.SortOrder.ENGAGEMENT_DESC).limit(50)
+ *
+ * PHÂN TRANG KIỂU KEYSET (seek): trang sau dùng cursor của trang trước
+ *   query.after(page.next())
+ * → Database nhảy thẳng tới vị trí cursor qua index, không quét lại các trang trước như OFFSET.
+ *
+ * Lọc theo khoảng ngày sẽ loại các post không có ngày đăng.
+ */
+public class PostQuery {
+
+    /**
+     * Thứ tự kết quả (luôn kèm id làm tiêu chí phụ để thứ tự ổn định)
+     */
+    public enum SortOrder { DATE_DESC, DATE_ASC, ENGAGEMENT_DESC }
+
+    private static final int DEFAULT_LIMIT = 50;
+
+    private String platform;
+    private LocalDate startDate;
+    private LocalDate endDate;
+    private String sentiment;
+    private String location;
+    private String focus;
+    private String direction;
+    private SortOrder sortOrder = SortOrder.DATE_DESC;
+    private int limit = DEFAULT_LIMIT;
+    private PageCursor after;
+
+    private PostQuery() {
+    }
+
+    public static PostQuery create() {
+        return new PostQuery();
+    }
+
+    /**
+     * Lọc theo nền tảng (VNExpress, Dân trí, tiktok, x...)
+     */
+    public PostQuery platform(String platform) {
+        this.platform = platform;
+        return this;
+    }
+
+    /**
+     * Lọc theo khoảng ngày đăng (null = không giới hạn phía đó)
+     */
+    public PostQuery between(LocalDate startDate, LocalDate endDate) {
+        this.startDate = startDate;
+        this.endDate = endDate;
+        return this;
+    }
+
+    public PostQuery sentiment(String sentiment) {
+        this.sentiment = sentiment;
+        return this;
+    }
+
+    public PostQuery location(String location) {
+        this.location = location;
+        return this;
+    }
+
+    public PostQuery focus(String focus) {
+        this.focus = focus;
+        return this;
+    }
+
+    public PostQuery direction(String direction) {
+        this.direction = direction;
+        return this;
+    }
+
+    public PostQuery orderBy(SortOrder sortOrder) {
+        if (sortOrder == null) {
+            throw new IllegalArgumentException("Sort order must not be null");
+        }
+        this.sortOrder = sortOrder;
+        return this;
+    }
+
+    /**
+     * Số post tối đa mỗi trang
+     */
+    public PostQuery limit(int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Invalid limit: " + limit);
+        }
+        this.limit = limit;
+        return this;
+    }
+
+    /**
+     * Bắt đầu SAU vị trí cursor (null = trang đầu tiên).
+     * Cursor phải lấy từ cùng query (cùng bộ lọc và thứ tự).
+     */
+    public PostQuery after(PageCursor cursor) {
+        this.after = cursor;
+        return this;
+    }
+
+    public String getPlatform() {
+        return platform;
+    }
+
+    public LocalDate getStartDate() {
+        return startDate;
+    }
+
+    public LocalDate getEndDate() {
+        return endDate;
+    }
+
+    public String getSentiment() {
+        return sentiment;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    public String getFocus() {
+        return focus;
+    }
+
+    public String getDirection() {
+        return direction;
+    }
+
+    public SortOrder getSortOrder() {
+        return sortOrder;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public PageCursor getAfter() {
+        return after;
+    }
+}
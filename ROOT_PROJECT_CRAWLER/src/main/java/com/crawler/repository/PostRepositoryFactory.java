@@ -0,0 +1,28 @@
+package com.crawler.repository;
+
+import com.crawler.config.CrawlerConfig;
+
+/**
+ * PostRepositoryFactory - Chọn storage engine theo cấu hình triển khai
+ *
+ * crawler.repository = "sqlite"  → SQLitePostRepository (mặc định)
+ * crawler.repository = "sharded" → ShardedPostRepository (mỗi tháng một file SQLite)
+ * crawler.repository = "segment" → SegmentLogPostRepository (log-structured, ghi tốc độ cao)
+ *
+ * Caller chỉ làm việc với IPostRepository (DIP).
+ */
+public final class PostRepositoryFactory {
+
+    private PostRepositoryFactory() {
+    }
+
+    public static IPostRepository create() {
+        String type = CrawlerConfig.getRepositoryType().trim().toLowerCase();
+        return switch (type) {
+            case "sqlite" -> new SQLitePostRepository();
+            case "sharded" -> new ShardedPostRepository();
+            case "segment" -> new SegmentLogPostRepository();
+            default -> throw new IllegalArgumentException("Unknown repository type: " + type);
+        };
+    }
+}
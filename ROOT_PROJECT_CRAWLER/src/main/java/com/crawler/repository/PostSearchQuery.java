@@ -0,0 +1,85 @@
+package com.crawler.repository;
+
+import java.time.LocalDate;
+
+/**
+ * PostSearchQuery - Tham số cho tìm kiếm full-text trên posts đã lưu (IPostSearchRepository)
+ *
+ * FLUENT API: mỗi method trả về chính object để viết gọn:
+ *   PostSearchQuery.of("sạt lở").between(start, end).platform("VNExpress").page(0, 20)
+ */
+public class PostSearchQuery {
+
+    private static final int DEFAULT_PAGE_SIZE = 20;
+
+    private final String text;
+    private LocalDate startDate;
+    private LocalDate endDate;
+    private String platform;
+    private int limit = DEFAULT_PAGE_SIZE;
+    private int offset = 0;
+
+    private PostSearchQuery(String text) {
+        if (text == null || text.isBlank()) {
+            throw new IllegalArgumentException("Search text must not be null or empty");
+        }
+        this.text = text.trim();
+    }
+
+    public static PostSearchQuery of(String text) {
+        return new PostSearchQuery(text);
+    }
+
+    /**
+     * Lọc theo khoảng ngày đăng (null = không giới hạn phía đó)
+     */
+    public PostSearchQuery between(LocalDate startDate, LocalDate endDate) {
+        this.startDate = startDate;
+        this.endDate = endDate;
+        return this;
+    }
+
+    /**
+     * Lọc theo nền tảng (VNExpress, Dân trí, tiktok, x...)
+     */
+    public PostSearchQuery platform(String platform) {
+        this.platform = platform;
+        return this;
+    }
+
+    /**
+     * Phân trang: pageIndex bắt đầu từ 0
+     */
+    public PostSearchQuery page(int pageIndex, int pageSize) {
+        if (pageIndex < 0 || pageSize <= 0) {
+            throw new IllegalArgumentException("Invalid page: index=" + pageIndex + ", size=" + pageSize);
+        }
+        this.limit = pageSize;
+        this.offset = pageIndex * pageSize;
+        return this;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public LocalDate getStartDate() {
+        return startDate;
+    }
+
+    public LocalDate getEndDate() {
+        return endDate;
+    }
+
+    public String getPlatform() {
+        return platform;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+}
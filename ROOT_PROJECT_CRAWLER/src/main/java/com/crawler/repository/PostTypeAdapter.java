@@ -3,50 +3,158 @@ package com.crawler.repository;
 import com.crawler.model.AbstractPost;
 import com.crawler.model.NewsPost;
 import com.crawler.model.SocialPost;
-import com.google.gson.*;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 
-import java.lang.reflect.Type;
+import java.io.IOException;
 import java.time.LocalDate;
 
 /**
- * FIX LỖI STACKOVERFLOW:
- * Sử dụng 'delegateGson' riêng biệt để serialize/deserialize nội dung,
- * tránh việc gọi đệ quy vô tận vào chính Adapter này.
+ * PostTypeAdapter - Gson STREAMING adapter cho cây kế thừa AbstractPost.
+ *
+ * Ghi/đọc trực tiếp từng field qua JsonWriter/JsonReader:
+ * - KHÔNG dựng JsonElement trung gian
+ * - KHÔNG dùng reflection (nên cũng không còn nguy cơ đệ quy vô tận vào chính adapter)
+ *
+ * FORMAT (tương thích với các row post_cache cũ):
+ * {"type":"NewsPost","postDate":"2025-11-01","title":...,"comments":3,
+ *  "sourceId":...,"content":...,"platform":...,"metadata":{"sentiment":...}}
+ * - Khi ghi: "type" đứng ĐẦU, field null bị bỏ qua (giống Gson mặc định)
+ * - Khi đọc: "type" có thể nằm ở bất kỳ vị trí nào (row cũ ghi "type" ở CUỐI),
+ *   nên mọi field được đọc vào biến tạm rồi mới dựng object.
  */
-public class PostTypeAdapter implements JsonSerializer<AbstractPost>, JsonDeserializer<AbstractPost> {
+public class PostTypeAdapter extends TypeAdapter<AbstractPost> {
 
     private static final String TYPE_FIELD = "type";
-    
-    // TẠO GSON RIÊNG ĐỂ XỬ LÝ DỮ LIỆU THÔ (Tránh đệ quy)
-    private final Gson delegateGson = new GsonBuilder()
-            .registerTypeAdapter(LocalDate.class, new LocalDateAdapter())
-            .create();
+    private static final String NEWS_TYPE = "NewsPost";
+    private static final String SOCIAL_TYPE = "SocialPost";
 
     @Override
-    public JsonElement serialize(AbstractPost src, Type typeOfSrc, JsonSerializationContext context) {
-        // DÙNG delegateGson THAY VÌ context !!
-        JsonObject object = delegateGson.toJsonTree(src).getAsJsonObject();
-        object.addProperty(TYPE_FIELD, src.getClass().getSimpleName());
-        return object;
+    public void write(JsonWriter out, AbstractPost src) throws IOException {
+        if (src == null) {
+            out.nullValue();
+            return;
+        }
+
+        out.beginObject();
+        if (src instanceof NewsPost news) {
+            out.name(TYPE_FIELD).value(NEWS_TYPE);
+            writeDate(out, "postDate", news.getPostDate());
+            writeString(out, "title", news.getTitle());
+            out.name("comments").value(news.getComments());
+        } else if (src instanceof SocialPost social) {
+            out.name(TYPE_FIELD).value(SOCIAL_TYPE);
+            out.name("reaction").value(social.getReaction());
+            writeDate(out, "createdDate", social.getCreatedDate());
+        } else {
+            throw new JsonParseException("Unknown post type: " + src.getClass().getSimpleName());
+        }
+
+        writeString(out, "sourceId", src.getSourceId());
+        writeString(out, "content", src.getContent());
+        writeString(out, "platform", src.getPlatform());
+
+        out.name("metadata").beginObject();
+        writeString(out, "sentiment", src.getSentiment());
+        writeString(out, "location", src.getLocation());
+        writeString(out, "focus", src.getFocus());
+        writeString(out, "direction", src.getDirection());
+        writeString(out, "damageCategory", src.getDamageCategory());
+        writeString(out, "rescueGoods", src.getRescueGoods());
+        out.endObject();
+
+        out.endObject();
     }
 
     @Override
-    public AbstractPost deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context) throws JsonParseException {
-        JsonObject object = json.getAsJsonObject();
-        JsonElement typeElement = object.get(TYPE_FIELD);
-        
-        if (typeElement == null) {
+    public AbstractPost read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        String type = null;
+        String sourceId = null;
+        String content = null;
+        String platform = null;
+        String title = null;
+        LocalDate date = null;
+        long count = 0;
+        String[] metadata = new String[6];
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (name) {
+                case TYPE_FIELD -> type = in.nextString();
+                case "sourceId" -> sourceId = in.nextString();
+                case "content" -> content = in.nextString();
+                case "platform" -> platform = in.nextString();
+                case "title" -> title = in.nextString();
+                case "postDate", "createdDate" -> date = LocalDate.parse(in.nextString());
+                case "comments", "reaction" -> count = in.nextLong();
+                case "metadata" -> readMetadata(in, metadata);
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+
+        if (type == null) {
             throw new JsonParseException("Missing post type information");
         }
 
-        String type = typeElement.getAsString();
-        Class<? extends AbstractPost> targetClass = switch (type) {
-            case "NewsPost" -> NewsPost.class;
-            case "SocialPost" -> SocialPost.class;
+        AbstractPost post = switch (type) {
+            case NEWS_TYPE -> new NewsPost(sourceId, date, title, content, platform, (int) count);
+            case SOCIAL_TYPE -> new SocialPost(sourceId, content, platform, date, count);
             default -> throw new JsonParseException("Unknown post type: " + type);
         };
 
-        // DÙNG delegateGson ĐỂ DESERIALIZE (Tránh đệ quy)
-        return delegateGson.fromJson(object, targetClass);
+        post.setSentiment(metadata[0]);
+        post.setLocation(metadata[1]);
+        post.setFocus(metadata[2]);
+        post.setDirection(metadata[3]);
+        post.setDamageCategory(metadata[4]);
+        post.setRescueGoods(metadata[5]);
+        return post;
+    }
+
+    private void readMetadata(JsonReader in, String[] metadata) throws IOException {
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "sentiment" -> metadata[0] = in.nextString();
+                case "location" -> metadata[1] = in.nextString();
+                case "focus" -> metadata[2] = in.nextString();
+                case "direction" -> metadata[3] = in.nextString();
+                case "damageCategory" -> metadata[4] = in.nextString();
+                case "rescueGoods" -> metadata[5] = in.nextString();
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+    }
+
+    private void writeString(JsonWriter out, String name, String value) throws IOException {
+        if (value != null) {
+            out.name(name).value(value);
+        }
+    }
+
+    private void writeDate(JsonWriter out, String name, LocalDate value) throws IOException {
+        if (value != null) {
+            out.name(name).value(value.toString());
+        }
     }
 }
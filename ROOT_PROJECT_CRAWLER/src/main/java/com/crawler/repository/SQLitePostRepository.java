@@ -1,13 +1,21 @@
 package com.crawler.repository;
 
+import com.crawler.client.CrawlerException;
+import com.crawler.config.CrawlerConfig;
 import com.crawler.model.AbstractPost;
+import com.crawler.model.MetadataField;
+import com.crawler.model.NewsPost;
+import com.crawler.util.VietnameseFolding;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.reflect.TypeToken;
 
 import java.sql.*;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 import java.lang.reflect.Type;
 
 /**
@@ -25,18 +33,55 @@ import java.lang.reflect.Type;
  * CREATE TABLE post_cache (
  *   keyword TEXT PRIMARY KEY,
  *   post_type TEXT NOT NULL,        -- "NewsPost" hoặc "SocialPost"
- *   posts_json TEXT NOT NULL,       -- JSON array chứa tất cả posts
- *   created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+ *   posts_json TEXT NOT NULL,       -- JSON array chứa tất cả posts (định dạng cũ / cache.format=json)
+ *   created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+ *   posts_blob BLOB                 -- PostBinaryCodec (cache.format=binary), posts_json = '' khi dùng cột này
  * );
+ *
+ * CONTENT-ADDRESSED (cache.format=refs, mặc định): post_cache chỉ còn là "header"
+ * (posts_json = '', posts_blob = NULL), danh sách post là các THAM CHIẾU tới post_index:
+ * CREATE TABLE post_ref (keyword TEXT, seq INTEGER, post_id INTEGER,   -- post_id = post_index.id
+ *                        PRIMARY KEY (keyword, seq));
+ * → bài xuất hiện trong "bão", "bão lũ", "lũ lụt"... chỉ lưu (và được enrich) MỘT lần.
+ * Post không còn entry nào tham chiếu bị dọn bằng mark-sweep (collectGarbage).
+ *
+ * FULL-TEXT INDEX (IPostSearchRepository) - mỗi post lưu MỘT lần theo identity (platform|sourceId):
+ * CREATE TABLE post_index (id INTEGER PRIMARY KEY, identity TEXT UNIQUE, platform TEXT,
+ *                          post_date INTEGER,   -- epoch day
+ *                          post_blob BLOB,      -- PostBinaryCodec của một post
+ *                          sentiment, location, focus, direction TEXT,
+ *                          engagement INTEGER); -- cột lọc/sắp xếp của IPostQueryRepository
+ * CREATE VIRTUAL TABLE post_fts USING fts5(title, content,
+ *                          tokenize = 'unicode61 remove_diacritics 2');  -- rowid = post_index.id
+ * Được cập nhật trong CÙNG transaction với save().
  */
-public class SQLitePostRepository implements IPostRepository {
+public class SQLitePostRepository implements IPostRepository, IPostSearchRepository, IPostQueryRepository {
 
-    private static final String DB_URL = "jdbc:sqlite:crawler_cache.db";
+    private static final String DEFAULT_DB_FILE = "crawler_cache.db";
     private static final String TABLE_NAME = "post_cache";
+    private static final String INDEX_TABLE = "post_index";
+    private static final String FTS_TABLE = "post_fts";
+    private static final String REF_TABLE = "post_ref";
+    // Cột metadata của post_index phục vụ IPostQueryRepository (thêm sau → có migration)
+    private static final List<String> QUERY_COLUMNS = List.of(
+        "sentiment TEXT", "location TEXT", "focus TEXT", "direction TEXT",
+        "engagement INTEGER NOT NULL DEFAULT 0");
     private final Gson gson;
     private final Type listType = new TypeToken<List<AbstractPost>>() {}.getType();
+    // "refs" (mặc định) | "binary" | "json" - xem CrawlerConfig.getCacheFormat()
+    private final String format;
+    private final String dbUrl;
 
     public SQLitePostRepository() {
+        this(DEFAULT_DB_FILE);
+    }
+
+    /**
+     * @param dbFile Đường dẫn file database (mỗi shard của ShardedPostRepository là một file)
+     */
+    public SQLitePostRepository(String dbFile) {
+        this.dbUrl = "jdbc:sqlite:" + dbFile;
+        this.format = CrawlerConfig.getCacheFormat().trim().toLowerCase();
         this.gson = new GsonBuilder()
                 .registerTypeAdapter(LocalDate.class, new LocalDateAdapter())
                 .registerTypeHierarchyAdapter(AbstractPost.class, new PostTypeAdapter())
@@ -57,11 +102,29 @@ public class SQLitePostRepository implements IPostRepository {
             ")", TABLE_NAME
         );
 
-        try (Connection conn = DriverManager.getConnection(DB_URL);
+        try (Connection conn = DriverManager.getConnection(dbUrl);
              Statement stmt = conn.createStatement()) {
 
             stmt.execute(createTableSQL);
-            System.out.println("✓ SQLite database initialized: " + DB_URL);
+            migrateBlobColumn(conn);
+            boolean newIndex = createSearchIndex(conn);
+            stmt.execute("CREATE TABLE IF NOT EXISTS " + REF_TABLE + " (" +
+                "  keyword TEXT NOT NULL," +
+                "  seq INTEGER NOT NULL," +
+                "  post_id INTEGER NOT NULL," +
+                "  PRIMARY KEY (keyword, seq)" +
+                ") WITHOUT ROWID");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_" + REF_TABLE + "_post ON " + REF_TABLE + " (post_id)");
+            migrateLegacyIdentities(conn);
+            System.out.println("✓ SQLite database initialized: " + dbUrl);
+
+            if (newIndex) {
+                rebuildSearchIndex();
+            }
+            if (isReferenceFormat()) {
+                convertLegacyEntries();
+                collectGarbage();
+            }
 
         } catch (SQLException e) {
             System.err.println("✗ Failed to initialize database: " + e.getMessage());
@@ -69,69 +132,420 @@ public class SQLitePostRepository implements IPostRepository {
         }
     }
 
+    /**
+     * Database tạo từ phiên bản cũ chưa có cột posts_blob → bổ sung (dữ liệu JSON cũ giữ nguyên)
+     */
+    private void migrateBlobColumn(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA table_info(" + TABLE_NAME + ")")) {
+            while (rs.next()) {
+                if ("posts_blob".equalsIgnoreCase(rs.getString("name"))) {
+                    return;
+                }
+            }
+        }
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("ALTER TABLE " + TABLE_NAME + " ADD COLUMN posts_blob BLOB");
+        }
+    }
+
+    /**
+     * Identity của post không có sourceId từng là hash 32-bit của nội dung → đổi sang SHA-256
+     * (AbstractPost.getIdentityKey) để lần ghi sau khớp đúng row cũ thay vì tạo row trùng.
+     * Identity mới đã có sẵn (bài được ghi lại sau khi nâng cấp) → chuyển tham chiếu sang row đó, xóa row cũ.
+     * Chỉ đọc các row còn định dạng cũ nên chạy lại khi mở database là không tốn gì.
+     */
+    private void migrateLegacyIdentities(Connection conn) throws SQLException {
+        List<LegacyIdentity> legacy = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT id, identity, post_blob FROM " + INDEX_TABLE +
+                 " WHERE instr(identity, '|#') > 0")) {
+            while (rs.next()) {
+                String identity = rs.getString(2);
+                if (AbstractPost.isLegacyIdentityKey(identity)) {
+                    legacy.add(new LegacyIdentity(rs.getLong(1), identity, rs.getBytes(3)));
+                }
+            }
+        }
+        if (legacy.isEmpty()) {
+            return;
+        }
+
+        int migrated = 0;
+        conn.setAutoCommit(false);
+        try (PreparedStatement selectId = conn.prepareStatement("SELECT id FROM " + INDEX_TABLE + " WHERE identity = ?");
+             PreparedStatement rekey = conn.prepareStatement("UPDATE " + INDEX_TABLE + " SET identity = ? WHERE id = ?");
+             PreparedStatement repoint = conn.prepareStatement("UPDATE " + REF_TABLE + " SET post_id = ? WHERE post_id = ?");
+             PreparedStatement deleteRow = conn.prepareStatement("DELETE FROM " + INDEX_TABLE + " WHERE id = ?");
+             PreparedStatement deleteFts = conn.prepareStatement("DELETE FROM " + FTS_TABLE + " WHERE rowid = ?")) {
+
+            for (LegacyIdentity row : legacy) {
+                String identity = PostBinaryCodec.decode(row.blob()).get(0).getIdentityKey();
+                if (identity.equals(row.identity())) {
+                    continue;
+                }
+                Long existing = null;
+                selectId.setString(1, identity);
+                try (ResultSet rs = selectId.executeQuery()) {
+                    if (rs.next()) {
+                        existing = rs.getLong(1);
+                    }
+                }
+                if (existing == null) {
+                    rekey.setString(1, identity);
+                    rekey.setLong(2, row.id());
+                    rekey.executeUpdate();
+                } else {
+                    repoint.setLong(1, existing);
+                    repoint.setLong(2, row.id());
+                    repoint.executeUpdate();
+                    deleteRow.setLong(1, row.id());
+                    deleteRow.executeUpdate();
+                    deleteFts.setLong(1, row.id());
+                    deleteFts.executeUpdate();
+                }
+                migrated++;
+            }
+            conn.commit();
+        } catch (SQLException | RuntimeException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+        System.out.println("✓ Migrated " + migrated + " content-hash post identities to SHA-256");
+    }
+
+    /**
+     * Row post_index còn identity hash 32-bit, chờ migrateLegacyIdentities đổi khóa
+     */
+    private record LegacyIdentity(long id, String identity, byte[] blob) {
+    }
+
+    /**
+     * Tạo bảng post_index + FTS5 post_fts nếu chưa có
+     *
+     * TOKENIZER: unicode61 remove_diacritics 2 bỏ dấu tiếng Việt (ă, â, ê, ô, ơ, ư + 5 thanh);
+     * riêng đ/Đ không phải ký tự tổ hợp nên text được fold trước (foldForSearch) cả lúc index lẫn lúc query.
+     *
+     * @return true nếu bảng index vừa được tạo mới (cần backfill từ post_cache)
+     */
+    private boolean createSearchIndex(Connection conn) throws SQLException {
+        boolean exists;
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = ?")) {
+            pstmt.setString(1, INDEX_TABLE);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                exists = rs.next();
+            }
+        }
+
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS " + INDEX_TABLE + " (" +
+                "  id INTEGER PRIMARY KEY," +
+                "  identity TEXT NOT NULL UNIQUE," +
+                "  platform TEXT NOT NULL," +
+                "  post_date INTEGER," +
+                "  post_blob BLOB NOT NULL," +
+                "  " + String.join(", ", QUERY_COLUMNS) +
+                ")");
+        }
+        boolean migrated = exists && migrateQueryColumns(conn);
+
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_" + INDEX_TABLE + "_date ON " + INDEX_TABLE + " (post_date)");
+            // Composite index cho IPostQueryRepository: bộ lọc bằng (=) đứng trước, cột sắp xếp đứng sau
+            // (rowid id luôn nằm cuối mọi index của SQLite → phục vụ luôn tiêu chí phụ của keyset)
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_" + INDEX_TABLE + "_platform_date ON " + INDEX_TABLE + " (platform, post_date)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_" + INDEX_TABLE + "_location_date ON " + INDEX_TABLE + " (location, post_date)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_" + INDEX_TABLE + "_sentiment_date ON " + INDEX_TABLE + " (sentiment, post_date)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_" + INDEX_TABLE + "_engagement ON " + INDEX_TABLE + " (engagement)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_" + INDEX_TABLE + "_location_engagement ON " + INDEX_TABLE + " (location, engagement)");
+            stmt.execute("CREATE VIRTUAL TABLE IF NOT EXISTS " + FTS_TABLE +
+                " USING fts5(title, content, tokenize = 'unicode61 remove_diacritics 2')");
+        }
+        return !exists || migrated;
+    }
+
+    /**
+     * Bổ sung các cột metadata dùng cho truy vấn có cấu trúc vào post_index.
+     * Bảng mới được tạo với đủ cột ngay từ đầu (cột bị thiếu mới cần ALTER).
+     *
+     * @return true nếu vừa thêm cột (cần backfill giá trị từ post_cache)
+     */
+    private boolean migrateQueryColumns(Connection conn) throws SQLException {
+        List<String> existing = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA table_info(" + INDEX_TABLE + ")")) {
+            while (rs.next()) {
+                existing.add(rs.getString("name").toLowerCase());
+            }
+        }
+
+        boolean added = false;
+        try (Statement stmt = conn.createStatement()) {
+            for (String column : QUERY_COLUMNS) {
+                if (!existing.contains(column.split(" ")[0])) {
+                    stmt.execute("ALTER TABLE " + INDEX_TABLE + " ADD COLUMN " + column);
+                    added = true;
+                }
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Dựng lại full-text index từ toàn bộ post_cache (dùng khi nâng cấp database cũ)
+     * Mỗi lần chỉ giữ MỘT cache entry trong RAM.
+     */
+    public void rebuildSearchIndex() {
+        List<String> keys = findKeys("");
+        if (keys.isEmpty()) {
+            return;
+        }
+
+        int count = 0;
+        try (Connection conn = DriverManager.getConnection(dbUrl)) {
+            conn.setAutoCommit(false);
+            for (String key : keys) {
+                List<? extends AbstractPost> posts = load(key);
+                if (posts != null) {
+                    indexPosts(conn, posts);
+                    count += posts.size();
+                }
+            }
+            conn.commit();
+            System.out.println("✓ Indexed " + count + " cached posts for local search");
+
+        } catch (SQLException e) {
+            System.err.println("✗ Failed to rebuild search index: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Upsert từng post vào post_index và đồng bộ post_fts (gọi bên trong transaction của caller)
+     *
+     * post_index được CHIA SẺ giữa mọi entry cùng identity → ghi lại một bản thô/enrich dở
+     * (vd. ingest hai pha, gap chồng lấn) KHÔNG được xóa metadata đã có: field trống của bản mới
+     * lấy giá trị cũ (cả trong post_blob lẫn các cột), field có giá trị thì bản mới thắng.
+     */
+    private List<Long> indexPosts(Connection conn, List<? extends AbstractPost> posts) throws SQLException {
+        List<Long> ids = new ArrayList<>(posts.size());
+        if (posts.isEmpty()) {
+            return ids;
+        }
+        String upsertSql = "INSERT INTO " + INDEX_TABLE +
+            " (identity, platform, post_date, post_blob, sentiment, location, focus, direction, engagement)" +
+            " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON CONFLICT(identity) DO UPDATE SET platform = excluded.platform, " +
+            "post_date = excluded.post_date, post_blob = excluded.post_blob, " +
+            "sentiment = COALESCE(excluded.sentiment, sentiment), " +
+            "location = COALESCE(excluded.location, location), " +
+            "focus = COALESCE(excluded.focus, focus), " +
+            "direction = COALESCE(excluded.direction, direction), engagement = excluded.engagement";
+
+        try (PreparedStatement upsert = conn.prepareStatement(upsertSql);
+             PreparedStatement selectBlob = conn.prepareStatement(
+                 "SELECT post_blob FROM " + INDEX_TABLE + " WHERE identity = ?");
+             PreparedStatement selectId = conn.prepareStatement("SELECT id FROM " + INDEX_TABLE + " WHERE identity = ?");
+             PreparedStatement deleteFts = conn.prepareStatement("DELETE FROM " + FTS_TABLE + " WHERE rowid = ?");
+             PreparedStatement insertFts = conn.prepareStatement(
+                 "INSERT INTO " + FTS_TABLE + " (rowid, title, content) VALUES (?, ?, ?)")) {
+
+            for (AbstractPost incoming : posts) {
+                String identity = incoming.getIdentityKey();
+                AbstractPost post = keepExistingMetadata(selectBlob, identity, incoming);
+                upsert.setString(1, identity);
+                upsert.setString(2, post.getPlatform());
+                if (post.getPostDate() != null) {
+                    upsert.setLong(3, post.getPostDate().toEpochDay());
+                } else {
+                    upsert.setNull(3, Types.INTEGER);
+                }
+                upsert.setBytes(4, PostBinaryCodec.encode(List.of(post)));
+                upsert.setString(5, post.getSentiment());
+                upsert.setString(6, post.getLocation());
+                upsert.setString(7, post.getFocus());
+                upsert.setString(8, post.getDirection());
+                upsert.setLong(9, post.getEngagementScore());
+                upsert.executeUpdate();
+
+                long id;
+                selectId.setString(1, identity);
+                try (ResultSet rs = selectId.executeQuery()) {
+                    rs.next();
+                    id = rs.getLong(1);
+                }
+                ids.add(id);
+
+                deleteFts.setLong(1, id);
+                deleteFts.executeUpdate();
+
+                String title = post instanceof NewsPost news ? news.getTitle() : null;
+                insertFts.setLong(1, id);
+                insertFts.setString(2, foldForSearch(title));
+                insertFts.setString(3, foldForSearch(post.getContent()));
+                insertFts.executeUpdate();
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Bản của post cần ghi vào post_index: field metadata trống được lấy từ bản đã lưu (nếu có).
+     * Không sửa post của caller - cần bổ sung thì làm trên bản sao.
+     */
+    private static AbstractPost keepExistingMetadata(PreparedStatement selectBlob, String identity,
+                                                     AbstractPost incoming) throws SQLException {
+        AbstractPost existing;
+        selectBlob.setString(1, identity);
+        try (ResultSet rs = selectBlob.executeQuery()) {
+            if (!rs.next()) {
+                return incoming;
+            }
+            existing = PostBinaryCodec.decode(rs.getBytes(1)).get(0);
+        }
+
+        AbstractPost merged = incoming;
+        for (MetadataField field : MetadataField.values()) {
+            String kept = field.get(existing);
+            if (kept != null && field.get(incoming) == null) {
+                if (merged == incoming) {
+                    merged = incoming.copy();
+                }
+                field.set(merged, kept);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Ghi lại danh sách tham chiếu của một cache entry (xóa danh sách cũ nếu có)
+     */
+    private void writeRefs(Connection conn, String keyword, List<Long> ids) throws SQLException {
+        try (PreparedStatement delete = conn.prepareStatement("DELETE FROM " + REF_TABLE + " WHERE keyword = ?")) {
+            delete.setString(1, keyword);
+            delete.executeUpdate();
+        }
+        try (PreparedStatement insert = conn.prepareStatement(
+                "INSERT INTO " + REF_TABLE + " (keyword, seq, post_id) VALUES (?, ?, ?)")) {
+            for (int seq = 0; seq < ids.size(); seq++) {
+                insert.setString(1, keyword);
+                insert.setInt(2, seq);
+                insert.setLong(3, ids.get(seq));
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+    }
+
+    private boolean isReferenceFormat() {
+        return "refs".equals(format);
+    }
+
     /**
      * Lưu danh sách posts vào SQLite
      * POLYMORPHISM: Nhận List<? extends AbstractPost> (NewsPost hoặc SocialPost)
      *
      * Strategy:
      * 1. Xác định post type (NewsPost hay SocialPost)
-     * 2. Serialize toàn bộ list sang JSON
+     * 2. Serialize toàn bộ list sang binary (PostBinaryCodec) hoặc JSON (cache.format=json)
      * 3. Lưu vào SQLite với keyword làm cache key
      */
     @Override
     public void save(List<? extends AbstractPost> posts, String keyword) {
-        if (posts == null || posts.isEmpty()) {
+        if (posts == null) {
             System.out.println("No posts to save for keyword: " + keyword);
             return;
         }
 
-        // Xác định post type từ phần tử đầu tiên
-        String postType = posts.get(0).getClass().getSimpleName();
+        saveAll(Map.of(keyword, posts));
+    }
 
-        // Serialize list sang JSON
-        String postsJson = gson.toJson(posts, listType);
+    /**
+     * Lưu NHIỀU cache entry trong MỘT transaction (dùng bởi WriteBehindPostRepository):
+     * một lần commit/fsync cho cả batch thay vì cho từng entry.
+     *
+     * @throws CrawlerException Nếu ghi thất bại (transaction đã rollback, không entry nào được lưu)
+     */
+    @Override
+    public void saveAll(Map<String, ? extends List<? extends AbstractPost>> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
 
         // INSERT hoặc REPLACE vào SQLite
         String sql = String.format(
-            "INSERT OR REPLACE INTO %s (keyword, post_type, posts_json) VALUES (?, ?, ?)",
+            "INSERT OR REPLACE INTO %s (keyword, post_type, posts_json, posts_blob) VALUES (?, ?, ?, ?)",
             TABLE_NAME
         );
 
-        try (Connection conn = DriverManager.getConnection(DB_URL);
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (Connection conn = DriverManager.getConnection(dbUrl)) {
+            // Cache entry + full-text index trong CÙNG một transaction
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                for (Map.Entry<String, ? extends List<? extends AbstractPost>> entry : batch.entrySet()) {
+                    List<? extends AbstractPost> posts = entry.getValue();
 
-            pstmt.setString(1, keyword);
-            pstmt.setString(2, postType);
-            pstmt.setString(3, postsJson);
-            pstmt.executeUpdate();
+                    // Xác định post type từ phần tử đầu tiên
+                    // Danh sách rỗng VẪN được lưu: đánh dấu khoảng ngày này đã crawl và không có bài nào
+                    String postType = posts.isEmpty() ? "Empty" : posts.get(0).getClass().getSimpleName();
+
+                    // refs (mặc định): chỉ lưu tham chiếu; binary/json: serialize cả list vào row
+                    pstmt.setString(1, entry.getKey());
+                    pstmt.setString(2, postType);
+                    pstmt.setString(3, "json".equals(format) ? gson.toJson(posts, listType) : "");
+                    pstmt.setBytes(4, "binary".equals(format) ? PostBinaryCodec.encode(posts) : null);
+                    pstmt.executeUpdate();
+
+                    List<Long> ids = indexPosts(conn, posts);
+                    writeRefs(conn, entry.getKey(), isReferenceFormat() ? ids : List.of());
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
 
-            System.out.println("✓ Saved " + posts.size() + " posts to cache (keyword: " + keyword + ")");
+            for (Map.Entry<String, ? extends List<? extends AbstractPost>> entry : batch.entrySet()) {
+                System.out.println("✓ Saved " + entry.getValue().size() + " posts to cache (keyword: " + entry.getKey() + ")");
+            }
 
         } catch (SQLException e) {
+            // Ném ra để caller (PostService, write-behind writer) biết dữ liệu CHƯA được lưu
             System.err.println("✗ Failed to save posts: " + e.getMessage());
-            e.printStackTrace();
+            throw new CrawlerException("Failed to save posts: " + e.getMessage(), e);
         }
     }
 
     /**
      * Load danh sách posts từ SQLite
      * POLYMORPHISM: Trả về List<NewsPost> hoặc List<SocialPost> dựa vào post_type
+     *
+     * Row có posts_blob → List view decode lazy; row cũ chỉ có JSON → Gson như trước.
      */
     @Override
     public List<? extends AbstractPost> load(String keyword) {
         String sql = String.format(
-            "SELECT post_type, posts_json FROM %s WHERE keyword = ?",
+            "SELECT post_type, posts_json, posts_blob FROM %s WHERE keyword = ?",
             TABLE_NAME
         );
 
-        try (Connection conn = DriverManager.getConnection(DB_URL);
+        try (Connection conn = DriverManager.getConnection(dbUrl);
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setString(1, keyword);
             ResultSet rs = pstmt.executeQuery();
 
             if (rs.next()) {
+                byte[] postsBlob = rs.getBytes("posts_blob");
+                if (postsBlob != null) {
+                    return PostBinaryCodec.decode(postsBlob);
+                }
                 String postsJson = rs.getString("posts_json");
+                if (postsJson == null || postsJson.isEmpty()) {
+                    return loadRefs(conn, keyword);
+                }
                 return gson.fromJson(postsJson, listType);
             } else {
                 System.out.println("No cached data found for keyword: " + keyword);
@@ -145,6 +559,125 @@ public class SQLitePostRepository implements IPostRepository {
         }
     }
 
+    /**
+     * Dựng lại danh sách posts từ các tham chiếu (theo đúng thứ tự lúc lưu)
+     */
+    private List<AbstractPost> loadRefs(Connection conn, String keyword) throws SQLException {
+        String sql = "SELECT p.post_blob FROM " + REF_TABLE + " r JOIN " + INDEX_TABLE + " p ON p.id = r.post_id" +
+            " WHERE r.keyword = ? ORDER BY r.seq";
+        List<AbstractPost> posts = new ArrayList<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, keyword);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    posts.add(PostBinaryCodec.decode(rs.getBytes(1)).get(0));
+                }
+            }
+        }
+        return posts;
+    }
+
+    /**
+     * Xóa một cache entry rồi dọn các post không còn được tham chiếu
+     */
+    public void delete(String keyword) {
+        try (Connection conn = DriverManager.getConnection(dbUrl)) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement deleteEntry = conn.prepareStatement("DELETE FROM " + TABLE_NAME + " WHERE keyword = ?");
+                 PreparedStatement deleteRefs = conn.prepareStatement("DELETE FROM " + REF_TABLE + " WHERE keyword = ?")) {
+                deleteEntry.setString(1, keyword);
+                deleteEntry.executeUpdate();
+                deleteRefs.setString(1, keyword);
+                deleteRefs.executeUpdate();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            System.err.println("✗ Failed to delete cache entry: " + e.getMessage());
+            return;
+        }
+        collectGarbage();
+    }
+
+    /**
+     * MARK-SWEEP: post trong post_index không còn entry nào tham chiếu (mark = post_ref) bị xóa cùng dòng FTS.
+     * Chỉ chạy khi mọi entry đều ở dạng tham chiếu - entry binary/json cũ vẫn dựa vào post_index để tìm kiếm.
+     *
+     * @return Số post đã xóa
+     */
+    public int collectGarbage() {
+        String unreferenced = "SELECT id FROM " + INDEX_TABLE + " p WHERE NOT EXISTS " +
+            "(SELECT 1 FROM " + REF_TABLE + " r WHERE r.post_id = p.id)";
+
+        try (Connection conn = DriverManager.getConnection(dbUrl)) {
+            if (hasLegacyEntries(conn)) {
+                return 0;
+            }
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("DELETE FROM " + FTS_TABLE + " WHERE rowid IN (" + unreferenced + ")");
+                int removed = stmt.executeUpdate("DELETE FROM " + INDEX_TABLE + " WHERE id IN (" + unreferenced + ")");
+                conn.commit();
+                if (removed > 0) {
+                    System.out.println("✓ Garbage collected " + removed + " unreferenced posts");
+                }
+                return removed;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            System.err.println("✗ Failed to collect garbage: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    private boolean hasLegacyEntries(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT 1 FROM " + TABLE_NAME +
+                 " WHERE posts_blob IS NOT NULL OR posts_json <> '' LIMIT 1")) {
+            return rs.next();
+        }
+    }
+
+    /**
+     * Chuyển các entry binary/json cũ sang dạng tham chiếu (một lần, khi mở database bằng cache.format=refs),
+     * rồi VACUUM để trả lại dung lượng của các bản sao trùng lặp
+     */
+    private void convertLegacyEntries() {
+        List<String> legacyKeys = new ArrayList<>();
+        try (Connection conn = DriverManager.getConnection(dbUrl);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT keyword FROM " + TABLE_NAME +
+                 " WHERE posts_blob IS NOT NULL OR posts_json <> ''")) {
+            while (rs.next()) {
+                legacyKeys.add(rs.getString(1));
+            }
+        } catch (SQLException e) {
+            System.err.println("✗ Failed to list legacy cache entries: " + e.getMessage());
+            return;
+        }
+        if (legacyKeys.isEmpty()) {
+            return;
+        }
+
+        for (String key : legacyKeys) {
+            List<? extends AbstractPost> posts = load(key);
+            if (posts != null) {
+                saveAll(Map.of(key, posts));
+            }
+        }
+        try (Connection conn = DriverManager.getConnection(dbUrl);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("VACUUM");
+        } catch (SQLException e) {
+            System.err.println("✗ Failed to vacuum database: " + e.getMessage());
+        }
+        System.out.println("✓ Converted " + legacyKeys.size() + " cache entries to post references");
+    }
+
     /**
      * Kiểm tra xem keyword đã có trong cache chưa
      */
@@ -155,7 +688,7 @@ public class SQLitePostRepository implements IPostRepository {
             TABLE_NAME
         );
 
-        try (Connection conn = DriverManager.getConnection(DB_URL);
+        try (Connection conn = DriverManager.getConnection(dbUrl);
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setString(1, keyword);
@@ -168,4 +701,276 @@ public class SQLitePostRepository implements IPostRepository {
         }
     }
 
+    /**
+     * Liệt kê cache key theo prefix.
+     * Dùng so sánh khoảng [prefix, prefix + U+FFFF) để tận dụng PRIMARY KEY index
+     * (tránh LIKE vì '_' là wildcard).
+     */
+    @Override
+    public List<String> findKeys(String prefix) {
+        String sql = String.format(
+            "SELECT keyword FROM %s WHERE keyword >= ? AND keyword < ? ORDER BY keyword",
+            TABLE_NAME
+        );
+
+        List<String> keys = new ArrayList<>();
+        try (Connection conn = DriverManager.getConnection(dbUrl);
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setString(1, prefix);
+            pstmt.setString(2, prefix + '\uffff');
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    keys.add(rs.getString(1));
+                }
+            }
+
+        } catch (SQLException e) {
+            System.err.println("✗ Failed to list cache keys: " + e.getMessage());
+        }
+        return keys;
+    }
+
+    /**
+     * STREAMING READ cho một cache key
+     * Không materialize cả list: decode từng post từ cursor JDBC (xem PostCursor)
+     */
+    @Override
+    public Stream<AbstractPost> stream(String keyword) {
+        return openCursor(CURSOR_SELECT + " WHERE c.keyword = ? ORDER BY r.seq", keyword);
+    }
+
+    /**
+     * STREAMING READ cho mọi cache key theo prefix (export / analytics trên toàn bộ dữ liệu)
+     * ResultSet forward-only với fetch size cấu hình được → RAM hằng số theo số row.
+     */
+    @Override
+    public Stream<AbstractPost> streamAll(String prefix) {
+        return openCursor(CURSOR_SELECT + " WHERE c.keyword >= ? AND c.keyword < ? ORDER BY c.keyword, r.seq",
+            prefix, prefix + '\uffff');
+    }
+
+    /**
+     * Entry binary/json: một row mang cả list (ref_blob NULL); entry tham chiếu: mỗi post một row (ref_blob)
+     */
+    private static final String CURSOR_SELECT =
+        "SELECT c.posts_json, c.posts_blob, p.post_blob AS ref_blob FROM " + TABLE_NAME + " c" +
+        " LEFT JOIN " + REF_TABLE + " r ON r.keyword = c.keyword" +
+        " LEFT JOIN " + INDEX_TABLE + " p ON p.id = r.post_id";
+
+    private Stream<AbstractPost> openCursor(String sql, String... params) {
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        try {
+            conn = DriverManager.getConnection(dbUrl);
+            pstmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            pstmt.setFetchSize(CrawlerConfig.getFetchSize());
+            for (int i = 0; i < params.length; i++) {
+                pstmt.setString(i + 1, params[i]);
+            }
+            return new PostCursor(conn, pstmt, gson).asStream();
+
+        } catch (SQLException e) {
+            System.err.println("✗ Failed to open post cursor: " + e.getMessage());
+            closeQuietly(pstmt);
+            closeQuietly(conn);
+            return Stream.empty();
+        }
+    }
+
+    private static void closeQuietly(AutoCloseable resource) {
+        if (resource == null) {
+            return;
+        }
+        try {
+            resource.close();
+        } catch (Exception e) {
+            System.err.println("✗ Failed to close resource: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Tìm kiếm LOCAL trên các post đã lưu (FTS5 + BM25), không cần crawl lại
+     */
+    @Override
+    public List<SearchHit> search(PostSearchQuery query) {
+        String match = toMatchExpression(query.getText());
+        List<SearchHit> hits = new ArrayList<>();
+        if (match.isEmpty()) {
+            return hits;
+        }
+
+        StringBuilder sql = new StringBuilder(
+            "SELECT p.post_blob, bm25(" + FTS_TABLE + ") AS rank FROM " + FTS_TABLE +
+            " JOIN " + INDEX_TABLE + " p ON p.id = " + FTS_TABLE + ".rowid" +
+            " WHERE " + FTS_TABLE + " MATCH ?");
+        List<Object> params = new ArrayList<>();
+        params.add(match);
+        if (query.getStartDate() != null) {
+            sql.append(" AND p.post_date >= ?");
+            params.add(query.getStartDate().toEpochDay());
+        }
+        if (query.getEndDate() != null) {
+            sql.append(" AND p.post_date <= ?");
+            params.add(query.getEndDate().toEpochDay());
+        }
+        if (query.getPlatform() != null) {
+            sql.append(" AND p.platform = ?");
+            params.add(query.getPlatform());
+        }
+        sql.append(" ORDER BY rank LIMIT ? OFFSET ?");
+        params.add(query.getLimit());
+        params.add(query.getOffset());
+
+        try (Connection conn = DriverManager.getConnection(dbUrl);
+             PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+
+            for (int i = 0; i < params.size(); i++) {
+                pstmt.setObject(i + 1, params.get(i));
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    AbstractPost post = PostBinaryCodec.decode(rs.getBytes(1)).get(0);
+                    // bm25() càng âm càng liên quan → đổi dấu cho dễ đọc
+                    hits.add(new SearchHit(post, -rs.getDouble(2)));
+                }
+            }
+
+        } catch (SQLException e) {
+            System.err.println("✗ Failed to search posts: " + e.getMessage());
+        }
+        return hits;
+    }
+
+    /**
+     * Truy vấn có cấu trúc trên post_index với phân trang keyset:
+     * thay vì OFFSET, trang sau bắt đầu bằng điều kiện (cột sắp xếp, id) "sau" cursor
+     * → chi phí mỗi trang không tăng theo số trang đã đọc.
+     */
+    @Override
+    public Page query(PostQuery query) {
+        List<QueryRow> rows = queryRows(query);
+        List<AbstractPost> posts = new ArrayList<>(Math.min(rows.size(), query.getLimit()));
+        for (int i = 0; i < rows.size() && i < query.getLimit(); i++) {
+            posts.add(rows.get(i).post());
+        }
+        PageCursor next = rows.size() > query.getLimit() ? rows.get(query.getLimit() - 1).cursor() : null;
+        return new Page(posts, next);
+    }
+
+    /**
+     * Chạy truy vấn, trả về tối đa limit + 1 row KÈM cursor của từng row
+     * (row dư cho biết còn trang sau; ShardedPostRepository dùng cursor để merge giữa các shard)
+     */
+    List<QueryRow> queryRows(PostQuery query) {
+        String sortColumn = query.getSortOrder() == PostQuery.SortOrder.ENGAGEMENT_DESC ? "engagement" : "post_date";
+        boolean ascending = query.getSortOrder() == PostQuery.SortOrder.DATE_ASC;
+
+        StringBuilder sql = new StringBuilder(
+            "SELECT id, " + sortColumn + ", post_blob FROM " + INDEX_TABLE + " WHERE 1 = 1");
+        List<Object> params = new ArrayList<>();
+        appendEquals(sql, params, "platform", query.getPlatform());
+        appendEquals(sql, params, "sentiment", query.getSentiment());
+        appendEquals(sql, params, "location", query.getLocation());
+        appendEquals(sql, params, "focus", query.getFocus());
+        appendEquals(sql, params, "direction", query.getDirection());
+        if (query.getStartDate() != null) {
+            sql.append(" AND post_date >= ?");
+            params.add(query.getStartDate().toEpochDay());
+        }
+        if (query.getEndDate() != null) {
+            sql.append(" AND post_date <= ?");
+            params.add(query.getEndDate().toEpochDay());
+        }
+        appendSeek(sql, params, sortColumn, ascending, query.getAfter());
+
+        // SQLite xếp NULL nhỏ nhất: post không có ngày nằm cuối khi DESC, đầu khi ASC
+        String direction = ascending ? "ASC" : "DESC";
+        sql.append(" ORDER BY ").append(sortColumn).append(' ').append(direction)
+           .append(", id ").append(direction).append(" LIMIT ?");
+        // Lấy dư 1 row để biết còn trang sau hay không
+        params.add(query.getLimit() + 1);
+
+        List<QueryRow> rows = new ArrayList<>();
+        try (Connection conn = DriverManager.getConnection(dbUrl);
+             PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+
+            for (int i = 0; i < params.size(); i++) {
+                pstmt.setObject(i + 1, params.get(i));
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    long sortKey = rs.getLong(2);
+                    PageCursor cursor = new PageCursor(rs.wasNull() ? null : sortKey, rs.getLong(1));
+                    rows.add(new QueryRow(cursor, PostBinaryCodec.decode(rs.getBytes(3)).get(0)));
+                }
+            }
+
+        } catch (SQLException e) {
+            System.err.println("✗ Failed to query posts: " + e.getMessage());
+        }
+        return rows;
+    }
+
+    /**
+     * Một row kết quả query kèm vị trí keyset của nó
+     */
+    record QueryRow(PageCursor cursor, AbstractPost post) {
+    }
+
+    private static void appendEquals(StringBuilder sql, List<Object> params, String column, String value) {
+        if (value != null) {
+            sql.append(" AND ").append(column).append(" = ?");
+            params.add(value);
+        }
+    }
+
+    /**
+     * Điều kiện keyset "đứng sau cursor" theo (sortColumn, id), có tính tới giá trị NULL
+     */
+    private static void appendSeek(StringBuilder sql, List<Object> params, String column,
+                                   boolean ascending, PageCursor after) {
+        if (after == null) {
+            return;
+        }
+        String cmp = ascending ? ">" : "<";
+        if (after.sortKey() == null) {
+            // Cursor nằm trong nhóm NULL: DESC → chỉ còn phần NULL phía sau; ASC → phần NULL phía sau + mọi giá trị
+            sql.append(" AND ((").append(column).append(" IS NULL AND id ").append(cmp).append(" ?)");
+            sql.append(ascending ? " OR " + column + " IS NOT NULL)" : ")");
+            params.add(after.id());
+        } else {
+            sql.append(" AND (").append(column).append(' ').append(cmp).append(" ? OR (")
+               .append(column).append(" = ? AND id ").append(cmp).append(" ?)");
+            sql.append(ascending ? ")" : " OR " + column + " IS NULL)");
+            params.add(after.sortKey());
+            params.add(after.sortKey());
+            params.add(after.id());
+        }
+    }
+
+    /**
+     * Chuyển text người dùng nhập thành biểu thức MATCH an toàn:
+     * mỗi từ được đặt trong dấu nháy (không bị hiểu nhầm là toán tử FTS5), các từ AND với nhau
+     */
+    private static String toMatchExpression(String text) {
+        StringBuilder match = new StringBuilder();
+        for (String token : foldForSearch(text).split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) {
+                if (match.length() > 0) {
+                    match.append(' ');
+                }
+                match.append('"').append(token).append('"');
+            }
+        }
+        return match.toString();
+    }
+
+    /**
+     * đ/Đ không tách được dấu bằng Unicode → fold bằng VietnameseFolding (bỏ luôn các dấu khác,
+     * cho ra đúng token mà tokenizer unicode61 remove_diacritics 2 sinh ra → không cần index lại)
+     */
+    private static String foldForSearch(String value) {
+        return VietnameseFolding.fold(value);
+    }
 }
@@ -0,0 +1,593 @@
+package com.crawler.repository;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+import com.crawler.client.CrawlerException;
+import com.crawler.config.CrawlerConfig;
+import com.crawler.model.AbstractPost;
+
+/**
+ * SegmentLogPostRepository - IMPLEMENTATION thứ hai của IPostRepository: log-structured store
+ *
+ * Dành cho tốc độ ghi rất cao, nơi B-tree của SQLite trở thành nút cổ chai.
+ * OCP/DIP: Service không đổi gì, chỉ cần chọn implementation qua PostRepositoryFactory.
+ *
+ * LƯU TRỮ:
+ * - Thư mục gồm các segment file append-only: segment-000001.log, segment-000002.log...
+ * - Chỉ segment cuối (active) được ghi, TUẦN TỰ; segment đầy → "seal" và mở segment mới
+ * - Segment đã seal được đọc qua MappedByteBuffer, segment active đọc qua FileChannel
+ *
+ * RECORD:  length (int32) | crc32 (int32) | body
+ * BODY:    type (1 byte) | keyLength (int32) | key (UTF-8) | payload
+ * - POST  : key = identity (platform|sourceId), payload = PostBinaryCodec của một post
+ * - ENTRY : key = cache key, payload = danh sách identity của các post
+ * Post chỉ lưu MỘT lần dù xuất hiện trong nhiều cache entry.
+ * ENTRY luôn được ghi SAU các POST của nó → entry đã thấy trong log thì post cũng đã có.
+ *
+ * INDEX (trong RAM): identity → vị trí, cache key → vị trí (bản ghi mới nhất thắng)
+ *
+ * CRASH RECOVERY: khi mở, quét tuần tự mọi segment để dựng lại index; record cuối
+ * bị ghi dở (thiếu byte hoặc sai CRC) bị cắt bỏ.
+ *
+ * COMPACTION (background): segment đã seal có tỉ lệ dữ liệu còn sống thấp được chép
+ * phần còn sống sang segment active rồi xóa.
+ *
+ * FSYNC POLICY: ALWAYS (mỗi save), INTERVAL (định kỳ), NEVER (để OS tự flush).
+ *
+ * LỖI I/O: save()/load() ném CrawlerException (không trả về bình thường / null) → tầng trên không
+ * coi một lần ghi hỏng là đã bền vững, cũng không coi một lần đọc hỏng là entry đã mất.
+ */
+public class SegmentLogPostRepository implements IPostRepository, AutoCloseable {
+
+    /**
+     * Chính sách fsync khi ghi
+     */
+    public enum FsyncPolicy { ALWAYS, INTERVAL, NEVER }
+
+    private static final byte TYPE_POST = 1;
+    private static final byte TYPE_ENTRY = 2;
+    private static final int HEADER_BYTES = 8;
+    private static final double COMPACTION_LIVE_RATIO = 0.5;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+    private final long maxSegmentBytes;
+    private final FsyncPolicy fsyncPolicy;
+
+    private final Map<Integer, Segment> segments = new ConcurrentHashMap<>();
+    private final Map<String, Location> postIndex = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<String, Location> entryIndex = new ConcurrentSkipListMap<>();
+
+    // Mọi thao tác ghi (append, roll segment, compaction) đi qua MỘT writer lock → ghi tuần tự
+    private final ReentrantLock writeLock = new ReentrantLock();
+    // Chỉ đổi dưới writeLock; volatile vì compact() đọc ngoài lock để bỏ qua segment đang ghi
+    private volatile Segment active;
+    private final ScheduledExecutorService background;
+
+    public SegmentLogPostRepository(Path directory, long maxSegmentBytes, FsyncPolicy fsyncPolicy,
+                                    long fsyncIntervalMillis, long compactionIntervalSeconds) {
+        // Segment đã seal được map và đọc theo offset int → phải nhỏ hơn 2 GiB
+        if (maxSegmentBytes <= 0 || maxSegmentBytes >= Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("maxSegmentBytes must be positive and below 2 GiB");
+        }
+        this.directory = directory;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.fsyncPolicy = fsyncPolicy;
+
+        try {
+            Files.createDirectories(directory);
+            recover();
+            migrateLegacyIdentities();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open segment store: " + directory, e);
+        }
+
+        this.background = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "segment-store-background");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (fsyncPolicy == FsyncPolicy.INTERVAL) {
+            background.scheduleWithFixedDelay(this::forceQuietly, fsyncIntervalMillis, fsyncIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+        background.scheduleWithFixedDelay(this::compactQuietly, compactionIntervalSeconds, compactionIntervalSeconds, TimeUnit.SECONDS);
+
+        System.out.println("✓ Segment store opened: " + directory.toAbsolutePath()
+                + " (" + segments.size() + " segments, " + entryIndex.size() + " entries, " + postIndex.size() + " posts)");
+    }
+
+    /**
+     * Constructor mặc định: cấu hình lấy từ CrawlerConfig
+     */
+    public SegmentLogPostRepository() {
+        this(Paths.get(CrawlerConfig.getSegmentStoreDir()),
+             CrawlerConfig.getSegmentMaxBytes(),
+             FsyncPolicy.valueOf(CrawlerConfig.getSegmentFsyncPolicy().toUpperCase()),
+             CrawlerConfig.getSegmentFsyncIntervalMillis(),
+             CrawlerConfig.getSegmentCompactionIntervalSeconds());
+    }
+
+    // ========== IPostRepository ==========
+
+    @Override
+    public void save(List<? extends AbstractPost> posts, String keyword) {
+        if (posts == null) {
+            System.out.println("No posts to save for keyword: " + keyword);
+            return;
+        }
+
+        // Encode NGOÀI lock, chỉ giữ lock trong lúc append
+        List<byte[]> postBodies = new ArrayList<>(posts.size());
+        List<String> identities = new ArrayList<>(posts.size());
+        for (AbstractPost post : posts) {
+            String identity = post.getIdentityKey();
+            identities.add(identity);
+            postBodies.add(body(TYPE_POST, identity, PostBinaryCodec.encode(List.of(post))));
+        }
+        byte[] entryBody = body(TYPE_ENTRY, keyword, encodeIdentities(identities));
+
+        writeLock.lock();
+        try {
+            for (int i = 0; i < postBodies.size(); i++) {
+                updateIndex(postIndex, identities.get(i), append(postBodies.get(i)));
+            }
+            updateIndex(entryIndex, keyword, append(entryBody));
+            if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+                active.channel.force(false);
+            }
+        } catch (IOException e) {
+            // Không nuốt lỗi: write-behind / BackgroundEnricher phải biết entry CHƯA bền vững để thử lại
+            throw new CrawlerException("Failed to append posts: " + e.getMessage(), e);
+        } finally {
+            writeLock.unlock();
+        }
+
+        System.out.println("✓ Saved " + posts.size() + " posts to segment log (keyword: " + keyword + ")");
+    }
+
+    @Override
+    public List<? extends AbstractPost> load(String keyword) {
+        try {
+            ByteBuffer entry = readPayload(entryIndex, keyword);
+            if (entry == null) {
+                System.out.println("No cached data found for keyword: " + keyword);
+                return null;
+            }
+
+            List<String> identities = decodeIdentities(entry);
+            List<AbstractPost> posts = new ArrayList<>(identities.size());
+            for (String identity : identities) {
+                ByteBuffer payload = readPayload(postIndex, identity);
+                if (payload != null) {
+                    byte[] blob = new byte[payload.remaining()];
+                    payload.get(blob);
+                    posts.add(PostBinaryCodec.decode(blob).get(0));
+                }
+            }
+            return posts;
+
+        } catch (IOException e) {
+            // null nghĩa là "không có entry" → lỗi I/O phải nổi lên, không để caller quên độ phủ và crawl lại
+            throw new CrawlerException("Failed to load posts: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public boolean isCached(String keyword) {
+        return entryIndex.containsKey(keyword);
+    }
+
+    @Override
+    public List<String> findKeys(String prefix) {
+        return new ArrayList<>(entryIndex.subMap(prefix, true, prefix + '\uffff', false).keySet());
+    }
+
+    // ========== WRITE PATH ==========
+
+    private static byte[] body(byte type, String key, byte[] payload) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer body = ByteBuffer.allocate(1 + 4 + keyBytes.length + payload.length);
+        body.put(type).putInt(keyBytes.length).put(keyBytes).put(payload);
+        return body.array();
+    }
+
+    private static byte[] encodeIdentities(List<String> identities) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(identities.size());
+            for (String identity : identities) {
+                byte[] raw = identity.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(raw.length);
+                out.write(raw);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static List<String> decodeIdentities(ByteBuffer entry) {
+        int count = entry.getInt();
+        List<String> identities = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte[] identity = new byte[entry.getInt()];
+            entry.get(identity);
+            identities.add(new String(identity, StandardCharsets.UTF_8));
+        }
+        return identities;
+    }
+
+    /**
+     * Append một record vào segment active (caller giữ writeLock)
+     */
+    private Location append(byte[] body) throws IOException {
+        int recordLength = HEADER_BYTES + body.length;
+        if (active.size > 0 && active.size + recordLength > maxSegmentBytes) {
+            rollSegment();
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        ByteBuffer record = ByteBuffer.allocate(recordLength);
+        record.putInt(body.length).putInt((int) crc.getValue()).put(body).flip();
+
+        long offset = active.size;
+        while (record.hasRemaining()) {
+            active.channel.write(record, offset + record.position());
+        }
+        active.size += recordLength;
+        return new Location(active.id, offset, recordLength);
+    }
+
+    /**
+     * Index trỏ sang bản ghi mới → bản ghi cũ thành "rác" của segment chứa nó
+     */
+    private <M extends Map<String, Location>> void updateIndex(M index, String key, Location location) {
+        Segment segment = segments.get(location.segmentId);
+        segment.liveBytes.addAndGet(location.length);
+        Location previous = index.put(key, location);
+        if (previous != null) {
+            Segment old = segments.get(previous.segmentId);
+            if (old != null) {
+                old.liveBytes.addAndGet(-previous.length);
+            }
+        }
+    }
+
+    /**
+     * Seal segment active (fsync + map read-only) và mở segment mới (caller giữ writeLock)
+     */
+    private void rollSegment() throws IOException {
+        active.channel.force(true);
+        active.seal();
+        active = openSegment(active.id + 1);
+    }
+
+    private Segment openSegment(int id) throws IOException {
+        Path path = directory.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        Segment segment = new Segment(id, path, channel);
+        segments.put(id, segment);
+        return segment;
+    }
+
+    // ========== READ PATH ==========
+
+    /**
+     * Đọc payload của record mà index đang trỏ tới.
+     * Compaction có thể di chuyển record giữa lúc đọc → thử lại với vị trí mới.
+     */
+    private ByteBuffer readPayload(Map<String, Location> index, String key) throws IOException {
+        while (true) {
+            Location location = index.get(key);
+            if (location == null) {
+                return null;
+            }
+            Segment segment = segments.get(location.segmentId);
+            if (segment == null) {
+                if (location == index.get(key)) {
+                    return null;
+                }
+                continue; // Segment vừa bị compaction xóa, index đã trỏ sang chỗ mới
+            }
+
+            ByteBuffer body = segment.read(location.offset + HEADER_BYTES, location.length - HEADER_BYTES);
+            body.get(); // type
+            int keyLength = body.getInt();
+            body.position(body.position() + keyLength);
+            return body.slice();
+        }
+    }
+
+    // ========== RECOVERY ==========
+
+    /**
+     * Post không có sourceId từng mang identity hash 32-bit của nội dung → ghi lại các entry còn tham chiếu
+     * identity cũ (post nhận identity SHA-256, xem AbstractPost.getIdentityKey). Record POST cũ không còn
+     * entry nào trỏ tới bị gỡ khỏi postIndex → compaction dọn dần. Log đã migrate thì chỉ tốn một lượt đọc entry.
+     */
+    private void migrateLegacyIdentities() throws IOException {
+        int migrated = 0;
+        Set<String> stillReferenced = new HashSet<>();
+        for (String key : new ArrayList<>(entryIndex.keySet())) {
+            List<String> identities = decodeIdentities(readPayload(entryIndex, key));
+            if (identities.stream().anyMatch(AbstractPost::isLegacyIdentityKey)) {
+                save(load(key), key);
+                identities = decodeIdentities(readPayload(entryIndex, key));
+                migrated++;
+            }
+            for (String identity : identities) {
+                if (AbstractPost.isLegacyIdentityKey(identity)) {
+                    stillReferenced.add(identity);
+                }
+            }
+        }
+
+        for (Iterator<Map.Entry<String, Location>> it = postIndex.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, Location> post = it.next();
+            if (AbstractPost.isLegacyIdentityKey(post.getKey()) && !stillReferenced.contains(post.getKey())) {
+                Segment segment = segments.get(post.getValue().segmentId);
+                if (segment != null) {
+                    segment.liveBytes.addAndGet(-post.getValue().length);
+                }
+                it.remove();
+            }
+        }
+        if (migrated > 0) {
+            System.out.println("✓ Migrated " + migrated + " segment log entries to SHA-256 post identities");
+        }
+    }
+
+    private void recover() throws IOException {
+        NavigableMap<Integer, Path> files = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                String number = name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length());
+                try {
+                    files.put(Integer.parseInt(number), path);
+                } catch (NumberFormatException e) {
+                    System.err.println("✗ Ignoring unexpected file in segment store: " + name);
+                }
+            }
+        }
+
+        for (Map.Entry<Integer, Path> file : files.entrySet()) {
+            Segment segment = openSegment(file.getKey());
+            scan(segment);
+            if (!file.getKey().equals(files.lastKey())) {
+                segment.seal();
+            } else {
+                active = segment;
+            }
+        }
+        if (active == null) {
+            active = openSegment(1);
+        }
+    }
+
+    /**
+     * Quét tuần tự một segment, dựng lại index; cắt bỏ phần đuôi hỏng (ghi dở khi crash)
+     */
+    private void scan(Segment segment) throws IOException {
+        long fileSize = segment.channel.size();
+        long offset = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        CRC32 crc = new CRC32();
+
+        while (offset + HEADER_BYTES <= fileSize) {
+            header.clear();
+            readFully(segment.channel, header, offset);
+            header.flip();
+            int bodyLength = header.getInt();
+            int expectedCrc = header.getInt();
+            if (bodyLength <= 0 || offset + HEADER_BYTES + bodyLength > fileSize) {
+                break;
+            }
+
+            ByteBuffer body = ByteBuffer.allocate(bodyLength);
+            readFully(segment.channel, body, offset + HEADER_BYTES);
+            crc.reset();
+            crc.update(body.array());
+            if ((int) crc.getValue() != expectedCrc) {
+                break;
+            }
+
+            body.flip();
+            byte type = body.get();
+            byte[] key = new byte[body.getInt()];
+            body.get(key);
+            Location location = new Location(segment.id, offset, HEADER_BYTES + bodyLength);
+            updateIndex(type == TYPE_ENTRY ? entryIndex : postIndex, new String(key, StandardCharsets.UTF_8), location);
+            offset += HEADER_BYTES + bodyLength;
+        }
+
+        if (offset < fileSize) {
+            System.err.println("✗ Truncating torn tail of " + segment.path.getFileName()
+                    + " at offset " + offset + " (" + (fileSize - offset) + " bytes)");
+            segment.channel.truncate(offset);
+        }
+        segment.size = offset;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of segment");
+            }
+        }
+    }
+
+    // ========== COMPACTION ==========
+
+    /**
+     * Chép các record còn sống của segment đã seal có nhiều rác sang segment active, rồi xóa segment cũ
+     */
+    public void compact() throws IOException {
+        for (Segment segment : new ArrayList<>(segments.values())) {
+            if (segment == active || segment.size == 0
+                    || segment.liveBytes.get() > segment.size * COMPACTION_LIVE_RATIO) {
+                continue;
+            }
+            compactSegment(segment);
+        }
+    }
+
+    private void compactSegment(Segment segment) throws IOException {
+        long offset = 0;
+        while (offset < segment.size) {
+            ByteBuffer header = segment.read(offset, HEADER_BYTES);
+            int recordLength = HEADER_BYTES + header.getInt();
+            ByteBuffer body = segment.read(offset + HEADER_BYTES, recordLength - HEADER_BYTES);
+            byte type = body.get(0);
+            byte[] key = new byte[body.getInt(1)];
+            body.position(5);
+            body.get(key);
+            body.rewind();
+
+            Map<String, Location> index = type == TYPE_ENTRY ? entryIndex : postIndex;
+            String keyString = new String(key, StandardCharsets.UTF_8);
+            Location old = new Location(segment.id, offset, recordLength);
+
+            writeLock.lock();
+            try {
+                // Chỉ chép nếu record vẫn là bản mới nhất (kiểm tra + append nguyên tử dưới writeLock)
+                if (old.equals(index.get(keyString))) {
+                    byte[] copy = new byte[body.remaining()];
+                    body.get(copy);
+                    updateIndex(index, keyString, append(copy));
+                }
+            } finally {
+                writeLock.unlock();
+            }
+            offset += recordLength;
+        }
+
+        writeLock.lock();
+        try {
+            active.channel.force(false); // Bản sao phải bền vững TRƯỚC khi xóa bản gốc
+        } finally {
+            writeLock.unlock();
+        }
+        segments.remove(segment.id);
+        segment.channel.close();
+        try {
+            Files.deleteIfExists(segment.path);
+        } catch (IOException e) {
+            // Windows không cho xóa file đang được map → xóa khi tắt JVM
+            segment.path.toFile().deleteOnExit();
+        }
+        System.out.println("✓ Compacted " + segment.path.getFileName());
+    }
+
+    private void compactQuietly() {
+        try {
+            compact();
+        } catch (IOException e) {
+            System.err.println("✗ Segment compaction failed: " + e.getMessage());
+        }
+    }
+
+    private void forceQuietly() {
+        writeLock.lock();
+        try {
+            active.channel.force(false);
+        } catch (IOException e) {
+            System.err.println("✗ Segment fsync failed: " + e.getMessage());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        background.shutdownNow();
+        writeLock.lock();
+        try {
+            active.channel.force(true);
+            for (Segment segment : segments.values()) {
+                segment.channel.close();
+            }
+        } catch (IOException e) {
+            System.err.println("✗ Failed to close segment store: " + e.getMessage());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // ========== INTERNAL TYPES ==========
+
+    /**
+     * Vị trí một record: segment + offset đầu record + tổng độ dài (header + body)
+     */
+    private record Location(int segmentId, long offset, int length) {
+    }
+
+    private static final class Segment {
+        private final int id;
+        private final Path path;
+        private final FileChannel channel;
+        private final AtomicLong liveBytes = new AtomicLong();
+        private volatile long size;
+        private volatile MappedByteBuffer mapped;
+
+        Segment(int id, Path path, FileChannel channel) {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+        }
+
+        /**
+         * Segment không còn được ghi nữa → map read-only để đọc không cần syscall
+         * (segment vượt 2 GiB vì một record quá lớn: không map, đọc qua FileChannel với offset long)
+         */
+        void seal() throws IOException {
+            if (size > 0 && size <= Integer.MAX_VALUE) {
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+        }
+
+        ByteBuffer read(long position, int length) throws IOException {
+            MappedByteBuffer map = mapped;
+            if (map != null) {
+                ByteBuffer view = map.duplicate();
+                view.position((int) position).limit((int) position + length);
+                return view.slice();
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            readFully(channel, buffer, position);
+            buffer.flip();
+            return buffer;
+        }
+    }
+}
@@ -0,0 +1,540 @@
+package com.crawler.repository;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import com.crawler.client.CrawlerException;
+import com.crawler.config.CrawlerConfig;
+import com.crawler.model.AbstractPost;
+import com.crawler.util.CacheKeyFactory;
+import com.crawler.util.DateRange;
+
+/**
+ * ShardedPostRepository - ROUTING LAYER chia dữ liệu thành nhiều file SQLite theo THÁNG
+ *
+ * Mỗi shard là một SQLitePostRepository độc lập (posts-2025-11.db, posts-2025-12.db...)
+ * → mỗi file có writer lock riêng, các crawl song song không còn xếp hàng trên MỘT file.
+ *
+ * ROUTING (theo khoảng ngày trong cache key - CacheKeyFactory.parseRange):
+ * - Post được ghi vào shard của tháng đăng bài; post không có ngày hoặc có ngày NGOÀI khoảng của key
+ *   → shard của tháng bắt đầu (load() chỉ đọc các tháng trong khoảng nên không được để post lọt ra ngoài)
+ * - Mỗi tháng mà khoảng ngày chạm tới đều nhận một entry (có thể rỗng) cùng key
+ *   → load() ghép các phần lại; entry chỉ được coi là đã cache khi ĐỦ mọi tháng
+ * - Key không có khoảng ngày xác định (không parse được / không giới hạn) → shard "misc"
+ *
+ * GHI: mỗi shard có MỘT writer thread riêng; save() chia batch theo shard và ghi song song.
+ * Ghi qua nhiều shard KHÔNG atomic (mỗi shard một transaction riêng): khi một shard lỗi, các key của batch
+ * bị xóa khỏi những shard đã ghi xong → load() trả về null (chưa cache) thay vì trộn phần mới với phần cũ,
+ * rồi ném lỗi để caller (WriteBehindPostRepository) ghi lại cả entry - ghi lại đè mọi phần nên idempotent.
+ * ĐỌC: load/query/search fan-out song song tới các shard liên quan rồi merge kết quả.
+ *
+ * RETENTION: dropPartition(tháng) xóa nguyên file của shard - O(1), không cần DELETE từng row;
+ * removal listener được báo các key chạm tới tháng đó để L1/CoverageIndex không còn coi chúng là đã cache.
+ * Lưu ý: điểm BM25 của search() được tính riêng trong từng shard nên chỉ xấp xỉ khi merge.
+ */
+public class ShardedPostRepository implements IPostRepository, IPostSearchRepository, IPostQueryRepository, AutoCloseable {
+
+    private static final String FILE_PREFIX = "posts-";
+    private static final String FILE_SUFFIX = ".db";
+    private static final String MISC_SHARD = "misc";
+    // id toàn cục của một post trong query = (số thứ tự shard << 40) | id trong shard
+    private static final int SHARD_ID_SHIFT = 40;
+    private static final long LOCAL_ID_MASK = (1L << SHARD_ID_SHIFT) - 1;
+
+    private final Path directory;
+    private final Map<String, Shard> shards = new ConcurrentHashMap<>();
+    private final ExecutorService readPool;
+    private final List<Consumer<Predicate<String>>> removalListeners = new CopyOnWriteArrayList<>();
+
+    public ShardedPostRepository(Path directory) {
+        this.directory = directory;
+        this.readPool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                daemonThreads("shard-reader"));
+
+        try {
+            Files.createDirectories(directory);
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, FILE_PREFIX + "*" + FILE_SUFFIX)) {
+                for (Path file : files) {
+                    String name = file.getFileName().toString();
+                    String shardName = name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length());
+                    if (isValidShardName(shardName)) {
+                        shard(shardName);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new CrawlerException("Failed to open shard directory: " + directory, e);
+        }
+        System.out.println("✓ Sharded repository opened: " + directory.toAbsolutePath() + " (" + shards.size() + " shards)");
+    }
+
+    /**
+     * Constructor mặc định: thư mục lấy từ CrawlerConfig
+     */
+    public ShardedPostRepository() {
+        this(Paths.get(CrawlerConfig.getShardDir()));
+    }
+
+    // ========== ROUTING ==========
+
+    /**
+     * Các shard mà một cache key trải qua (theo thứ tự thời gian)
+     */
+    private static List<String> shardNamesFor(String key) {
+        DateRange range = CacheKeyFactory.parseRange(key);
+        if (range == null || range.start().equals(LocalDate.MIN) || range.end().equals(LocalDate.MAX)) {
+            return List.of(MISC_SHARD);
+        }
+        List<String> names = new ArrayList<>();
+        for (YearMonth month = YearMonth.from(range.start()); !month.isAfter(YearMonth.from(range.end())); month = month.plusMonths(1)) {
+            names.add(month.toString());
+        }
+        return names;
+    }
+
+    /**
+     * Chia một cache entry thành từng phần theo shard (mọi shard của khoảng ngày đều có mặt, kể cả phần rỗng)
+     */
+    private static Map<String, List<AbstractPost>> split(String key, List<? extends AbstractPost> posts) {
+        List<String> names = shardNamesFor(key);
+        Map<String, List<AbstractPost>> parts = new LinkedHashMap<>();
+        for (String name : names) {
+            parts.put(name, new ArrayList<>());
+        }
+        for (AbstractPost post : posts) {
+            String name = names.get(0);
+            if (!MISC_SHARD.equals(name) && post.getPostDate() != null) {
+                String month = YearMonth.from(post.getPostDate()).toString();
+                if (parts.containsKey(month)) {
+                    name = month;
+                }
+            }
+            parts.get(name).add(post);
+        }
+        return parts;
+    }
+
+    private Shard shard(String name) {
+        return shards.computeIfAbsent(name, n -> new Shard(n,
+                new SQLitePostRepository(directory.resolve(FILE_PREFIX + n + FILE_SUFFIX).toString())));
+    }
+
+    private static boolean isValidShardName(String name) {
+        if (MISC_SHARD.equals(name)) {
+            return true;
+        }
+        try {
+            YearMonth.parse(name);
+            return true;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Số thứ tự ổn định của shard (misc = 0), dùng để ghép id toàn cục
+     */
+    private static long ordinal(String name) {
+        if (MISC_SHARD.equals(name)) {
+            return 0;
+        }
+        YearMonth month = YearMonth.parse(name);
+        return month.getYear() * 12L + month.getMonthValue();
+    }
+
+    // ========== WRITE ==========
+
+    @Override
+    public void save(List<? extends AbstractPost> posts, String keyword) {
+        if (posts == null) {
+            System.out.println("No posts to save for keyword: " + keyword);
+            return;
+        }
+        saveAll(Map.of(keyword, posts));
+    }
+
+    /**
+     * Gom các phần theo shard rồi ghi SONG SONG: mỗi shard một saveAll (một transaction) trên writer của nó
+     *
+     * @throws CrawlerException Nếu một shard ghi lỗi (các key của batch đã bị gỡ khỏi những shard ghi xong)
+     */
+    @Override
+    public void saveAll(Map<String, ? extends List<? extends AbstractPost>> batch) {
+        Map<String, Map<String, List<AbstractPost>>> byShard = new LinkedHashMap<>();
+        batch.forEach((key, posts) -> split(key, posts).forEach((name, part) ->
+                byShard.computeIfAbsent(name, n -> new LinkedHashMap<>()).put(key, part)));
+
+        Map<Shard, CompletableFuture<Void>> writes = new LinkedHashMap<>();
+        byShard.forEach((name, entries) -> {
+            Shard shard = shard(name);
+            writes.put(shard, CompletableFuture.runAsync(() -> shard.repository.saveAll(entries), shard.writer));
+        });
+        try {
+            join(new ArrayList<>(writes.values()));
+        } catch (CrawlerException e) {
+            discardPartialWrite(writes, batch.keySet());
+            throw e;
+        }
+    }
+
+    /**
+     * BÙ TRỪ cho lần ghi cross-shard lỗi: gỡ các key khỏi shard đã ghi thành công để không entry nào
+     * còn lẫn phần mới (shard ghi xong) với phần cũ (shard lỗi) - thiếu một phần thì load() coi như chưa cache
+     */
+    private static void discardPartialWrite(Map<Shard, CompletableFuture<Void>> writes, Set<String> keys) {
+        List<CompletableFuture<Void>> deletes = new ArrayList<>();
+        writes.forEach((shard, write) -> {
+            if (!write.isCompletedExceptionally()) {
+                deletes.add(CompletableFuture.runAsync(() -> keys.forEach(shard.repository::delete), shard.writer));
+            }
+        });
+        try {
+            join(deletes);
+        } catch (CrawlerException e) {
+            System.err.println("✗ Failed to discard partial shard write: " + e.getMessage());
+        }
+    }
+
+    // ========== READ ==========
+
+    @Override
+    public List<? extends AbstractPost> load(String keyword) {
+        List<String> names = shardNamesFor(keyword);
+        List<Shard> involved = new ArrayList<>(names.size());
+        for (String name : names) {
+            Shard shard = shards.get(name);
+            if (shard == null) {
+                System.out.println("No cached data found for keyword: " + keyword);
+                return null;
+            }
+            involved.add(shard);
+        }
+
+        List<List<? extends AbstractPost>> parts = fanOut(involved, shard -> shard.repository.load(keyword));
+        List<AbstractPost> posts = new ArrayList<>();
+        for (List<? extends AbstractPost> part : parts) {
+            if (part == null) {
+                return null; // Thiếu một tháng (vd. partition đã bị drop) → entry không còn đầy đủ
+            }
+            posts.addAll(part);
+        }
+        return posts;
+    }
+
+    @Override
+    public boolean isCached(String keyword) {
+        for (String name : shardNamesFor(keyword)) {
+            Shard shard = shards.get(name);
+            if (shard == null || !shard.repository.isCached(keyword)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Hợp các key của mọi shard, chỉ giữ key có mặt ở ĐỦ các shard trong khoảng ngày của nó
+     */
+    @Override
+    public List<String> findKeys(String prefix) {
+        List<Shard> all = new ArrayList<>(shards.values());
+        List<List<String>> keysPerShard = fanOut(all, shard -> shard.repository.findKeys(prefix));
+
+        Map<String, Set<String>> keysByShard = new HashMap<>();
+        Set<String> candidates = new TreeSet<>();
+        for (int i = 0; i < all.size(); i++) {
+            keysByShard.put(all.get(i).name, new HashSet<>(keysPerShard.get(i)));
+            candidates.addAll(keysPerShard.get(i));
+        }
+
+        List<String> complete = new ArrayList<>();
+        for (String key : candidates) {
+            boolean everyShard = true;
+            for (String name : shardNamesFor(key)) {
+                Set<String> keys = keysByShard.get(name);
+                if (keys == null || !keys.contains(key)) {
+                    everyShard = false;
+                    break;
+                }
+            }
+            if (everyShard) {
+                complete.add(key);
+            }
+        }
+        return complete;
+    }
+
+    /**
+     * Shard có thể chứa post trong khoảng ngày (shard misc luôn được hỏi)
+     */
+    private List<Shard> shardsFor(LocalDate start, LocalDate end) {
+        List<Shard> result = new ArrayList<>();
+        for (Shard shard : shards.values()) {
+            if (!MISC_SHARD.equals(shard.name)) {
+                YearMonth month = YearMonth.parse(shard.name);
+                if ((start != null && month.isBefore(YearMonth.from(start)))
+                        || (end != null && month.isAfter(YearMonth.from(end)))) {
+                    continue;
+                }
+            }
+            result.add(shard);
+        }
+        return result;
+    }
+
+    /**
+     * Fan-out search rồi merge theo điểm: mỗi shard trả về offset + limit kết quả đầu
+     */
+    @Override
+    public List<SearchHit> search(PostSearchQuery query) {
+        PostSearchQuery perShard = PostSearchQuery.of(query.getText())
+                .between(query.getStartDate(), query.getEndDate())
+                .platform(query.getPlatform())
+                .page(0, query.getOffset() + query.getLimit());
+
+        List<SearchHit> merged = new ArrayList<>();
+        for (List<SearchHit> hits : fanOut(shardsFor(query.getStartDate(), query.getEndDate()),
+                shard -> shard.repository.search(perShard))) {
+            merged.addAll(hits);
+        }
+        merged.sort(Comparator.comparingDouble(SearchHit::score).reversed());
+
+        int from = Math.min(query.getOffset(), merged.size());
+        int to = Math.min(from + query.getLimit(), merged.size());
+        return new ArrayList<>(merged.subList(from, to));
+    }
+
+    /**
+     * Fan-out query keyset rồi merge-sort: cursor toàn cục = (sortKey, id toàn cục),
+     * được dịch lại thành cursor cục bộ cho từng shard.
+     */
+    @Override
+    public Page query(PostQuery query) {
+        boolean ascending = query.getSortOrder() == PostQuery.SortOrder.DATE_ASC;
+        PageCursor after = query.getAfter();
+
+        List<Shard> involved = shardsFor(query.getStartDate(), query.getEndDate());
+        List<List<SQLitePostRepository.QueryRow>> perShard = fanOut(involved, shard ->
+                globalize(shard, shard.repository.queryRows(copyWithCursor(query, localCursor(shard, after)))));
+
+        List<SQLitePostRepository.QueryRow> merged = new ArrayList<>();
+        perShard.forEach(merged::addAll);
+        merged.sort(rowOrder(ascending));
+
+        List<AbstractPost> posts = new ArrayList<>();
+        for (int i = 0; i < merged.size() && i < query.getLimit(); i++) {
+            posts.add(merged.get(i).post());
+        }
+        PageCursor next = merged.size() > query.getLimit() ? merged.get(query.getLimit() - 1).cursor() : null;
+        return new Page(posts, next);
+    }
+
+    /**
+     * Cursor toàn cục → cursor cục bộ của shard. Khi sortKey bằng nhau, thứ tự theo id toàn cục nghĩa là:
+     * - cùng shard với cursor → so sánh id cục bộ
+     * - shard có số thứ tự nhỏ hơn → mọi id cục bộ < Long.MAX_VALUE (DESC: đi tiếp hết; ASC: không row nào > MAX)
+     * - shard có số thứ tự lớn hơn → mọi id cục bộ > 0 (DESC: không row nào < 0; ASC: đi tiếp hết)
+     */
+    private static PageCursor localCursor(Shard shard, PageCursor after) {
+        if (after == null) {
+            return null;
+        }
+        long cursorShard = after.id() >>> SHARD_ID_SHIFT;
+        long localId;
+        if (shard.ordinal == cursorShard) {
+            localId = after.id() & LOCAL_ID_MASK;
+        } else if (shard.ordinal < cursorShard) {
+            localId = Long.MAX_VALUE;
+        } else {
+            localId = 0; // id của SQLite bắt đầu từ 1
+        }
+        return new PageCursor(after.sortKey(), localId);
+    }
+
+    private static List<SQLitePostRepository.QueryRow> globalize(Shard shard, List<SQLitePostRepository.QueryRow> rows) {
+        List<SQLitePostRepository.QueryRow> result = new ArrayList<>(rows.size());
+        for (SQLitePostRepository.QueryRow row : rows) {
+            PageCursor cursor = new PageCursor(row.cursor().sortKey(), (shard.ordinal << SHARD_ID_SHIFT) | row.cursor().id());
+            result.add(new SQLitePostRepository.QueryRow(cursor, row.post()));
+        }
+        return result;
+    }
+
+    /**
+     * Thứ tự merge khớp với ORDER BY của SQLite (NULL nhỏ nhất)
+     */
+    private static Comparator<SQLitePostRepository.QueryRow> rowOrder(boolean ascending) {
+        Comparator<PageCursor> order = Comparator
+                .comparing(PageCursor::sortKey, Comparator.nullsFirst(Comparator.<Long>naturalOrder()))
+                .thenComparingLong(PageCursor::id);
+        if (!ascending) {
+            order = order.reversed();
+        }
+        return Comparator.comparing(SQLitePostRepository.QueryRow::cursor, order);
+    }
+
+    private static PostQuery copyWithCursor(PostQuery query, PageCursor cursor) {
+        return PostQuery.create()
+                .platform(query.getPlatform())
+                .between(query.getStartDate(), query.getEndDate())
+                .sentiment(query.getSentiment())
+                .location(query.getLocation())
+                .focus(query.getFocus())
+                .direction(query.getDirection())
+                .orderBy(query.getSortOrder())
+                .limit(query.getLimit())
+                .after(cursor);
+    }
+
+    // ========== RETENTION ==========
+
+    @Override
+    public void addRemovalListener(Consumer<Predicate<String>> listener) {
+        removalListeners.add(listener);
+    }
+
+    /**
+     * Xóa nguyên partition của một tháng (O(1): xóa file, không DELETE từng row)
+     *
+     * @return true nếu partition tồn tại và đã bị xóa
+     */
+    public boolean dropPartition(YearMonth month) {
+        Shard shard = shards.remove(month.toString());
+        if (shard == null) {
+            return false;
+        }
+        shard.shutdown();
+
+        Path file = directory.resolve(FILE_PREFIX + month + FILE_SUFFIX);
+        try {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(Paths.get(file + "-journal"));
+            Files.deleteIfExists(Paths.get(file + "-wal"));
+            Files.deleteIfExists(Paths.get(file + "-shm"));
+        } catch (IOException e) {
+            throw new CrawlerException("Failed to drop partition " + month + ": " + e.getMessage(), e);
+        }
+        System.out.println("✓ Dropped partition " + month);
+
+        // Key nào có phần nằm trong tháng này giờ không còn đầy đủ
+        String dropped = month.toString();
+        Predicate<String> affected = key -> shardNamesFor(key).contains(dropped);
+        for (Consumer<Predicate<String>> listener : removalListeners) {
+            listener.accept(affected);
+        }
+        return true;
+    }
+
+    /**
+     * Retention: xóa mọi partition CŨ HƠN tháng cho trước
+     *
+     * @return Số partition đã xóa
+     */
+    public int dropPartitionsBefore(YearMonth cutoff) {
+        int dropped = 0;
+        for (String name : new ArrayList<>(shards.keySet())) {
+            if (!MISC_SHARD.equals(name) && YearMonth.parse(name).isBefore(cutoff) && dropPartition(YearMonth.parse(name))) {
+                dropped++;
+            }
+        }
+        return dropped;
+    }
+
+    /**
+     * Các partition hiện có (tên file không gồm prefix/suffix), theo thứ tự
+     */
+    public List<String> getPartitions() {
+        return new ArrayList<>(new TreeSet<>(shards.keySet()));
+    }
+
+    @Override
+    public void close() {
+        for (Shard shard : shards.values()) {
+            shard.shutdown();
+        }
+        readPool.shutdown();
+    }
+
+    // ========== HELPERS ==========
+
+    private <R> List<R> fanOut(Collection<Shard> targets, Function<Shard, R> task) {
+        List<CompletableFuture<R>> futures = new ArrayList<>(targets.size());
+        for (Shard shard : targets) {
+            futures.add(CompletableFuture.supplyAsync(() -> task.apply(shard), readPool));
+        }
+        join(futures);
+        List<R> results = new ArrayList<>(futures.size());
+        for (CompletableFuture<R> future : futures) {
+            results.add(future.join());
+        }
+        return results;
+    }
+
+    private static void join(List<? extends CompletableFuture<?>> futures) {
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            throw new CrawlerException("Shard operation failed: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Một partition: file SQLite riêng + writer thread riêng (ghi tuần tự trong shard, song song giữa các shard)
+     */
+    private static final class Shard {
+        private final String name;
+        private final long ordinal;
+        private final SQLitePostRepository repository;
+        private final ExecutorService writer;
+
+        Shard(String name, SQLitePostRepository repository) {
+            this.name = name;
+            this.ordinal = ordinal(name);
+            this.repository = repository;
+            this.writer = Executors.newSingleThreadExecutor(daemonThreads("shard-writer-" + name));
+        }
+
+        void shutdown() {
+            writer.shutdown();
+            try {
+                writer.awaitTermination(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,483 @@
+package com.crawler.repository;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import com.crawler.client.CrawlerException;
+import com.crawler.config.CrawlerConfig;
+import com.crawler.model.AbstractPost;
+
+/**
+ * WriteBehindPostRepository - DECORATOR ghi bất đồng bộ (write-behind) cho IPostRepository
+ *
+ * save() chỉ đưa entry vào hàng đợi trong RAM rồi trả về ngay → caller nhận kết quả
+ * mà không phải chờ serialize + disk I/O.
+ *
+ * BACKGROUND WRITER:
+ * - Một thread nền lấy TOÀN BỘ entry đang chờ và ghi bằng delegate.saveAll()
+ *   (SQLite: một transaction cho cả batch)
+ * - COALESCING: nhiều lần save cùng key khi còn trong hàng đợi chỉ ghi MỘT lần (bản mới nhất)
+ *
+ * BACKPRESSURE: hàng đợi có giới hạn số key; đầy → save() chờ writer giải phóng chỗ.
+ * Đầy mà writer đang lỗi → save() ném CrawlerException ngay thay vì chờ vô hạn.
+ *
+ * READ-YOUR-WRITES: load/isCached/findKeys thấy cả entry đang chờ hoặc đang được ghi.
+ *
+ * DURABILITY:
+ * - flush(): chờ đến khi mọi save() gọi TRƯỚC đó đã được ghi xuống delegate
+ * - close(): flush rồi dừng writer (và đóng delegate nếu nó là AutoCloseable)
+ *
+ * LỖI GHI:
+ * - saveAll() của batch thất bại → ghi lại TỪNG key; chỉ key lỗi được đưa lại vào hàng đợi
+ *   (entry mới hơn cùng key vẫn thắng) và thử lại với backoff tăng dần → một entry hỏng
+ *   (vd. không encode được) không chặn các key khác
+ * - Key lỗi liên tiếp maxAttempts lần bị loại khỏi hàng đợi (DEAD LETTER, xem getDeadLetters());
+ *   flush() chờ đúng save() đó sẽ ném CrawlerException
+ * - Trong lúc còn key chờ thử lại, flush() ném CrawlerException thay vì báo đã bền vững;
+ *   close() thử ghi lần cuối, còn entry chưa ghi được (kể cả dead letter) thì ném kèm số entry
+ */
+public class WriteBehindPostRepository implements IPostRepository, AutoCloseable {
+
+    private final IPostRepository delegate;
+    private final int capacity;
+    private final int maxAttempts;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final Condition written = lock.newCondition();
+
+    // Entry chờ ghi (thứ tự chèn) và batch writer đang ghi dở - cả hai đều phục vụ đọc
+    private LinkedHashMap<String, List<? extends AbstractPost>> pending = new LinkedHashMap<>();
+    private Map<String, List<? extends AbstractPost>> inFlight = Map.of();
+    // Số thứ tự: mỗi save() tăng enqueued; writer cập nhật persisted sau khi ghi xong một batch
+    private long enqueued;
+    private long persisted;
+    private boolean closed;
+    // Lỗi của lần ghi gần nhất (null khi không còn key nào chờ thử lại)
+    private RuntimeException failure;
+    // Số thứ tự save() mới nhất của từng key chưa ghi xong, số lần lỗi liên tiếp của từng key
+    private final Map<String, Long> sequences = new HashMap<>();
+    private final Map<String, Integer> attempts = new HashMap<>();
+    // Key đã bị loại sau maxAttempts lần lỗi (thứ tự chèn)
+    private final LinkedHashMap<String, DeadLetter> deadLetters = new LinkedHashMap<>();
+
+    private record DeadLetter(long sequence, int attempts, RuntimeException error) {}
+
+    private static final long RETRY_BASE_MILLIS = 500;
+    private static final long RETRY_MAX_MILLIS = 30_000;
+
+    private final Thread writer;
+
+    /**
+     * @param delegate Repository bền vững phía dưới
+     * @param capacity Số cache key tối đa được chờ ghi trước khi save() bị chặn
+     * @param maxAttempts Số lần ghi lỗi liên tiếp tối đa của một key trước khi thành dead letter
+     */
+    public WriteBehindPostRepository(IPostRepository delegate, int capacity, int maxAttempts) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("Delegate repository must be non-null!");
+        }
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        if (maxAttempts <= 0) {
+            throw new IllegalArgumentException("maxAttempts must be positive");
+        }
+        this.delegate = delegate;
+        this.capacity = capacity;
+        this.maxAttempts = maxAttempts;
+
+        this.writer = new Thread(this::runWriter, "write-behind-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * @param capacity Số cache key tối đa được chờ ghi trước khi save() bị chặn
+     */
+    public WriteBehindPostRepository(IPostRepository delegate, int capacity) {
+        this(delegate, capacity, CrawlerConfig.getWriteBehindMaxAttempts());
+    }
+
+    /**
+     * Constructor mặc định: dung lượng hàng đợi và số lần thử lấy từ CrawlerConfig
+     */
+    public WriteBehindPostRepository(IPostRepository delegate) {
+        this(delegate, CrawlerConfig.getWriteBehindCapacity(), CrawlerConfig.getWriteBehindMaxAttempts());
+    }
+
+    // ========== IPostRepository ==========
+
+    @Override
+    public void save(List<? extends AbstractPost> posts, String keyword) {
+        if (posts == null) {
+            System.out.println("No posts to save for keyword: " + keyword);
+            return;
+        }
+
+        // Snapshot: caller có thể sửa list sau khi save() trả về
+        List<? extends AbstractPost> snapshot = List.copyOf(posts);
+
+        lock.lock();
+        try {
+            ensureOpen();
+            // Key đã có trong hàng đợi → ghi đè tại chỗ, không tốn thêm chỗ
+            while (!pending.containsKey(keyword) && pending.size() >= capacity) {
+                // Writer đang lỗi → hàng đợi có thể không rút được nữa, báo ngay thay vì chặn caller
+                throwIfFailed();
+                notFull.awaitUninterruptibly();
+                ensureOpen();
+            }
+            pending.put(keyword, snapshot);
+            sequences.put(keyword, ++enqueued);
+            // Bản mới → đếm lại số lần thử từ đầu
+            attempts.remove(keyword);
+            deadLetters.remove(keyword);
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<? extends AbstractPost> load(String keyword) {
+        List<? extends AbstractPost> queued = findQueued(keyword);
+        return queued != null ? queued : delegate.load(keyword);
+    }
+
+    @Override
+    public boolean isCached(String keyword) {
+        return findQueued(keyword) != null || delegate.isCached(keyword);
+    }
+
+    @Override
+    public List<String> findKeys(String prefix) {
+        TreeSet<String> keys = new TreeSet<>(delegate.findKeys(prefix));
+        lock.lock();
+        try {
+            for (String key : inFlight.keySet()) {
+                if (key.startsWith(prefix)) {
+                    keys.add(key);
+                }
+            }
+            for (String key : pending.keySet()) {
+                if (key.startsWith(prefix)) {
+                    keys.add(key);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        return new ArrayList<>(keys);
+    }
+
+    @Override
+    public Stream<AbstractPost> stream(String keyword) {
+        List<? extends AbstractPost> queued = findQueued(keyword);
+        return queued != null ? queued.stream().map(AbstractPost.class::cast) : delegate.stream(keyword);
+    }
+
+    @Override
+    public void addRemovalListener(Consumer<Predicate<String>> listener) {
+        delegate.addRemovalListener(listener);
+    }
+
+    private List<? extends AbstractPost> findQueued(String keyword) {
+        lock.lock();
+        try {
+            List<? extends AbstractPost> posts = pending.get(keyword);
+            return posts != null ? posts : inFlight.get(keyword);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ========== DURABILITY ==========
+
+    /**
+     * Durability barrier: chặn đến khi mọi save() đã gọi trước đó được ghi xuống delegate
+     *
+     * @throws CrawlerException Nếu còn key chờ thử lại hoặc một save() đang chờ đã thành dead letter
+     */
+    @Override
+    public void flush() {
+        lock.lock();
+        try {
+            long start = persisted;
+            long target = enqueued;
+            while (persisted < target) {
+                throwIfFailed();
+                written.awaitUninterruptibly();
+            }
+            throwIfDeadLettered(start, target);
+        } finally {
+            lock.unlock();
+        }
+        delegate.flush();
+    }
+
+    /**
+     * Như flush() nhưng có timeout
+     *
+     * @return true nếu đã ghi xong trong thời gian cho phép
+     */
+    public boolean flush(long timeout, TimeUnit unit) throws InterruptedException {
+        long remaining = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            long start = persisted;
+            long target = enqueued;
+            while (persisted < target) {
+                throwIfFailed();
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = written.awaitNanos(remaining);
+            }
+            throwIfDeadLettered(start, target);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gọi khi giữ lock: dữ liệu chưa bền vững vì lần ghi gần nhất thất bại
+     */
+    private void throwIfFailed() {
+        if (failure != null) {
+            throw new CrawlerException("Write-behind write failed, " + pending.size()
+                    + " entries still queued for retry: " + failure.getMessage(), failure);
+        }
+    }
+
+    /**
+     * Gọi khi giữ lock: một save() có số thứ tự trong (start, target] đã bị loại khỏi hàng đợi
+     */
+    private void throwIfDeadLettered(long start, long target) {
+        for (Map.Entry<String, DeadLetter> entry : deadLetters.entrySet()) {
+            DeadLetter dead = entry.getValue();
+            if (dead.sequence() > start && dead.sequence() <= target) {
+                throw new CrawlerException("Write-behind gave up on key '" + entry.getKey() + "' after "
+                        + dead.attempts() + " attempts: " + dead.error().getMessage(), dead.error());
+            }
+        }
+    }
+
+    /**
+     * Key đã bị loại khỏi hàng đợi sau maxAttempts lần ghi lỗi → thông điệp lỗi cuối cùng.
+     * save() lại key đó sẽ xoá nó khỏi danh sách.
+     */
+    public Map<String, String> getDeadLetters() {
+        lock.lock();
+        try {
+            Map<String, String> result = new LinkedHashMap<>();
+            deadLetters.forEach((key, dead) -> result.put(key, dead.error().getMessage()));
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Số cache key đang chờ ghi
+     */
+    public int getPendingCount() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @throws CrawlerException Nếu còn entry không ghi được (lần thử cuối vẫn lỗi) hoặc delegate đóng lỗi
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notEmpty.signal();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        // Writer ghi nốt những gì còn trong hàng đợi rồi mới thoát
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        lock.lock();
+        try {
+            boolean retrying = failure != null && !pending.isEmpty();
+            if (retrying || !deadLetters.isEmpty()) {
+                RuntimeException cause = retrying ? failure
+                        : deadLetters.values().iterator().next().error();
+                int unwritten = (retrying ? pending.size() : 0) + deadLetters.size();
+                throw new CrawlerException("Write-behind closed with " + unwritten
+                        + " unwritten entries: " + cause.getMessage(), cause);
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (delegate instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new CrawlerException("Failed to close repository: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("WriteBehindPostRepository is closed");
+        }
+    }
+
+    // ========== BACKGROUND WRITER ==========
+
+    private void runWriter() {
+        long backoffMillis = 0;
+        while (true) {
+            Map<String, List<? extends AbstractPost>> batch;
+            long batchEnd;
+
+            lock.lock();
+            try {
+                while (pending.isEmpty() && !closed) {
+                    notEmpty.awaitUninterruptibly();
+                }
+                if (pending.isEmpty()) {
+                    return; // closed và đã ghi hết
+                }
+                // Vừa lỗi → chờ backoff trước khi thử lại (close() cắt ngắn: thử lần cuối ngay)
+                long retryAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoffMillis);
+                long remaining;
+                while (!closed && (remaining = retryAt - System.nanoTime()) > 0) {
+                    notEmpty.awaitNanos(remaining);
+                }
+                batch = pending;
+                batchEnd = enqueued;
+                inFlight = batch;
+                pending = new LinkedHashMap<>();
+                notFull.signalAll();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            Map<String, RuntimeException> failed = Map.of();
+            try {
+                delegate.saveAll(batch);
+            } catch (RuntimeException e) {
+                System.err.println("✗ Write-behind batch failed (" + batch.size() + " entries), retrying per key: "
+                        + e.getMessage());
+                failed = saveEach(batch, e);
+            }
+
+            lock.lock();
+            try {
+                inFlight = Map.of();
+                RuntimeException error = settle(batch, failed);
+                if (error == null) {
+                    failure = null;
+                    backoffMillis = 0;
+                    persisted = batchEnd;
+                } else {
+                    failure = error;
+                    backoffMillis = Math.min(RETRY_MAX_MILLIS, Math.max(RETRY_BASE_MILLIS, backoffMillis * 2));
+                    if (closed) {
+                        written.signalAll();
+                        return; // Lần thử cuối khi đóng vẫn lỗi → close() báo lỗi
+                    }
+                }
+                written.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Ghi lại từng key của batch vừa lỗi để tách key hỏng khỏi key ghi được
+     *
+     * @return Key vẫn lỗi → lỗi tương ứng
+     */
+    private Map<String, RuntimeException> saveEach(Map<String, List<? extends AbstractPost>> batch,
+                                                   RuntimeException batchError) {
+        if (batch.size() == 1) {
+            return Map.of(batch.keySet().iterator().next(), batchError);
+        }
+        Map<String, RuntimeException> failed = new LinkedHashMap<>();
+        for (Map.Entry<String, List<? extends AbstractPost>> entry : batch.entrySet()) {
+            try {
+                delegate.saveAll(Map.of(entry.getKey(), entry.getValue()));
+            } catch (RuntimeException e) {
+                failed.put(entry.getKey(), e);
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * Gọi khi giữ lock: cập nhật hàng đợi sau một lượt ghi. Key lỗi quay lại ĐẦU hàng đợi
+     * (save() mới hơn cùng key đang trong pending thắng) hoặc thành dead letter khi hết lượt thử.
+     *
+     * @return Lỗi của một key còn chờ thử lại, null nếu batch đã xong (ghi được hoặc dead letter)
+     */
+    private RuntimeException settle(Map<String, List<? extends AbstractPost>> batch,
+                                    Map<String, RuntimeException> failed) {
+        LinkedHashMap<String, List<? extends AbstractPost>> requeued = new LinkedHashMap<>();
+        RuntimeException error = null;
+        for (Map.Entry<String, List<? extends AbstractPost>> entry : batch.entrySet()) {
+            String key = entry.getKey();
+            if (pending.containsKey(key)) {
+                continue; // Bản mới hơn đang chờ → bản này không còn ý nghĩa
+            }
+            RuntimeException keyError = failed.get(key);
+            if (keyError == null) {
+                attempts.remove(key);
+                sequences.remove(key);
+                continue;
+            }
+            int count = attempts.merge(key, 1, Integer::sum);
+            if (count >= maxAttempts) {
+                attempts.remove(key);
+                deadLetters.put(key, new DeadLetter(sequences.remove(key), count, keyError));
+                System.err.println("✗ Write-behind gave up on key '" + key + "' after " + count + " attempts: "
+                        + keyError.getMessage());
+            } else {
+                requeued.put(key, entry.getValue());
+                error = keyError;
+            }
+        }
+        requeued.putAll(pending);
+        pending = requeued;
+        return error;
+    }
+}
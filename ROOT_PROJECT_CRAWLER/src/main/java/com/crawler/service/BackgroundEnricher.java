@@ -0,0 +1,308 @@
+package com.crawler.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.crawler.config.CrawlerConfig;
+import com.crawler.model.AbstractPost;
+import com.crawler.processor.IDataProcessor;
+import com.crawler.repository.EnrichmentJobStore;
+import com.crawler.repository.IPostRepository;
+
+/**
+ * BackgroundEnricher - Pha 2 của ingest hai pha: enrich các segment bài thô từ hàng đợi bền vững
+ *
+ * PostService (pha 1) lưu bài thô của một gap ngay sau khi crawl + filter rồi stage()/submit() cache key;
+ * một worker nền lấy job đến hạn từ EnrichmentJobStore: load segment → chạy chuỗi processor enrich
+ * → ghi đè segment dưới CÙNG cache key → xóa job.
+ *
+ * ĐỘ BỀN:
+ * - Job nằm trong SQLite → process chết giữa chừng thì lần khởi động sau worker chạy tiếp (recover)
+ * - Lỗi enrich chỉ làm job được thử lại (exponential backoff), KHÔNG bao giờ phải crawl lại
+ * - Hết số lần thử → failed: segment giữ bài thô, được thử lại khi BackgroundEnricher khởi động lại
+ * - Bài bị hoãn vì hết quota AI (isEnrichmentDeferred) → phần đã enrich được lưu, job hẹn lại
+ *   sau một cửa sổ quota mà không tính là thất bại
+ *
+ * - Job chỉ bị xóa sau khi segment đã enrich được ghi BỀN VỮNG (repository.flush(), vd. write-behind);
+ *   ghi lỗi → job được thử lại như lỗi enrich
+ *
+ * Worker enrich BẢN SAO (AbstractPost.copy) của các post do repository trả về → không đụng tới
+ * post mà reader đang giữ (L1 của CachingPostRepository, kết quả getPosts); save() sau đó làm mới L1.
+ *
+ * Một worker cho mỗi owner (crawler + chuỗi processor, xem PostService) → job của cùng một chuỗi chạy
+ * tuần tự, song song hóa bên trong do chính processor đảm nhận (WebhookProcessor, FanOutProcessor).
+ */
+public class BackgroundEnricher implements AutoCloseable {
+
+    private final IPostRepository repository;
+    private final List<IDataProcessor<AbstractPost>> processors;
+    private final EnrichmentJobStore store;
+    private final String owner;
+    private final int maxAttempts;
+    private final long retryBaseMillis;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition wake = lock.newCondition();
+    private final Condition settled = lock.newCondition();
+    // Tăng sau mỗi job kết thúc (xong / hẹn lại / thất bại) → awaitEnriched không lỡ thông báo
+    private long generation;
+    private boolean signalled;
+    private boolean closed;
+
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong postponed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    private final Thread worker;
+
+    /**
+     * @param repository Repository chứa segment bài thô (cũng là nơi ghi đè kết quả)
+     * @param processors Chuỗi processor pha 2 (đã được planner sắp xếp)
+     * @param store Hàng đợi bền vững
+     * @param owner Định danh chuỗi sở hữu các segment (crawler + processor)
+     * @param maxAttempts Số lần thất bại tối đa trước khi job bị đánh dấu failed
+     * @param retryBaseMillis Độ trễ trước lần thử lại đầu tiên, nhân đôi sau mỗi lần
+     */
+    public BackgroundEnricher(IPostRepository repository, List<IDataProcessor<AbstractPost>> processors,
+                              EnrichmentJobStore store, String owner, int maxAttempts, long retryBaseMillis) {
+        if (repository == null || processors == null || store == null || owner == null) {
+            throw new IllegalArgumentException("All dependencies (repository, processors, store, owner) must be non-null!");
+        }
+        if (maxAttempts <= 0 || retryBaseMillis < 0) {
+            throw new IllegalArgumentException("maxAttempts must be positive and retryBaseMillis non-negative");
+        }
+        this.repository = repository;
+        this.processors = List.copyOf(processors);
+        this.store = store;
+        this.owner = owner;
+        this.maxAttempts = maxAttempts;
+        this.retryBaseMillis = retryBaseMillis;
+
+        // Khôi phục TRƯỚC khi nhận request: reader không thấy trạng thái cũ (running/failed) của lần chạy trước
+        int resumed = store.recover(owner, repository::isCached);
+        if (resumed > 0) {
+            System.out.println("✓ Background enricher [" + owner + "] resuming " + resumed + " pending segments");
+        }
+
+        this.worker = new Thread(this::runWorker, "background-enricher-" + owner);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Constructor mặc định: số lần thử và backoff lấy từ CrawlerConfig
+     */
+    public BackgroundEnricher(IPostRepository repository, List<IDataProcessor<AbstractPost>> processors,
+                              EnrichmentJobStore store, String owner) {
+        this(repository, processors, store, owner,
+                CrawlerConfig.getIngestMaxAttempts(), CrawlerConfig.getIngestRetryBaseMillis());
+    }
+
+    // ========== PHA 1 (PostService) ==========
+
+    /**
+     * Ghi job TRƯỚC khi lưu segment bài thô
+     *
+     * @return false nếu hàng đợi không ghi được → caller nên enrich ngay
+     */
+    public boolean stage(String key) {
+        return store.stage(key, owner);
+    }
+
+    /**
+     * Segment bài thô đã được lưu → đánh thức worker
+     */
+    public void submit(String key) {
+        store.release(key);
+        lock.lock();
+        try {
+            signalled = true;
+            wake.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Các key còn trong hàng đợi (chưa enrich xong hoặc đã failed)
+     */
+    public Set<String> unsettled(Collection<String> keys) {
+        return store.statusOf(keys).keySet();
+    }
+
+    /**
+     * Chờ đến khi mọi key được enrich xong
+     *
+     * @return true nếu xong trong thời gian cho phép; false nếu hết hạn hoặc có job failed
+     */
+    public boolean awaitEnriched(Collection<String> keys, long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (true) {
+            long seen;
+            lock.lock();
+            try {
+                seen = generation;
+            } finally {
+                lock.unlock();
+            }
+
+            Map<String, String> statuses = store.statusOf(keys);
+            if (statuses.isEmpty()) {
+                return true;
+            }
+            if (statuses.containsValue(EnrichmentJobStore.FAILED)) {
+                return false;
+            }
+
+            lock.lock();
+            try {
+                long remaining = deadline - System.nanoTime();
+                while (generation == seen) {
+                    if (remaining <= 0 || closed) {
+                        return false;
+                    }
+                    remaining = settled.awaitNanos(remaining);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    public String getStats() {
+        return String.format("completed=%d, retried=%d, postponed=%d, failed=%d",
+                completed.get(), retried.get(), postponed.get(), failed.get());
+    }
+
+    /**
+     * Dừng worker sau job đang chạy; job còn lại nằm trong hàng đợi cho lần khởi động sau
+     * (bị interrupt khi chờ → trả lại cờ interrupt, không chờ job đang chạy)
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            wake.signal();
+            settled.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ========== PHA 2 (WORKER) ==========
+
+    private void runWorker() {
+        while (true) {
+            lock.lock();
+            try {
+                if (closed) {
+                    return;
+                }
+                signalled = false;
+            } finally {
+                lock.unlock();
+            }
+
+            EnrichmentJobStore.Job job = store.claimDue(owner, System.currentTimeMillis());
+            if (job != null) {
+                run(job);
+                continue;
+            }
+
+            // Không có job đến hạn: ngủ tới job sớm nhất hoặc tới khi submit()/close() đánh thức
+            long nextDueAt = store.nextDueAt(owner);
+            lock.lock();
+            try {
+                if (!signalled && !closed) {
+                    if (nextDueAt == Long.MAX_VALUE) {
+                        wake.awaitUninterruptibly();
+                    } else {
+                        wake.awaitNanos(TimeUnit.MILLISECONDS.toNanos(nextDueAt - System.currentTimeMillis()));
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void run(EnrichmentJobStore.Job job) {
+        String key = job.key();
+        try {
+            List<? extends AbstractPost> raw = repository.load(key);
+            if (raw == null) {
+                // Segment đã bị xóa khỏi repository → không còn gì để enrich
+                store.complete(key);
+            } else {
+                List<AbstractPost> current = new ArrayList<>(raw.size());
+                for (AbstractPost post : raw) {
+                    // Bản sao riêng của worker: cờ hoãn chỉ còn do processor đặt lại (hết quota)
+                    AbstractPost copy = post.copy();
+                    copy.setEnrichmentDeferred(false);
+                    current.add(copy);
+                }
+                for (IDataProcessor<AbstractPost> processor : processors) {
+                    current = processor.process(current);
+                }
+                repository.save(current, key);
+                // Xóa / hẹn lại job chỉ khi segment đã enrich nằm trên đĩa
+                repository.flush();
+
+                long deferred = current.stream().filter(AbstractPost::isEnrichmentDeferred).count();
+                if (deferred > 0) {
+                    postponed.incrementAndGet();
+                    long delay = TimeUnit.SECONDS.toMillis(CrawlerConfig.getEnrichQuotaWindowSeconds());
+                    store.postpone(key, System.currentTimeMillis() + delay);
+                    System.out.println("✓ Background enricher: " + key + " partially enriched, " + deferred
+                            + " posts deferred by quota, retrying in " + delay + " ms");
+                } else {
+                    completed.incrementAndGet();
+                    store.complete(key);
+                    System.out.println("✓ Background enricher: " + key + " enriched (" + current.size() + " posts)");
+                }
+            }
+        } catch (RuntimeException e) {
+            int attempts = job.attempts() + 1;
+            if (attempts >= maxAttempts) {
+                failed.incrementAndGet();
+                store.fail(key, e.getMessage());
+                System.err.println("✗ Background enricher: " + key + " failed " + attempts
+                        + " times, keeping raw posts: " + e.getMessage());
+            } else {
+                retried.incrementAndGet();
+                long delay = retryBaseMillis << Math.min(attempts - 1, 20);
+                store.retry(key, e.getMessage(), System.currentTimeMillis() + delay);
+                System.err.println("✗ Background enricher: " + key + " attempt " + attempts + " failed ("
+                        + e.getMessage() + "), retrying in " + delay + " ms");
+            }
+        }
+
+        lock.lock();
+        try {
+            generation++;
+            settled.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
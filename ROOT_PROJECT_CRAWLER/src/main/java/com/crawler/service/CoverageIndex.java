@@ -0,0 +1,111 @@
+package com.crawler.service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+import com.crawler.repository.IPostRepository;
+import com.crawler.util.CacheKeyFactory;
+import com.crawler.util.DateRange;
+
+/**
+ * CoverageIndex - Chỉ mục KHOẢNG NGÀY đã được cache cho từng scope (keyword + nguồn).
+ *
+ * SRP: Chỉ trả lời câu hỏi "khoảng ngày nào của scope này đã có trong repository?"
+ *
+ * Mỗi scope giữ một TreeMap<startDate, Segment> (interval index sắp theo ngày bắt đầu).
+ * Index được dựng LAZY từ IPostRepository.findKeys ở lần truy cập đầu tiên,
+ * sau đó cập nhật trực tiếp mỗi khi service lưu một segment mới
+ * và khi repository báo dữ liệu bị xóa (removal listener).
+ */
+public class CoverageIndex {
+
+    private final IPostRepository repository;
+    private final Map<String, NavigableMap<LocalDate, Segment>> segmentsByScope = new ConcurrentHashMap<>();
+
+    public CoverageIndex(IPostRepository repository) {
+        this.repository = repository;
+        // Partition bị drop → segment liên quan không còn phủ khoảng ngày của nó
+        repository.addRemovalListener(this::forgetMatching);
+    }
+
+    /**
+     * Các segment đã cache có giao với khoảng cần tìm, theo thứ tự ngày bắt đầu
+     */
+    public List<Segment> overlapping(String scope, DateRange range) {
+        NavigableMap<LocalDate, Segment> segments = segmentsOf(scope);
+        List<Segment> result = new ArrayList<>();
+        synchronized (segments) {
+            // Chỉ các segment bắt đầu <= range.end mới có thể giao với range
+            for (Segment segment : segments.headMap(range.end(), true).values()) {
+                if (segment.range().overlaps(range)) {
+                    result.add(segment);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Ghi nhận một segment vừa được lưu vào repository
+     */
+    public void record(String scope, String key, DateRange range) {
+        NavigableMap<LocalDate, Segment> segments = segmentsOf(scope);
+        synchronized (segments) {
+            put(segments, new Segment(key, range));
+        }
+    }
+
+    /**
+     * Bỏ một segment không còn trong repository (load trả null, partition bị drop...)
+     * → khoảng ngày của nó lại thành gap và được crawl lại
+     */
+    public void forget(String scope, String key) {
+        NavigableMap<LocalDate, Segment> segments = segmentsOf(scope);
+        synchronized (segments) {
+            segments.values().removeIf(segment -> segment.key().equals(key));
+        }
+    }
+
+    private void forgetMatching(Predicate<String> removed) {
+        for (NavigableMap<LocalDate, Segment> segments : segmentsByScope.values()) {
+            synchronized (segments) {
+                segments.values().removeIf(segment -> removed.test(segment.key()));
+            }
+        }
+    }
+
+    private NavigableMap<LocalDate, Segment> segmentsOf(String scope) {
+        return segmentsByScope.computeIfAbsent(scope, s -> {
+            NavigableMap<LocalDate, Segment> segments = new TreeMap<>();
+            for (String key : repository.findKeys(CacheKeyFactory.scopePrefix(s))) {
+                DateRange range = CacheKeyFactory.parseRange(key);
+                if (range != null) {
+                    put(segments, new Segment(key, range));
+                }
+            }
+            return segments;
+        });
+    }
+
+    /**
+     * Hai segment cùng ngày bắt đầu → giữ segment dài hơn (nó phủ luôn segment ngắn)
+     */
+    private static void put(NavigableMap<LocalDate, Segment> segments, Segment segment) {
+        Segment existing = segments.get(segment.range().start());
+        if (existing == null || !existing.range().end().isAfter(segment.range().end())) {
+            segments.put(segment.range().start(), segment);
+        }
+    }
+
+    /**
+     * Một cache entry trong repository và khoảng ngày nó phủ
+     */
+    public record Segment(String key, DateRange range) {
+    }
+}
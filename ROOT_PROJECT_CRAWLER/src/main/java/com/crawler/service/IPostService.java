@@ -18,24 +18,36 @@ import java.util.List;
  * OCP: Có thể thay đổi cách implement caching mà KHÔNG ẢNH HƯỞNG Controller
  *
  * WORKFLOW:
- * 1. Kiểm tra cache (Repository.isCached)
- * 2. Nếu có cache → Load từ Repository
- * 3. Nếu không → Crawl từ ISearchClient → Process qua IDataProcessor → Save vào Repository
+ * 1. Kiểm tra các khoảng ngày đã cache (theo keyword + nguồn)
+ * 2. Phần đã có → Load từ Repository
+ * 3. Phần còn thiếu → Crawl từ ISearchClient → Process qua IDataProcessor → Save vào Repository
+ *
+ * INGEST HAI PHA (tùy implementation): bài thô được lưu trước, enrich sau trong hàng đợi nền
+ * → caller chọn ReadMode: nhận bài thô ngay hay chờ bản đã enrich.
  */
 public interface IPostService {
 
+    /**
+     * Ngữ nghĩa đọc khi segment còn đang chờ enrich nền
+     */
+    enum ReadMode {
+        /** Trả ngay bài đang có; bài chưa enrich được đánh dấu isEnrichmentDeferred() */
+        RAW_NOW,
+        /** Chờ enrich xong (có giới hạn thời gian) rồi mới trả */
+        ENRICHED
+    }
+
     /**
      * Lấy danh sách posts với caching logic
      * POLYMORPHISM: Trả về List<? extends AbstractPost> (có thể là NewsPost hoặc SocialPost)
      *
      * Luồng xử lý:
-     * 1. Check repository.isCached(keyword)
-     * 2. Nếu cached → return repository.load(keyword)
-     * 3. Nếu không:
-     *    a. crawler.search(keyword, startDate, endDate)
+     * 1. Tìm các segment đã cache giao với [startDate, endDate]
+     * 2. Với mỗi khoảng còn thiếu (gap):
+     *    a. crawler.search(keyword, gapStart, gapEnd)
      *    b. processor.process(rawPosts)  // Gọi webhook để lấy metadata
-     *    c. repository.save(enrichedPosts, keyword)
-     *    d. return enrichedPosts
+     *    c. repository.save(enrichedPosts, gapKey)
+     * 3. Ghép posts từ cache + gap, dedupe, return
      *
      * @param keyword Từ khóa tìm kiếm
      * @param startDate Ngày bắt đầu lọc
@@ -44,4 +56,15 @@ public interface IPostService {
      * @throws CrawlerException Nếu crawl hoặc xử lý thất bại
      */
     List<? extends AbstractPost> getPosts(String keyword, LocalDate startDate, LocalDate endDate) throws CrawlerException;
+
+    /**
+     * Như getPosts(keyword, startDate, endDate) nhưng chọn rõ ngữ nghĩa đọc.
+     * Mặc định: implementation enrich xong mới lưu → mọi ReadMode đều nhận bài đã enrich.
+     *
+     * @param readMode RAW_NOW hoặc ENRICHED
+     */
+    default List<? extends AbstractPost> getPosts(String keyword, LocalDate startDate, LocalDate endDate,
+                                                  ReadMode readMode) throws CrawlerException {
+        return getPosts(keyword, startDate, endDate);
+    }
 }
@@ -2,14 +2,24 @@ package com.crawler.service;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import com.crawler.client.CrawlerException;
 import com.crawler.client.ISearchClient;
+import com.crawler.config.CrawlerConfig;
 import com.crawler.model.AbstractPost;
 import com.crawler.processor.IDataProcessor;
+import com.crawler.processor.ProcessorPlanner;
+import com.crawler.processor.StreamPipeline;
+import com.crawler.repository.EnrichmentJobStore;
 import com.crawler.repository.IPostRepository;
 import com.crawler.util.CacheKeyFactory;
+import com.crawler.util.DateRange;
 
 /**
  * PostService - CONCRETE IMPLEMENTATION của IPostService
@@ -24,14 +34,33 @@ import com.crawler.util.CacheKeyFactory;
  * - DIP: Phụ thuộc vào ABSTRACTION, không phụ thuộc vào concrete class
  * - Dễ dàng test bằng Mock objects
  *
- * CACHING WORKFLOW:
- * 1. Check repository.isCached(keyword)
- * 2. Nếu cached → Load từ Repository (nhanh, không tốn API calls)
- * 3. Nếu không:
- * a. Crawl từ ISearchClient
+ * CACHING WORKFLOW (RANGE-AWARE):
+ * 1. Tra CoverageIndex: các khoảng ngày đã cache cho keyword + nguồn
+ * 2. Phần đã có → Load từ Repository (nhanh, không tốn API calls)
+ * 3. Phần còn thiếu (gaps):
+ * a. Crawl từ ISearchClient chỉ trong gap
  * b. Enrich qua IDataProcessor (gọi webhook)
- * c. Save vào Repository
- * d. Return enriched posts
+ * c. Save vào Repository (mỗi gap một segment)
+ * d. Ghép + dedupe rồi return
+ * - Chỉ ngày ĐÃ KHÉP (trước hôm nay) được lưu + tính là đã phủ; hôm nay/tương lai luôn được crawl lại
+ * - Segment có trong index nhưng load trả null → khoảng đó thành gap và được crawl lại
+ * - Gap có bài bị hoãn enrich vì hết quota AI (enrich ngay, không qua hàng đợi) → KHÔNG lưu, KHÔNG tính
+ *   là đã phủ: lần gọi sau crawl lại gap đó và enrich tiếp (bài đã enrich được lấy lại từ EnrichmentCache)
+ *
+ * STREAMING (mặc định, crawler.pipeline.mode=streaming):
+ * - Bước a và b chồng lên nhau: mỗi trang crawl xong đi ngay qua filter → enrich (StreamPipeline)
+ * - Bước c vẫn ghi MỘT lần cho cả gap: CoverageIndex dựng lại độ phủ từ cache key,
+ *   nên ghi dở một gap sẽ bị hiểu nhầm là đã phủ đủ gap đó
+ *
+ * INGEST HAI PHA (crawler.ingest.mode=two-phase):
+ * - Pha 1: crawl + các filter đứng đầu chuỗi (selectivity < 1) → lưu bài thô, job vào hàng đợi bền vững
+ * - Pha 2: BackgroundEnricher chạy phần còn lại của chuỗi (enricher) và ghi đè segment
+ * → lỗi AI / process chết chỉ làm job được thử lại, gap KHÔNG bao giờ bị crawl lại vì enrich thất bại
+ * - ReadMode.ENRICHED chờ hàng đợi (tối đa crawler.ingest.wait.ms), RAW_NOW trả ngay;
+ *   bài của segment còn trong hàng đợi được đánh dấu isEnrichmentDeferred()
+ *
+ * THỨ TỰ PROCESSOR: ProcessorPlanner sắp lại theo cost/selectivity (filter rẻ trước enricher đắt)
+ * và đẩy bộ lọc pushable xuống crawler → crawler được inject phải dành riêng cho service này.
  *
  * SOLID PRINCIPLES:
  * - SRP: Chỉ có MỘT trách nhiệm - Orchestration và caching logic
@@ -39,13 +68,25 @@ import com.crawler.util.CacheKeyFactory;
  * - LSP: Mọi implementation của IPostRepository/IDataProcessor đều hoạt động
  * - DIP: Phụ thuộc vào interface, không phụ thuộc vào concrete class
  */
-public class PostService implements IPostService {
+public class PostService implements IPostService, AutoCloseable {
 
     private final IPostRepository repository;
     private final ISearchClient crawler;
-    // Chấp nhận IDataProcessor với Wildcard Super để cho phép các processor 
-    // làm việc với AbstractPost (Webhook) hoặc lớp con của nó (Filter).
-    private final List<IDataProcessor<? super AbstractPost>> processors;
+    // Chuỗi processor SAU khi planner sắp xếp + pushdown; processor chỉ nhận một loại post con
+    // (Filter<NewsPost>) đã được bọc để cho post loại khác đi qua nguyên vẹn.
+    private final List<IDataProcessor<AbstractPost>> processors;
+    private final CoverageIndex coverageIndex;
+
+    // Hai pha: ingestProcessors chạy lúc crawl, phần còn lại do enricher chạy nền (null = một pha)
+    private final List<IDataProcessor<AbstractPost>> ingestProcessors;
+    private final BackgroundEnricher enricher;
+
+    // Thread phát item giữa các stage streaming - daemon, tự thu hồi khi rảnh
+    private static final ExecutorService STREAM_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "post-stream");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     /**
      * Constructor Injection - DEPENDENCY INJECTION PATTERN
@@ -55,7 +96,7 @@ public class PostService implements IPostService {
      * @param crawler Crawler để crawl posts mới
      * @param processor Processor để enrich posts (webhook, filtering...)
      */
-    public PostService(IPostRepository repository, ISearchClient crawler, IDataProcessor<? super AbstractPost> processor) {
+    public PostService(IPostRepository repository, ISearchClient crawler, IDataProcessor<?> processor) {
         this(repository, crawler, List.of(processor));
     }
 
@@ -63,94 +104,351 @@ public class PostService implements IPostService {
      * Constructor Injection - CHAIN OF PROCESSORS
      * @param repository Repository để lưu/load posts
      * @param crawler Crawler để crawl posts mới
-     * @param processors Danh sách processor (Filter/Webhook/Validation...)
+     * @param processors Danh sách processor (Filter/Webhook/Validation...) - thứ tự chạy do ProcessorPlanner quyết định
      */
-    public PostService(IPostRepository repository, ISearchClient crawler, List<IDataProcessor<? super AbstractPost>> processors) {
+    public PostService(IPostRepository repository, ISearchClient crawler, List<? extends IDataProcessor<?>> processors) {
+        this(repository, crawler, processors,
+                "two-phase".equalsIgnoreCase(CrawlerConfig.getIngestMode()) ? new EnrichmentJobStore() : null);
+    }
+
+    /**
+     * Constructor Injection - INGEST HAI PHA
+     * @param repository Repository để lưu/load posts
+     * @param crawler Crawler để crawl posts mới
+     * @param processors Danh sách processor - thứ tự chạy do ProcessorPlanner quyết định
+     * @param jobStore Hàng đợi enrich bền vững; null = enrich xong mới lưu (một pha)
+     */
+    public PostService(IPostRepository repository, ISearchClient crawler, List<? extends IDataProcessor<?>> processors,
+                       EnrichmentJobStore jobStore) {
         if (repository == null || crawler == null || processors == null) {
             throw new IllegalArgumentException("All dependencies (repository, crawler, processors) must be non-null!");
         }
 
         this.repository = repository;
         this.crawler = crawler;
-        this.processors = new ArrayList<>(processors);
+        this.processors = ProcessorPlanner.plan(processors, crawler);
+        this.coverageIndex = new CoverageIndex(repository);
+
+        // Pha 1 = các filter đứng đầu chuỗi đã sắp xếp; từ processor đầu tiên không loại bài trở đi là pha 2
+        int split = 0;
+        while (split < this.processors.size() && this.processors.get(split).selectivity() < 1.0) {
+            split++;
+        }
+        if (jobStore != null && split < this.processors.size()) {
+            this.ingestProcessors = this.processors.subList(0, split);
+            this.enricher = new BackgroundEnricher(repository, this.processors.subList(split, this.processors.size()),
+                    jobStore, jobOwner(crawler, this.processors));
+        } else {
+            this.ingestProcessors = this.processors;
+            this.enricher = null;
+        }
     }
 
     /**
-     * Lấy danh sách posts với caching logic
+     * Owner của job enrich nền: crawler + chuỗi processor (đã sắp xếp) → hai service cùng crawler
+     * nhưng khác chuỗi không lấy job của nhau; cùng cấu hình thì cùng owner qua các lần khởi động
+     * (job còn lại được chạy tiếp). Đổi chuỗi = owner mới, job của chuỗi cũ không còn ai lấy.
+     */
+    private static String jobOwner(ISearchClient crawler, List<IDataProcessor<AbstractPost>> chain) {
+        List<String> names = new ArrayList<>(chain.size());
+        for (IDataProcessor<AbstractPost> processor : chain) {
+            names.add(processor.name());
+        }
+        return crawler.getClass().getSimpleName() + "#" + Integer.toHexString(String.join(">", names).hashCode());
+    }
+
+    /**
+     * Lấy danh sách posts với caching logic THEO KHOẢNG NGÀY
      * POLYMORPHISM: Trả về List<? extends AbstractPost> (NewsPost hoặc SocialPost)
      *
      * WORKFLOW:
-     * 1. Check cache
-     * 2. If cached → return từ cache (FAST PATH)
-     * 3. If not → crawl → process → save → return (SLOW PATH)
+     * 1. Tìm các segment đã cache (cùng keyword + nguồn) giao với [startDate, endDate]
+     * 2. Tính các khoảng CHƯA được phủ (gaps)
+     * 3. Chỉ crawl → process → save cho từng gap (SLOW PATH chỉ cho phần thiếu)
+     * 4. Ghép posts từ segment cũ + gap mới, lọc theo khoảng ngày, dedupe theo identity
+     *
+     * Ví dụ: đã cache 1–30/11, hỏi 1–15/11 → không crawl; hỏi 1/11–5/12 → chỉ crawl 1–5/12.
      *
      * NOTE: Crawler lifecycle (initialize/close) KHÔNG được quản lý ở đây.
      * Application layer (Main/TestRunner) phải đảm bảo crawler đã được initialize trước khi gọi service.
      */
     @Override
     public List<? extends AbstractPost> getPosts(String keyword, LocalDate startDate, LocalDate endDate) throws CrawlerException {
-        // 1. TẠO CACHE KEY: Keyword + DateRange (uỷ quyền cho CacheKeyFactory để tách SRP)
-        String cacheKey = CacheKeyFactory.createKey(keyword, startDate, endDate);
+        return getPosts(keyword, startDate, endDate,
+                "raw".equalsIgnoreCase(CrawlerConfig.getIngestReadMode()) ? ReadMode.RAW_NOW : ReadMode.ENRICHED);
+    }
+
+    /**
+     * Như getPosts(keyword, startDate, endDate) với ngữ nghĩa đọc cho segment còn chờ enrich nền
+     * (chỉ có tác dụng ở chế độ hai pha)
+     */
+    @Override
+    public List<? extends AbstractPost> getPosts(String keyword, LocalDate startDate, LocalDate endDate,
+                                                 ReadMode readMode) throws CrawlerException {
+        // 1. SCOPE: keyword chuẩn hóa + nguồn crawl (uỷ quyền cho CacheKeyFactory để tách SRP)
+        DateRange requested = DateRange.of(startDate, endDate);
+        String scope = CacheKeyFactory.createScope(keyword, crawler.getClass().getSimpleName());
+
+        System.out.println("[PostService] Checking cache for scope: " + scope + " " + requested);
+
+        // Chỉ ngày đã khép (trước hôm nay) mới được coi là đã phủ: ngày hôm nay/tương lai còn bài mới
+        LocalDate closedThrough = LocalDate.now().minusDays(1);
+
+        // 2. Posts theo segment (cache key), segment cũ trước gap mới
+        Map<String, List<? extends AbstractPost>> segments = new LinkedHashMap<>();
+        List<DateRange> covered = new ArrayList<>();
+
+        for (CoverageIndex.Segment segment : coverageIndex.overlapping(scope, requested)) {
+            List<? extends AbstractPost> cached = repository.load(segment.key());
+            if (cached == null) {
+                // Segment biến mất khỏi repository → khoảng của nó thành gap, crawl lại
+                System.err.println("✗ Segment " + segment.key() + " không còn trong repository, crawl lại");
+                coverageIndex.forget(scope, segment.key());
+                continue;
+            }
+            segments.put(segment.key(), cached);
+            // Segment ghi từ trước có thể chứa cả ngày chưa khép lúc đó → phần đó vẫn crawl lại
+            DateRange closed = segment.range().intersect(DateRange.of(null, closedThrough));
+            if (closed != null) {
+                covered.add(closed);
+            }
+        }
+        List<DateRange> gaps = requested.subtract(covered);
+
+        if (gaps.isEmpty()) {
+            System.out.println("-> Cache HIT! (" + segments.size() + " segment)");
+        } else {
+            System.out.println("-> Cache MISS cho " + gaps.size() + " khoảng: " + gaps + ". Crawling...");
+        }
+
+        for (DateRange gap : gaps) {
+            crawlGap(keyword, scope, gap, closedThrough, readMode, segments);
+        }
+
+        if (enricher != null) {
+            awaitEnrichment(segments, readMode);
+        }
+
+        // 3. Dedupe theo identity, giữ thứ tự xuất hiện
+        Map<String, AbstractPost> merged = new LinkedHashMap<>();
+        for (List<? extends AbstractPost> posts : segments.values()) {
+            mergeInto(merged, posts, requested);
+        }
+
+        return new ArrayList<>(merged.values());
+    }
+
+    /**
+     * Hai pha: (ENRICHED) chờ các segment còn trong hàng đợi rồi đọc lại bản đã enrich;
+     * segment vẫn chưa xong (RAW_NOW, hết hạn chờ hoặc failed) → bài thô được đánh dấu pending
+     */
+    private void awaitEnrichment(Map<String, List<? extends AbstractPost>> segments, ReadMode readMode) throws CrawlerException {
+        Set<String> pending = enricher.unsettled(segments.keySet());
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        if (readMode == ReadMode.ENRICHED) {
+            System.out.println("-> Chờ enrich nền cho " + pending.size() + " segment...");
+            try {
+                enricher.awaitEnriched(pending, CrawlerConfig.getIngestWaitMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CrawlerException("Interrupted while waiting for background enrichment", e);
+            }
+            Set<String> stillPending = enricher.unsettled(pending);
+            for (String key : pending) {
+                if (!stillPending.contains(key)) {
+                    List<? extends AbstractPost> enriched = repository.load(key);
+                    if (enriched != null) {
+                        segments.put(key, enriched);
+                    }
+                }
+            }
+            pending = stillPending;
+        }
+
+        // Đánh dấu trên BẢN SAO: post do repository trả về có thể đang được chia sẻ (L1, worker)
+        for (String key : pending) {
+            List<AbstractPost> flagged = new ArrayList<>();
+            for (AbstractPost post : segments.get(key)) {
+                AbstractPost copy = post.copy();
+                copy.setEnrichmentDeferred(true);
+                flagged.add(copy);
+            }
+            segments.put(key, flagged);
+        }
+        if (!pending.isEmpty()) {
+            System.out.println("-> " + pending.size() + " segment chưa enrich xong, trả bài thô (pending)");
+        }
+    }
+
+    /**
+     * Crawl → process → save cho MỘT khoảng ngày còn thiếu
+     * (hai pha: chỉ chạy filter, lưu bài thô rồi giao phần enrich cho hàng đợi nền)
+     *
+     * Chỉ phần ngày ĐÃ KHÉP (≤ closedThrough) được lưu + ghi vào CoverageIndex; bài của hôm nay/tương lai
+     * chỉ được trả về (không lưu) để lần gọi sau crawl lại và thấy bài mới.
+     *
+     * @param segments Nơi nhận kết quả: cache key → posts (phần chưa khép dùng key không được lưu)
+     */
+    private void crawlGap(String keyword, String scope, DateRange gap, LocalDate closedThrough, ReadMode readMode,
+                          Map<String, List<? extends AbstractPost>> segments) throws CrawlerException {
+        // Crawl + Process (Filter + enrichment, hoặc chỉ filter nếu hai pha)
+        List<? extends AbstractPost> processedPosts = "batch".equalsIgnoreCase(CrawlerConfig.getPipelineMode())
+                ? crawlThenProcess(keyword, gap, ingestProcessors)
+                : crawlStreaming(keyword, gap, ingestProcessors);
+
+        DateRange closed = gap.intersect(DateRange.of(null, closedThrough));
+        DateRange open = gap.intersect(DateRange.of(closedThrough.plusDays(1), null));
+
+        List<AbstractPost> closedPosts = new ArrayList<>();
+        List<AbstractPost> openPosts = new ArrayList<>();
+        for (AbstractPost post : processedPosts) {
+            // Bài không có ngày theo phần đã khép nếu có (như trước đây: thuộc segment của gap)
+            boolean isOpen = post.getPostDate() != null ? open != null && open.contains(post.getPostDate()) : closed == null;
+            (isOpen ? openPosts : closedPosts).add(post);
+        }
+
+        if (closed != null) {
+            String cacheKey = CacheKeyFactory.createRangeKey(scope, closed);
+            segments.put(cacheKey, saveSegment(scope, closed, cacheKey, closedPosts));
+        }
+        if (open != null) {
+            if (enricher != null && !openPosts.isEmpty()) {
+                // Không lưu → không có job nền: ENRICHED enrich ngay, RAW_NOW trả bài thô (pending)
+                if (readMode == ReadMode.ENRICHED) {
+                    openPosts = new ArrayList<>(applyProcessors(openPosts, enrichProcessors()));
+                } else {
+                    openPosts.forEach(post -> post.setEnrichmentDeferred(true));
+                }
+            }
+            segments.put(CacheKeyFactory.createRangeKey(scope, open), openPosts);
+        }
+    }
 
-        System.out.println("[PostService] Checking cache for key: " + cacheKey);
+    /**
+     * Lưu một segment đã khép + ghi CoverageIndex (hai pha: kèm job enrich nền)
+     *
+     * @return Posts của segment (chưa lưu nếu có bài bị hoãn vì hết quota mà không có job nền)
+     */
+    private List<? extends AbstractPost> saveSegment(String scope, DateRange range, String cacheKey,
+                                                     List<? extends AbstractPost> posts) throws CrawlerException {
+        // Job được ghi TRƯỚC segment: crash giữa hai bước vẫn còn job để khôi phục.
+        // Không ghi được hàng đợi → enrich ngay như một pha, không để segment thô không ai enrich.
+        boolean queued = false;
+        if (enricher != null && !posts.isEmpty()) {
+            queued = enricher.stage(cacheKey);
+            if (!queued) {
+                posts = applyProcessors(posts, enrichProcessors());
+            }
+        }
+
+        // Enrich ngay mà có bài bị hoãn vì hết quota: không job nào enrich lại chúng
+        // → không lưu, không ghi độ phủ; gap được crawl + enrich lại ở lần gọi sau
+        if (!queued) {
+            long deferred = posts.stream().filter(AbstractPost::isEnrichmentDeferred).count();
+            if (deferred > 0) {
+                System.out.println("-> " + range + ": " + deferred
+                        + " bài bị hoãn enrich (hết quota), không lưu cache để lần sau enrich lại");
+                return posts;
+            }
+        }
 
-        List<? extends AbstractPost> cached = repository.load(cacheKey);
-        if (cached != null && !cached.isEmpty()) {
-            System.out.println("-> Cache HIT!");
-            return new ArrayList<>(cached);
+        // Save Cache (kể cả danh sách rỗng: khoảng này đã được crawl)
+        repository.save(posts, cacheKey);
+        coverageIndex.record(scope, cacheKey, range);
+        if (queued) {
+            enricher.submit(cacheKey);
         }
+        return posts;
+    }
 
-        System.out.println("-> Cache MISS! Crawling...");
+    /**
+     * Phần chuỗi processor của pha 2 (rỗng nếu một pha)
+     */
+    private List<IDataProcessor<AbstractPost>> enrichProcessors() {
+        return processors.subList(ingestProcessors.size(), processors.size());
+    }
 
-        // 2. Crawl (DÙNG HÀM SEARCH MỚI VỚI DATE)
+    /**
+     * BATCH: crawl xong toàn bộ gap rồi mới chạy từng processor trên cả list
+     */
+    private List<? extends AbstractPost> crawlThenProcess(String keyword, DateRange gap,
+                                                          List<IDataProcessor<AbstractPost>> chain) throws CrawlerException {
         // Crawler đã được initialize bởi application layer
-        List<? extends AbstractPost> rawPosts = crawler.search(keyword, startDate, endDate);
+        List<? extends AbstractPost> rawPosts = crawler.search(keyword, gap.start(), gap.end());
+
+        List<AbstractPost> inGap = new ArrayList<>();
+        for (AbstractPost post : rawPosts) {
+            if (isInGap(post, gap)) {
+                inGap.add(post);
+            }
+        }
+        return applyProcessors(inGap, chain);
+    }
+
+    /**
+     * STREAMING: từng trang crawl được đẩy vào pipeline ngay khi parse xong;
+     * crawler bị chặn lại khi các stage phía sau chưa theo kịp (backpressure)
+     */
+    private List<? extends AbstractPost> crawlStreaming(String keyword, DateRange gap,
+                                                        List<IDataProcessor<AbstractPost>> chain) throws CrawlerException {
+        StreamPipeline<AbstractPost> pipeline = new StreamPipeline<>(chain, STREAM_EXECUTOR,
+                CrawlerConfig.getPipelineBufferSize(), CrawlerConfig.getPipelineBatchSize(),
+                !"unordered".equalsIgnoreCase(CrawlerConfig.getPipelineOrdering()));
 
-        // 3. Process (Filter + enrichment)
-        List<? extends AbstractPost> processedPosts = applyProcessors(rawPosts);
+        return pipeline.run(emit -> crawler.searchPages(keyword, gap.start(), gap.end(), page -> {
+            for (AbstractPost post : page) {
+                if (isInGap(post, gap)) {
+                    emit.accept(post);
+                }
+            }
+        }));
+    }
 
-        // 4. Save Cache
-        repository.save(processedPosts, cacheKey);
+    /**
+     * Một số nguồn (TikTok, X) không lọc theo ngày → chỉ giữ bài thuộc gap (hoặc không có ngày)
+     */
+    private static boolean isInGap(AbstractPost post, DateRange gap) {
+        return post.getPostDate() == null || gap.contains(post.getPostDate());
+    }
 
-        return processedPosts;
+    private static void mergeInto(Map<String, AbstractPost> merged, List<? extends AbstractPost> posts, DateRange requested) {
+        for (AbstractPost post : posts) {
+            if (post.getPostDate() != null && !requested.contains(post.getPostDate())) {
+                continue;
+            }
+            merged.putIfAbsent(post.getIdentityKey(), post);
+        }
     }
 
     /**
      * Apply processors với type safety
      * Loại bỏ unsafe casting bằng cách copy elements một cách an toàn
      */
-    private List<? extends AbstractPost> applyProcessors(List<? extends AbstractPost> rawPosts) throws CrawlerException {
+    private static List<? extends AbstractPost> applyProcessors(List<? extends AbstractPost> rawPosts,
+                                                                List<IDataProcessor<AbstractPost>> chain) throws CrawlerException {
         // Copy elements một cách an toàn (không cast unsafe)
         List<AbstractPost> current = new ArrayList<>();
         for (AbstractPost post : rawPosts) {
             current.add(post);
         }
 
-        for (IDataProcessor<? super AbstractPost> processor : this.processors) {
-            if (processor == null) {
-                continue;
-            }
-            
-            // Process với type-safe approach
-            // Processor có wildcard super AbstractPost nên có thể nhận List<AbstractPost>
-            current = processWithProcessor(processor, current);
+        for (IDataProcessor<AbstractPost> processor : chain) {
+            current = processor.process(current);
         }
         return current;
     }
-    
+
     /**
-     * Helper method để process với type safety
-     * Sử dụng wildcard capture để tránh unsafe cast
+     * Dừng worker enrich nền (job còn lại được chạy tiếp ở lần khởi động sau)
      */
-    @SuppressWarnings("unchecked")
-    private <T extends AbstractPost> List<AbstractPost> processWithProcessor(
-            IDataProcessor<? super AbstractPost> processor, 
-            List<AbstractPost> posts) throws CrawlerException {
-        
-        // Safe cast: Processor với wildcard super AbstractPost có thể nhận List<AbstractPost>
-        // Và trả về List<AbstractPost> (vì T extends AbstractPost)
-        IDataProcessor<AbstractPost> concreteProcessor = (IDataProcessor<AbstractPost>) processor;
-        return concreteProcessor.process(posts);
+    @Override
+    public void close() {
+        if (enricher != null) {
+            enricher.close();
+        }
     }
 
     /**
@@ -0,0 +1,224 @@
+package com.crawler.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * AhoCorasick - Automaton tìm NHIỀU pattern cùng lúc trong MỘT lượt duyệt văn bản
+ *
+ * Thay cho K lần String.contains (K lượt quét): chi phí O(độ dài văn bản + số match),
+ * không phụ thuộc số pattern.
+ *
+ * CÀI ĐẶT: DFA đầy đủ (failure link đã được "gộp" vào bảng chuyển) trên bảng lớp ký tự:
+ * mỗi ký tự → lớp (char class) qua MỘT lần tra mảng, rồi state kế tiếp qua MỘT lần tra mảng.
+ * Ký tự không xuất hiện trong pattern nào thuộc lớp 0 (về root). Với caseInsensitive(),
+ * chữ hoa/thường cùng lớp → không cần toLowerCase văn bản.
+ *
+ * IMMUTABLE sau khi build → dùng chung giữa nhiều thread.
+ *
+ * Có 2 cách dùng:
+ * - search(text, handler): duyệt một CharSequence
+ * - root() / next(state, c) / outputs(state): caller tự đẩy từng char (vd. nhiều field liên tiếp
+ *   mà không cần nối chuỗi)
+ */
+public final class AhoCorasick {
+
+    private static final int[] NO_OUTPUT = new int[0];
+
+    private final String[] patterns;
+    // char → lớp ký tự (0 = không thuộc pattern nào)
+    private final char[] charClass;
+    private final int alphabetSize;
+    // delta[state * alphabetSize + class] = state kế tiếp
+    private final int[] delta;
+    // Các pattern kết thúc tại state (gồm cả pattern của suffix link)
+    private final int[][] outputs;
+
+    /**
+     * Callback cho mỗi lần match
+     */
+    @FunctionalInterface
+    public interface MatchHandler {
+        /**
+         * @param patternId Id của pattern (thứ tự add vào Builder)
+         * @param end Vị trí NGAY SAU ký tự cuối của match trong văn bản
+         */
+        void onMatch(int patternId, int end);
+    }
+
+    private AhoCorasick(String[] patterns, char[] charClass, int alphabetSize, int[] delta, int[][] outputs) {
+        this.patterns = patterns;
+        this.charClass = charClass;
+        this.alphabetSize = alphabetSize;
+        this.delta = delta;
+        this.outputs = outputs;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public int root() {
+        return 0;
+    }
+
+    /**
+     * Chuyển trạng thái khi đọc thêm ký tự c
+     */
+    public int next(int state, char c) {
+        return delta[state * alphabetSize + charClass[c]];
+    }
+
+    /**
+     * Id các pattern kết thúc tại state (mảng rỗng nếu không có) - KHÔNG được sửa mảng trả về
+     */
+    public int[] outputs(int state) {
+        return outputs[state];
+    }
+
+    /**
+     * Duyệt text một lượt, gọi handler cho MỌI match (kể cả chồng lấn)
+     */
+    public void search(CharSequence text, MatchHandler handler) {
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            state = next(state, text.charAt(i));
+            for (int id : outputs[state]) {
+                handler.onMatch(id, i + 1);
+            }
+        }
+    }
+
+    public String pattern(int id) {
+        return patterns[id];
+    }
+
+    public int patternCount() {
+        return patterns.length;
+    }
+
+    /**
+     * Builder - thu thập pattern rồi dựng trie → failure link (BFS) → bảng DFA
+     */
+    public static final class Builder {
+
+        private final List<String> patterns = new ArrayList<>();
+        private boolean caseInsensitive;
+
+        private Builder() {
+        }
+
+        /**
+         * Thêm pattern; id của nó = số pattern đã thêm trước đó
+         */
+        public Builder add(String pattern) {
+            if (pattern == null || pattern.isEmpty()) {
+                throw new IllegalArgumentException("Pattern must not be empty");
+            }
+            patterns.add(pattern);
+            return this;
+        }
+
+        /**
+         * Chữ hoa và chữ thường của cùng một ký tự được coi là một
+         * (pattern nên viết thường; chữ hoa trong văn bản được ánh xạ về cùng lớp)
+         */
+        public Builder caseInsensitive() {
+            this.caseInsensitive = true;
+            return this;
+        }
+
+        public AhoCorasick build() {
+            // 1. Bảng lớp ký tự: mỗi ký tự phân biệt trong pattern một lớp (bắt đầu từ 1)
+            char[] charClass = new char[Character.MAX_VALUE + 1];
+            int alphabetSize = 1;
+            for (String pattern : patterns) {
+                for (char c : pattern.toCharArray()) {
+                    char key = caseInsensitive ? Character.toLowerCase(c) : c;
+                    if (charClass[key] == 0) {
+                        if (alphabetSize > Character.MAX_VALUE) {
+                            throw new IllegalStateException("Too many distinct pattern characters");
+                        }
+                        charClass[key] = (char) alphabetSize++;
+                    }
+                }
+            }
+            if (caseInsensitive) {
+                for (int c = 0; c <= Character.MAX_VALUE; c++) {
+                    char lower = Character.toLowerCase((char) c);
+                    if (charClass[c] == 0 && charClass[lower] != 0) {
+                        charClass[c] = charClass[lower];
+                    }
+                }
+            }
+
+            // 2. Trie
+            List<Map<Integer, Integer>> children = new ArrayList<>();
+            List<List<Integer>> terminal = new ArrayList<>();
+            children.add(new HashMap<>());
+            terminal.add(new ArrayList<>());
+            for (int id = 0; id < patterns.size(); id++) {
+                int state = 0;
+                for (char c : patterns.get(id).toCharArray()) {
+                    int symbol = charClass[c];
+                    Integer target = children.get(state).get(symbol);
+                    if (target == null) {
+                        target = children.size();
+                        children.add(new HashMap<>());
+                        terminal.add(new ArrayList<>());
+                        children.get(state).put(symbol, target);
+                    }
+                    state = target;
+                }
+                terminal.get(state).add(id);
+            }
+
+            // 3. BFS: state nông xong trước → delta của failure state luôn đã đầy đủ
+            int size = children.size();
+            int[] delta = new int[size * alphabetSize];
+            int[] fail = new int[size];
+            int[][] outputs = new int[size][];
+            outputs[0] = NO_OUTPUT;
+
+            Queue<Integer> queue = new ArrayDeque<>();
+            for (Map.Entry<Integer, Integer> edge : children.get(0).entrySet()) {
+                delta[edge.getKey()] = edge.getValue();
+                queue.add(edge.getValue());
+            }
+            while (!queue.isEmpty()) {
+                int state = queue.poll();
+                outputs[state] = mergeOutputs(terminal.get(state), outputs[fail[state]]);
+                int base = state * alphabetSize;
+                int failBase = fail[state] * alphabetSize;
+                for (int symbol = 0; symbol < alphabetSize; symbol++) {
+                    Integer target = children.get(state).get(symbol);
+                    if (target == null) {
+                        delta[base + symbol] = delta[failBase + symbol];
+                    } else {
+                        delta[base + symbol] = target;
+                        fail[target] = delta[failBase + symbol];
+                        queue.add(target);
+                    }
+                }
+            }
+
+            return new AhoCorasick(patterns.toArray(new String[0]), charClass, alphabetSize, delta, outputs);
+        }
+
+        private static int[] mergeOutputs(List<Integer> own, int[] inherited) {
+            if (own.isEmpty()) {
+                return inherited;
+            }
+            int[] merged = new int[own.size() + inherited.length];
+            for (int i = 0; i < own.size(); i++) {
+                merged[i] = own.get(i);
+            }
+            System.arraycopy(inherited, 0, merged, own.size(), inherited.length);
+            return merged;
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.crawler.util;
 
 import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
 
 /**
  * CacheKeyFactory - Utility class để tạo cache keys
@@ -45,6 +47,58 @@ public final class CacheKeyFactory {
             startDate.toString(),
             endDate.toString());
     }
-}
 
+    /**
+     * Tạo "scope" cho cache theo khoảng ngày: keyword đã chuẩn hóa + nguồn crawl
+     * Format: normalized_keyword@source
+     *
+     * Mọi entry cùng scope chỉ khác nhau ở khoảng ngày → có thể ghép lại để trả lời
+     * một query có khoảng ngày khác (xem CoverageIndex trong service layer).
+     *
+     * @param keyword Từ khóa tìm kiếm
+     * @param source Tên nguồn crawl (ví dụ: VNExpressClient)
+     * @return Scope string
+     */
+    public static String createScope(String keyword, String source) {
+        String normalizedKeyword = keyword == null ? "" : keyword.trim().toLowerCase(Locale.ROOT);
+        return normalizedKeyword.replaceAll("\\s+", "_") + "@" + (source == null ? "" : source);
+    }
+
+    /**
+     * Tạo cache key cho một khoảng ngày thuộc scope
+     * Format: scope_startDate_endDate
+     */
+    public static String createRangeKey(String scope, DateRange range) {
+        return String.format("%s_%s_%s", scope, range.start(), range.end());
+    }
+
+    /**
+     * Prefix chung của mọi range key thuộc scope (dùng cho IPostRepository.findKeys)
+     */
+    public static String scopePrefix(String scope) {
+        return scope + "_";
+    }
 
+    /**
+     * Đọc lại khoảng ngày từ cache key (format keyword_startDate_endDate)
+     *
+     * @return DateRange, hoặc null nếu key không đúng format
+     */
+    public static DateRange parseRange(String key) {
+        if (key == null) {
+            return null;
+        }
+        int endSep = key.lastIndexOf('_');
+        int startSep = endSep > 0 ? key.lastIndexOf('_', endSep - 1) : -1;
+        if (startSep < 0) {
+            return null;
+        }
+        try {
+            return DateRange.of(
+                LocalDate.parse(key.substring(startSep + 1, endSep)),
+                LocalDate.parse(key.substring(endSep + 1)));
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.crawler.util;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * DateRange - Value object cho một khoảng ngày ĐÓNG [start, end].
+ *
+ * IMMUTABLE: record, không có setter.
+ * null start/end được hiểu là không giới hạn (LocalDate.MIN / LocalDate.MAX),
+ * đồng bộ với cách CacheKeyFactory xử lý.
+ */
+public record DateRange(LocalDate start, LocalDate end) {
+
+    public DateRange {
+        if (start == null) {
+            start = LocalDate.MIN;
+        }
+        if (end == null) {
+            end = LocalDate.MAX;
+        }
+        if (start.isAfter(end)) {
+            throw new IllegalArgumentException("Start date must not be after end date: " + start + " > " + end);
+        }
+    }
+
+    public static DateRange of(LocalDate start, LocalDate end) {
+        return new DateRange(start, end);
+    }
+
+    public boolean contains(LocalDate date) {
+        return date != null && !date.isBefore(start) && !date.isAfter(end);
+    }
+
+    public boolean overlaps(DateRange other) {
+        return !other.end.isBefore(start) && !other.start.isAfter(end);
+    }
+
+    /**
+     * Phần chung của hai khoảng
+     *
+     * @return null nếu hai khoảng không giao nhau
+     */
+    public DateRange intersect(DateRange other) {
+        if (!overlaps(other)) {
+            return null;
+        }
+        return new DateRange(start.isAfter(other.start) ? start : other.start,
+                end.isBefore(other.end) ? end : other.end);
+    }
+
+    /**
+     * Tính các khoảng CHƯA được phủ (gaps) sau khi trừ đi các khoảng đã có.
+     *
+     * @param covered Các khoảng đã có (có thể chồng lấn, không cần sắp xếp)
+     * @return Danh sách gap theo thứ tự thời gian, rỗng nếu đã phủ kín
+     */
+    public List<DateRange> subtract(Collection<DateRange> covered) {
+        List<DateRange> sorted = new ArrayList<>(covered);
+        sorted.sort(Comparator.comparing(DateRange::start));
+
+        List<DateRange> gaps = new ArrayList<>();
+        LocalDate cursor = start;
+        for (DateRange range : sorted) {
+            if (!range.overlaps(this) || range.end.isBefore(cursor)) {
+                continue;
+            }
+            if (range.start.isAfter(cursor)) {
+                gaps.add(new DateRange(cursor, range.start.minusDays(1)));
+            }
+            if (!range.end.isBefore(end)) {
+                return gaps; // Phủ tới cuối khoảng cần tìm
+            }
+            cursor = range.end.plusDays(1);
+        }
+        gaps.add(new DateRange(cursor, end));
+        return gaps;
+    }
+}
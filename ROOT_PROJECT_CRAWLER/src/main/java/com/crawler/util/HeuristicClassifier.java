@@ -0,0 +1,264 @@
+package com.crawler.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * HeuristicClassifier - Phân loại metadata bằng từ điển (không cần AI)
+ *
+ * Toàn bộ lexicon (cảm xúc, loại bài, hướng bài, thiệt hại, hàng cứu trợ) và gazetteer tỉnh/thành
+ * được biên dịch thành MỘT automaton Aho-Corasick → MỘT lượt duyệt văn bản cho mọi field.
+ *
+ * DỮ LIỆU: đọc từ resource (heuristics/lexicon.tsv, heuristics/provinces.tsv) → thêm từ/tỉnh không cần sửa code (OCP).
+ *
+ * SO KHỚP: không phân biệt hoa/thường, chỉ nhận match trọn âm tiết
+ * (ký tự trước/sau match không phải chữ/số → "huế" không khớp trong "thuế").
+ *
+ * XUNG ĐỘT trong cùng field: priority cao hơn thắng → nhiều match hơn thắng → xuất hiện sớm hơn thắng.
+ *
+ * IMMUTABLE sau khi load → thread-safe.
+ */
+public final class HeuristicClassifier {
+
+    public static final String LOCATION_FIELD = "tinh_thanh";
+
+    private static final String LEXICON_RESOURCE = "/heuristics/lexicon.tsv";
+    private static final String GAZETTEER_RESOURCE = "/heuristics/provinces.tsv";
+
+    private final AhoCorasick automaton;
+    // term id → các label mà term đó bỏ phiếu
+    private final int[][] termLabels;
+    private final int[] termLengths;
+    private final String[] fieldNames;
+    private final int[] labelField;
+    private final int[] labelPriority;
+    private final String[] labelNames;
+
+    private HeuristicClassifier(AhoCorasick automaton, int[][] termLabels, int[] termLengths, String[] fieldNames,
+                                int[] labelField, int[] labelPriority, String[] labelNames) {
+        this.automaton = automaton;
+        this.termLabels = termLabels;
+        this.termLengths = termLengths;
+        this.fieldNames = fieldNames;
+        this.labelField = labelField;
+        this.labelPriority = labelPriority;
+        this.labelNames = labelNames;
+    }
+
+    /**
+     * Classifier dùng lexicon/gazetteer đóng gói sẵn (load một lần, lazy)
+     */
+    public static HeuristicClassifier getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    private static final class DefaultHolder {
+        private static final HeuristicClassifier INSTANCE = loadDefault();
+
+        private static HeuristicClassifier loadDefault() {
+            try (Reader lexicon = openResource(LEXICON_RESOURCE);
+                 Reader gazetteer = openResource(GAZETTEER_RESOURCE)) {
+                return load(lexicon, gazetteer);
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to load heuristic lexicons: " + e.getMessage(), e);
+            }
+        }
+
+        private static Reader openResource(String name) throws IOException {
+            InputStream in = HeuristicClassifier.class.getResourceAsStream(name);
+            if (in == null) {
+                throw new IOException("Resource not found: " + name);
+            }
+            return new InputStreamReader(in, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Biên dịch classifier từ dữ liệu TSV (dòng trống và dòng bắt đầu bằng '#' bị bỏ qua)
+     *
+     * @param lexicon Mỗi dòng: field \t priority \t label \t term|term|...
+     * @param gazetteer Mỗi dòng: tên tỉnh chuẩn [\t alias|alias|...] (field tinh_thanh, priority 0)
+     */
+    public static HeuristicClassifier load(Reader lexicon, Reader gazetteer) throws IOException {
+        Compiler compiler = new Compiler();
+
+        int lineNo = 0;
+        BufferedReader reader = new BufferedReader(lexicon);
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            lineNo++;
+            if (isSkippable(line)) {
+                continue;
+            }
+            String[] columns = line.split("\t");
+            if (columns.length != 4) {
+                throw new IOException("Invalid lexicon line " + lineNo + ": " + line);
+            }
+            int priority;
+            try {
+                priority = Integer.parseInt(columns[1].trim());
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid priority on lexicon line " + lineNo + ": " + columns[1], e);
+            }
+            compiler.addLabel(columns[0].trim(), priority, columns[2].trim(), columns[3].split("\\|"));
+        }
+
+        reader = new BufferedReader(gazetteer);
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            if (isSkippable(line)) {
+                continue;
+            }
+            String[] columns = line.split("\t");
+            String canonical = columns[0].trim();
+            List<String> aliases = new ArrayList<>();
+            aliases.add(canonical);
+            if (columns.length > 1) {
+                aliases.addAll(Arrays.asList(columns[1].split("\\|")));
+            }
+            compiler.addLabel(LOCATION_FIELD, 0, canonical, aliases.toArray(new String[0]));
+        }
+
+        return compiler.compile();
+    }
+
+    private static boolean isSkippable(String line) {
+        return line.isBlank() || line.startsWith("#");
+    }
+
+    /**
+     * Phân loại văn bản trong MỘT lượt duyệt
+     *
+     * @return field → label cho các field có ít nhất một match (field không match không có mặt)
+     */
+    public Map<String, String> classify(CharSequence text) {
+        Map<String, String> result = new LinkedHashMap<>();
+        if (text == null || text.length() == 0) {
+            return result;
+        }
+
+        int[] hits = new int[labelNames.length];
+        int[] firstEnd = new int[labelNames.length];
+
+        int state = automaton.root();
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            state = automaton.next(state, text.charAt(i));
+            int end = i + 1;
+            for (int term : automaton.outputs(state)) {
+                if (!isWholeWord(text, end - termLengths[term], end)) {
+                    continue;
+                }
+                for (int label : termLabels[term]) {
+                    if (hits[label]++ == 0) {
+                        firstEnd[label] = end;
+                    }
+                }
+            }
+        }
+
+        int[] best = new int[fieldNames.length];
+        Arrays.fill(best, -1);
+        for (int label = 0; label < labelNames.length; label++) {
+            if (hits[label] == 0) {
+                continue;
+            }
+            int field = labelField[label];
+            if (best[field] < 0 || beats(label, best[field], hits, firstEnd)) {
+                best[field] = label;
+            }
+        }
+        for (int field = 0; field < fieldNames.length; field++) {
+            if (best[field] >= 0) {
+                result.put(fieldNames[field], labelNames[best[field]]);
+            }
+        }
+        return result;
+    }
+
+    private boolean beats(int label, int current, int[] hits, int[] firstEnd) {
+        if (labelPriority[label] != labelPriority[current]) {
+            return labelPriority[label] > labelPriority[current];
+        }
+        if (hits[label] != hits[current]) {
+            return hits[label] > hits[current];
+        }
+        return firstEnd[label] < firstEnd[current];
+    }
+
+    private static boolean isWholeWord(CharSequence text, int start, int end) {
+        return (start == 0 || !isWordChar(text.charAt(start - 1)))
+                && (end == text.length() || !isWordChar(text.charAt(end)));
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || Character.getType(c) == Character.NON_SPACING_MARK;
+    }
+
+    /**
+     * Gom label/term rồi dựng automaton (term trùng giữa nhiều label/field chỉ là MỘT pattern)
+     */
+    private static final class Compiler {
+
+        private final List<String> fieldNames = new ArrayList<>();
+        private final List<Integer> labelField = new ArrayList<>();
+        private final List<Integer> labelPriority = new ArrayList<>();
+        private final List<String> labelNames = new ArrayList<>();
+        private final Map<String, List<Integer>> termLabels = new LinkedHashMap<>();
+        private final Map<String, Integer> labelIndex = new HashMap<>();
+
+        void addLabel(String field, int priority, String label, String[] terms) {
+            int fieldId = fieldNames.indexOf(field);
+            if (fieldId < 0) {
+                fieldId = fieldNames.size();
+                fieldNames.add(field);
+            }
+            String labelKey = field + "\t" + label;
+            Integer labelId = labelIndex.get(labelKey);
+            if (labelId == null) {
+                labelId = labelNames.size();
+                labelIndex.put(labelKey, labelId);
+                labelField.add(fieldId);
+                labelPriority.add(priority);
+                labelNames.add(label);
+            }
+            for (String term : terms) {
+                String normalized = term.trim().toLowerCase(Locale.ROOT);
+                if (normalized.isEmpty()) {
+                    continue;
+                }
+                List<Integer> labels = termLabels.computeIfAbsent(normalized, t -> new ArrayList<>());
+                if (!labels.contains(labelId)) {
+                    labels.add(labelId);
+                }
+            }
+        }
+
+        HeuristicClassifier compile() {
+            AhoCorasick.Builder builder = AhoCorasick.builder().caseInsensitive();
+            int[][] labelsByTerm = new int[termLabels.size()][];
+            int[] termLengths = new int[termLabels.size()];
+            int termId = 0;
+            for (Map.Entry<String, List<Integer>> entry : termLabels.entrySet()) {
+                builder.add(entry.getKey());
+                labelsByTerm[termId] = entry.getValue().stream().mapToInt(Integer::intValue).toArray();
+                termLengths[termId] = entry.getKey().length();
+                termId++;
+            }
+            return new HeuristicClassifier(builder.build(), labelsByTerm, termLengths,
+                    fieldNames.toArray(new String[0]),
+                    labelField.stream().mapToInt(Integer::intValue).toArray(),
+                    labelPriority.stream().mapToInt(Integer::intValue).toArray(),
+                    labelNames.toArray(new String[0]));
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.crawler.util;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+/**
+ * IncrementalJsonParser - Parse JSON được sinh ra TỪNG ĐOẠN (response streaming của AI)
+ *
+ * Nhận text theo từng chunk (feed), không chờ toàn bộ văn bản:
+ * - Gốc là mảng  → mỗi phần tử hoàn chỉnh được báo ngay qua Listener.onElement
+ * - Gốc là object → mỗi field hoàn chỉnh được báo ngay qua Listener.onField
+ * Text trước ký tự '{' / '[' đầu tiên (vd. "```json") và sau khi gốc đóng bị bỏ qua.
+ *
+ * Máy trạng thái chỉ theo dõi độ sâu + chuỗi/escape; giá trị hoàn chỉnh được Gson parse (lenient).
+ * Phần tử/field hỏng bị bỏ qua (không ném lỗi) - caller vẫn parse lại toàn văn bản khi stream kết thúc.
+ *
+ * KHÔNG thread-safe: feed() và các callback chạy trên cùng thread.
+ */
+public final class IncrementalJsonParser {
+
+    /**
+     * Nhận các thành phần cấp 1 của gốc ngay khi chúng hoàn chỉnh
+     */
+    public interface Listener {
+
+        /**
+         * @param position Vị trí phần tử trong mảng gốc (từ 0)
+         */
+        default void onElement(int position, JsonElement element) {
+        }
+
+        default void onField(String name, JsonElement value) {
+        }
+    }
+
+    private final Listener listener;
+    private final StringBuilder text = new StringBuilder();
+
+    // Vị trí đã quét trong text
+    private int scanned;
+    private boolean started;
+    private boolean complete;
+    private boolean rootIsArray;
+    private int depth;
+    private boolean inString;
+    private boolean escaped;
+
+    // Thành phần cấp 1 đang đọc
+    private int memberStart;
+    private int keyStart = -1;
+    private String key;
+    private int elements;
+
+    public IncrementalJsonParser(Listener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener must not be null");
+        }
+        this.listener = listener;
+    }
+
+    /**
+     * Nạp thêm một đoạn text; callback được gọi cho mọi thành phần vừa hoàn chỉnh
+     */
+    public void feed(CharSequence chunk) {
+        text.append(chunk);
+        for (; scanned < text.length() && !complete; scanned++) {
+            scan(text.charAt(scanned), scanned);
+        }
+    }
+
+    /**
+     * true khi phần tử gốc đã đóng
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Số phần tử mảng gốc đã báo
+     */
+    public int elementCount() {
+        return elements;
+    }
+
+    private void scan(char c, int at) {
+        if (!started) {
+            if (c == '{' || c == '[') {
+                started = true;
+                rootIsArray = c == '[';
+                depth = 1;
+                memberStart = rootIsArray ? at + 1 : -1;
+            }
+            return;
+        }
+
+        if (inString) {
+            if (escaped) {
+                escaped = false;
+            } else if (c == '\\') {
+                escaped = true;
+            } else if (c == '"') {
+                inString = false;
+                if (depth == 1 && keyStart >= 0) {
+                    key = parseKey(keyStart, at + 1);
+                    keyStart = -1;
+                }
+            }
+            return;
+        }
+
+        switch (c) {
+            case '"' -> {
+                inString = true;
+                // Object gốc: chuỗi ở cấp 1 khi chưa gặp ':' là tên field
+                if (depth == 1 && !rootIsArray && memberStart < 0) {
+                    keyStart = at;
+                }
+            }
+            case '{', '[' -> depth++;
+            case ':' -> {
+                if (depth == 1 && !rootIsArray) {
+                    memberStart = at + 1;
+                }
+            }
+            case ',' -> {
+                if (depth == 1) {
+                    completeMember(at);
+                }
+            }
+            case '}', ']' -> {
+                depth--;
+                if (depth == 0) {
+                    completeMember(at);
+                    complete = true;
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * Thành phần cấp 1 kết thúc tại vị trí end (dấu ',' hoặc ký tự đóng gốc)
+     */
+    private void completeMember(int end) {
+        int start = memberStart;
+        // Object gốc: chờ tên field kế tiếp trước khi nhận giá trị
+        memberStart = rootIsArray ? end + 1 : -1;
+        if (start < 0) {
+            return;
+        }
+        String value = text.substring(start, end).strip();
+        if (value.isEmpty()) {
+            return;
+        }
+        JsonElement element;
+        try {
+            element = JsonParser.parseString(value);
+        } catch (JsonParseException e) {
+            return;
+        }
+        if (rootIsArray) {
+            listener.onElement(elements++, element);
+        } else if (key != null) {
+            listener.onField(key, element);
+            key = null;
+        }
+    }
+
+    private String parseKey(int start, int end) {
+        try {
+            return JsonParser.parseString(text.substring(start, end)).getAsString();
+        } catch (JsonParseException e) {
+            return null;
+        }
+    }
+}
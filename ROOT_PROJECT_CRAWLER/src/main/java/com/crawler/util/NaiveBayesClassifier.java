@@ -0,0 +1,294 @@
+package com.crawler.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * NaiveBayesClassifier - Multinomial Naive Bayes trên n-gram băm, NHIỀU field một lúc
+ *
+ * ĐẶC TRƯNG: văn bản được bỏ dấu + viết thường (VietnameseFolding), tách theo chữ/số;
+ * mỗi unigram và bigram được băm (FNV-1a) vào 2^bits bucket - không cần từ điển, bộ nhớ cố định.
+ *
+ * MÔ HÌNH: mỗi field (cam_xuc_bai_viet, loai_bai_viet...) có tập label riêng; với mỗi label lưu
+ * log P(label) và log P(bucket | label) (Laplace smoothing). classify() trả về label + độ tin cậy
+ * (xác suất hậu nghiệm sau softmax) cho từng field.
+ *
+ * HUẤN LUYỆN offline qua Trainer (app/TrainLocalClassifier đọc kết quả AI đã lưu trong EnrichmentCache),
+ * lưu/đọc bằng file nhị phân. IMMUTABLE sau khi build → thread-safe.
+ */
+public final class NaiveBayesClassifier {
+
+    private static final int MAGIC = 0x4E424331; // "NBC1"
+    private static final int FNV_OFFSET = 0x811C9DC5;
+    private static final int FNV_PRIME = 0x01000193;
+    // Seed riêng cho bigram để không trùng bucket với unigram cùng hash
+    private static final int BIGRAM_SEED = 0x9E3779B9;
+
+    /**
+     * Kết quả cho MỘT field
+     *
+     * @param label Label có xác suất cao nhất
+     * @param confidence Xác suất hậu nghiệm của label đó (0..1)
+     */
+    public record Prediction(String label, double confidence) {
+    }
+
+    private final int bits;
+    private final String[] fields;
+    private final String[][] labels;
+    // [field][label]
+    private final float[][] logPriors;
+    // [field][label][bucket]
+    private final float[][][] logLikelihoods;
+
+    private NaiveBayesClassifier(int bits, String[] fields, String[][] labels, float[][] logPriors,
+                                 float[][][] logLikelihoods) {
+        this.bits = bits;
+        this.fields = fields;
+        this.labels = labels;
+        this.logPriors = logPriors;
+        this.logLikelihoods = logLikelihoods;
+    }
+
+    /**
+     * Dự đoán mọi field
+     *
+     * @return field → Prediction, theo thứ tự field lúc huấn luyện
+     */
+    public Map<String, Prediction> classify(CharSequence text) {
+        int[] features = features(text, bits);
+        Map<String, Prediction> predictions = new LinkedHashMap<>();
+        for (int f = 0; f < fields.length; f++) {
+            double[] scores = new double[labels[f].length];
+            int best = 0;
+            for (int l = 0; l < scores.length; l++) {
+                double score = logPriors[f][l];
+                float[] likelihood = logLikelihoods[f][l];
+                for (int bucket : features) {
+                    score += likelihood[bucket];
+                }
+                scores[l] = score;
+                if (score > scores[best]) {
+                    best = l;
+                }
+            }
+            // Softmax ổn định số học: trừ max trước khi exp
+            double total = 0;
+            for (double score : scores) {
+                total += Math.exp(score - scores[best]);
+            }
+            predictions.put(fields[f], new Prediction(labels[f][best], 1.0 / total));
+        }
+        return predictions;
+    }
+
+    public List<String> getFields() {
+        return Collections.unmodifiableList(Arrays.asList(fields));
+    }
+
+    // ========== ĐẶC TRƯNG ==========
+
+    /**
+     * Bucket của mọi unigram + bigram (có lặp lại - multinomial đếm số lần xuất hiện)
+     */
+    static int[] features(CharSequence text, int bits) {
+        if (text == null) {
+            return new int[0];
+        }
+        int[] buckets = new int[Math.max(8, text.length())];
+        int count = 0;
+        int hash = FNV_OFFSET;
+        int previous = 0;
+        boolean inToken = false;
+        boolean hasPrevious = false;
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? VietnameseFolding.foldLowerChar(text.charAt(i)) : ' ';
+            if (c == VietnameseFolding.REMOVED) {
+                continue;
+            }
+            if (Character.isLetterOrDigit(c)) {
+                hash = (hash ^ c) * FNV_PRIME;
+                inToken = true;
+                continue;
+            }
+            if (!inToken) {
+                continue;
+            }
+            if (count + 2 > buckets.length) {
+                buckets = Arrays.copyOf(buckets, buckets.length * 2);
+            }
+            buckets[count++] = bucket(hash, bits);
+            if (hasPrevious) {
+                buckets[count++] = bucket((previous * FNV_PRIME) ^ hash ^ BIGRAM_SEED, bits);
+            }
+            previous = hash;
+            hasPrevious = true;
+            hash = FNV_OFFSET;
+            inToken = false;
+        }
+        return Arrays.copyOf(buckets, count);
+    }
+
+    private static int bucket(int hash, int bits) {
+        // Trộn bit cao xuống trước khi lấy bits bit cao nhất
+        int mixed = hash * 0x9E3779B1;
+        return mixed >>> (32 - bits);
+    }
+
+    // ========== LƯU / ĐỌC ==========
+
+    public void save(Path file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(bits);
+            out.writeInt(fields.length);
+            for (int f = 0; f < fields.length; f++) {
+                out.writeUTF(fields[f]);
+                out.writeInt(labels[f].length);
+                for (int l = 0; l < labels[f].length; l++) {
+                    out.writeUTF(labels[f][l]);
+                    out.writeFloat(logPriors[f][l]);
+                    for (float value : logLikelihoods[f][l]) {
+                        out.writeFloat(value);
+                    }
+                }
+            }
+        }
+    }
+
+    public static NaiveBayesClassifier load(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a naive Bayes model file: " + file);
+            }
+            int bits = in.readInt();
+            if (bits < 1 || bits > 24) {
+                throw new IOException("Invalid feature bits in " + file + ": " + bits);
+            }
+            int fieldCount = in.readInt();
+            String[] fields = new String[fieldCount];
+            String[][] labels = new String[fieldCount][];
+            float[][] logPriors = new float[fieldCount][];
+            float[][][] logLikelihoods = new float[fieldCount][][];
+            for (int f = 0; f < fieldCount; f++) {
+                fields[f] = in.readUTF();
+                int labelCount = in.readInt();
+                labels[f] = new String[labelCount];
+                logPriors[f] = new float[labelCount];
+                logLikelihoods[f] = new float[labelCount][1 << bits];
+                for (int l = 0; l < labelCount; l++) {
+                    labels[f][l] = in.readUTF();
+                    logPriors[f][l] = in.readFloat();
+                    float[] likelihood = logLikelihoods[f][l];
+                    for (int b = 0; b < likelihood.length; b++) {
+                        likelihood[b] = in.readFloat();
+                    }
+                }
+            }
+            return new NaiveBayesClassifier(bits, fields, labels, logPriors, logLikelihoods);
+        }
+    }
+
+    // ========== HUẤN LUYỆN ==========
+
+    public static Trainer trainer(int bits) {
+        return new Trainer(bits);
+    }
+
+    /**
+     * Gom số đếm từ các ví dụ (văn bản + label theo field) rồi build mô hình. KHÔNG thread-safe.
+     */
+    public static final class Trainer {
+
+        // Laplace smoothing
+        private static final double ALPHA = 1.0;
+
+        private final int bits;
+        // field → label → thống kê
+        private final Map<String, Map<String, LabelCounts>> counts = new LinkedHashMap<>();
+
+        private Trainer(int bits) {
+            if (bits < 1 || bits > 24) {
+                throw new IllegalArgumentException("bits must be in [1, 24]");
+            }
+            this.bits = bits;
+        }
+
+        /**
+         * Thêm một ví dụ; field thiếu hoặc label rỗng được bỏ qua
+         */
+        public Trainer add(CharSequence text, Map<String, String> fieldLabels) {
+            int[] features = features(text, bits);
+            for (Map.Entry<String, String> entry : fieldLabels.entrySet()) {
+                String label = entry.getValue();
+                if (label == null || label.isBlank()) {
+                    continue;
+                }
+                LabelCounts labelCounts = counts
+                        .computeIfAbsent(entry.getKey(), k -> new LinkedHashMap<>())
+                        .computeIfAbsent(label.strip(), k -> new LabelCounts(1 << bits));
+                labelCounts.documents++;
+                for (int bucket : features) {
+                    labelCounts.buckets[bucket]++;
+                }
+                labelCounts.total += features.length;
+            }
+            return this;
+        }
+
+        public NaiveBayesClassifier build() {
+            int fieldCount = counts.size();
+            String[] fields = new String[fieldCount];
+            String[][] labels = new String[fieldCount][];
+            float[][] logPriors = new float[fieldCount][];
+            float[][][] logLikelihoods = new float[fieldCount][][];
+            int vocabulary = 1 << bits;
+
+            int f = 0;
+            for (Map.Entry<String, Map<String, LabelCounts>> field : counts.entrySet()) {
+                List<Map.Entry<String, LabelCounts>> entries = new ArrayList<>(field.getValue().entrySet());
+                long documents = 0;
+                for (Map.Entry<String, LabelCounts> entry : entries) {
+                    documents += entry.getValue().documents;
+                }
+
+                fields[f] = field.getKey();
+                labels[f] = new String[entries.size()];
+                logPriors[f] = new float[entries.size()];
+                logLikelihoods[f] = new float[entries.size()][vocabulary];
+                for (int l = 0; l < entries.size(); l++) {
+                    LabelCounts labelCounts = entries.get(l).getValue();
+                    labels[f][l] = entries.get(l).getKey();
+                    logPriors[f][l] = (float) Math.log((double) labelCounts.documents / documents);
+                    double denominator = Math.log(labelCounts.total + ALPHA * vocabulary);
+                    for (int b = 0; b < vocabulary; b++) {
+                        logLikelihoods[f][l][b] = (float) (Math.log(labelCounts.buckets[b] + ALPHA) - denominator);
+                    }
+                }
+                f++;
+            }
+            return new NaiveBayesClassifier(bits, fields, labels, logPriors, logLikelihoods);
+        }
+
+        private static final class LabelCounts {
+            private final int[] buckets;
+            private long documents;
+            private long total;
+
+            LabelCounts(int vocabulary) {
+                this.buckets = new int[vocabulary];
+            }
+        }
+    }
+}
@@ -5,7 +5,9 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Stream;
 
 import com.crawler.model.AbstractPost;
 import com.opencsv.CSVWriter;
@@ -33,7 +35,27 @@ public class PostCsvExporter {
             System.out.println("Không có dữ liệu để export.");
             return;
         }
+        writeAll(posts.iterator(), filePath);
+    }
+
+    /**
+     * Export từ STREAM (ví dụ IPostRepository.streamAll) với RAM hằng số:
+     * mỗi post được ghi ngay rồi bỏ, không cần giữ cả danh sách.
+     * Caller vẫn chịu trách nhiệm đóng stream (try-with-resources).
+     *
+     * @param posts Stream bài viết (NewsPost hoặc SocialPost)
+     * @param filePath Đường dẫn file CSV
+     */
+    public static void export(Stream<? extends AbstractPost> posts, String filePath) {
+        Iterator<? extends AbstractPost> iterator = posts.iterator();
+        if (!iterator.hasNext()) {
+            System.out.println("Không có dữ liệu để export.");
+            return;
+        }
+        writeAll(iterator, filePath);
+    }
 
+    private static void writeAll(Iterator<? extends AbstractPost> posts, String filePath) {
         try {
             // Tạo thư mục nếu chưa tồn tại
             java.io.File file = new java.io.File(filePath);
@@ -57,16 +79,19 @@ public class PostCsvExporter {
             // Post nào cũng là AbstractPost nên nó sẽ gọi đúng getCsvHeader() của nó!
             // NewsPost.getCsvHeader() → NewsPost.HEADER
             // SocialPost.getCsvHeader() → SocialPost.HEADER
-            String[] header = posts.get(0).getCsvHeader(); // ✓ POLYMORPHISM!
+            AbstractPost first = posts.next();
+            String[] header = first.getCsvHeader(); // ✓ POLYMORPHISM!
             writer.writeNext(header);
+            writer.writeNext(first.toCsvArray());
+            long count = 1;
 
             // Viết từng dòng dữ liệu
-            for (AbstractPost post : posts) {
-                String[] row = post.toCsvArray();
-                writer.writeNext(row);
+            while (posts.hasNext()) {
+                writer.writeNext(posts.next().toCsvArray());
+                count++;
             }
 
-            System.out.println("Đã export " + posts.size() + " posts vào " + filePath);
+            System.out.println("Đã export " + count + " posts vào " + filePath);
 
         } catch (IOException e) {
             System.err.println("Lỗi khi viết file CSV: " + e.getMessage());
@@ -0,0 +1,68 @@
+package com.crawler.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.function.Consumer;
+
+/**
+ * ServerSentEvents - Đọc stream text/event-stream (SSE) theo từng event
+ *
+ * - Các dòng "data:" liên tiếp của một event được nối bằng '\n', event kết thúc ở dòng trống
+ * - Dòng comment (":...") và các field khác (event, id, retry) bị bỏ qua
+ * - Event cuối không có dòng trống kết thúc (server đóng kết nối sớm) vẫn được phát
+ *
+ * UTILITY PATTERN: stateless, đọc đồng bộ trên thread gọi → onData chạy ngay khi event về.
+ */
+public final class ServerSentEvents {
+
+    private ServerSentEvents() {
+        throw new UnsupportedOperationException("Utility class - không được phép khởi tạo");
+    }
+
+    /**
+     * @param reader Stream SSE (không cần bọc BufferedReader)
+     * @param onData Nhận dữ liệu của từng event
+     * @return Số event đã phát
+     */
+    public static int read(Reader reader, Consumer<String> onData) throws IOException {
+        BufferedReader in = reader instanceof BufferedReader buffered ? buffered : new BufferedReader(reader);
+        StringBuilder data = new StringBuilder();
+        boolean hasData = false;
+        int events = 0;
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.isEmpty()) {
+                if (hasData) {
+                    onData.accept(data.toString());
+                    events++;
+                    data.setLength(0);
+                    hasData = false;
+                }
+                continue;
+            }
+            if (line.startsWith(":")) {
+                continue;
+            }
+            int colon = line.indexOf(':');
+            String field = colon < 0 ? line : line.substring(0, colon);
+            if (!"data".equals(field)) {
+                continue;
+            }
+            String value = colon < 0 ? "" : line.substring(colon + 1);
+            if (value.startsWith(" ")) {
+                value = value.substring(1);
+            }
+            if (hasData) {
+                data.append('\n');
+            }
+            data.append(value);
+            hasData = true;
+        }
+        if (hasData) {
+            onData.accept(data.toString());
+            events++;
+        }
+        return events;
+    }
+}
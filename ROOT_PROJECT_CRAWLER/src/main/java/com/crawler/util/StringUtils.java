@@ -1,6 +1,11 @@
 package com.crawler.util;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
 import java.util.Arrays;
+import java.util.HexFormat;
 import java.util.List;
 
 /**
@@ -41,4 +46,32 @@ public class StringUtils {
                 .filter(s -> !s.isEmpty())
                 .toList();
     }
+
+    /**
+     * Chuẩn hóa nội dung trước khi băm: NFC, chữ thường, gộp khoảng trắng, trim
+     * → cùng một bài (khác khoảng trắng / dạng Unicode) cho cùng một hash.
+     *
+     * @param content Nội dung (null → chuỗi rỗng)
+     */
+    public static String normalizeContent(String content) {
+        if (content == null) {
+            return "";
+        }
+        return Normalizer.normalize(content, Normalizer.Form.NFC)
+                .toLowerCase()
+                .replaceAll("\\s+", " ")
+                .trim();
+    }
+
+    /**
+     * SHA-256 của chuỗi (UTF-8), dạng hex 64 ký tự thường
+     */
+    public static String sha256Hex(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
 }
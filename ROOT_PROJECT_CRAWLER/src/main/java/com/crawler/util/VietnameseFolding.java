@@ -0,0 +1,210 @@
+package com.crawler.util;
+
+import java.text.Normalizer;
+import java.util.Locale;
+
+/**
+ * VietnameseFolding - Bỏ dấu tiếng Việt bằng BẢNG TRA, một lượt duyệt
+ *
+ * Thay cho Normalizer.normalize(NFD) + replaceAll("\\p{M}+", ""): không sinh chuỗi trung gian,
+ * không chạy regex. Bảng char → char được dựng MỘT lần từ chính đường NFD, nên kết quả
+ * TƯƠNG ĐƯƠNG đường NFD (ngoài ra đ/Đ → d/D, điều mà NFD không làm).
+ *
+ * BẢNG:
+ * - ký tự dựng sẵn (ệ, Ữ, ...) → ký tự gốc (e, U)
+ * - dấu tổ hợp (\p{M}, gặp trong văn bản đã tách dấu) → bị bỏ
+ * - hiếm gặp: ký tự tách thành NHIỀU ký tự gốc (Hangul, ...) hoặc surrogate → đi đường chậm qua Normalizer
+ *   (riêng biến thể char[] tại chỗ giữ nguyên các ký tự này vì không thể dài thêm)
+ *
+ * UTILITY PATTERN: stateless, bảng immutable → thread-safe.
+ */
+public final class VietnameseFolding {
+
+    /**
+     * Giá trị foldChar/foldLowerChar trả về cho dấu tổ hợp (ký tự cần bỏ)
+     */
+    public static final char REMOVED = '\uFFFE';
+
+    // Ký tự phải đi đường chậm (không biểu diễn được bằng MỘT char)
+    private static final char SLOW_PATH = '\uFFFF';
+
+    private static final char[] FOLD = new char[Character.MAX_VALUE + 1];
+    private static final char[] FOLD_LOWER = new char[Character.MAX_VALUE + 1];
+
+    static {
+        // MỘT lần NFD cho cả BMP dạng "c\0c\0...": \0 là starter nên NFD không đổi chỗ dấu qua ranh giới nhóm
+        StringBuilder all = new StringBuilder(2 * (Character.MAX_VALUE + 1));
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            char ch = (char) c;
+            if (ch == REMOVED || ch == SLOW_PATH || Character.isSurrogate(ch)) {
+                FOLD[c] = SLOW_PATH;
+            } else if (isMark(ch)) {
+                FOLD[c] = REMOVED;
+            } else if (c < 0x80) {
+                FOLD[c] = ch;
+            } else {
+                all.append(ch).append('\0');
+            }
+        }
+
+        String decomposed = Normalizer.normalize(all, Normalizer.Form.NFD);
+        StringBuilder group = new StringBuilder();
+        int pos = 0;
+        for (int c = 0x80; c <= Character.MAX_VALUE; c++) {
+            if (FOLD[c] != 0) {
+                continue;
+            }
+            group.setLength(0);
+            while (decomposed.charAt(pos) != '\0') {
+                int codePoint = decomposed.codePointAt(pos);
+                pos += Character.charCount(codePoint);
+                if (!isMark(codePoint)) {
+                    group.appendCodePoint(codePoint);
+                }
+            }
+            pos++;
+            FOLD[c] = group.length() == 1 ? group.charAt(0) : group.length() == 0 ? REMOVED : SLOW_PATH;
+        }
+        // đ/Đ không có dạng tách dấu trong Unicode
+        FOLD['đ'] = 'd';
+        FOLD['Đ'] = 'D';
+
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            char folded = FOLD[c];
+            FOLD_LOWER[c] = folded == REMOVED || folded == SLOW_PATH ? folded : FOLD[Character.toLowerCase((char) c)];
+        }
+    }
+
+    private VietnameseFolding() {
+        throw new UnsupportedOperationException("Utility class - không được phép khởi tạo");
+    }
+
+    /**
+     * Bỏ dấu, giữ nguyên hoa/thường ("Đà Nẵng" → "Da Nang")
+     */
+    public static String fold(CharSequence input) {
+        return input == null ? null : fold(input, new StringBuilder(input.length())).toString();
+    }
+
+    /**
+     * Bỏ dấu và viết thường ("Đà Nẵng" → "da nang")
+     */
+    public static String foldLower(CharSequence input) {
+        return input == null ? null : foldLower(input, new StringBuilder(input.length())).toString();
+    }
+
+    /**
+     * Bỏ dấu, ghi nối vào out (không tạo String trung gian)
+     */
+    public static StringBuilder fold(CharSequence input, StringBuilder out) {
+        return foldInto(input, out, FOLD, false);
+    }
+
+    /**
+     * Bỏ dấu + viết thường, ghi nối vào out
+     */
+    public static StringBuilder foldLower(CharSequence input, StringBuilder out) {
+        return foldInto(input, out, FOLD_LOWER, true);
+    }
+
+    /**
+     * Bỏ dấu TẠI CHỖ trên buf[offset, offset + length) - dấu tổ hợp bị bỏ nên phần kết quả có thể ngắn lại
+     *
+     * @return Độ dài mới (kết quả nằm ở buf[offset, offset + return))
+     */
+    public static int foldInPlace(char[] buf, int offset, int length) {
+        return foldInPlace(buf, offset, length, FOLD);
+    }
+
+    /**
+     * Bỏ dấu + viết thường TẠI CHỖ
+     *
+     * @return Độ dài mới
+     */
+    public static int foldLowerInPlace(char[] buf, int offset, int length) {
+        return foldInPlace(buf, offset, length, FOLD_LOWER);
+    }
+
+    /**
+     * Fold MỘT ký tự (cho code tự duyệt văn bản, vd. đẩy thẳng vào automaton)
+     *
+     * @return Ký tự đã bỏ dấu, REMOVED nếu c là dấu tổ hợp, hoặc chính c nếu c không fold được theo từng ký tự
+     */
+    public static char foldChar(char c) {
+        char folded = FOLD[c];
+        return folded == SLOW_PATH ? c : folded;
+    }
+
+    /**
+     * Như foldChar nhưng viết thường
+     */
+    public static char foldLowerChar(char c) {
+        char folded = FOLD_LOWER[c];
+        return folded == SLOW_PATH ? Character.toLowerCase(c) : folded;
+    }
+
+    private static StringBuilder foldInto(CharSequence input, StringBuilder out, char[] table, boolean lower) {
+        int length = input.length();
+        for (int i = 0; i < length; i++) {
+            char c = input.charAt(i);
+            char folded = table[c];
+            if (folded == REMOVED) {
+                continue;
+            }
+            if (folded != SLOW_PATH) {
+                out.append(folded);
+                continue;
+            }
+            // Đường chậm: một code point (ghép cặp surrogate nếu có)
+            int end = i + 1;
+            if (Character.isHighSurrogate(c) && end < length && Character.isLowSurrogate(input.charAt(end))) {
+                end++;
+            }
+            String codePoint = input.subSequence(i, end).toString();
+            out.append(stripMarks(lower ? codePoint.toLowerCase(Locale.ROOT) : codePoint));
+            i = end - 1;
+        }
+        return out;
+    }
+
+    private static int foldInPlace(char[] buf, int offset, int length, char[] table) {
+        int write = offset;
+        for (int read = offset; read < offset + length; read++) {
+            char c = buf[read];
+            char folded = table[c];
+            if (folded == REMOVED) {
+                continue;
+            }
+            buf[write++] = folded == SLOW_PATH ? (table == FOLD_LOWER ? Character.toLowerCase(c) : c) : folded;
+        }
+        return write - offset;
+    }
+
+    /**
+     * NFD rồi bỏ mọi ký tự \p{M} (tương đương replaceAll("\\p{M}+", "")), đ/Đ → d/D
+     */
+    private static String stripMarks(String value) {
+        String decomposed = Normalizer.normalize(value, Normalizer.Form.NFD);
+        StringBuilder out = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); ) {
+            int codePoint = decomposed.codePointAt(i);
+            i += Character.charCount(codePoint);
+            if (isMark(codePoint)) {
+                continue;
+            }
+            if (codePoint == 'đ') {
+                codePoint = 'd';
+            } else if (codePoint == 'Đ') {
+                codePoint = 'D';
+            }
+            out.appendCodePoint(codePoint);
+        }
+        return out.toString();
+    }
+
+    private static boolean isMark(int codePoint) {
+        int type = Character.getType(codePoint);
+        return type == Character.NON_SPACING_MARK || type == Character.COMBINING_SPACING_MARK
+                || type == Character.ENCLOSING_MARK;
+    }
+}